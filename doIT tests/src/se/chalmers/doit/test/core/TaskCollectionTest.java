@@ -2,7 +2,9 @@ package se.chalmers.doit.test.core;
 
 import java.util.ArrayList;
 import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.implementation.Task;
 import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.util.implementation.Constants;
 
 import android.test.AndroidTestCase;
 
@@ -13,6 +15,26 @@ public class TaskCollectionTest extends AndroidTestCase{
 		new TaskCollection("Name", new ArrayList<ITask>());
 	}
 
+	public void testEquals() {
+		TaskCollection t = new TaskCollection(2, "Name", new ArrayList<ITask>());
+		assertTrue(t.equals(new TaskCollection(2, "Renamed",
+				new ArrayList<ITask>())));
+		assertFalse(t.equals(new TaskCollection(3, "Name",
+				new ArrayList<ITask>())));
+		assertTrue(t.hashCode() == new TaskCollection(2, "Renamed",
+				new ArrayList<ITask>()).hashCode());
+
+		TaskCollection unsaved = new TaskCollection("Name");
+		assertTrue(unsaved.equals(unsaved));
+		assertFalse(unsaved.equals(new TaskCollection("Name")));
+	}
+
+	public void testGetID() {
+		assertTrue(new TaskCollection("Name").getID() == Constants.ID_UNSAVED);
+		assertTrue(new TaskCollection(5, "Name", new ArrayList<ITask>())
+				.getID() == 5);
+	}
+
 	public void testGetName() {
 		TaskCollection t = new TaskCollection("Name", new ArrayList<ITask>());
 		assertTrue(t.getName().equals("Name"));
@@ -20,6 +42,21 @@ public class TaskCollectionTest extends AndroidTestCase{
 		assertTrue(t.getName().equals("Sw0mp"));
 	}
 
+	public void testGetTaskView() {
+		ArrayList<ITask> list = new ArrayList<ITask>();
+		list.add(new Task("Task", "", false));
+		TaskCollection t = new TaskCollection("Name", list);
+		assertTrue(t.getTaskView().size() == 1);
+		assertTrue(t.getTaskView() == t.getTaskView());
+		try {
+			t.getTaskView().clear();
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// The view is read-only
+		}
+		assertTrue(t.size() == 1);
+	}
+
 	public void testGetTaskList() {
 		ArrayList<ITask> list1 = new ArrayList<ITask>();
 		ArrayList<ITask> list2 = new ArrayList<ITask>();
@@ -29,4 +66,12 @@ public class TaskCollectionTest extends AndroidTestCase{
 		t = new TaskCollection("Sw0mp", list2);
 		assertTrue(t.getTasks().equals(list2));
 	}
+
+	public void testSize() {
+		ArrayList<ITask> list = new ArrayList<ITask>();
+		assertTrue(new TaskCollection("Name", list).size() == 0);
+		list.add(new Task("Task", "", false));
+		list.add(new Task("Task2", "", false));
+		assertTrue(new TaskCollection("Name", list).size() == 2);
+	}
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package se.chalmers.doit.test.core;
 
-import java.util.Date;
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.core.implementation.*;
+import se.chalmers.doit.util.implementation.Constants;
 import android.test.AndroidTestCase;
 
 /**
@@ -40,6 +43,19 @@ public class TaskTest extends AndroidTestCase {
 		assertTrue(t.getCustomPosition() == 13337);
 	}
 
+	public void testEquals() {
+		Task t = new Task(4, "Name", "Description", new Priority((byte) 1),
+				null, null, 0, false);
+		assertTrue(t.equals(new Task(t, true)));
+		assertTrue(t.equals(new Task(new Task("Other", "", false), 4)));
+		assertFalse(t.equals(new Task(t, 5)));
+
+		Task unsaved = new Task("Name", "Description", false);
+		assertTrue(unsaved.equals(unsaved));
+		assertFalse(unsaved.equals(new Task(unsaved)));
+		assertFalse(unsaved.equals(new Task("Name", "Description", false)));
+	}
+
 	public void testGetDescription() {
 		Task t = new Task("Name", "Desc.", false);
 		assertTrue(t.getDescription().equals("Desc."));
@@ -60,6 +76,15 @@ public class TaskTest extends AndroidTestCase {
 		assertTrue(t.getDueDate().equals(date2));
 	}
 
+	public void testGetID() {
+		Task t = new Task("Name", "Description", false);
+		assertTrue(t.getID() == Constants.ID_UNSAVED);
+		t = new Task(t, 17);
+		assertTrue(t.getID() == 17);
+		assertTrue(new Task(t).getID() == 17);
+		assertTrue(new Task(t, true).getID() == 17);
+	}
+
 	public void testGetName() {
 		Task t = new Task("Boel", "...", false);
 		assertTrue(t.getName().equals("Boel"));
@@ -90,6 +115,15 @@ public class TaskTest extends AndroidTestCase {
 		assertTrue(t.getReminderDate().equals(date2));
 	}
 
+	public void testHashCode() {
+		Task t = new Task(new Task("Name", "Description", false), 3);
+		Map<ITask, Integer> map = new HashMap<ITask, Integer>();
+		map.put(t, Integer.valueOf(1));
+		assertTrue(t.hashCode() == new Task(t, true).hashCode());
+		assertTrue(map.containsKey(new Task(t, true)));
+		assertFalse(map.containsKey(new Task(t, 4)));
+	}
+
 	public void testIsCompleted() {
 		Task t = new Task("Boel", "...", false);
 		assertTrue(!t.isCompleted());
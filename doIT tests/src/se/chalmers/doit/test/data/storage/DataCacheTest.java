@@ -2,7 +2,10 @@ package se.chalmers.doit.test.data.storage;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
 
+import se.chalmers.doit.core.IPriority;
 import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.core.ITaskCollection;
 import se.chalmers.doit.core.implementation.Task;
@@ -18,6 +21,70 @@ import android.test.AndroidTestCase;
  */
 public class DataCacheTest extends AndroidTestCase {
 
+	/**
+	 * Saved task counting how often it is hashed, i.e. looked up or indexed.
+	 */
+	private static class HashCountingTask implements ITask {
+		static int hashes;
+
+		private final long id;
+
+		HashCountingTask(final long id) {
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof ITask && ((ITask) o).getID() == id;
+		}
+
+		@Override
+		public int getCustomPosition() {
+			return 0;
+		}
+
+		@Override
+		public String getDescription() {
+			return "";
+		}
+
+		@Override
+		public Date getDueDate() {
+			return null;
+		}
+
+		@Override
+		public long getID() {
+			return id;
+		}
+
+		@Override
+		public String getName() {
+			return "Task" + id;
+		}
+
+		@Override
+		public IPriority getPriority() {
+			return null;
+		}
+
+		@Override
+		public Date getReminderDate() {
+			return null;
+		}
+
+		@Override
+		public int hashCode() {
+			hashes++;
+			return (int) (id ^ (id >>> 32));
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return false;
+		}
+	}
+
 	private DataCache cache;
 
 	@Override
@@ -130,6 +197,32 @@ public class DataCacheTest extends AndroidTestCase {
 		assertTrue(cache.getAllTasks().contains(task2));
 	}
 
+	public void testEditKeepsPosition() {
+		final ITask t1 = new Task(1, "t1", "", null, null, null, 0, false);
+		final ITask t2 = new Task(2, "t2", "", null, null, null, 0, false);
+		final ITask t3 = new Task(3, "t3", "", null, null, null, 0, false);
+		final ArrayList<ITask> taskList = new ArrayList<ITask>();
+		taskList.add(t1);
+		taskList.add(t2);
+		taskList.add(t3);
+		cache.addList(new TaskCollection(7, "List", taskList));
+
+		// A new version of a saved task, and a task that has not been saved
+		final ITask edited = new Task(2, "Edited", "", null, null, null, 0,
+				true);
+		assertTrue(cache.editTask(t2, edited));
+		final ITask unsaved = new Task("Unsaved", "", false);
+		assertTrue(cache.editTask(t1, unsaved));
+
+		final Iterator<ITask> tasks = cache.getList("List").getTaskView()
+				.iterator();
+		assertTrue(tasks.next() == unsaved);
+		assertTrue(tasks.next() == edited);
+		assertTrue(tasks.next() == t3);
+		assertFalse(tasks.hasNext());
+		assertTrue(cache.getTask(t2) == edited);
+	}
+
 	public void testGetAllLists() {
 		assertTrue(cache.getAllLists().size() == 0);
 		cache.addList(new TaskCollection("Name1"));
@@ -152,6 +245,43 @@ public class DataCacheTest extends AndroidTestCase {
 		assertTrue(cache.getAllTasks().size() == 3);
 	}
 
+	public void testKeepsListID() {
+		final ITaskCollection tc = new TaskCollection(7, "List",
+				new ArrayList<ITask>());
+		final ITask task = new Task("Name", "Description", false);
+		cache.addList(tc);
+		assertTrue(cache.addTask(task, tc));
+		assertTrue(cache.getList("List").getID() == 7);
+		assertTrue(cache.getList("List").size() == 1);
+		assertTrue(cache.removeTask(task));
+		assertTrue(cache.getList("List").getID() == 7);
+	}
+
+	public void testGetVersion() {
+		final TaskCollection tc = new TaskCollection("TC");
+		final Task task = new Task("Task", "", false);
+		long version = cache.getVersion();
+
+		assertTrue(cache.addList(tc));
+		assertTrue(cache.getVersion() > version);
+		version = cache.getVersion();
+		assertTrue(cache.addTask(task, tc));
+		assertTrue(cache.getVersion() > version);
+		version = cache.getVersion();
+
+		// Reads and failed changes leave the version as it is
+		cache.getAllTasks();
+		assertFalse(cache.addList(new TaskCollection("TC")));
+		assertFalse(cache.removeTask(new Task("Other", "", false)));
+		assertTrue(cache.getVersion() == version);
+
+		assertTrue(cache.removeTask(task));
+		assertTrue(cache.getVersion() > version);
+		version = cache.getVersion();
+		cache.clearData();
+		assertTrue(cache.getVersion() > version);
+	}
+
 	public void testMoveTask() {
 		final TaskCollection tc = new TaskCollection("TC");
 		final TaskCollection tc2 = new TaskCollection("TC2");
@@ -262,4 +392,92 @@ public class DataCacheTest extends AndroidTestCase {
 		assertTrue(cache.getAllTasks().contains(t3));
 		assertFalse(cache.getAllTasks().contains(t4));
 	}
-}
\ No newline at end of file
+
+	public void testScaleAddAndLookup() {
+		final int nLists = 100;
+		final int nTasksPerList = 200;
+		final ArrayList<ITask> all = new ArrayList<ITask>();
+		for (int i = 0; i < nLists; i++) {
+			final TaskCollection col = new TaskCollection("List" + i);
+			final ArrayList<ITask> taskList = new ArrayList<ITask>();
+			for (int j = 0; j < nTasksPerList; j++) {
+				taskList.add(new Task("Task" + j, "", false));
+			}
+			assertTrue(cache.addList(col));
+			assertTrue(cache.addTasks(taskList, col) == nTasksPerList);
+			all.addAll(taskList);
+		}
+		assertTrue(cache.getAllLists().size() == nLists);
+		assertTrue(cache.getAllTasks().size() == nLists * nTasksPerList);
+
+		// Every task is already added, so none of them can be added again
+		for (final ITask t : all) {
+			assertFalse(cache.addTask(t, cache.getList("List0")));
+			assertTrue(cache.getListContaining(t) != null);
+		}
+	}
+
+	public void testScaleChangesTouchOnlyTheTask() {
+		final int nTasks = 5000;
+		final int nChanges = 500;
+		final ArrayList<ITask> taskList = new ArrayList<ITask>();
+		for (int i = 0; i < nTasks; i++) {
+			taskList.add(new HashCountingTask(i + 1));
+		}
+		assertTrue(cache.addList(new TaskCollection(1, "From", taskList)));
+		assertTrue(cache.addList(new TaskCollection(2, "To",
+				new ArrayList<ITask>())));
+
+		// Copying or indexing a whole list would hash every task in it
+		HashCountingTask.hashes = 0;
+		for (int i = 0; i < nChanges; i++) {
+			final ITask task = taskList.get(i);
+			assertTrue(cache.editTask(task, new Task(task, true)));
+			assertTrue(cache.moveTask(task, cache.getList("To")));
+			assertTrue(cache.removeTask(task));
+			assertTrue(cache.addTask(task, cache.getList("From")));
+		}
+		assertTrue(HashCountingTask.hashes < nChanges * 50);
+
+		assertTrue(cache.getList("From").size() == nTasks);
+		assertTrue(cache.getList("To").size() == 0);
+		assertTrue(cache.getAllTasks().size() == nTasks);
+	}
+
+	public void testScaleMoveEditRemove() {
+		final int nTasks = 5000;
+		final TaskCollection from = new TaskCollection("From");
+		final TaskCollection to = new TaskCollection("To");
+		final ArrayList<ITask> taskList = new ArrayList<ITask>();
+		for (int i = 0; i < nTasks; i++) {
+			taskList.add(new Task("Task" + i, "", false));
+		}
+		cache.addList(from);
+		cache.addList(to);
+		assertTrue(cache.addTasks(taskList, from) == nTasks);
+
+		for (int i = 0; i < nTasks; i += 2) {
+			assertTrue(cache.moveTask(taskList.get(i), cache.getList("To")));
+		}
+		assertTrue(cache.getList("From").getTasks().size() == nTasks / 2);
+		assertTrue(cache.getList("To").getTasks().size() == nTasks / 2);
+		assertTrue(cache.getListContaining(taskList.get(0)).getName()
+				.equals("To"));
+		assertTrue(cache.getListContaining(taskList.get(1)).getName()
+				.equals("From"));
+
+		final ArrayList<ITask> edited = new ArrayList<ITask>();
+		for (int i = 1; i < nTasks; i += 2) {
+			final ITask newTask = new Task(taskList.get(i), true);
+			assertTrue(cache.editTask(taskList.get(i), newTask));
+			edited.add(newTask);
+		}
+		assertTrue(cache.getListContaining(taskList.get(1)) == null);
+		assertTrue(cache.getListContaining(edited.get(0)).getName()
+				.equals("From"));
+
+		assertTrue(cache.removeTasks(edited) == edited.size());
+		assertTrue(cache.getList("From").getTasks().size() == 0);
+		assertTrue(cache.getAllTasks().size() == nTasks / 2);
+	}
+}
@@ -1,16 +1,28 @@
 package se.chalmers.doit.test.data.storage;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.core.ITaskCollection;
 import se.chalmers.doit.core.implementation.Priority;
 import se.chalmers.doit.core.implementation.Task;
 import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.data.storage.ITaskCursor;
 import se.chalmers.doit.data.storage.implementation.DataSQL;
+import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.implementation.DueDateComparatorStrategy;
+import se.chalmers.doit.util.implementation.NameComparatorStrategy;
+import se.chalmers.doit.util.implementation.PriorityComparatorStrategy;
 import se.chalmers.doit.util.implementation.SQLConstants;
+import se.chalmers.doit.util.implementation.TaskListUtility;
 import android.content.ContentValues;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.test.AndroidTestCase;
 
@@ -129,6 +141,44 @@ public class DataSQLTest extends AndroidTestCase {
 		assertTrue(_containsEqualTask(db.getAllTasks().keySet(), task2));
 	}
 
+	public void testAddAndRemoveTasksBatch() {
+		final int nTasks = 1000;
+		final Task[] tasks = new Task[nTasks];
+		for (int i = 0; i < nTasks; i++) {
+			tasks[i] = new Task("TASK" + i, "DESC", new Priority((byte) 3),
+					null, null, i, false);
+		}
+
+		final int[] ids = db.addTasks(tasks, 1);
+		assertTrue(ids.length == nTasks);
+		assertTrue(db.getTaskIDs(1).length == nTasks);
+
+		final boolean[] removed = db.removeTasks(ids);
+		for (final boolean b : removed) {
+			assertTrue(b);
+		}
+		assertTrue(db.getAllTasks().size() == 0);
+		assertFalse(db.removeTasks(ids)[0]);
+	}
+
+	public void testAddTasksReturnsIDsInOrder() {
+		final Task task = new Task("TASK", "DESC", new Priority((byte) 3),
+				new Date(7), new Date(3), 5, false);
+		final Task task2 = new Task("TASK2", "DESC2", new Priority((byte) 6),
+				new Date(2), new Date(23), 16, true);
+		final Task task3 = new Task("TASK3", "DESC3", new Priority((byte) 3),
+				new Date(7), new Date(3), 5, false);
+
+		db.addTask(task, 2);
+		db.removeTask(1);
+		final int[] ids = db.addTasks(new Task[] { task2, task3 }, 1);
+		final int[] l1 = db.getTaskIDs(1);
+		assertTrue(ids.length == 2);
+		assertTrue(ids[0] == l1[0]);
+		assertTrue(ids[1] == l1[1]);
+		assertTrue(ids[0] < ids[1]);
+	}
+
 	public void testEditList() {
 		final TaskCollection list = new TaskCollection("Name1");
 		final TaskCollection list2 = new TaskCollection("Name2");
@@ -301,6 +351,201 @@ public class DataSQLTest extends AndroidTestCase {
 
 	}
 
+	public void testGetTaskIDsUsesIndex() {
+		final Cursor cur = realDb.rawQuery("EXPLAIN QUERY PLAN "
+				+ SQLConstants.SELECT_TASK_IDS, new String[] { "1" });
+		final StringBuilder plan = new StringBuilder();
+		while (cur.moveToNext()) {
+			for (int i = 0; i < cur.getColumnCount(); i++) {
+				plan.append(cur.getString(i)).append(' ');
+			}
+		}
+		cur.close();
+		assertTrue(plan.toString(),
+				plan.indexOf(SQLConstants.TASK_LISTID_INDEX) != -1);
+	}
+
+	public void testUpgradeDatabase() {
+		final SQLiteDatabase oldDb = SQLiteDatabase.create(null);
+		oldDb.execSQL(SQLConstants.CREATE_TABLE_TASKS);
+		oldDb.execSQL(SQLConstants.CREATE_TABLE_LISTS);
+		oldDb.execSQL("INSERT INTO " + SQLConstants.TASK_TABLE_NAME
+				+ " VALUES (1,1,'\u00c5','',0,NULL,NULL,0,0)");
+		oldDb.execSQL("INSERT INTO " + SQLConstants.TASK_TABLE_NAME
+				+ " VALUES (2,1,'\u00e4','',0,NULL,NULL,0,0)");
+		assertTrue(oldDb.getVersion() == 0);
+
+		final DataSQL oldData = new DataSQL();
+		oldData.setDatabase(oldDb);
+		assertTrue(oldDb.getVersion() == SQLConstants.DATABASE_VERSION);
+
+		// Tasks stored before the name key existed are given one
+		final ITaskCursor tasks = oldData.getTaskCursor(1,
+				new NameComparatorStrategy(false), null, null);
+		assertTrue(tasks.getCount() == 2);
+		assertTrue(tasks.getTask(0).getID() == 2);
+		assertTrue(tasks.getTask(1).getID() == 1);
+		tasks.close();
+
+		final Cursor cur = oldDb.rawQuery(
+				"SELECT name FROM sqlite_master WHERE type='index' AND tbl_name=?",
+				new String[] { SQLConstants.TASK_TABLE_NAME });
+		int nIndexes = 0;
+		while (cur.moveToNext()) {
+			final String name = cur.getString(0);
+			if (name.equals(SQLConstants.TASK_LISTID_INDEX)
+					|| name.equals(SQLConstants.TASK_COMPLETED_INDEX)
+					|| name.equals(SQLConstants.TASK_DUEDATE_INDEX)
+					|| name.equals(SQLConstants.TASK_ORDER_INDEX)) {
+				nIndexes++;
+			}
+		}
+		cur.close();
+		oldDb.close();
+		assertTrue(nIndexes == 4);
+	}
+
+	public void testGetAllTasksByList() {
+		final Task task = new Task("TASK", "DESC", new Priority((byte) 3),
+				new Date(7), new Date(3), 5, false);
+		final Task task2 = new Task("TASK2", "DESC2", new Priority((byte) 6),
+				new Date(2), new Date(23), 16, true);
+		final Task task3 = new Task("TASK3", "DESC3", new Priority((byte) 3),
+				new Date(7), new Date(3), 5, false);
+		db.addTasks(new Task[] { task, task2 }, 2);
+		db.addTasks(new Task[] { task3 }, 1);
+
+		final Map<Integer, Collection<ITask>> byList = db.getAllTasksByList();
+		assertTrue(byList.size() == 2);
+		assertTrue(byList.get(Integer.valueOf(1)).size() == 1);
+		assertTrue(_containsEqualTask(byList.get(Integer.valueOf(1)), task3));
+		assertTrue(byList.get(Integer.valueOf(2)).size() == 2);
+		assertTrue(_containsEqualTask(byList.get(Integer.valueOf(2)), task));
+		assertTrue(_containsEqualTask(byList.get(Integer.valueOf(2)), task2));
+		for (final ITask t : byList.get(Integer.valueOf(1))) {
+			assertTrue(t.getID() == 3);
+		}
+	}
+
+	public void testGetListID() {
+		db.addTasks(new Task[] { new Task("TASK", "DESC", false) }, 2);
+		assertTrue(db.getListID(1) == 2);
+		assertTrue(db.getListID(2) == -1);
+	}
+
+	public void testGetTaskCounts() {
+		final Task task = new Task("TASK", "DESC", false);
+		db.addTasks(new Task[] { task, task, task }, 1);
+		db.addTasks(new Task[] { task }, 3);
+
+		final Map<Integer, Integer> counts = db.getTaskCounts();
+		assertTrue(counts.size() == 2);
+		assertTrue(counts.get(Integer.valueOf(1)).intValue() == 3);
+		assertTrue(counts.get(Integer.valueOf(3)).intValue() == 1);
+		assertNull(counts.get(Integer.valueOf(2)));
+	}
+
+	public void testGetTasks() {
+		final Task task = new Task("TASK", "DESC", new Priority((byte) 3),
+				new Date(7), new Date(3), 5, false);
+		final Task task2 = new Task("TASK2", "DESC2", new Priority((byte) 6),
+				new Date(2), new Date(23), 16, true);
+		db.addTasks(new Task[] { task }, 1);
+		db.addTasks(new Task[] { task2 }, 2);
+
+		final Collection<ITask> tasks = db.getTasks(2);
+		assertTrue(tasks.size() == 1);
+		assertTrue(_containsEqualTask(tasks, task2));
+		assertTrue(tasks.iterator().next().getID() == 2);
+		assertTrue(db.getTasks(3).isEmpty());
+	}
+
+	public void testGetTaskCursor() {
+		final ITask[] tasks = new ITask[] {
+				new Task("b", "", new Priority((byte) 3), new Date(20), null,
+						0, false),
+				new Task("A", "", new Priority((byte) 5), null, null, 0, false),
+				new Task("c", "", new Priority((byte) 3), new Date(10), null,
+						0, true),
+				new Task("D", "", new Priority((byte) 1), new Date(10), null,
+						0, false),
+				new Task("e", "", new Priority((byte) 5), new Date(30), null,
+						0, false) };
+		db.addTasks(tasks, 1);
+		db.addTasks(new Task[] { new Task("Other", "", false) }, 2);
+
+		_assertCursorSorted(tasks, new DueDateComparatorStrategy(false),
+				new PriorityComparatorStrategy(false), null);
+		_assertCursorSorted(tasks, new DueDateComparatorStrategy(true),
+				new NameComparatorStrategy(false), null);
+		_assertCursorSorted(tasks, new PriorityComparatorStrategy(true),
+				new NameComparatorStrategy(true), null);
+		_assertCursorSorted(tasks, null, null, null);
+	}
+
+	public void testGetTaskCursorMatchesComparator() {
+		// Names that only sort right if the case of non-ASCII letters is
+		// folded as well
+		final String[] names = new String[] { "a", "A", "b", "B", "\u00e5",
+				"\u00c5", "\u00df", "z", "_", "" };
+		final Random random = new Random(17);
+		final ITask[] tasks = new ITask[60];
+		for (int i = 0; i < tasks.length; i++) {
+			final String name = names[random.nextInt(names.length)]
+					+ names[random.nextInt(names.length)];
+			final Date dueDate = random.nextInt(3) == 0 ? null : new Date(
+					random.nextInt(5));
+			tasks[i] = new Task(name, "", new Priority(
+					(byte) random.nextInt(3)), dueDate, null, 0,
+					random.nextBoolean());
+		}
+		db.addTasks(tasks, 1);
+
+		final List<ITask> stored = new ArrayList<ITask>(db.getTasks(1));
+		final IComparatorStrategy[] strategies = new IComparatorStrategy[] {
+				null, new DueDateComparatorStrategy(false),
+				new DueDateComparatorStrategy(true),
+				new NameComparatorStrategy(false),
+				new NameComparatorStrategy(true),
+				new PriorityComparatorStrategy(false),
+				new PriorityComparatorStrategy(true) };
+		for (final IComparatorStrategy primary : strategies) {
+			for (final IComparatorStrategy secondary : strategies) {
+				for (final IComparatorStrategy tertiary : strategies) {
+					final List<ITask> expected = new ArrayList<ITask>(stored);
+					new TaskListUtility().sortTasks(expected, primary,
+							secondary, tertiary);
+
+					final ITaskCursor cursor = db.getTaskCursor(1, primary,
+							secondary, tertiary);
+					assertTrue(cursor.getCount() == expected.size());
+					for (int i = 0; i < expected.size(); i++) {
+						assertTrue(expected.get(i).getID() == cursor.getTask(i)
+								.getID());
+					}
+					cursor.close();
+				}
+			}
+		}
+	}
+
+	public void testGetTaskCursorUsesIndex() {
+		final Cursor cur = realDb.rawQuery(
+				"EXPLAIN QUERY PLAN "
+						+ SQLConstants.selectSortedTasks(
+								new NameComparatorStrategy(false), null, null),
+				new String[] { "1" });
+		final StringBuilder plan = new StringBuilder();
+		while (cur.moveToNext()) {
+			for (int i = 0; i < cur.getColumnCount(); i++) {
+				plan.append(cur.getString(i)).append(' ');
+			}
+		}
+		cur.close();
+		assertTrue(plan.toString(),
+				plan.indexOf(SQLConstants.TASK_ORDER_INDEX) != -1);
+	}
+
 	public void testRemoveTasks() {
 		final Task task = new Task("TASK", "DESC", new Priority((byte) 3),
 				new Date(7), new Date(3), 5, false);
@@ -328,6 +573,34 @@ public class DataSQLTest extends AndroidTestCase {
 		assertFalse(_containsEqualTask(db.getAllTasks().keySet(), task4));
 	}
 
+	private void _assertCursorSorted(final ITask[] tasks,
+			final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) {
+		final List<ITask> expected = new ArrayList<ITask>();
+		for (final ITask t : tasks) {
+			expected.add(t);
+		}
+		new TaskListUtility().sortTasks(expected, primary, secondary,
+				tertiary);
+
+		final ITaskCursor cursor = db.getTaskCursor(1, primary, secondary,
+				tertiary);
+		assertTrue(cursor.getCount() == expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getName(), cursor.getTask(i).getName());
+		}
+		// Rows can be read in any order
+		assertEquals(expected.get(0).getName(), cursor.getTask(0).getName());
+		try {
+			cursor.getTask(expected.size());
+			fail();
+		} catch (final IndexOutOfBoundsException e) {
+			// Expected
+		}
+		cursor.close();
+	}
+
 	private boolean _containsEqualList(
 			final Collection<ITaskCollection> toCheck,
 			final ITaskCollection list) {
@@ -353,4 +626,4 @@ public class DataSQLTest extends AndroidTestCase {
 		}
 		return false;
 	}
-}
\ No newline at end of file
+}
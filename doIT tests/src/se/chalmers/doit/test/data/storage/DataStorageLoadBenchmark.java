@@ -0,0 +1,125 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.ITaskCollection;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.data.storage.implementation.DataSQL;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Benchmark comparing the grouped single-pass load of all tasks with the
+ * per-list load DataStorage used to do. Results are written to the log.
+ * 
+ * The per-list load is quadratic in the number of tasks, so for large
+ * databases only some of the lists are loaded that way and the result is
+ * extrapolated to all lists.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class DataStorageLoadBenchmark extends AndroidTestCase {
+
+	private static final String TAG = "DataStorageLoadBenchmark";
+	private static final int TASKS_PER_LIST = 100;
+
+	private SQLiteDatabase realDb;
+	private DataSQL sql;
+
+	@Override
+	public void setUp() throws Exception {
+		realDb = SQLiteDatabase.create(null);
+		sql = new DataSQL();
+		sql.setDatabase(realDb);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		realDb.close();
+	}
+
+	public void testLoad10k() {
+		_benchmark(10000, 10000 / TASKS_PER_LIST);
+	}
+
+	public void testLoad100k() {
+		_benchmark(100000, 10);
+	}
+
+	private void _benchmark(final int nTasks, final int nTimedLists) {
+		final int nLists = _fill(nTasks);
+
+		final long grouped = _timeGroupedLoad(nTasks);
+		final long perList = _timePerListLoad(nLists, nTimedLists);
+
+		Log.i(TAG, nTasks + " tasks in " + nLists + " lists: grouped load "
+				+ grouped + " ms, per-list load " + perList + " ms"
+				+ (nTimedLists < nLists ? " (extrapolated from " + nTimedLists
+						+ " lists)" : ""));
+		assertTrue(grouped < perList);
+	}
+
+	private int _fill(final int nTasks) {
+		final int nLists = nTasks / TASKS_PER_LIST;
+		final ITaskCollection[] lists = new ITaskCollection[nLists];
+		for (int i = 0; i < nLists; i++) {
+			lists[i] = new TaskCollection("List" + i);
+		}
+
+		final int[] listIDs = sql.addLists(lists);
+		final ITask[] tasks = new ITask[TASKS_PER_LIST];
+		for (final int listID : listIDs) {
+			for (int i = 0; i < TASKS_PER_LIST; i++) {
+				tasks[i] = new Task("Task" + i, "", i % 2 == 0);
+			}
+			sql.addTasks(tasks, listID);
+		}
+		return nLists;
+	}
+
+	private long _timeGroupedLoad(final int nTasks) {
+		final long start = System.nanoTime();
+
+		sql.getAllLists();
+		final Map<Integer, Collection<ITask>> tasksByList = sql
+				.getAllTasksByList();
+
+		final long time = (System.nanoTime() - start) / 1000000;
+		assertTrue(tasksByList.size() == nTasks / TASKS_PER_LIST);
+		return time;
+	}
+
+	private long _timePerListLoad(final int nLists, final int nTimedLists) {
+		final long start = System.nanoTime();
+
+		final Map<ITaskCollection, Integer> listMap = sql.getAllLists();
+		final Map<ITask, Integer> taskMap = sql.getAllTasks();
+		final long fixed = System.nanoTime() - start;
+
+		// Look up the tasks of each list by scanning all tasks for each ID
+		final long perListStart = System.nanoTime();
+		int nLoaded = 0;
+		for (final Integer listID : listMap.values()) {
+			if (nLoaded++ == nTimedLists) {
+				break;
+			}
+			final Collection<ITask> tasks = new ArrayList<ITask>();
+			for (final int id : sql.getTaskIDs(listID.intValue())) {
+				for (final ITask task : taskMap.keySet()) {
+					if (id == taskMap.get(task).intValue()) {
+						tasks.add(task);
+					}
+				}
+			}
+			assertTrue(tasks.size() == TASKS_PER_LIST);
+		}
+		final long perList = (System.nanoTime() - perListStart) * nLists
+				/ nTimedLists;
+
+		return (fixed + perList) / 1000000;
+	}
+}
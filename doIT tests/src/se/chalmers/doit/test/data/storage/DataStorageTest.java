@@ -2,18 +2,123 @@ package se.chalmers.doit.test.data.storage;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
 
 import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.core.ITaskCollection;
 import se.chalmers.doit.core.implementation.Task;
 import se.chalmers.doit.core.implementation.TaskCollection;
 import se.chalmers.doit.data.storage.IDataStorage;
+import se.chalmers.doit.data.storage.ITaskCursor;
+import se.chalmers.doit.data.storage.implementation.DataSQL;
 import se.chalmers.doit.data.storage.implementation.DataStorage;
+import se.chalmers.doit.util.implementation.Constants;
+import se.chalmers.doit.util.implementation.NameComparatorStrategy;
 import android.database.sqlite.SQLiteDatabase;
 import android.test.AndroidTestCase;
 
 public class DataStorageTest extends AndroidTestCase {
 
+	/**
+	 * DataSQL counting the queries issued to it by the storage.
+	 */
+	private static class CountingDataSQL extends DataSQL {
+		int reads;
+		int writes;
+
+		@Override
+		public int[] addLists(final ITaskCollection[] lists) {
+			writes++;
+			return super.addLists(lists);
+		}
+
+		@Override
+		public int[] addTasks(final ITask[] tasks, final int listID) {
+			writes++;
+			return super.addTasks(tasks, listID);
+		}
+
+		@Override
+		public boolean editList(final int listID,
+				final ITaskCollection newListProperties) {
+			writes++;
+			return super.editList(listID, newListProperties);
+		}
+
+		@Override
+		public boolean editTask(final int taskID, final ITask newTaskProperties) {
+			writes++;
+			return super.editTask(taskID, newTaskProperties);
+		}
+
+		@Override
+		public Map<ITaskCollection, Integer> getAllLists() {
+			reads++;
+			return super.getAllLists();
+		}
+
+		@Override
+		public Map<ITask, Integer> getAllTasks() {
+			reads++;
+			return super.getAllTasks();
+		}
+
+		@Override
+		public Map<Integer, Collection<ITask>> getAllTasksByList() {
+			reads++;
+			return super.getAllTasksByList();
+		}
+
+		@Override
+		public Map<Integer, Integer> getTaskCounts() {
+			reads++;
+			return super.getTaskCounts();
+		}
+
+		@Override
+		public int[] getTaskIDs(final int listID) {
+			reads++;
+			return super.getTaskIDs(listID);
+		}
+
+		@Override
+		public Collection<ITask> getTasks(final int listID) {
+			reads++;
+			return super.getTasks(listID);
+		}
+
+		@Override
+		public int getListID(final int taskID) {
+			reads++;
+			return super.getListID(taskID);
+		}
+
+		@Override
+		public boolean moveTask(final int taskID, final int listID) {
+			writes++;
+			return super.moveTask(taskID, listID);
+		}
+
+		@Override
+		public boolean removeList(final int listID) {
+			writes++;
+			return super.removeList(listID);
+		}
+
+		@Override
+		public boolean[] removeTasks(final int[] taskIDs) {
+			writes++;
+			return super.removeTasks(taskIDs);
+		}
+
+		void reset() {
+			reads = 0;
+			writes = 0;
+		}
+	}
+
+	private CountingDataSQL countingSQL;
+
 	private IDataStorage storage;
 
 	@Override
@@ -92,6 +197,15 @@ public class DataStorageTest extends AndroidTestCase {
 		return null;
 	}
 
+	private boolean _containsList(ITaskCollection list) {
+		for (ITaskCollection c : storage.getAllLists()) {
+			if (c.getName().equals(list.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private boolean _containsTask(ITask task) {
 		for (ITask t : storage.getAllTasks()) {
 			if (Task.isTasksEqual(t, task)) {
@@ -137,9 +251,9 @@ public class DataStorageTest extends AndroidTestCase {
 		final TaskCollection tc1 = new TaskCollection("Name");
 		final TaskCollection tc2 = new TaskCollection("Name2");
 		storage.addList(tc1);
-		assertTrue(storage.getAllLists().contains(tc1));
+		assertTrue(_containsList(tc1));
 		storage.editList(tc1, tc2);
-		assertTrue(storage.getAllLists().contains(tc2));
+		assertTrue(_containsList(tc2));
 	}
 
 	public void testEditTask() {
@@ -209,10 +323,10 @@ public class DataStorageTest extends AndroidTestCase {
 
 		storage.removeList(tc2);
 
-		assertTrue(storage.getAllLists().contains(tc1));
-		assertFalse(storage.getAllLists().contains(tc2));
-		assertTrue(storage.getAllLists().contains(tc3));
-		assertTrue(storage.getAllLists().contains(tc4));
+		assertTrue(_containsList(tc1));
+		assertFalse(_containsList(tc2));
+		assertTrue(_containsList(tc3));
+		assertTrue(_containsList(tc4));
 	}
 
 	public void testRemoveLists() {
@@ -232,10 +346,10 @@ public class DataStorageTest extends AndroidTestCase {
 
 		storage.removeLists(list);
 
-		assertTrue(storage.getAllLists().contains(tc1));
-		assertFalse(storage.getAllLists().contains(tc2));
-		assertTrue(storage.getAllLists().contains(tc3));
-		assertFalse(storage.getAllLists().contains(tc4));
+		assertTrue(_containsList(tc1));
+		assertFalse(_containsList(tc2));
+		assertTrue(_containsList(tc3));
+		assertFalse(_containsList(tc4));
 	}
 
 	public void testRemoveTask() {
@@ -289,4 +403,279 @@ public class DataStorageTest extends AndroidTestCase {
 		assertFalse(_containsTask(t3));
 		assertFalse(_containsTask(t4));
 	}
+
+	public void testGetTaskCursor() {
+		final IDataStorage lazy = new DataStorage(SQLiteDatabase.create(null),
+				2);
+		_fillLists(lazy, 3, 2);
+		lazy.addTask(new Task("First", "", false), _getList(lazy, "List1"));
+
+		final ITaskCursor cursor = lazy.getTaskCursor(_getList(lazy, "List1"),
+				new NameComparatorStrategy(false), null, null);
+		assertTrue(cursor.getCount() == 3);
+		assertEquals("First", cursor.getTask(0).getName());
+		assertTrue(_getList(lazy, "List1").getTaskView().contains(
+				cursor.getTask(0)));
+		cursor.close();
+
+		assertNull(lazy.getTaskCursor(new TaskCollection("Missing"), null,
+				null, null));
+	}
+
+	public void testGetVersion() {
+		final IDataStorage lazy = new DataStorage(SQLiteDatabase.create(null),
+				2);
+		long version = lazy.getVersion();
+		_fillLists(lazy, 3, 2);
+		assertTrue(lazy.getVersion() > version);
+		version = lazy.getVersion();
+
+		// Loading and dropping the tasks of lists is not a change
+		for (final ITaskCollection c : lazy.getAllLists()) {
+			c.getTaskView();
+		}
+		lazy.getAllTasks();
+		assertTrue(lazy.getVersion() == version);
+
+		// Neither is a change that fails
+		assertFalse(lazy.addList(new TaskCollection("List0")));
+		assertFalse(lazy.removeTask(new Task("Missing", "", false)));
+		assertTrue(lazy.getVersion() == version);
+
+		final ITask task = _getList(lazy, "List0").getTaskView().iterator()
+				.next();
+		assertTrue(lazy.editTask(task, new Task(task, true)));
+		assertTrue(lazy.getVersion() > version);
+		version = lazy.getVersion();
+		assertTrue(lazy.moveTask(task, _getList(lazy, "List2")));
+		assertTrue(lazy.getVersion() > version);
+		version = lazy.getVersion();
+		assertTrue(lazy.removeList(_getList(lazy, "List1")));
+		assertTrue(lazy.getVersion() > version);
+	}
+
+	public void testStoredIDs() {
+		final SQLiteDatabase db = SQLiteDatabase.create(null);
+		final IDataStorage first = new DataStorage(db);
+		first.addList(new TaskCollection("List"));
+		first.addTask(new Task("Task", "", false), _getFirstList(first));
+		final ITaskCollection list = _getFirstList(first);
+		final ITask task = list.getTasks().iterator().next();
+		assertTrue(list.getID() != Constants.ID_UNSAVED);
+		assertTrue(task.getID() != Constants.ID_UNSAVED);
+
+		// An edited version of a task is the same task
+		assertTrue(first.editTask(task, new Task(task, true)));
+		assertTrue(first.getAllTasks().contains(task));
+		assertTrue(first.getAllTasks().size() == 1);
+
+		// A storage reading the same database sees the same IDs
+		final IDataStorage second = new DataStorage(db);
+		assertTrue(second.getAllLists().contains(list));
+		assertTrue(second.getAllTasks().contains(task));
+		assertTrue(second.getAllTasks().iterator().next().isCompleted());
+	}
+
+	public void testAddTaskQueryCount() {
+		final IDataStorage counted = _createCountedStorage();
+		counted.addList(new TaskCollection("TC"));
+		countingSQL.reset();
+
+		assertTrue(counted.addTask(new Task("Task", "", false),
+				_getFirstList(counted)));
+		assertEquals(0, countingSQL.reads);
+		assertEquals(1, countingSQL.writes);
+		assertTrue(counted.getAllTasks().size() == 1);
+	}
+
+	public void testEditTaskQueryCount() {
+		final IDataStorage counted = _createCountedStorage();
+		counted.addList(new TaskCollection("TC"));
+		counted.addTask(new Task("Task", "", false), _getFirstList(counted));
+		countingSQL.reset();
+
+		final ITask oldTask = counted.getAllTasks().iterator().next();
+		assertTrue(counted.editTask(oldTask, new Task(oldTask, true)));
+		assertEquals(0, countingSQL.reads);
+		assertEquals(1, countingSQL.writes);
+		assertTrue(counted.getAllTasks().iterator().next().isCompleted());
+	}
+
+	public void testMoveTaskQueryCount() {
+		final IDataStorage counted = _createCountedStorage();
+		final TaskCollection tc2 = new TaskCollection("TC2");
+		counted.addList(new TaskCollection("TC"));
+		counted.addTask(new Task("Task", "", false), _getFirstList(counted));
+		counted.addList(tc2);
+		countingSQL.reset();
+
+		assertTrue(counted.moveTask(counted.getAllTasks().iterator().next(),
+				tc2));
+		assertEquals(0, countingSQL.reads);
+		assertEquals(1, countingSQL.writes);
+		for (final ITaskCollection c : counted.getAllLists()) {
+			assertTrue(c.getTasks().size() == (c.getName().equals("TC2") ? 1
+					: 0));
+		}
+	}
+
+	public void testRemoveListQueryCount() {
+		final IDataStorage counted = _createCountedStorage();
+		counted.addList(new TaskCollection("TC"));
+		counted.addTask(new Task("Task", "", false), _getFirstList(counted));
+		countingSQL.reset();
+
+		assertTrue(counted.removeList(_getFirstList(counted)));
+		assertEquals(0, countingSQL.reads);
+		assertEquals(2, countingSQL.writes);
+		assertTrue(counted.getAllLists().size() == 0);
+		assertTrue(counted.getAllTasks().size() == 0);
+	}
+
+	public void testRemoveTaskQueryCount() {
+		final IDataStorage counted = _createCountedStorage();
+		counted.addList(new TaskCollection("TC"));
+		counted.addTask(new Task("Task", "", false), _getFirstList(counted));
+		countingSQL.reset();
+
+		assertTrue(counted.removeTask(counted.getAllTasks().iterator().next()));
+		assertEquals(0, countingSQL.reads);
+		assertEquals(1, countingSQL.writes);
+		assertTrue(counted.getAllTasks().size() == 0);
+	}
+
+	public void testLazyConstructor() {
+		try {
+			new DataStorage(SQLiteDatabase.create(null), 1);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	public void testLazyLoad() {
+		final SQLiteDatabase db = SQLiteDatabase.create(null);
+		_fillLists(new DataStorage(db), 3, 2);
+
+		countingSQL = new CountingDataSQL();
+		countingSQL.setDatabase(db);
+		final IDataStorage lazy = new DataStorage(countingSQL, 2);
+		// Only the lists and their sizes are read up front
+		assertEquals(2, countingSQL.reads);
+		assertTrue(lazy.getAllLists().size() == 3);
+		countingSQL.reset();
+		for (final ITaskCollection c : lazy.getAllLists()) {
+			assertTrue(c.size() == 2);
+		}
+		assertEquals(0, countingSQL.reads);
+
+		// The tasks of a list are read once, when first needed
+		final ITaskCollection list = _getList(lazy, "List0");
+		assertTrue(list.getTaskView().size() == 2);
+		assertEquals(1, countingSQL.reads);
+		assertTrue(_getList(lazy, "List0").getTaskView().size() == 2);
+		assertEquals(1, countingSQL.reads);
+
+		// Loading two more lists evicts the least recently used one
+		_getList(lazy, "List1").getTaskView();
+		_getList(lazy, "List2").getTaskView();
+		assertEquals(3, countingSQL.reads);
+		_getList(lazy, "List0").getTaskView();
+		assertEquals(4, countingSQL.reads);
+
+		assertTrue(lazy.getAllTasks().size() == 6);
+	}
+
+	public void testLazyGetAllTasks() {
+		final SQLiteDatabase db = SQLiteDatabase.create(null);
+		final IDataStorage filled = new DataStorage(db);
+		_fillLists(filled, 3, 2);
+		assertTrue(filled.addList(new TaskCollection("Empty")));
+
+		countingSQL = new CountingDataSQL();
+		countingSQL.setDatabase(db);
+		final IDataStorage lazy = new DataStorage(countingSQL, 2);
+		_getList(lazy, "List0").getTaskView();
+		countingSQL.reset();
+
+		// Only the lists that are neither loaded nor empty are read
+		assertTrue(lazy.getAllTasks().size() == 6);
+		assertEquals(2, countingSQL.reads);
+
+		// They are read without being loaded, so List0 is still loaded
+		countingSQL.reset();
+		_getList(lazy, "List0").getTaskView();
+		assertEquals(0, countingSQL.reads);
+	}
+
+	public void testLazyModify() {
+		final SQLiteDatabase db = SQLiteDatabase.create(null);
+		_fillLists(new DataStorage(db), 3, 2);
+		final IDataStorage lazy = new DataStorage(db, 2);
+
+		// Adding to a list that is not loaded only updates its size
+		assertTrue(lazy.addTask(new Task("New", "", false),
+				_getList(lazy, "List0")));
+		assertTrue(_getList(lazy, "List0").size() == 3);
+		assertTrue(_getList(lazy, "List0").getTaskView().size() == 3);
+
+		final ITask task = _getList(lazy, "List1").getTaskView().iterator()
+				.next();
+		_getList(lazy, "List2").getTaskView();
+		_getList(lazy, "List0").getTaskView();
+		// The list containing the task is no longer loaded
+		assertTrue(lazy.moveTask(task, _getList(lazy, "List0")));
+		assertTrue(_getList(lazy, "List0").getTaskView().contains(task));
+		assertTrue(_getList(lazy, "List1").size() == 1);
+
+		assertTrue(lazy.editTask(task, new Task(task, true)));
+		assertTrue(lazy.removeTask(task));
+		assertTrue(_getList(lazy, "List0").size() == 3);
+
+		assertTrue(lazy.removeList(_getList(lazy, "List2")));
+		assertTrue(lazy.getAllLists().size() == 2);
+		assertTrue(lazy.getAllTasks().size() == 4);
+
+		// A new storage reads back the same state
+		final IDataStorage reread = new DataStorage(db);
+		assertTrue(reread.getAllTasks().size() == 4);
+		assertTrue(_getList(reread, "List0").size() == 3);
+		assertTrue(_getList(reread, "List1").size() == 1);
+	}
+
+	private IDataStorage _createCountedStorage() {
+		countingSQL = new CountingDataSQL();
+		countingSQL.setDatabase(SQLiteDatabase.create(null));
+		return new DataStorage(countingSQL);
+	}
+
+	private void _fillLists(final IDataStorage s, final int nLists,
+			final int nTasks) {
+		for (int i = 0; i < nLists; i++) {
+			final TaskCollection list = new TaskCollection("List" + i);
+			s.addList(list);
+			for (int j = 0; j < nTasks; j++) {
+				s.addTask(new Task("Task" + i + "-" + j, "", false),
+						_getList(s, list.getName()));
+			}
+		}
+	}
+
+	private ITaskCollection _getList(final IDataStorage s, final String name) {
+		for (final ITaskCollection c : s.getAllLists()) {
+			if (c.getName().equals(name)) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	private ITaskCollection _getFirstList(final IDataStorage s) {
+		for (ITaskCollection t : s.getAllLists()) {
+			if (t != null) {
+				return t;
+			}
+		}
+		return null;
+	}
 }
@@ -0,0 +1,424 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.ITaskCollection;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.data.storage.IDataSQL;
+import se.chalmers.doit.data.storage.ITaskCursor;
+import se.chalmers.doit.data.storage.implementation.DataSQL;
+import se.chalmers.doit.data.storage.implementation.LoggedDataSQL;
+import se.chalmers.doit.data.storage.implementation.OperationLog;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+public class LoggedDataSQLTest extends AndroidTestCase {
+
+	/**
+	 * DataSQL that cannot write tasks named "Bad", and that keeps track of the
+	 * thread it writes on.
+	 */
+	private static class CheckedDataSQL extends DataSQL {
+		volatile Thread writeThread;
+
+		@Override
+		public void putTask(final int taskID, final ITask task,
+				final int listID) {
+			if (task.getName().equals("Bad")) {
+				throw new IllegalStateException("Cannot be written");
+			}
+			super.putTask(taskID, task, listID);
+		}
+
+		@Override
+		public void runInTransaction(final Runnable runnable) {
+			writeThread = Thread.currentThread();
+			super.runInTransaction(runnable);
+		}
+	}
+
+	/**
+	 * Thrown where the process is killed.
+	 */
+	private static class Killed extends Error {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * OperationLog killing the process right after it has been synced, before
+	 * the changes have been written.
+	 */
+	private static class KilledLog extends OperationLog {
+		KilledLog(final File file) throws IOException {
+			super(file);
+		}
+
+		@Override
+		public synchronized void sync() throws IOException {
+			super.sync();
+			throw new Killed();
+		}
+	}
+
+	/**
+	 * OperationLog that is never reset, as if the process was killed right
+	 * after the changes had been written.
+	 */
+	private static class KeptLog extends OperationLog {
+		KeptLog(final File file) throws IOException {
+			super(file);
+		}
+
+		@Override
+		public synchronized void reset() {
+			// Kept
+		}
+	}
+
+	// Long enough that no write is made by the timer during a test
+	private static final long NEVER = 3600000;
+
+	ScheduledThreadPoolExecutor executor;
+	File file;
+	SQLiteDatabase realDb;
+	DataSQL sql;
+
+	@Override
+	public void setUp() throws Exception {
+		realDb = SQLiteDatabase.create(null);
+		sql = new DataSQL();
+		sql.setDatabase(realDb);
+		executor = new ScheduledThreadPoolExecutor(1);
+		file = getContext().getFileStreamPath("loggedDataSQLTest.log");
+		file.delete();
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		realDb.close();
+		file.delete();
+	}
+
+	public void testReadsDoNotWrite() throws IOException {
+		final CheckedDataSQL checked = new CheckedDataSQL();
+		final LoggedDataSQL logged = _open(checked, new OperationLog(file),
+				100);
+		final int listID = logged.addList(new TaskCollection("List"));
+		logged.addTask(new Task("Task", "", false), listID);
+
+		// The changes are read without being written
+		assertTrue(logged.getTasks(listID).size() == 1);
+		assertTrue(logged.getAllLists().size() == 1);
+		assertTrue(sql.getAllLists().isEmpty());
+		assertTrue(sql.getAllTasks().isEmpty());
+		assertNull(checked.writeThread);
+
+		logged.flush();
+		assertTrue(sql.getAllLists().size() == 1);
+		assertTrue(sql.getAllTasks().size() == 1);
+		// Written on the write thread, not by the caller
+		assertNotNull(checked.writeThread);
+		assertNotSame(Thread.currentThread(), checked.writeThread);
+		// Everything is written, so the log starts over
+		assertTrue(file.length() == 0);
+	}
+
+	public void testReadsSeeChangesNotWritten() throws IOException {
+		final int list1 = sql.addList(new TaskCollection("List 1"));
+		final int list2 = sql.addList(new TaskCollection("List 2"));
+		final int kept = sql.addTask(new Task("Kept", "", false), list1);
+		final int edited = sql.addTask(new Task("Edited", "", false), list1);
+		final int moved = sql.addTask(new Task("Moved", "", false), list1);
+		final int removed = sql.addTask(new Task("Removed", "", false), list2);
+
+		final LoggedDataSQL logged = _open(sql, new OperationLog(file), 100);
+		logged.editTask(edited, new Task("Edited", "Done", true));
+		logged.moveTask(moved, list2);
+		logged.removeTask(removed);
+		final int added = logged.addTask(new Task("Added", "", false), list2);
+		logged.editList(list1, new TaskCollection("Renamed"));
+
+		// Laid over the rows, which have not been written
+		assertTrue(sql.getTasks(list2).size() == 1);
+		_assertIDs(logged.getTasks(list1), kept, edited);
+		_assertIDs(logged.getTasks(list2), moved, added);
+		assertTrue(logged.getTaskIDs(list2).length == 2);
+		assertTrue(logged.getListID(moved) == list2);
+		assertTrue(logged.getListID(removed) == -1);
+		assertTrue(logged.getTaskCounts().get(Integer.valueOf(list1))
+				.intValue() == 2);
+		assertTrue(logged.getTaskCounts().get(Integer.valueOf(list2))
+				.intValue() == 2);
+		assertTrue(logged.getAllTasks().size() == 4);
+		assertTrue(logged.getAllLists().containsValue(Integer.valueOf(list1)));
+		for (final ITaskCollection list : logged.getAllLists().keySet()) {
+			if (list.getID() == list1) {
+				assertEquals("Renamed", list.getName());
+			}
+		}
+		final ITaskCursor cursor = logged.getTaskCursor(list1, null, null,
+				null);
+		assertTrue(cursor.getCount() == 2);
+		assertTrue(cursor.getTask(1).isCompleted());
+		cursor.close();
+
+		// The same is read once the changes have been written
+		final List<String> expected = _dump(logged);
+		logged.flush();
+		assertEquals(expected, _dump(logged));
+		assertEquals(expected, _dump(sql));
+	}
+
+	public void testReadsAfterClear() throws IOException {
+		final int stored = sql.addList(new TaskCollection("Stored"));
+		sql.addTask(new Task("Stored", "", false), stored);
+
+		final LoggedDataSQL logged = _open(sql, new OperationLog(file), 100);
+		logged.clearData();
+		final int listID = logged.addList(new TaskCollection("List"));
+		final int taskID = logged.addTask(new Task("Task", "", false), listID);
+
+		assertTrue(logged.getTasks(stored).isEmpty());
+		_assertIDs(logged.getTasks(listID), taskID);
+		assertTrue(logged.getAllLists().size() == 1);
+		assertTrue(logged.getAllTasks().size() == 1);
+		assertTrue(sql.getAllTasks().size() == 1);
+	}
+
+	public void testStartWrite() throws Exception {
+		final LoggedDataSQL logged = _open(sql, new OperationLog(file), 100);
+		logged.addList(new TaskCollection("List"));
+		logged.startWrite();
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(sql.getAllLists().size() == 1);
+	}
+
+	public void testWriteAtThreshold() throws Exception {
+		final LoggedDataSQL logged = _open(sql, new OperationLog(file), 3);
+		final int listID = logged.addList(new TaskCollection("List"));
+		logged.addTask(new Task("Task 1", "", false), listID);
+		logged.addTask(new Task("Task 2", "", false), listID);
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(sql.getAllTasks().size() == 2);
+	}
+
+	public void testIDsFollowSavedRows() throws IOException {
+		final int savedList = sql.addList(new TaskCollection("Saved"));
+		final int savedTask = sql.addTask(new Task("Saved", "", false),
+				savedList);
+
+		final LoggedDataSQL logged = _open(sql, new OperationLog(file), 100);
+		final int listID = logged.addList(new TaskCollection("List"));
+		final int taskID = logged.addTask(new Task("Task", "", false), listID);
+		assertTrue(listID > savedList);
+		assertTrue(taskID > savedTask);
+
+		// The IDs handed out are the IDs of the rows
+		assertTrue(logged.getListID(taskID) == listID);
+		assertTrue(sql.getListID(taskID) == listID);
+	}
+
+	public void testChangesAreWritten() throws IOException {
+		final LoggedDataSQL logged = _open(sql, new OperationLog(file), 100);
+		final List<String> expected = _makeChanges(sql);
+		sql.clearData();
+		// Read before and after they have been written
+		assertEquals(expected, _makeChanges(logged));
+		logged.flush();
+		assertEquals(expected, _dump(sql));
+	}
+
+	public void testRecoveryAfterKill() throws Exception {
+		final LoggedDataSQL logged = _open(sql, new KilledLog(file), 100);
+		final int listID = logged.addList(new TaskCollection("List"));
+		final int[] taskIDs = new int[5];
+		for (int i = 0; i < taskIDs.length; i++) {
+			taskIDs[i] = logged.addTask(new Task("Task " + i, "", false),
+					listID);
+		}
+		_kill(logged);
+		// Nothing of the group was written
+		assertTrue(sql.getAllLists().isEmpty());
+		assertTrue(sql.getAllTasks().isEmpty());
+
+		final LoggedDataSQL reopened = _open(sql, new OperationLog(file), 100);
+		assertTrue(sql.getAllLists().size() == 1);
+		for (final int taskID : taskIDs) {
+			assertTrue(sql.getListID(taskID) == listID);
+		}
+		assertTrue(file.length() == 0);
+		final int taskID = reopened.addTask(new Task("Task", "", false),
+				listID);
+		assertTrue(taskID > taskIDs[taskIDs.length - 1]);
+	}
+
+	public void testWrittenChangesAreWrittenAgain() throws IOException {
+		final LoggedDataSQL logged = _open(sql, new KeptLog(file), 100);
+		_makeChanges(logged);
+		logged.flush();
+		final List<String> expected = _dump(sql);
+		assertTrue(file.length() > 0);
+
+		// Writing the whole log again leaves the same rows
+		_open(sql, new OperationLog(file), 100);
+		assertEquals(expected, _dump(sql));
+		assertTrue(file.length() == 0);
+	}
+
+	public void testUnsyncedChangesAreLost() throws IOException {
+		final LoggedDataSQL logged = _open(sql, new OperationLog(file), 100);
+		final int listID = logged.addList(new TaskCollection("List"));
+		logged.addTask(new Task("Task", "", false), listID);
+
+		// Killed before anything was synced
+		_open(sql, new OperationLog(file), 100);
+		assertTrue(sql.getAllLists().isEmpty());
+		assertTrue(sql.getAllTasks().isEmpty());
+	}
+
+	public void testChangeThatCannotBeWritten() throws IOException {
+		final LoggedDataSQL logged = _open(new CheckedDataSQL(),
+				new OperationLog(file), 100);
+		final int listID = logged.addList(new TaskCollection("List"));
+		final int good1 = logged.addTask(new Task("Good", "", false), listID);
+		final int bad = logged.addTask(new Task("Bad", "", false), listID);
+		final int good2 = logged.addTask(new Task("Good", "", false), listID);
+
+		// Only the change that cannot be written is lost
+		logged.flush();
+		assertTrue(sql.getListID(good1) == listID);
+		assertTrue(sql.getListID(bad) == -1);
+		assertTrue(sql.getListID(good2) == listID);
+		assertTrue(file.length() == 0);
+
+		// Later changes are still written
+		final int good3 = logged.addTask(new Task("Good", "", false), listID);
+		assertTrue(logged.getListID(good3) == listID);
+	}
+
+	public void testRecoverChangeThatCannotBeWritten() throws Exception {
+		final LoggedDataSQL logged = _open(sql, new KilledLog(file), 100);
+		final int listID = logged.addList(new TaskCollection("List"));
+		final int good = logged.addTask(new Task("Good", "", false), listID);
+		final int bad = logged.addTask(new Task("Bad", "", false), listID);
+		_kill(logged);
+
+		// Opening the log again does not fail on the change
+		_open(new CheckedDataSQL(), new OperationLog(file), 100);
+		assertTrue(sql.getListID(good) == listID);
+		assertTrue(sql.getListID(bad) == -1);
+		assertTrue(file.length() == 0);
+	}
+
+	public void testPartlyWrittenLog() throws Exception {
+		final LoggedDataSQL logged = _open(sql, new KilledLog(file), 100);
+		final int listID = logged.addList(new TaskCollection("List"));
+		final int[] taskIDs = new int[5];
+		for (int i = 0; i < taskIDs.length; i++) {
+			taskIDs[i] = logged.addTask(new Task("Task " + i, "", false),
+					listID);
+		}
+		_kill(logged);
+		final byte[] bytes = _readFile();
+
+		// Cut anywhere, the log gives the changes before the cut
+		int recovered = 0;
+		for (int length = 0; length <= bytes.length; length++) {
+			sql.clearData();
+			final RandomAccessFile out = new RandomAccessFile(file, "rw");
+			out.write(bytes, 0, length);
+			out.setLength(length);
+			out.close();
+
+			_open(sql, new OperationLog(file), 100);
+			final int tasks = sql.getAllTasks().size();
+			assertTrue(tasks >= recovered);
+			for (int i = 0; i < taskIDs.length; i++) {
+				final boolean saved = sql.getListID(taskIDs[i]) == listID;
+				assertTrue(saved == i < tasks);
+			}
+			recovered = tasks;
+		}
+		assertTrue(recovered == taskIDs.length);
+	}
+
+	private void _assertIDs(final Collection<ITask> tasks, final int... ids) {
+		assertTrue(tasks.size() == ids.length);
+		int index = 0;
+		for (final ITask task : tasks) {
+			assertTrue(task.getID() == ids[index++]);
+		}
+	}
+
+	private List<String> _dump(final IDataSQL data) {
+		final List<String> ret = new ArrayList<String>();
+		for (final Map.Entry<ITaskCollection, Integer> e : data.getAllLists()
+				.entrySet()) {
+			ret.add(e.getValue() + " " + e.getKey().getName());
+		}
+		for (final Map.Entry<ITask, Integer> e : data.getAllTasks()
+				.entrySet()) {
+			final ITask task = e.getKey();
+			ret.add(task.getID() + " " + e.getValue() + " " + task.getName()
+					+ " " + task.getDescription() + " "
+					+ task.getPriority().getValue() + " " + task.getDueDate()
+					+ " " + task.isCompleted());
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	private List<String> _makeChanges(final IDataSQL data) {
+		final int list1 = data.addList(new TaskCollection("List 1"));
+		final int list2 = data.addList(new TaskCollection("List 2"));
+		final int list3 = data.addList(new TaskCollection("List 3"));
+		final int task1 = data.addTask(new Task("Task 1", "", false), list1);
+		final int task2 = data.addTask(new Task("Task 2", "Moved", false),
+				list1);
+		final int task3 = data.addTask(new Task("Task 3", "", false), list2);
+		data.addTask(new Task("Task 4", "Removed with its list", false),
+				list3);
+
+		data.editList(list1, new TaskCollection("Renamed"));
+		data.editTask(task1, new Task("Task 1", "Done", true));
+		data.moveTask(task2, list2);
+		data.removeTask(task3);
+		data.removeList(list3);
+		return _dump(data);
+	}
+
+	private void _kill(final LoggedDataSQL logged) throws Exception {
+		// The write thread is killed right after the log has been synced
+		logged.startWrite();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		executor = new ScheduledThreadPoolExecutor(1);
+	}
+
+	private LoggedDataSQL _open(final IDataSQL target, final OperationLog log,
+			final int threshold) throws IOException {
+		if (target instanceof DataSQL && target != sql) {
+			((DataSQL) target).setDatabase(realDb);
+		}
+		return new LoggedDataSQL(target, log, executor, NEVER, threshold);
+	}
+
+	private byte[] _readFile() throws IOException {
+		final byte[] ret = new byte[(int) file.length()];
+		final DataInputStream in = new DataInputStream(new FileInputStream(
+				file));
+		in.readFully(ret);
+		in.close();
+		return ret;
+	}
+}
@@ -0,0 +1,150 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.io.*;
+import java.util.List;
+
+import se.chalmers.doit.data.storage.implementation.OperationLog;
+import android.test.AndroidTestCase;
+
+public class OperationLogTest extends AndroidTestCase {
+
+	File file;
+	OperationLog log;
+
+	@Override
+	public void setUp() throws Exception {
+		file = getContext().getFileStreamPath("test_operations.log");
+		file.delete();
+		log = new OperationLog(file);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		log.close();
+		file.delete();
+	}
+
+	public void testReadSyncedRecords() throws IOException {
+		log.append(_record(1, 3));
+		log.append(_record(2, 0));
+		log.sync();
+		log.append(_record(3, 300));
+		log.sync();
+		log.close();
+
+		log = new OperationLog(file);
+		final List<byte[]> records = log.readAll();
+		assertTrue(records.size() == 3);
+		assertTrue(records.get(0)[0] == 1 && records.get(0).length == 3);
+		assertTrue(records.get(1).length == 0);
+		assertTrue(records.get(2)[299] == 3);
+	}
+
+	public void testRecordsAreNotWrittenBeforeSync() throws IOException {
+		log.append(_record(1, 10));
+		log.sync();
+		log.append(_record(2, 10));
+		// Killed before the second record was synced
+		log.close();
+
+		log = new OperationLog(file);
+		assertTrue(log.readAll().size() == 1);
+	}
+
+	public void testPartlyWrittenRecord() throws IOException {
+		log.append(_record(1, 20));
+		log.append(_record(2, 20));
+		log.sync();
+		log.close();
+		final byte[] written = _readFile();
+
+		// Every point the second record could have been cut at
+		for (int end = written.length - 1; end >= written.length / 2; end--) {
+			final FileOutputStream out = new FileOutputStream(file);
+			out.write(written, 0, end);
+			out.close();
+			log = new OperationLog(file);
+			final List<byte[]> records = log.readAll();
+			assertTrue(records.size() == 1);
+			assertTrue(records.get(0)[0] == 1);
+			log.close();
+		}
+	}
+
+	public void testDamagedRecord() throws IOException {
+		log.append(_record(1, 20));
+		log.append(_record(2, 20));
+		log.sync();
+		log.close();
+
+		// Change a byte inside the second record
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(raf.length() - 10);
+		raf.write(99);
+		raf.close();
+
+		log = new OperationLog(file);
+		assertTrue(log.readAll().size() == 1);
+	}
+
+	public void testZeroFilledEnd() throws IOException {
+		log.append(_record(1, 20));
+		log.sync();
+		log.close();
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() + 64);
+		raf.close();
+
+		log = new OperationLog(file);
+		assertTrue(log.readAll().size() == 1);
+	}
+
+	public void testAppendAfterPartlyWrittenRecord() throws IOException {
+		log.append(_record(1, 20));
+		log.append(_record(2, 20));
+		log.sync();
+		log.close();
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 5);
+		raf.close();
+
+		// The cut record is dropped, so records appended later can be read
+		log = new OperationLog(file);
+		assertTrue(log.readAll().size() == 1);
+		log.append(_record(3, 20));
+		log.sync();
+		log.close();
+
+		log = new OperationLog(file);
+		final List<byte[]> records = log.readAll();
+		assertTrue(records.size() == 2);
+		assertTrue(records.get(1)[0] == 3);
+	}
+
+	public void testReset() throws IOException {
+		log.append(_record(1, 10));
+		log.sync();
+		log.append(_record(2, 10));
+		log.reset();
+		log.sync();
+		assertTrue(file.length() == 0);
+		assertTrue(log.readAll().isEmpty());
+	}
+
+	private byte[] _readFile() throws IOException {
+		final byte[] ret = new byte[(int) file.length()];
+		final DataInputStream in = new DataInputStream(new FileInputStream(
+				file));
+		in.readFully(ret);
+		in.close();
+		return ret;
+	}
+
+	private byte[] _record(final int value, final int length) {
+		final byte[] ret = new byte[length];
+		for (int i = 0; i < length; i++) {
+			ret[i] = (byte) value;
+		}
+		return ret;
+	}
+}
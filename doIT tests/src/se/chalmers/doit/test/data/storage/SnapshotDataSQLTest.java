@@ -0,0 +1,191 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.io.*;
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.ITaskCollection;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.data.storage.IDataStorage;
+import se.chalmers.doit.data.storage.implementation.DataSQL;
+import se.chalmers.doit.data.storage.implementation.DataStorage;
+import se.chalmers.doit.data.storage.implementation.SnapshotDataSQL;
+import se.chalmers.doit.util.implementation.Constants;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+public class SnapshotDataSQLTest extends AndroidTestCase {
+
+	/**
+	 * DataSQL counting the reads made when data is loaded.
+	 */
+	private static class CountingDataSQL extends DataSQL {
+		int reads;
+
+		@Override
+		public Map<ITaskCollection, Integer> getAllLists() {
+			reads++;
+			return super.getAllLists();
+		}
+
+		@Override
+		public Map<Integer, Collection<ITask>> getAllTasksByList() {
+			reads++;
+			return super.getAllTasksByList();
+		}
+
+		@Override
+		public Map<Integer, Integer> getTaskCounts() {
+			reads++;
+			return super.getTaskCounts();
+		}
+
+		@Override
+		public Collection<ITask> getTasks(final int listID) {
+			reads++;
+			return super.getTasks(listID);
+		}
+	}
+
+	File file;
+	int listID;
+	SQLiteDatabase realDb;
+	CountingDataSQL sql;
+
+	@Override
+	public void setUp() throws Exception {
+		realDb = SQLiteDatabase.create(null);
+		sql = new CountingDataSQL();
+		sql.setDatabase(realDb);
+		file = getContext().getFileStreamPath("snapshotDataSQLTest.snapshot");
+		file.delete();
+
+		listID = sql.addList(new TaskCollection("Work"));
+		sql.addList(new TaskCollection("Empty"));
+		sql.addTasks(new ITask[] { new Task("Report", "Friday", false),
+				new Task("Mail", "", true) }, listID);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		realDb.close();
+		file.delete();
+	}
+
+	public void testGeneration() {
+		long generation = sql.getGeneration();
+		sql.addTask(new Task("Task", "", false), listID);
+		assertTrue(sql.getGeneration() > generation);
+
+		generation = sql.getGeneration();
+		sql.editList(listID, new TaskCollection("Renamed"));
+		assertTrue(sql.getGeneration() > generation);
+
+		generation = sql.getGeneration();
+		sql.clearData();
+		assertTrue(sql.getGeneration() > generation);
+
+		// Increased once by a batch, and once by a transaction
+		generation = sql.getGeneration();
+		sql.addTasks(new ITask[] { new Task("A", "", false),
+				new Task("B", "", false), new Task("C", "", false) }, listID);
+		assertTrue(sql.getGeneration() == generation + 1);
+		sql.runInTransaction(new Runnable() {
+			@Override
+			public void run() {
+				sql.addTask(new Task("D", "", false), listID);
+				sql.removeList(listID);
+			}
+		});
+		assertTrue(sql.getGeneration() == generation + 2);
+
+		// Reads do not change the generation
+		generation = sql.getGeneration();
+		sql.getAllTasksByList();
+		assertTrue(sql.getGeneration() == generation);
+	}
+
+	public void testNoSnapshot() {
+		final SnapshotDataSQL data = new SnapshotDataSQL(sql, file);
+		assertFalse(data.isSnapshotUsed());
+		assertTrue(data.getTasks(listID).size() == 2);
+	}
+
+	public void testLoadFromSnapshot() throws IOException {
+		new SnapshotDataSQL(sql, file).writeSnapshot();
+		final SnapshotDataSQL data = new SnapshotDataSQL(sql, file);
+		assertTrue(data.isSnapshotUsed());
+
+		sql.reads = 0;
+		final IDataStorage lazy = new DataStorage(data,
+				Constants.MAX_LOADED_LISTS);
+		final IDataStorage eager = new DataStorage(data);
+		final IDataStorage expected = new DataStorage(realDb);
+		_assertSameData(expected, lazy);
+		_assertSameData(expected, eager);
+		// Neither storage read anything from the database
+		assertTrue(sql.reads == 0);
+	}
+
+	public void testChangedDatabase() throws IOException {
+		new SnapshotDataSQL(sql, file).writeSnapshot();
+		sql.addTask(new Task("Added", "", false), listID);
+
+		final SnapshotDataSQL data = new SnapshotDataSQL(sql, file);
+		assertFalse(data.isSnapshotUsed());
+		assertTrue(data.getTasks(listID).size() == 3);
+	}
+
+	public void testChangeDropsSnapshot() throws IOException {
+		new SnapshotDataSQL(sql, file).writeSnapshot();
+		final SnapshotDataSQL data = new SnapshotDataSQL(sql, file);
+		final int taskID = data.addTask(new Task("Added", "", false), listID);
+
+		assertFalse(data.isSnapshotUsed());
+		final Collection<ITask> tasks = data.getTasks(listID);
+		assertTrue(tasks.size() == 3);
+		assertTrue(tasks.contains(new Task(new Task("Added", "", false),
+				taskID)));
+	}
+
+	public void testWriteOnlyWhenChanged() throws IOException {
+		final SnapshotDataSQL data = new SnapshotDataSQL(sql, file);
+		data.writeSnapshot();
+		assertTrue(file.delete());
+
+		// The snapshot is up to date, so it is not written again
+		data.writeSnapshot();
+		assertFalse(file.exists());
+
+		data.removeList(listID);
+		data.writeSnapshot();
+		assertTrue(file.exists());
+		final SnapshotDataSQL reopened = new SnapshotDataSQL(sql, file);
+		assertTrue(reopened.isSnapshotUsed());
+		assertTrue(reopened.getAllLists().size() == 1);
+	}
+
+	private void _assertSameData(final IDataStorage expected,
+			final IDataStorage actual) {
+		final Map<String, Integer> sizes = new HashMap<String, Integer>();
+		for (final ITaskCollection list : expected.getAllLists()) {
+			sizes.put(list.getName(), Integer.valueOf(list.size()));
+		}
+		assertTrue(actual.getAllLists().size() == sizes.size());
+		for (final ITaskCollection list : actual.getAllLists()) {
+			assertTrue(sizes.get(list.getName()).intValue() == list.size());
+		}
+
+		final Map<ITask, String> names = new HashMap<ITask, String>();
+		for (final ITask task : expected.getAllTasks()) {
+			names.put(task, task.getName() + task.getDescription()
+					+ task.isCompleted());
+		}
+		assertTrue(actual.getAllTasks().size() == names.size());
+		for (final ITask task : actual.getAllTasks()) {
+			assertEquals(names.get(task), task.getName()
+					+ task.getDescription() + task.isCompleted());
+		}
+	}
+}
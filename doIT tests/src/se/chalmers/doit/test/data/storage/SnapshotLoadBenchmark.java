@@ -0,0 +1,103 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.io.File;
+import java.io.IOException;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.ITaskCollection;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.data.storage.IDataStorage;
+import se.chalmers.doit.data.storage.implementation.DataSQL;
+import se.chalmers.doit.data.storage.implementation.DataStorage;
+import se.chalmers.doit.data.storage.implementation.SnapshotDataSQL;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Benchmark comparing loading every list and task from the database with
+ * loading them from a snapshot, as the number of tasks grows. Results are
+ * written to the log.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class SnapshotLoadBenchmark extends AndroidTestCase {
+
+	private static final String TAG = "SnapshotLoadBenchmark";
+	private static final int TASKS_PER_LIST = 100;
+
+	private File file;
+	private SQLiteDatabase realDb;
+	private DataSQL sql;
+
+	@Override
+	public void setUp() throws Exception {
+		realDb = SQLiteDatabase.create(null);
+		sql = new DataSQL();
+		sql.setDatabase(realDb);
+		file = getContext().getFileStreamPath("snapshotLoadBenchmark.snapshot");
+		file.delete();
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		realDb.close();
+		file.delete();
+	}
+
+	public void testLoad1k() throws IOException {
+		_benchmark(1000);
+	}
+
+	public void testLoad10k() throws IOException {
+		_benchmark(10000);
+	}
+
+	public void testLoad100k() throws IOException {
+		_benchmark(100000);
+	}
+
+	private void _benchmark(final int nTasks) throws IOException {
+		_fill(nTasks);
+
+		long start = System.nanoTime();
+		new SnapshotDataSQL(sql, file).writeSnapshot();
+		final long write = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		final IDataStorage fromDatabase = new DataStorage(sql);
+		final long database = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		final SnapshotDataSQL data = new SnapshotDataSQL(sql, file);
+		final IDataStorage fromSnapshot = new DataStorage(data);
+		final long snapshot = (System.nanoTime() - start) / 1000000;
+
+		Log.i(TAG, nTasks + " tasks: database load " + database
+				+ " ms, snapshot load " + snapshot + " ms (snapshot of "
+				+ file.length() / 1024 + " kB written in " + write + " ms)");
+		assertTrue(data.isSnapshotUsed());
+		assertTrue(fromSnapshot.getAllTasks().size() == fromDatabase
+				.getAllTasks().size());
+		assertTrue(snapshot < database);
+	}
+
+	private void _fill(final int nTasks) {
+		final int nLists = nTasks / TASKS_PER_LIST;
+		final ITaskCollection[] lists = new ITaskCollection[nLists];
+		for (int i = 0; i < nLists; i++) {
+			lists[i] = new TaskCollection("List" + i);
+		}
+
+		final int[] listIDs = sql.addLists(lists);
+		final ITask[] tasks = new ITask[TASKS_PER_LIST];
+		for (final int listID : listIDs) {
+			for (int i = 0; i < TASKS_PER_LIST; i++) {
+				tasks[i] = new Task("Task" + i, "", i % 2 == 0);
+			}
+			sql.addTasks(tasks, listID);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.data.storage.implementation.StatisticsDataStorage;
+import se.chalmers.doit.data.storage.implementation.StatisticsSQL;
+import se.chalmers.doit.util.implementation.EpochDay;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+public class StatisticsDataStorageTest extends AndroidTestCase {
+
+	// Long enough that no write is made by the timer during a test
+	private static final long NEVER = 3600000;
+
+	Date day1, day2;
+	ScheduledThreadPoolExecutor executor;
+	SQLiteDatabase realDb;
+	StatisticsSQL sql;
+
+	@Override
+	public void setUp() throws Exception {
+		realDb = SQLiteDatabase.create(null);
+		sql = new StatisticsSQL();
+		sql.setDatabase(realDb);
+		executor = new ScheduledThreadPoolExecutor(1);
+		day1 = EpochDay.getDate(15000);
+		day2 = EpochDay.getDate(15001);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		realDb.close();
+	}
+
+	public void testReportsAreHeldInMemory() {
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, NEVER, 100);
+		storage.reportCreatedTasks(2, day1);
+		storage.reportCreatedTasks(3, day1);
+		storage.reportFinishedTasks(1, day1);
+
+		assertTrue(sql.getStatistics(Long.MIN_VALUE, Long.MAX_VALUE)
+				.isEmpty());
+		final Collection<IStatisticalData> data = storage.getStatisticsData();
+		assertTrue(data.size() == 1);
+		assertTrue(data.iterator().next().getCreatedTasks() == 5);
+		assertTrue(data.iterator().next().getFinishedTasks() == 1);
+	}
+
+	public void testReportsArePerDay() {
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, NEVER, 100);
+		storage.reportCreatedTasks(1, day2);
+		storage.reportCreatedTasks(2, new Date(day1.getTime() + 1000));
+		storage.flush();
+		// Added to the stored counts of the day
+		storage.reportCreatedTasks(4, day1);
+
+		final List<IStatisticalData> data = new ArrayList<IStatisticalData>(
+				storage.getStatisticsData());
+		assertTrue(data.size() == 2);
+		assertTrue(data.get(0).sameDay(day1));
+		assertTrue(data.get(0).getCreatedTasks() == 6);
+		assertTrue(data.get(1).sameDay(day2));
+		assertTrue(data.get(1).getCreatedTasks() == 1);
+
+		final Collection<IStatisticalData> range = storage.getStatisticsData(
+				15001, 15001);
+		assertTrue(range.size() == 1);
+		assertTrue(range.iterator().next().getCreatedTasks() == 1);
+		assertTrue(storage.getStatisticsData(15002, Long.MAX_VALUE).isEmpty());
+	}
+
+	public void testFlush() {
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, NEVER, 100);
+		storage.reportCreatedTasks(2, day1);
+		storage.reportDeletedLists(1, day1);
+		storage.flush();
+
+		// The counts survive the storage being recreated
+		final IStatisticalData data = new StatisticsDataStorage(sql,
+				executor, NEVER, 100).getStatisticsData().iterator().next();
+		assertTrue(data.getCreatedTasks() == 2);
+		assertTrue(data.getDeletedLists() == 1);
+		assertTrue(data.getCreatedLists() == 0);
+	}
+
+	public void testFlushAfterDelay() throws InterruptedException {
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, 10, 100);
+		storage.reportCreatedLists(4, day1);
+		storage.reportCreatedLists(1, day1);
+
+		_awaitWrites();
+		assertTrue(sql.getStatistics(15000, 15000).iterator().next()
+				.getCreatedLists() == 5);
+	}
+
+	public void testFlushAtThreshold() throws InterruptedException {
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, NEVER, 3);
+		storage.reportOverdueTasks(1, day1);
+		storage.reportOverdueTasks(1, day1);
+		storage.reportOverdueTasks(1, day2);
+
+		// Drop the timer, so that only the write made at the threshold runs
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		_awaitWrites();
+		assertTrue(sql.getStatistics(15000, 15001).size() == 2);
+	}
+
+	public void testStartWrite() throws InterruptedException {
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, NEVER, 100);
+		storage.reportFinishedTasks(3, day1);
+		storage.startWrite();
+
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		_awaitWrites();
+		assertTrue(sql.getStatistics(15000, 15000).iterator().next()
+				.getFinishedTasks() == 3);
+	}
+
+	public void testClearData() {
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, NEVER, 100);
+		storage.reportDeletedTasks(3, day1);
+		storage.flush();
+		storage.reportDeletedTasks(3, day2);
+		storage.clearData();
+
+		assertTrue(storage.getStatisticsData().isEmpty());
+		storage.flush();
+		assertTrue(sql.getStatistics(Long.MIN_VALUE, Long.MAX_VALUE)
+				.isEmpty());
+	}
+
+	public void testImportTotals() {
+		final SharedPreferences pref = getContext().getSharedPreferences(
+				"statisticsTest", Context.MODE_PRIVATE);
+		pref.edit().clear().putInt("CREATEDTASKS", 7)
+				.putInt("FINISHEDTASKS", 2).commit();
+
+		final StatisticsDataStorage storage = new StatisticsDataStorage(sql,
+				executor, NEVER, 100);
+		storage.importTotals(pref);
+		assertTrue(pref.getAll().isEmpty());
+
+		// Only counted in statistics covering all days
+		final IStatisticalData data = storage.getStatisticsData(0, 0)
+				.iterator().next();
+		assertTrue(data.getCreatedTasks() == 7);
+		assertTrue(data.getFinishedTasks() == 2);
+		assertTrue(storage.getStatisticsData(1, Long.MAX_VALUE).isEmpty());
+
+		// Nothing is imported twice
+		storage.importTotals(pref);
+		assertTrue(storage.getStatisticsData().iterator().next()
+				.getCreatedTasks() == 7);
+
+		// Not even if the totals were left in the preferences, as when the
+		// process is killed before they are removed
+		pref.edit().putInt("CREATEDTASKS", 7).commit();
+		storage.importTotals(pref);
+		assertTrue(pref.getAll().isEmpty());
+		assertTrue(storage.getStatisticsData().iterator().next()
+				.getCreatedTasks() == 7);
+	}
+
+	private void _awaitWrites() throws InterruptedException {
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+}
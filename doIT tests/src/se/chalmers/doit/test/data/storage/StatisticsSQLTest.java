@@ -0,0 +1,96 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.util.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.core.implementation.StatisticalData;
+import se.chalmers.doit.data.storage.implementation.StatisticsSQL;
+import se.chalmers.doit.util.implementation.EpochDay;
+import se.chalmers.doit.util.implementation.SQLConstants;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+public class StatisticsSQLTest extends AndroidTestCase {
+
+	StatisticsSQL db;
+	SQLiteDatabase realDb;
+
+	@Override
+	public void setUp() throws Exception {
+		db = new StatisticsSQL();
+		realDb = SQLiteDatabase.create(null);
+		db.setDatabase(realDb);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		realDb.close();
+	}
+
+	public void testAddStatistics() {
+		final Collection<IStatisticalData> data = new ArrayList<IStatisticalData>();
+		data.add(_getData(20, 1, 2));
+		data.add(_getData(10, 3, 0));
+		data.add(_getData(20, 1, 1));
+		db.addStatistics(data);
+
+		final List<IStatisticalData> stored = new ArrayList<IStatisticalData>(
+				db.getStatistics(Long.MIN_VALUE, Long.MAX_VALUE));
+		assertTrue(stored.size() == 2);
+		assertTrue(EpochDay.getDay(stored.get(0).getDate()) == 10);
+		assertTrue(stored.get(0).getCreatedTasks() == 3);
+		assertTrue(EpochDay.getDay(stored.get(1).getDate()) == 20);
+		assertTrue(stored.get(1).getCreatedTasks() == 2);
+		assertTrue(stored.get(1).getFinishedTasks() == 3);
+		assertTrue(stored.get(1).getDeletedLists() == 0);
+	}
+
+	public void testGetStatistics() {
+		final Collection<IStatisticalData> data = new ArrayList<IStatisticalData>();
+		for (int day = 0; day < 100; day++) {
+			data.add(_getData(day, day, 0));
+		}
+		db.addStatistics(data);
+
+		final List<IStatisticalData> range = new ArrayList<IStatisticalData>(
+				db.getStatistics(90, 95));
+		assertTrue(range.size() == 6);
+		for (int i = 0; i < range.size(); i++) {
+			assertTrue(range.get(i).getCreatedTasks() == 90 + i);
+		}
+		assertTrue(db.getStatistics(100, Long.MAX_VALUE).isEmpty());
+		assertTrue(db.getStatistics(-5, 0).size() == 1);
+	}
+
+	public void testGetStatisticsUsesPrimaryKey() {
+		final Cursor cur = realDb.rawQuery("EXPLAIN QUERY PLAN "
+				+ SQLConstants.SELECT_STATISTICS_RANGE, new String[] { "1",
+				"2" });
+		final StringBuilder plan = new StringBuilder();
+		while (cur.moveToNext()) {
+			for (int i = 0; i < cur.getColumnCount(); i++) {
+				plan.append(cur.getString(i)).append(' ');
+			}
+		}
+		cur.close();
+		assertTrue(plan.toString(), plan.indexOf("PRIMARY KEY") != -1
+				|| plan.indexOf("rowid") != -1);
+	}
+
+	public void testClearStatistics() {
+		final Collection<IStatisticalData> data = new ArrayList<IStatisticalData>();
+		data.add(_getData(1, 1, 1));
+		db.addStatistics(data);
+		db.clearStatistics();
+		assertTrue(db.getStatistics(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+	}
+
+	private IStatisticalData _getData(final long day, final int created,
+			final int finished) {
+		final StatisticalData ret = new StatisticalData(EpochDay.getDate(day));
+		ret.addCreatedTasks(created);
+		ret.addFinishedTasks(finished);
+		return ret;
+	}
+}
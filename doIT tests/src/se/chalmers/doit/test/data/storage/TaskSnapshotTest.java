@@ -0,0 +1,153 @@
+package se.chalmers.doit.test.data.storage;
+
+import java.io.*;
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.ITaskCollection;
+import se.chalmers.doit.core.implementation.Priority;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.data.storage.implementation.TaskSnapshot;
+import android.test.AndroidTestCase;
+
+public class TaskSnapshotTest extends AndroidTestCase {
+
+	File file;
+	Map<ITaskCollection, Integer> lists;
+	Map<Integer, Collection<ITask>> tasksByList;
+
+	@Override
+	public void setUp() throws Exception {
+		file = getContext().getFileStreamPath("taskSnapshotTest.snapshot");
+		file.delete();
+
+		lists = new HashMap<ITaskCollection, Integer>();
+		lists.put(new TaskCollection(1, "Work", new ArrayList<ITask>()),
+				Integer.valueOf(1));
+		lists.put(new TaskCollection(2, "Empty", new ArrayList<ITask>()),
+				Integer.valueOf(2));
+		lists.put(new TaskCollection(5, "\u00c4pplen & p\u00e4ron",
+				new ArrayList<ITask>()), Integer.valueOf(5));
+
+		tasksByList = new HashMap<Integer, Collection<ITask>>();
+		final Collection<ITask> work = new ArrayList<ITask>();
+		work.add(new Task(3, "Report", "Due on Friday", new Priority(
+				(byte) 5), new Date(1300000000000L), new Date(1299990000000L),
+				2, false));
+		work.add(new Task(4, "Mail", "", new Priority((byte) 1), null, null,
+				0, true));
+		tasksByList.put(Integer.valueOf(1), work);
+		final Collection<ITask> fruit = new ArrayList<ITask>();
+		fruit.add(new Task(7, "K\u00f6p frukt", "Tv\u00e5 kilo",
+				new Priority((byte) 3), null, new Date(0), 1, false));
+		tasksByList.put(Integer.valueOf(5), fruit);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testNoFile() throws IOException {
+		assertNull(TaskSnapshot.read(file));
+	}
+
+	public void testReadLists() throws IOException {
+		TaskSnapshot.write(file, 42, lists, tasksByList);
+		final TaskSnapshot snapshot = TaskSnapshot.read(file);
+		assertTrue(snapshot.getGeneration() == 42);
+
+		final Map<ITaskCollection, Integer> read = snapshot.getAllLists();
+		assertTrue(read.size() == 3);
+		for (final Map.Entry<ITaskCollection, Integer> e : read.entrySet()) {
+			assertTrue(e.getKey().getID() == e.getValue().intValue());
+			assertEquals(_getName(lists, e.getValue()), e.getKey().getName());
+			assertTrue(e.getKey().size() == 0);
+		}
+
+		final Map<Integer, Integer> counts = snapshot.getTaskCounts();
+		assertTrue(counts.size() == 2);
+		assertTrue(counts.get(Integer.valueOf(1)).intValue() == 2);
+		assertTrue(counts.get(Integer.valueOf(5)).intValue() == 1);
+	}
+
+	public void testReadTasks() throws IOException {
+		TaskSnapshot.write(file, 42, lists, tasksByList);
+		final TaskSnapshot snapshot = TaskSnapshot.read(file);
+
+		for (final Integer listID : tasksByList.keySet()) {
+			_assertSameTasks(tasksByList.get(listID),
+					snapshot.getTasks(listID.intValue()));
+		}
+		assertTrue(snapshot.getTasks(2).isEmpty());
+		final Map<Integer, Collection<ITask>> read = snapshot
+				.getAllTasksByList();
+		assertTrue(read.size() == 2);
+		for (final Integer listID : read.keySet()) {
+			_assertSameTasks(tasksByList.get(listID), read.get(listID));
+		}
+		assertTrue(snapshot.getTasks(3).isEmpty());
+	}
+
+	public void testReplace() throws IOException {
+		TaskSnapshot.write(file, 42, lists, tasksByList);
+		final TaskSnapshot old = TaskSnapshot.read(file);
+		TaskSnapshot.write(file, 43, new HashMap<ITaskCollection, Integer>(),
+				new HashMap<Integer, Collection<ITask>>());
+
+		final TaskSnapshot snapshot = TaskSnapshot.read(file);
+		assertTrue(snapshot.getGeneration() == 43);
+		assertTrue(snapshot.getAllLists().isEmpty());
+		// A snapshot that has been read is not changed by a new snapshot
+		_assertSameTasks(tasksByList.get(Integer.valueOf(1)), old.getTasks(1));
+	}
+
+	public void testOtherFormat() throws IOException {
+		TaskSnapshot.write(file, 42, lists, tasksByList);
+		final RandomAccessFile out = new RandomAccessFile(file, "rw");
+		out.seek(4);
+		out.writeInt(TaskSnapshot.FORMAT_VERSION + 1);
+		out.close();
+		assertNull(TaskSnapshot.read(file));
+	}
+
+	public void testPartlyWritten() throws IOException {
+		TaskSnapshot.write(file, 42, lists, tasksByList);
+		final long length = file.length();
+		for (long cut = length - 1; cut >= 0; cut--) {
+			final RandomAccessFile out = new RandomAccessFile(file, "rw");
+			out.setLength(cut);
+			out.close();
+			assertNull(TaskSnapshot.read(file));
+		}
+	}
+
+	private void _assertSameTasks(final Collection<ITask> expected,
+			final Collection<ITask> actual) {
+		assertTrue(expected.size() == actual.size());
+		final Iterator<ITask> it = actual.iterator();
+		for (final ITask e : expected) {
+			final ITask a = it.next();
+			assertTrue(e.getID() == a.getID());
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getDescription(), a.getDescription());
+			assertTrue(e.getPriority().getValue() == a.getPriority()
+					.getValue());
+			assertEquals(e.getDueDate(), a.getDueDate());
+			assertEquals(e.getReminderDate(), a.getReminderDate());
+			assertTrue(e.getCustomPosition() == a.getCustomPosition());
+			assertTrue(e.isCompleted() == a.isCompleted());
+		}
+	}
+
+	private String _getName(final Map<ITaskCollection, Integer> map,
+			final Integer id) {
+		for (final Map.Entry<ITaskCollection, Integer> e : map.entrySet()) {
+			if (e.getValue().equals(id)) {
+				return e.getKey().getName();
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,124 @@
+package se.chalmers.doit.test.logic.controller;
+
+import se.chalmers.doit.logic.controller.implementation.DataEvents;
+import se.chalmers.doit.util.implementation.Constants;
+import android.test.AndroidTestCase;
+
+/**
+ * Test class for DataEvents.
+ * 
+ * @author Boel
+ * 
+ */
+public class DataEventsTest extends AndroidTestCase {
+
+	private DataEvents events;
+
+	@Override
+	public void setUp() throws Exception {
+		events = new DataEvents();
+	}
+
+	public void testRecordChange() {
+		events.recordChange(Constants.EVENT_TASK_ADDED, 3);
+		events.recordChange(Constants.EVENT_TASK_EDITED, 3);
+		events.recordChange(Constants.EVENT_DATA_CLEARED, Constants.ID_UNSAVED);
+
+		assertTrue(events.getCount() == 3);
+		assertTrue(events.getType(0) == Constants.EVENT_TASK_ADDED);
+		assertTrue(events.getID(0) == 3);
+		assertTrue(events.getType(1) == Constants.EVENT_TASK_EDITED);
+		assertTrue(events.getType(2) == Constants.EVENT_DATA_CLEARED);
+		assertTrue(events.getID(2) == Constants.ID_UNSAVED);
+		assertTrue(events.contains(Constants.EVENT_TASK_EDITED));
+		assertFalse(events.contains(Constants.EVENT_TASK_REMOVED));
+	}
+
+	public void testDuplicates() {
+		events.recordChange(Constants.EVENT_TASK_EDITED, 1);
+		events.recordChange(Constants.EVENT_TASK_EDITED, 2);
+		events.recordChange(Constants.EVENT_TASK_EDITED, 1);
+		events.recordChange(Constants.EVENT_LIST_EDITED, 1);
+
+		// Only the last of the same change is kept
+		assertTrue(events.getCount() == 3);
+		assertTrue(events.getID(0) == 2);
+		assertTrue(events.getID(1) == 1);
+		assertTrue(events.getType(1) == Constants.EVENT_TASK_EDITED);
+		assertTrue(events.getType(2) == Constants.EVENT_LIST_EDITED);
+	}
+
+	public void testAdjacentDuplicates() {
+		events.recordChange(Constants.EVENT_TASK_EDITED, 1);
+		events.recordChange(Constants.EVENT_TASK_EDITED, 1);
+		assertTrue(events.getCount() == 1);
+	}
+
+	public void testCompleteDecompleteComplete() {
+		// Each change of a task's completion also records an edit
+		for (final int type : new int[] { Constants.EVENT_TASK_COMPLETED,
+				Constants.EVENT_TASK_DECOMPLETED,
+				Constants.EVENT_TASK_COMPLETED }) {
+			events.recordChange(Constants.EVENT_TASK_EDITED, 4);
+			events.recordChange(type, 4);
+		}
+
+		assertTrue(events.getCount() == 3);
+		assertTrue(events.getType(0) == Constants.EVENT_TASK_DECOMPLETED);
+		assertTrue(events.getType(1) == Constants.EVENT_TASK_EDITED);
+		// The task ends up completed
+		assertTrue(events.getType(2) == Constants.EVENT_TASK_COMPLETED);
+	}
+
+	public void testClearedAfterAdd() {
+		events.recordChange(Constants.EVENT_DATA_CLEARED, Constants.ID_UNSAVED);
+		events.recordChange(Constants.EVENT_TASK_ADDED, 7);
+		events.recordChange(Constants.EVENT_DATA_CLEARED, Constants.ID_UNSAVED);
+
+		// The added task no longer exists
+		assertTrue(events.getCount() == 2);
+		assertTrue(events.getType(0) == Constants.EVENT_TASK_ADDED);
+		assertTrue(events.getType(1) == Constants.EVENT_DATA_CLEARED);
+	}
+
+	public void testManyEvents() {
+		final int n = 10000;
+		for (int i = 0; i < n; i++) {
+			events.recordChange(Constants.EVENT_TASK_ADDED, i);
+			events.recordChange(Constants.EVENT_TASK_REMOVED, i);
+		}
+		for (int i = 0; i < n; i++) {
+			events.recordChange(Constants.EVENT_TASK_ADDED, i);
+		}
+
+		// The tasks were added again after all of them had been removed
+		assertTrue(events.getCount() == 2 * n);
+		for (int i = 0; i < n; i++) {
+			assertTrue(events.getID(i) == i);
+			assertTrue(events.getType(i) == Constants.EVENT_TASK_REMOVED);
+			assertTrue(events.getID(n + i) == i);
+			assertTrue(events.getType(n + i) == Constants.EVENT_TASK_ADDED);
+		}
+	}
+
+	public void testClear() {
+		events.recordChange(Constants.EVENT_TASK_MOVED, 5);
+		events.clear();
+		assertTrue(events.getCount() == 0);
+		assertFalse(events.contains(Constants.EVENT_TASK_MOVED));
+
+		// A cleared change can be recorded again
+		events.recordChange(Constants.EVENT_TASK_MOVED, 5);
+		assertTrue(events.getCount() == 1);
+	}
+
+	public void testGetOutOfBounds() {
+		events.recordChange(Constants.EVENT_LIST_ADDED, 1);
+		try {
+			events.getType(1);
+			fail();
+		} catch (final IndexOutOfBoundsException e) {
+			// Expected
+		}
+	}
+}
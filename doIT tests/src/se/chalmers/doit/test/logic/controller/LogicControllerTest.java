@@ -2,7 +2,10 @@ package se.chalmers.doit.test.logic.controller;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
+import se.chalmers.doit.core.IStatisticalData;
 import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.core.ITaskCollection;
 import se.chalmers.doit.core.implementation.Task;
@@ -10,8 +13,10 @@ import se.chalmers.doit.core.implementation.TaskCollection;
 import se.chalmers.doit.data.storage.IDataStorage;
 import se.chalmers.doit.data.storage.implementation.DataStorage;
 import se.chalmers.doit.data.storage.implementation.StatisticsDataCache;
-import se.chalmers.doit.logic.controller.ILogicController;
+import se.chalmers.doit.logic.controller.*;
 import se.chalmers.doit.logic.controller.implementation.LogicController;
+import se.chalmers.doit.util.implementation.Constants;
+import se.chalmers.doit.util.implementation.EpochDay;
 import android.database.sqlite.SQLiteDatabase;
 import android.test.AndroidTestCase;
 
@@ -23,6 +28,27 @@ import android.test.AndroidTestCase;
  */
 public class LogicControllerTest extends AndroidTestCase {
 
+	/**
+	 * Keeps a copy of every batch of events it is notified of.
+	 */
+	private static class RecordingListener implements IDataListener {
+
+		final List<long[]> ids = new ArrayList<long[]>();
+		final List<int[]> types = new ArrayList<int[]>();
+
+		@Override
+		public void onDataChanged(final IDataEvents events) {
+			long[] batchIDs = new long[events.getCount()];
+			int[] batchTypes = new int[events.getCount()];
+			for (int i = 0; i < events.getCount(); i++) {
+				batchIDs[i] = events.getID(i);
+				batchTypes[i] = events.getType(i);
+			}
+			ids.add(batchIDs);
+			types.add(batchTypes);
+		}
+	}
+
 	private ITask task1;
 	private ITask task2;
 	private Collection<ITask> tasks;
@@ -30,6 +56,7 @@ public class LogicControllerTest extends AndroidTestCase {
 	private ITaskCollection emptyList;
 	private ILogicController controller;
 	private IDataStorage data;
+	private RecordingListener listener;
 
 	@Override
 	public void setUp() throws Exception {
@@ -48,10 +75,13 @@ public class LogicControllerTest extends AndroidTestCase {
 
 		list1 = new TaskCollection("List1", tasks);
 
+		listener = new RecordingListener();
+		controller.addDataListener(listener);
 	}
 
 	@Override
 	public void tearDown() throws Exception {
+		controller.removeDataListener(listener);
 		controller.clearData();
 		controller.clearStatisticsData();
 	}
@@ -65,6 +95,29 @@ public class LogicControllerTest extends AndroidTestCase {
 
 	}
 
+	public void testGetDataVersion() {
+		final long version = controller.getDataVersion();
+		assertTrue(controller.addList(emptyList));
+		assertTrue(controller.getDataVersion() > version);
+
+		// Replacing the storage strategy is a change as well
+		final long before = controller.getDataVersion();
+		controller.setStorageStrategy(new DataStorage(SQLiteDatabase
+				.create(null)));
+		assertTrue(controller.getDataVersion() > before);
+		controller.setStorageStrategy(null);
+		controller.setStorageStrategy(data);
+		assertTrue(controller.getDataVersion() > before + 1);
+	}
+
+	public void testHasStorageStrategy() {
+		assertTrue(controller.hasStorageStrategy());
+		controller.setStorageStrategy(null);
+		assertFalse(controller.hasStorageStrategy());
+		controller.setStorageStrategy(data);
+		assertTrue(controller.hasStorageStrategy());
+	}
+
 	public void testAddList() {
 		assertTrue(controller.addList(list1));
 		final int size = controller.getAllLists().size();
@@ -229,6 +282,122 @@ public class LogicControllerTest extends AndroidTestCase {
 		}
 	}
 
+	public void testAddTaskEvent() {
+		assertTrue(controller.addList(emptyList));
+		listener.types.clear();
+		listener.ids.clear();
+
+		assertTrue(controller.addTask(task1, _getFirstList()));
+		assertTrue(listener.types.size() == 1);
+		assertTrue(listener.types.get(0).length == 1);
+		assertTrue(listener.types.get(0)[0] == Constants.EVENT_TASK_ADDED);
+		assertTrue(listener.ids.get(0)[0] == _getFirstTask().getID());
+	}
+
+	public void testBatchEvents() {
+		controller.beginBatch();
+		assertTrue(controller.addList(emptyList));
+		assertTrue(controller.addTask(task1, _getFirstList()));
+		assertTrue(listener.types.isEmpty());
+		controller.endBatch();
+
+		// All changes of the batch are delivered together, in order
+		assertTrue(listener.types.size() == 1);
+		final int[] types = listener.types.get(0);
+		assertTrue(types.length == 2);
+		assertTrue(types[0] == Constants.EVENT_LIST_ADDED);
+		assertTrue(types[1] == Constants.EVENT_TASK_ADDED);
+		assertTrue(listener.ids.get(0)[0] == _getFirstList().getID());
+		assertTrue(listener.ids.get(0)[1] == _getFirstTask().getID());
+	}
+
+	public void testCoalescedEvents() {
+		assertTrue(controller.addList(list1));
+		listener.types.clear();
+
+		controller.beginBatch();
+		assertTrue(controller.completeTask(_getFirstTask()));
+		assertTrue(controller.decompleteTask(_getFirstTask()));
+		controller.endBatch();
+
+		// The task is only reported as edited once, after the last edit
+		assertTrue(listener.types.size() == 1);
+		final int[] types = listener.types.get(0);
+		assertTrue(types.length == 3);
+		assertTrue(types[0] == Constants.EVENT_TASK_COMPLETED);
+		assertTrue(types[1] == Constants.EVENT_TASK_EDITED);
+		assertTrue(types[2] == Constants.EVENT_TASK_DECOMPLETED);
+	}
+
+	public void testCompleteTaskEvents() {
+		assertTrue(controller.addList(list1));
+		listener.types.clear();
+
+		assertTrue(controller.completeTask(_getFirstTask()));
+		assertTrue(listener.types.size() == 1);
+		final int[] types = listener.types.get(0);
+		assertTrue(types.length == 2);
+		assertTrue(types[0] == Constants.EVENT_TASK_EDITED);
+		assertTrue(types[1] == Constants.EVENT_TASK_COMPLETED);
+	}
+
+	public void testRemoveListEvents() {
+		assertTrue(controller.addList(list1));
+		final long listID = _getFirstList().getID();
+		final long taskID = _getFirstTask().getID();
+		listener.types.clear();
+		listener.ids.clear();
+
+		assertTrue(controller.removeList(_getFirstList()));
+		assertTrue(listener.types.size() == 1);
+		final int[] types = listener.types.get(0);
+		assertTrue(types.length == 2);
+		assertTrue(types[0] == Constants.EVENT_LIST_REMOVED);
+		assertTrue(listener.ids.get(0)[0] == listID);
+		assertTrue(types[1] == Constants.EVENT_TASK_REMOVED);
+		assertTrue(listener.ids.get(0)[1] == taskID);
+	}
+
+	public void testChangesDuringDelivery() {
+		final IDataListener adder = new IDataListener() {
+
+			@SuppressWarnings("synthetic-access")
+			@Override
+			public void onDataChanged(final IDataEvents events) {
+				if (events.contains(Constants.EVENT_LIST_ADDED)) {
+					controller.addTask(task1, _getFirstList());
+				}
+			}
+		};
+		controller.addDataListener(adder);
+		try {
+			assertTrue(controller.addList(emptyList));
+		} finally {
+			controller.removeDataListener(adder);
+		}
+
+		// The task added by the listener is delivered after the list
+		assertTrue(listener.types.size() == 2);
+		assertTrue(listener.types.get(0)[0] == Constants.EVENT_LIST_ADDED);
+		assertTrue(listener.types.get(1)[0] == Constants.EVENT_TASK_ADDED);
+		assertTrue(controller.getAllTasks().size() == 1);
+	}
+
+	public void testRemoveDataListener() {
+		controller.removeDataListener(listener);
+		assertTrue(controller.addList(emptyList));
+		assertTrue(listener.types.isEmpty());
+	}
+
+	public void testEndBatch() {
+		try {
+			controller.endBatch();
+			fail();
+		} catch (final IllegalStateException e) {
+			// Expected
+		}
+	}
+
 	public void testGetNumberOfCreatedTasks() {
 		assertTrue(controller.getNumberOfCreatedTasks(-1) == 0);
 	}
@@ -291,4 +460,35 @@ public class LogicControllerTest extends AndroidTestCase {
 		assertTrue(controller.getNumberOfDeletedLists(-1) == 0);
 
 	}
+
+	public void testGetNumberOfCreatedTasksInInterval() {
+		final StatisticsDataCache cache = new StatisticsDataCache();
+		controller.setStatisticsStrategy(cache);
+		final long today = EpochDay.getDay(new Date());
+		cache.reportCreatedTasks(1, new Date());
+		cache.reportCreatedTasks(2, EpochDay.getDate(today - 7));
+		cache.reportCreatedTasks(4, EpochDay.getDate(today - 8));
+
+		// Today and the given number of days before it
+		assertTrue(controller.getNumberOfCreatedTasks(0) == 1);
+		assertTrue(controller.getNumberOfCreatedTasks(7) == 3);
+		assertTrue(controller.getNumberOfCreatedTasks(-1) == 7);
+	}
+
+	public void testGetStatistics() {
+		controller.incrementNumberOfCreatedTasks(2);
+		controller.incrementNumberOfFinishedTasks(1);
+		final IStatisticalData before = controller.getStatistics(7);
+		assertTrue(before.getCreatedTasks() == 2);
+		assertTrue(before.getFinishedTasks() == 1);
+
+		// Reports made after the first query are counted as well
+		controller.incrementNumberOfCreatedTasks(3);
+		assertTrue(controller.getStatistics(0).getCreatedTasks() == 5);
+		assertTrue(controller.getNumberOfCreatedTasks(-1) == 5);
+		assertTrue(before.getCreatedTasks() == 2);
+
+		controller.clearStatisticsData();
+		assertTrue(controller.getStatistics(-1).getCreatedTasks() == 0);
+	}
 }
@@ -0,0 +1,190 @@
+package se.chalmers.doit.test.logic.service;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.ITaskCollection;
+import se.chalmers.doit.core.implementation.*;
+import se.chalmers.doit.data.storage.implementation.DataStorage;
+import se.chalmers.doit.data.storage.implementation.StatisticsDataCache;
+import se.chalmers.doit.logic.controller.ILogicController;
+import se.chalmers.doit.logic.controller.implementation.LogicController;
+import se.chalmers.doit.logic.service.implementation.OverdueTracker;
+import se.chalmers.doit.util.IClock;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+public class OverdueTrackerTest extends AndroidTestCase {
+
+	private static class FakeClock implements IClock {
+		long time = 0;
+
+		@Override
+		public long currentTimeMillis() {
+			return time;
+		}
+	}
+
+	FakeClock clock;
+	ILogicController controller;
+	OverdueTracker tracker;
+
+	@Override
+	public void setUp() throws Exception {
+		clock = new FakeClock();
+		clock.time = 1000;
+		controller = LogicController.getInstance();
+		controller.setStorageStrategy(new DataStorage(SQLiteDatabase.create(null)));
+		controller.setStatisticsStrategy(new StatisticsDataCache());
+		tracker = new OverdueTracker(controller, clock, 0);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		controller.removeDataListener(tracker);
+		controller.clearData();
+		controller.clearStatisticsData();
+	}
+
+	public void testUpdate() {
+		tracker.setTasks(_list(_task(1, 3000), _task(2, 2000), _task(3, 4000)));
+		assertTrue(tracker.getCount() == 3);
+		assertTrue(tracker.update() == 0);
+
+		clock.time = 3000;
+		assertTrue(tracker.update() == 2);
+		assertTrue(tracker.getCount() == 1);
+		assertTrue(tracker.getLastUpdate() == 3000);
+		assertTrue(controller.getNumberOfOverdueTasks(0) == 2);
+
+		clock.time = 10000;
+		assertTrue(tracker.update() == 1);
+		assertTrue(tracker.update() == 0);
+		assertTrue(controller.getNumberOfOverdueTasks(0) == 3);
+	}
+
+	public void testSkipsTasksWithoutDueDates() {
+		final Task completed = new Task(1, "", "", new Priority((byte) 3),
+				new Date(2000), null, 0, true);
+		tracker.setTasks(_list(completed, _task(2, -1), new Task("Unsaved",
+				"", new Priority((byte) 3), new Date(2000), null, 0, false)));
+		assertTrue(tracker.getCount() == 0);
+	}
+
+	public void testEditTask() {
+		tracker.setTasks(_list(_task(1, 2000), _task(2, 3000)));
+
+		// Moving the due date later keeps the task from becoming overdue
+		tracker.setTasks(_list(_task(1, 5000)));
+		clock.time = 4000;
+		assertTrue(tracker.update() == 1);
+
+		// Completing a task stops tracking it
+		tracker.setTasks(_list(new Task(1, "", "", new Priority((byte) 3),
+				new Date(5000), null, 0, true)));
+		assertTrue(tracker.getCount() == 0);
+		clock.time = 6000;
+		assertTrue(tracker.update() == 0);
+	}
+
+	public void testCountsTaskOnce() {
+		tracker.setTasks(_list(_task(1, 2000)));
+		clock.time = 2000;
+		assertTrue(tracker.update() == 1);
+
+		// Moving the due date of a reported task does not report it again
+		tracker.setTasks(_list(_task(1, 3000)));
+		clock.time = 3000;
+		assertTrue(tracker.update() == 0);
+
+		// Tasks due before the last update were reported by an earlier
+		// tracker, or were added after their due date had passed
+		final OverdueTracker next = new OverdueTracker(controller, clock,
+				tracker.getLastUpdate());
+		next.setTasks(_list(_task(2, 2500), _task(3, 3500)));
+		assertTrue(next.getCount() == 1);
+		clock.time = 4000;
+		assertTrue(next.update() == 1);
+		assertTrue(controller.getNumberOfOverdueTasks(0) == 2);
+	}
+
+	public void testRemoveTasks() {
+		tracker.setTasks(_list(_task(1, 2000), _task(2, 2000)));
+		tracker.removeTasks(_list(_task(1, -1)));
+		assertTrue(tracker.getCount() == 1);
+		tracker.clearTasks();
+		assertTrue(tracker.getCount() == 0);
+		clock.time = 3000;
+		assertTrue(tracker.update() == 0);
+	}
+
+	public void testFollowsControllerChanges() {
+		controller.addDataListener(tracker);
+		controller.addList(new TaskCollection("List", new ArrayList<ITask>()));
+		final ITaskCollection list = controller.getAllLists().iterator()
+				.next();
+		for (final String name : new String[] { "Due", "Completed", "Removed",
+				"Postponed" }) {
+			controller.addTask(new Task(name, "", new Priority((byte) 3),
+					new Date(2000), null, 0, false), list);
+		}
+		assertTrue(tracker.getCount() == 4);
+
+		for (final ITask task : controller.getAllTasks()) {
+			if (task.getName().equals("Completed")) {
+				controller.completeTask(task);
+			} else if (task.getName().equals("Removed")) {
+				controller.removeTask(task);
+			} else if (task.getName().equals("Postponed")) {
+				controller.editTask(task, new Task(task.getID(), task.getName(),
+						"", task.getPriority(), new Date(5000), null, 0, false));
+			}
+		}
+		assertTrue(tracker.getCount() == 2);
+
+		clock.time = 3000;
+		assertTrue(tracker.update() == 1);
+		assertTrue(controller.getNumberOfOverdueTasks(0) == 1);
+		clock.time = 6000;
+		assertTrue(tracker.update() == 1);
+		assertTrue(controller.getNumberOfOverdueTasks(0) == 2);
+
+		// Clearing the data stops tracking the tasks
+		controller.addTask(new Task("Cleared", "", new Priority((byte) 3),
+				new Date(7000), null, 0, false), list);
+		assertTrue(tracker.getCount() == 1);
+		controller.clearData();
+		assertTrue(tracker.getCount() == 0);
+		clock.time = 8000;
+		assertTrue(tracker.update() == 0);
+	}
+
+	public void testManyTasks() {
+		final int n = 100000;
+		final Random random = new Random(13);
+		final List<ITask> tasks = new ArrayList<ITask>(n);
+		for (int i = 0; i < n; i++) {
+			tasks.add(_task(i, 2000 + random.nextInt(1000000)));
+		}
+		tracker.setTasks(tasks);
+
+		// Every task becomes overdue exactly once as the clock advances
+		int nOverdue = 0;
+		while (clock.time < 1002000) {
+			clock.time += random.nextInt(5000);
+			nOverdue += tracker.update();
+		}
+		assertTrue(nOverdue == n);
+		assertTrue(tracker.getCount() == 0);
+		assertTrue(controller.getNumberOfOverdueTasks(0) == n);
+	}
+
+	private List<ITask> _list(final ITask... tasks) {
+		return Arrays.asList(tasks);
+	}
+
+	private Task _task(final long id, final long dueTime) {
+		return new Task(id, "Task " + id, "", new Priority((byte) 3),
+				dueTime < 0 ? null : new Date(dueTime), null, 0, false);
+	}
+}
@@ -0,0 +1,188 @@
+package se.chalmers.doit.test.logic.service;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.implementation.Priority;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.logic.service.IReminderAlarm;
+import se.chalmers.doit.logic.service.implementation.ReminderService;
+import se.chalmers.doit.util.IClock;
+import android.test.AndroidTestCase;
+
+public class ReminderServiceTest extends AndroidTestCase {
+
+	private static class FakeAlarm implements IReminderAlarm {
+		long armedTime = -1;
+		int nSet = 0;
+		final List<ITask> reminded = new ArrayList<ITask>();
+
+		@Override
+		public void cancel() {
+			armedTime = -1;
+		}
+
+		@Override
+		public void remind(final ITask task) {
+			reminded.add(task);
+		}
+
+		@Override
+		public void set(final long time) {
+			armedTime = time;
+			nSet++;
+		}
+	}
+
+	private static class FakeClock implements IClock {
+		long time = 0;
+
+		@Override
+		public long currentTimeMillis() {
+			return time;
+		}
+	}
+
+	FakeAlarm alarm;
+	FakeClock clock;
+	ReminderService service;
+
+	@Override
+	public void setUp() throws Exception {
+		alarm = new FakeAlarm();
+		clock = new FakeClock();
+		clock.time = 1000;
+		service = new ReminderService(alarm, clock);
+	}
+
+	public void testArmsNextReminder() {
+		service.setReminders(_list(_task(1, 5000), _task(2, 3000),
+				_task(3, 4000)));
+		assertTrue(service.getCount() == 3);
+		assertTrue(alarm.armedTime == 3000);
+		assertTrue(alarm.nSet == 1);
+
+		// A later reminder does not change the wake-up
+		service.setReminders(_list(_task(4, 9000)));
+		assertTrue(alarm.nSet == 1);
+
+		service.setReminders(_list(_task(5, 2000)));
+		assertTrue(alarm.armedTime == 2000);
+		assertTrue(alarm.nSet == 2);
+	}
+
+	public void testSkipsTasksWithoutReminders() {
+		final Task completed = new Task(1, "", "", new Priority((byte) 3),
+				null, new Date(5000), 0, true);
+		service.setReminders(_list(completed, _task(2, 500), new Task(3, "",
+				"", new Priority((byte) 3), null, null, 0, false)));
+		assertTrue(service.getCount() == 0);
+		assertTrue(alarm.nSet == 0);
+	}
+
+	public void testEditReminder() {
+		service.setReminders(_list(_task(1, 3000), _task(2, 4000)));
+
+		// Moving the first reminder later arms the next one
+		service.setReminders(_list(_task(1, 6000)));
+		assertTrue(service.getCount() == 2);
+		assertTrue(alarm.armedTime == 4000);
+
+		// Removing the date of a task removes its reminder
+		service.setReminders(_list(_task(2, -1)));
+		assertTrue(service.getCount() == 1);
+		assertTrue(alarm.armedTime == 6000);
+
+		service.removeReminders(_list(_task(1, -1)));
+		assertTrue(service.getCount() == 0);
+		assertTrue(alarm.armedTime == -1);
+	}
+
+	public void testOnAlarm() {
+		service.setReminders(_list(_task(1, 3000), _task(2, 3000),
+				_task(3, 4000)));
+		clock.time = 3500;
+		_fire();
+		assertTrue(alarm.reminded.size() == 2);
+		assertTrue(alarm.armedTime == 4000);
+
+		// An early wake-up reminds of nothing, and sets the wake-up again
+		clock.time = 3900;
+		_fire();
+		assertTrue(alarm.reminded.size() == 2);
+		assertTrue(alarm.armedTime == 4000);
+
+		clock.time = 4000;
+		_fire();
+		assertTrue(alarm.reminded.size() == 3);
+		assertTrue(alarm.reminded.get(2).getID() == 3);
+		assertTrue(alarm.armedTime == -1);
+	}
+
+	public void testClearReminders() {
+		service.setReminders(_list(_task(1, 3000)));
+		service.clearReminders();
+		assertTrue(service.getCount() == 0);
+		assertTrue(alarm.armedTime == -1);
+		clock.time = 5000;
+		_fire();
+		assertTrue(alarm.reminded.isEmpty());
+	}
+
+	public void testManyReminders() {
+		final int n = 100000;
+		final Random random = new Random(11);
+		final List<ITask> tasks = new ArrayList<ITask>(n);
+		for (int i = 0; i < n; i++) {
+			tasks.add(_task(i, 2000 + random.nextInt(1000000)));
+		}
+		service.setReminders(tasks);
+		assertTrue(service.getCount() == n);
+
+		// Edit a tenth of the reminders, one at a time
+		for (int i = 0; i < n; i += 10) {
+			tasks.set(i, _task(i, 2000 + random.nextInt(1000000)));
+			service.setReminders(_list(tasks.get(i)));
+		}
+		final Map<Long, Long> expected = new HashMap<Long, Long>();
+		for (final ITask t : tasks) {
+			expected.put(Long.valueOf(t.getID()),
+					Long.valueOf(t.getReminderDate().getTime()));
+		}
+
+		// Reminders are delivered in time order as the clock advances
+		long last = 0;
+		while (alarm.armedTime != -1) {
+			assertTrue(alarm.armedTime >= last);
+			clock.time = alarm.armedTime + random.nextInt(100);
+			final int before = alarm.reminded.size();
+			_fire();
+			assertTrue(alarm.reminded.size() > before);
+			for (int i = before; i < alarm.reminded.size(); i++) {
+				final long time = expected.remove(
+						Long.valueOf(alarm.reminded.get(i).getID()))
+						.longValue();
+				assertTrue(time <= clock.time);
+				assertTrue(time >= last);
+			}
+			last = clock.time;
+		}
+		assertTrue(expected.isEmpty());
+		assertTrue(service.getCount() == 0);
+	}
+
+	private void _fire() {
+		// The wake-up goes off, so it is no longer set
+		alarm.armedTime = -1;
+		service.onAlarm();
+	}
+
+	private List<ITask> _list(final ITask... tasks) {
+		return Arrays.asList(tasks);
+	}
+
+	private Task _task(final long id, final long reminderTime) {
+		return new Task(id, "Task " + id, "", new Priority((byte) 3), null,
+				reminderTime < 0 ? null : new Date(reminderTime), 0, false);
+	}
+}
@@ -0,0 +1,92 @@
+package se.chalmers.doit.test.presentation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.core.implementation.StatisticalData;
+import se.chalmers.doit.presentation.graphics.implementation.StatisticsGraph;
+import se.chalmers.doit.util.implementation.EpochDay;
+import android.test.AndroidTestCase;
+
+/**
+ * Test class for StatisticsGraph.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class StatisticsGraphTest extends AndroidTestCase {
+
+	public void testNoData() {
+		final StatisticsGraph graph = new StatisticsGraph(
+				new ArrayList<StatisticalData>());
+		assertTrue(graph.getFirstDay() == StatisticsGraph.NO_DATA);
+		final IStatisticalData[] buckets = graph.getBuckets(10, 19, 5);
+		assertTrue(buckets.length == 5);
+		for (final IStatisticalData bucket : buckets) {
+			assertTrue(bucket.getCreatedTasks() == 0);
+		}
+		assertTrue(graph.getBuckets(10, 9, 5).length == 0);
+		assertTrue(graph.getBuckets(10, 19, 0).length == 0);
+	}
+
+	public void testBuckets() {
+		final List<StatisticalData> data = new ArrayList<StatisticalData>();
+		for (long day = 100; day < 110; day++) {
+			data.add(_data(day, (int) day - 99));
+		}
+		final StatisticsGraph graph = new StatisticsGraph(data);
+		assertTrue(graph.getFirstDay() == 100);
+
+		// One bucket for each day when they fit
+		IStatisticalData[] buckets = graph.getBuckets(100, 109, 20);
+		assertTrue(buckets.length == 10);
+		assertTrue(buckets[0].getCreatedTasks() == 1);
+		assertTrue(buckets[9].getCreatedTasks() == 10);
+
+		// The buckets end on the last day, so the first one is cut short
+		buckets = graph.getBuckets(100, 109, 4);
+		assertTrue(buckets.length == 4);
+		assertTrue(buckets[0].getCreatedTasks() == 1);
+		assertTrue(buckets[1].getCreatedTasks() == 2 + 3 + 4);
+		assertTrue(buckets[3].getCreatedTasks() == 8 + 9 + 10);
+
+		buckets = graph.getBuckets(0, 200, 1);
+		assertTrue(buckets.length == 1);
+		assertTrue(buckets[0].getCreatedTasks() == 55);
+	}
+
+	public void testLongHistory() {
+		final Random random = new Random(17);
+		final List<StatisticalData> data = new ArrayList<StatisticalData>();
+		final int[] created = new int[3650];
+		for (int i = 0; i < created.length; i++) {
+			created[i] = random.nextInt(5);
+			if (created[i] > 0) {
+				data.add(_data(15000 + i, created[i]));
+			}
+		}
+		final StatisticsGraph graph = new StatisticsGraph(data);
+
+		// Ten years are summed into the buckets without losing any counts
+		final IStatisticalData[] buckets = graph.getBuckets(15000,
+				15000 + created.length - 1, 80);
+		assertTrue(buckets.length <= 80);
+		final int bucketDays = (created.length + buckets.length - 1)
+				/ buckets.length;
+		int day = created.length;
+		for (int i = buckets.length - 1; i >= 0; i--) {
+			int expected = 0;
+			for (int j = 0; j < bucketDays && day > 0; j++) {
+				expected += created[--day];
+			}
+			assertTrue(buckets[i].getCreatedTasks() == expected);
+		}
+		assertTrue(day == 0);
+	}
+
+	private StatisticalData _data(final long day, final int createdTasks) {
+		final StatisticalData ret = new StatisticalData(EpochDay.getDate(day));
+		ret.addCreatedTasks(createdTasks);
+		return ret;
+	}
+}
@@ -0,0 +1,163 @@
+package se.chalmers.doit.test.presentation;
+
+import java.util.*;
+
+import se.chalmers.doit.R;
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.presentation.activities.implementation.TaskListAdapter;
+import android.graphics.*;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.*;
+import android.widget.*;
+
+/**
+ * Benchmark measuring frame times of a scripted fast scroll through a list of
+ * 5000 tasks. Each frame binds the rows scrolled into view to the rows
+ * scrolled out of view, as ListView recycles them, and measures and lays them
+ * out. The holder-based binding of TaskListAdapter is compared with binding
+ * that looks up the row's views and restyles them on every bind, which is
+ * what TaskListAdapter used to do. Results are written to the log.
+ * 
+ * @author Marco Baxemyr
+ * 
+ */
+public class TaskListAdapterScrollBenchmark extends AndroidTestCase {
+
+	/**
+	 * Binds a task to a row.
+	 */
+	private interface Binder {
+		View bind(int position, View convertView);
+	}
+
+	// Time available for a frame at 60 frames per second
+	private static final long FRAME_BUDGET_NS = 16666667;
+	private static final int N_ROWS = 5000;
+	// Rows scrolled into view per frame in a fast fling
+	private static final int ROWS_PER_FRAME = 8;
+	private static final String TAG = "TaskListAdapterScrollBenchmark";
+	private static final int VISIBLE_ROWS = 10;
+
+	private TaskListAdapter adapter;
+	private ArrayList<ITask> tasks;
+
+	@Override
+	public void setUp() throws Exception {
+		tasks = new ArrayList<ITask>();
+		for (int i = 0; i < N_ROWS; i++) {
+			// Completed and uncompleted tasks are mixed so rows are restyled
+			tasks.add(new Task("Task" + i, "Description" + i, i % 3 == 0));
+		}
+		adapter = new TaskListAdapter(getContext(), new ArrayList<ITask>());
+		adapter.replaceAll(tasks);
+	}
+
+	public void testFastScroll5k() {
+		final Binder holder = new Binder() {
+			@SuppressWarnings("synthetic-access")
+			@Override
+			public View bind(final int position, final View convertView) {
+				return adapter.getView(position, convertView, null);
+			}
+		};
+		final Binder lookup = new Binder() {
+			@SuppressWarnings("synthetic-access")
+			@Override
+			public View bind(final int position, final View convertView) {
+				return _bindWithLookup(position, convertView);
+			}
+		};
+
+		// Warm up both paths before timing them
+		_scroll(holder, "warm-up");
+		_scroll(lookup, "warm-up");
+
+		final Set<View> rows = _scroll(holder, "holder");
+		_scroll(lookup, "lookup");
+
+		// Rows are only created until there are enough to fill the screen
+		assertEquals(VISIBLE_ROWS + ROWS_PER_FRAME, rows.size());
+	}
+
+	private View _bindWithLookup(final int position, final View convertView) {
+		View view = convertView;
+		if (view == null) {
+			view = LayoutInflater.from(getContext()).inflate(
+					R.layout.task_list_item, null);
+		}
+		final ITask task = tasks.get(position);
+		final TextView topText = (TextView) view.findViewById(R.id.toptext);
+		final TextView bottomText = (TextView) view
+				.findViewById(R.id.bottomtext);
+		topText.setText(task.getName());
+		bottomText.setText(task.getDescription());
+		if (task.isCompleted()) {
+			topText.setPaintFlags(topText.getPaintFlags()
+					| Paint.STRIKE_THRU_TEXT_FLAG);
+			topText.setTextColor(Color.GRAY);
+			bottomText.setPaintFlags(bottomText.getPaintFlags()
+					| Paint.STRIKE_THRU_TEXT_FLAG);
+			bottomText.setTextColor(Color.GRAY);
+		} else {
+			topText.setPaintFlags(topText.getPaintFlags()
+					& (~Paint.STRIKE_THRU_TEXT_FLAG));
+			topText.setTextColor(Color.WHITE);
+			bottomText.setPaintFlags(bottomText.getPaintFlags()
+					& (~Paint.STRIKE_THRU_TEXT_FLAG));
+			bottomText.setTextColor(Color.WHITE);
+		}
+		return view;
+	}
+
+	/**
+	 * Scrolls through all rows, returning the distinct row views used.
+	 */
+	private Set<View> _scroll(final Binder binder, final String name) {
+		final int widthSpec = View.MeasureSpec.makeMeasureSpec(480,
+				View.MeasureSpec.EXACTLY);
+		final int heightSpec = View.MeasureSpec.makeMeasureSpec(0,
+				View.MeasureSpec.UNSPECIFIED);
+
+		// Rows leaving the screen are reused for the rows entering it
+		final View[] recycled = new View[VISIBLE_ROWS + ROWS_PER_FRAME];
+		final Set<View> rows = new HashSet<View>();
+		final long[] frameTimes = new long[(N_ROWS + ROWS_PER_FRAME - 1)
+				/ ROWS_PER_FRAME];
+
+		int frame = 0;
+		for (int first = 0; first < N_ROWS; first += ROWS_PER_FRAME) {
+			final long start = System.nanoTime();
+			for (int position = first; position < Math.min(first
+					+ ROWS_PER_FRAME, N_ROWS); position++) {
+				final int slot = position % recycled.length;
+				final View row = binder.bind(position, recycled[slot]);
+				row.measure(widthSpec, heightSpec);
+				row.layout(0, 0, row.getMeasuredWidth(),
+						row.getMeasuredHeight());
+				recycled[slot] = row;
+				rows.add(row);
+			}
+			frameTimes[frame++] = System.nanoTime() - start;
+		}
+
+		long total = 0;
+		long max = 0;
+		int nSlow = 0;
+		for (final long t : frameTimes) {
+			total += t;
+			max = Math.max(max, t);
+			if (t > FRAME_BUDGET_NS) {
+				nSlow++;
+			}
+		}
+		Arrays.sort(frameTimes);
+		Log.i(TAG, name + ": " + frameTimes.length + " frames, mean "
+				+ (total / frameTimes.length / 1000) + " us, 90th percentile "
+				+ (frameTimes[frameTimes.length * 9 / 10] / 1000)
+				+ " us, max " + (max / 1000) + " us, " + nSlow
+				+ " frames over budget");
+		return rows;
+	}
+}
@@ -0,0 +1,86 @@
+package se.chalmers.doit.test.presentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import se.chalmers.doit.R;
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.presentation.activities.implementation.TaskListAdapter;
+import android.database.DataSetObserver;
+import android.graphics.Paint;
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * Test class for TaskListAdapter.
+ * 
+ * @author Marco Baxemyr
+ * 
+ */
+public class TaskListAdapterTest extends AndroidTestCase {
+
+	private TaskListAdapter adapter;
+	private int nChanges;
+
+	@Override
+	public void setUp() throws Exception {
+		adapter = new TaskListAdapter(getContext(), new ArrayList<ITask>());
+		adapter.registerDataSetObserver(new DataSetObserver() {
+			@Override
+			public void onChanged() {
+				nChanges++;
+			}
+		});
+	}
+
+	public void testReplaceAll() {
+		final ITask[] tasks = new ITask[100];
+		for (int i = 0; i < tasks.length; i++) {
+			tasks[i] = new Task("Task" + i, "", false);
+		}
+		adapter.replaceAll(Arrays.asList(tasks));
+		assertEquals(1, nChanges);
+		assertTrue(adapter.getCount() == 100);
+		assertTrue(adapter.getItem(99) == tasks[99]);
+
+		adapter.replaceAll(Arrays.asList(tasks[0]));
+		assertEquals(2, nChanges);
+		assertTrue(adapter.getCount() == 1);
+	}
+
+	public void testReplaceAllUnchanged() {
+		final ITask[] tasks = new ITask[] { new Task("Task1", "", false),
+				new Task("Task2", "", false) };
+		adapter.replaceAll(Arrays.asList(tasks));
+		assertEquals(1, nChanges);
+
+		// The same tasks in the same order are not redrawn
+		adapter.replaceAll(Arrays.asList(tasks));
+		assertEquals(1, nChanges);
+
+		// Another order is
+		adapter.replaceAll(Arrays.asList(new ITask[] { tasks[1], tasks[0] }));
+		assertEquals(2, nChanges);
+		assertTrue(adapter.getItem(0) == tasks[1]);
+	}
+
+	public void testGetViewRecyclesRow() {
+		adapter.replaceAll(Arrays.asList(new ITask[] {
+				new Task("Done", "Desc", true),
+				new Task("Todo", "Desc2", false) }));
+
+		final View row = adapter.getView(0, null, null);
+		final TextView topText = (TextView) row.findViewById(R.id.toptext);
+		assertEquals("Done", topText.getText().toString());
+		assertTrue((topText.getPaintFlags() & Paint.STRIKE_THRU_TEXT_FLAG) != 0);
+
+		// The row is reused and restyled for an uncompleted task
+		assertTrue(adapter.getView(1, row, null) == row);
+		assertEquals("Todo", topText.getText().toString());
+		assertEquals("Desc2", ((TextView) row.findViewById(R.id.bottomtext))
+				.getText().toString());
+		assertTrue((topText.getPaintFlags() & Paint.STRIKE_THRU_TEXT_FLAG) == 0);
+	}
+}
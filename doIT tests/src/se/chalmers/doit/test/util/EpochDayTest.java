@@ -0,0 +1,33 @@
+package se.chalmers.doit.test.util;
+
+import java.util.Date;
+
+import se.chalmers.doit.util.implementation.Constants;
+import se.chalmers.doit.util.implementation.EpochDay;
+import android.test.AndroidTestCase;
+
+/**
+ * Test class for EpochDay.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class EpochDayTest extends AndroidTestCase {
+
+	public void testGetDate() {
+		for (long day = -400; day < 20000; day += 7) {
+			final Date start = EpochDay.getDate(day);
+			assertTrue(EpochDay.getDay(start) == day);
+			// The start of the day is the first millisecond of it
+			assertTrue(EpochDay.getDay(new Date(start.getTime() - 1)) == day - 1);
+		}
+	}
+
+	public void testGetDay() {
+		final Date start = EpochDay.getDate(15000);
+		assertTrue(EpochDay.getDay(new Date(start.getTime()
+				+ Constants.MILLISECONDS_IN_A_DAY / 2)) == 15000);
+		assertTrue(EpochDay.getDay(new Date(start.getTime()
+				+ Constants.MILLISECONDS_IN_A_DAY + 1000)) == 15001);
+	}
+}
@@ -0,0 +1,126 @@
+package se.chalmers.doit.test.util;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.implementation.Priority;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.util.ISortedTaskList;
+import se.chalmers.doit.util.implementation.*;
+import android.test.AndroidTestCase;
+
+/**
+ * Test class for SortedTaskList.
+ * 
+ * @author Boel
+ * 
+ */
+public class SortedTaskListTest extends AndroidTestCase {
+
+	private SortingComparator comparator;
+	private Random random;
+
+	@Override
+	public void setUp() throws Exception {
+		comparator = new SortingComparator(new PriorityComparatorStrategy(
+				false), new NameComparatorStrategy(false), null);
+		random = new Random(7);
+	}
+
+	public void testSortedTaskList() {
+		final List<ITask> tasks = new ArrayList<ITask>();
+		for (int i = 0; i < 50; i++) {
+			tasks.add(_createTask(i));
+		}
+		final ISortedTaskList list = new SortedTaskList(comparator, tasks);
+
+		assertTrue(list.size() == tasks.size());
+		_assertSorted(list);
+		assertTrue(list.getTasks().containsAll(tasks));
+	}
+
+	public void testAdd() {
+		final ISortedTaskList list = new SortedTaskList(comparator,
+				new ArrayList<ITask>());
+		for (int i = 0; i < 200; i++) {
+			final ITask task = _createTask(i);
+			final int position = list.add(task);
+			assertSame(task, list.get(position));
+			_assertSorted(list);
+		}
+		assertTrue(list.size() == 200);
+
+		// A task is added after the tasks it is sorted together with
+		final ITask first = list.get(0);
+		final ITask copy = new Task(first, 1000);
+		final int position = list.add(copy);
+		assertTrue(position > 0);
+		assertTrue(comparator.compare(list.get(position - 1), copy) == 0);
+	}
+
+	public void testRemove() {
+		final List<ITask> tasks = new ArrayList<ITask>();
+		for (int i = 0; i < 200; i++) {
+			tasks.add(_createTask(i));
+		}
+		final ISortedTaskList list = new SortedTaskList(comparator, tasks);
+
+		Collections.shuffle(tasks, random);
+		for (final ITask task : tasks) {
+			final int position = list.remove(task);
+			assertTrue(position >= 0);
+			assertFalse(list.getTasks().contains(task));
+			_assertSorted(list);
+		}
+		assertTrue(list.size() == 0);
+		assertTrue(list.remove(tasks.get(0)) == -1);
+	}
+
+	public void testRemoveChangedTask() {
+		final List<ITask> tasks = new ArrayList<ITask>();
+		for (int i = 0; i < 20; i++) {
+			tasks.add(_createTask(i));
+		}
+		final ISortedTaskList list = new SortedTaskList(comparator, tasks);
+
+		// A version of a task with other sort keys is found by its ID
+		final ITask task = list.get(5);
+		final ITask changed = new Task(task.getID(), "changed", "",
+				new Priority((byte) 9), null, null, 0, !task.isCompleted());
+		assertTrue(list.remove(changed) == 5);
+		assertFalse(list.getTasks().contains(task));
+	}
+
+	public void testReplace() {
+		final List<ITask> tasks = new ArrayList<ITask>();
+		for (int i = 0; i < 100; i++) {
+			tasks.add(_createTask(i));
+		}
+		final ISortedTaskList list = new SortedTaskList(comparator, tasks);
+
+		// Editing and completing tasks keeps the list sorted like sorting
+		// all of it again would
+		for (int i = 0; i < 300; i++) {
+			final ITask oldTask = list.get(random.nextInt(list.size()));
+			final ITask newTask = random.nextBoolean() ? new Task(oldTask,
+					!oldTask.isCompleted()) : new Task(oldTask.getID(), "Task "
+					+ random.nextInt(100), "", new Priority((byte) random
+					.nextInt(4)), null, null, 0, oldTask.isCompleted());
+			assertTrue(list.remove(oldTask) >= 0);
+			list.add(newTask);
+			_assertSorted(list);
+		}
+		assertTrue(list.size() == 100);
+	}
+
+	private void _assertSorted(final ISortedTaskList list) {
+		for (int i = 1; i < list.size(); i++) {
+			assertTrue(comparator.compare(list.get(i - 1), list.get(i)) <= 0);
+		}
+	}
+
+	private ITask _createTask(final int id) {
+		return new Task(id, "Task " + random.nextInt(20), "", new Priority(
+				(byte) random.nextInt(4)), null, null, 0, random.nextInt(4) == 0);
+	}
+}
@@ -4,10 +4,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 
 import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.core.implementation.Priority;
 import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.util.IComparatorStrategy;
 import se.chalmers.doit.util.implementation.DueDateComparatorStrategy;
 import se.chalmers.doit.util.implementation.NameComparatorStrategy;
 import se.chalmers.doit.util.implementation.PriorityComparatorStrategy;
@@ -89,4 +91,62 @@ public class SortingComparatorTest extends AndroidTestCase {
 
 		assertTrue(value);
 	}
+
+	public void testSort() {
+		// Names differing only in case, missing due dates and equal keys
+		final String[] names = { "a", "A", "b", "B", "\u00e5", "\u00c5", "ab",
+				"" };
+		final Random random = new Random(42);
+		final List<ITask> tasks = new ArrayList<ITask>();
+		for (int i = 0; i < 500; i++) {
+			tasks.add(new Task(names[random.nextInt(names.length)], "",
+					new Priority((byte) random.nextInt(4)),
+					random.nextInt(4) == 0 ? null : new Date(random
+							.nextInt(10) * 1000), null, 0, random.nextBoolean()));
+		}
+
+		final IComparatorStrategy[] strategies = {
+				new NameComparatorStrategy(false),
+				new NameComparatorStrategy(true),
+				new PriorityComparatorStrategy(false),
+				new PriorityComparatorStrategy(true),
+				new DueDateComparatorStrategy(false),
+				new DueDateComparatorStrategy(true), null };
+
+		// sort() is stable, so it must give exactly the same order as
+		// sorting with compare()
+		for (final IComparatorStrategy primary : strategies) {
+			for (final IComparatorStrategy secondary : strategies) {
+				final SortingComparator sc = new SortingComparator(primary,
+						secondary, strategies[(random.nextInt(strategies.length))]);
+				Collections.shuffle(tasks, random);
+				final List<ITask> expected = new ArrayList<ITask>(tasks);
+				Collections.sort(expected, sc);
+				final List<ITask> actual = new ArrayList<ITask>(tasks);
+				sc.sort(actual);
+				for (int i = 0; i < expected.size(); i++) {
+					assertSame(expected.get(i), actual.get(i));
+				}
+			}
+		}
+	}
+
+	public void testSortSmallLists() {
+		final SortingComparator sc = new SortingComparator(
+				new NameComparatorStrategy(false), null, null);
+		final List<ITask> list = new ArrayList<ITask>();
+		sc.sort(list);
+		assertTrue(list.isEmpty());
+
+		final ITask b = new Task("b", "", false);
+		list.add(b);
+		sc.sort(list);
+		assertSame(b, list.get(0));
+
+		final ITask a = new Task("A", "", false);
+		list.add(a);
+		sc.sort(list);
+		assertSame(a, list.get(0));
+		assertSame(b, list.get(1));
+	}
 }
\ No newline at end of file
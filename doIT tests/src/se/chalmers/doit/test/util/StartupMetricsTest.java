@@ -0,0 +1,46 @@
+package se.chalmers.doit.test.util;
+
+import se.chalmers.doit.util.implementation.StartupMetrics;
+import android.test.AndroidTestCase;
+
+/**
+ * Test class for StartupMetrics.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class StartupMetricsTest extends AndroidTestCase {
+
+	public void testNotReached() {
+		final StartupMetrics metrics = new StartupMetrics(100);
+		assertTrue(metrics.getTimeToFirstFrame() == StartupMetrics.NOT_REACHED);
+		assertTrue(metrics.getTimeToData() == StartupMetrics.NOT_REACHED);
+	}
+
+	public void testMarkFirstFrame() {
+		final StartupMetrics metrics = new StartupMetrics(100);
+		assertTrue(metrics.markFirstFrame(140));
+		assertTrue(metrics.getTimeToFirstFrame() == 40);
+		assertTrue(metrics.getTimeToData() == StartupMetrics.NOT_REACHED);
+
+		// Later frames do not change the time to the first frame
+		assertFalse(metrics.markFirstFrame(500));
+		assertTrue(metrics.getTimeToFirstFrame() == 40);
+	}
+
+	public void testMarkDataLoaded() {
+		final StartupMetrics metrics = new StartupMetrics(100);
+		assertTrue(metrics.markDataLoaded(1100));
+		assertTrue(metrics.getTimeToData() == 1000);
+		assertFalse(metrics.markDataLoaded(2000));
+		assertTrue(metrics.getTimeToData() == 1000);
+	}
+
+	public void testDataBeforeFirstFrame() {
+		final StartupMetrics metrics = new StartupMetrics(0);
+		assertTrue(metrics.markDataLoaded(10));
+		assertTrue(metrics.markFirstFrame(30));
+		assertTrue(metrics.getTimeToData() == 10);
+		assertTrue(metrics.getTimeToFirstFrame() == 30);
+	}
+}
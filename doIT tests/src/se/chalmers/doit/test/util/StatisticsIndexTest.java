@@ -0,0 +1,108 @@
+package se.chalmers.doit.test.util;
+
+import java.util.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.core.implementation.StatisticalData;
+import se.chalmers.doit.util.implementation.EpochDay;
+import se.chalmers.doit.util.implementation.StatisticsIndex;
+import android.test.AndroidTestCase;
+
+/**
+ * Test class for StatisticsIndex.
+ * 
+ * @author Boel
+ * 
+ */
+public class StatisticsIndexTest extends AndroidTestCase {
+
+	public void testEmpty() {
+		final IStatisticalData totals = new StatisticsIndex().getTotals(
+				Long.MIN_VALUE, Long.MAX_VALUE);
+		assertTrue(totals.getCreatedTasks() == 0);
+		assertTrue(totals.getOverdueTasks() == 0);
+	}
+
+	public void testGetTotals() {
+		final Collection<IStatisticalData> data = new ArrayList<IStatisticalData>();
+		data.add(_getData(10, 1));
+		data.add(_getData(12, 2));
+		data.add(_getData(10, 4));
+		data.add(_getData(20, 8));
+		final StatisticsIndex index = new StatisticsIndex(data);
+
+		assertTrue(index.getTotals(Long.MIN_VALUE, Long.MAX_VALUE)
+				.getCreatedTasks() == 15);
+		assertTrue(index.getTotals(10, 10).getCreatedTasks() == 5);
+		assertTrue(index.getTotals(11, 19).getCreatedTasks() == 2);
+		assertTrue(index.getTotals(13, 19).getCreatedTasks() == 0);
+		assertTrue(index.getTotals(12, Long.MAX_VALUE).getCreatedTasks() == 10);
+		assertTrue(index.getTotals(20, 10).getCreatedTasks() == 0);
+	}
+
+	public void testSnapshot() {
+		final StatisticsIndex index = new StatisticsIndex();
+		index.add(5, _getData(5, 1));
+		final IStatisticalData totals = index.getTotals(0, 10);
+		index.add(5, _getData(5, 1));
+		assertTrue(totals.getCreatedTasks() == 1);
+		assertTrue(index.getTotals(0, 10).getCreatedTasks() == 2);
+	}
+
+	public void testAddMatchesSums() {
+		// Days are added in random order, both new days and days with counts
+		final Random random = new Random(3);
+		final StatisticsIndex index = new StatisticsIndex();
+		final int[][] counts = new int[200][6];
+		for (int n = 0; n < 2000; n++) {
+			final int day = random.nextInt(counts.length);
+			final StatisticalData d = new StatisticalData(new Date());
+			d.addCreatedLists(random.nextInt(3));
+			d.addCreatedTasks(random.nextInt(3));
+			d.addDeletedLists(random.nextInt(3));
+			d.addDeletedTasks(random.nextInt(3));
+			d.addFinishedTasks(random.nextInt(3));
+			d.addOverdueTasks(random.nextInt(3));
+			index.add(day, d);
+			counts[day][0] += d.getCreatedLists();
+			counts[day][1] += d.getCreatedTasks();
+			counts[day][2] += d.getDeletedLists();
+			counts[day][3] += d.getDeletedTasks();
+			counts[day][4] += d.getFinishedTasks();
+			counts[day][5] += d.getOverdueTasks();
+
+			final int first = random.nextInt(counts.length) - 5;
+			final int last = first + random.nextInt(50);
+			final int[] expected = new int[6];
+			for (int i = Math.max(first, 0); i <= last && i < counts.length; i++) {
+				for (int c = 0; c < expected.length; c++) {
+					expected[c] += counts[i][c];
+				}
+			}
+			final IStatisticalData totals = index.getTotals(first, last);
+			assertTrue(totals.getCreatedLists() == expected[0]);
+			assertTrue(totals.getCreatedTasks() == expected[1]);
+			assertTrue(totals.getDeletedLists() == expected[2]);
+			assertTrue(totals.getDeletedTasks() == expected[3]);
+			assertTrue(totals.getFinishedTasks() == expected[4]);
+			assertTrue(totals.getOverdueTasks() == expected[5]);
+		}
+	}
+
+	public void testAppendDays() {
+		// Days after all others are the common case
+		final StatisticsIndex index = new StatisticsIndex();
+		for (int day = 0; day < 1000; day++) {
+			index.add(day, _getData(day, day));
+		}
+		assertTrue(index.getTotals(0, 999).getCreatedTasks() == 999 * 1000 / 2);
+		assertTrue(index.getTotals(990, 999).getCreatedTasks() == 9945);
+		assertTrue(index.getTotals(1, 1).getCreatedTasks() == 1);
+	}
+
+	private IStatisticalData _getData(final long day, final int created) {
+		final StatisticalData ret = new StatisticalData(EpochDay.getDate(day));
+		ret.addCreatedTasks(created);
+		return ret;
+	}
+}
@@ -0,0 +1,115 @@
+package se.chalmers.doit.test.util;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.core.implementation.Priority;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.implementation.*;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Benchmark comparing sorting with precomputed sort keys, as
+ * TaskListUtility.sortTasks() does, with sorting by SortingComparator.compare()
+ * the way sortTasks() used to. Each sort is run a few times to warm up before
+ * it is timed, and the median of the timed runs is written to the log, as it
+ * is less affected by garbage collection than the mean.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class TaskSortBenchmark extends AndroidTestCase {
+
+	private static final int MEASURED_RUNS = 10;
+	private static final String TAG = "TaskSortBenchmark";
+	private static final int WARMUP_RUNS = 3;
+
+	private IComparatorStrategy primary;
+	private IComparatorStrategy secondary;
+	private IComparatorStrategy tertiary;
+
+	@Override
+	public void setUp() throws Exception {
+		primary = new NameComparatorStrategy(false);
+		secondary = new DueDateComparatorStrategy(false);
+		tertiary = new PriorityComparatorStrategy(false);
+	}
+
+	public void testSort1k() {
+		_benchmark(1000);
+	}
+
+	public void testSort10k() {
+		_benchmark(10000);
+	}
+
+	private void _benchmark(final int nTasks) {
+		final List<ITask> tasks = _createTasks(nTasks);
+
+		final long keyed = _timeKeyedSort(tasks);
+		final long compared = _timeComparatorSort(tasks);
+
+		Log.i(TAG, nTasks + " tasks: sort keys " + keyed / 1000
+				+ " us, comparator " + compared / 1000 + " us (median of "
+				+ MEASURED_RUNS + " runs)");
+		assertTrue(keyed < compared);
+	}
+
+	private List<ITask> _createTasks(final int nTasks) {
+		final Random random = new Random(nTasks);
+		final List<ITask> tasks = new ArrayList<ITask>(nTasks);
+		for (int i = 0; i < nTasks; i++) {
+			// Few distinct names, so that the later levels are used as well
+			tasks.add(new Task((i % 2 == 0 ? "Task " : "task ")
+					+ random.nextInt(nTasks / 10), "", new Priority(
+					(byte) random.nextInt(4)), random.nextInt(5) == 0 ? null
+					: new Date(random.nextInt(1000) * 86400000L), null, 0,
+					random.nextInt(3) == 0));
+		}
+		return tasks;
+	}
+
+	private long _median(final long[] times) {
+		Arrays.sort(times);
+		return times[times.length / 2];
+	}
+
+	/**
+	 * Returns the median time in nanoseconds of sorting copies of the tasks
+	 * with Collections.sort() and SortingComparator.
+	 */
+	private long _timeComparatorSort(final List<ITask> tasks) {
+		final Comparator<ITask> comparator = new SortingComparator(primary,
+				secondary, tertiary);
+		final long[] times = new long[MEASURED_RUNS];
+		for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+			final List<ITask> list = new ArrayList<ITask>(tasks);
+			final long start = System.nanoTime();
+			Collections.sort(list, comparator);
+			if (i >= WARMUP_RUNS) {
+				times[i - WARMUP_RUNS] = System.nanoTime() - start;
+			}
+		}
+		return _median(times);
+	}
+
+	/**
+	 * Returns the median time in nanoseconds of sorting copies of the tasks
+	 * with TaskListUtility.
+	 */
+	private long _timeKeyedSort(final List<ITask> tasks) {
+		final TaskListUtility utility = new TaskListUtility();
+		final long[] times = new long[MEASURED_RUNS];
+		for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+			final List<ITask> list = new ArrayList<ITask>(tasks);
+			final long start = System.nanoTime();
+			utility.sortTasks(list, primary, secondary, tertiary);
+			if (i >= WARMUP_RUNS) {
+				times[i - WARMUP_RUNS] = System.nanoTime() - start;
+			}
+		}
+		return _median(times);
+	}
+}
@@ -31,6 +31,15 @@ public interface ITask {
 	 */
 	public Date getDueDate();
 
+	/**
+	 * Returns the represented task's persistent ID. Tasks with the same ID are
+	 * versions of the same stored task and are equal to each other.
+	 * 
+	 * @return the ID of the task, or Constants.ID_UNSAVED if it has not been
+	 *         saved
+	 */
+	public long getID();
+
 	/**
 	 * Returns the represented task's name.
 	 * 
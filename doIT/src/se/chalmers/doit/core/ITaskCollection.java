@@ -9,6 +9,15 @@ import java.util.Collection;
  * 
  */
 public interface ITaskCollection {
+	/**
+	 * Returns the list's persistent ID. Lists with the same ID are versions of
+	 * the same stored list and are equal to each other.
+	 * 
+	 * @return the ID of the list, or Constants.ID_UNSAVED if it has not been
+	 *         saved
+	 */
+	public long getID();
+
 	/**
 	 * Returns the list's name.
 	 * 
@@ -16,10 +25,26 @@ public interface ITaskCollection {
 	 */
 	public String getName();
 
+	/**
+	 * Returns a read-only view of the collection's ITasks. Unlike getTasks(),
+	 * the tasks are not copied, so this should be preferred when the tasks are
+	 * only read.
+	 * 
+	 * @return unmodifiable Collection of ITasks
+	 */
+	public Collection<ITask> getTaskView();
+
 	/**
 	 * Returns a list of the collection's ITasks.
 	 * 
 	 * @return Collection of ITasks
 	 */
 	public Collection<ITask> getTasks();
+
+	/**
+	 * Returns the number of ITasks in the collection, without copying them.
+	 * 
+	 * @return the number of ITasks
+	 */
+	public int size();
 }
\ No newline at end of file
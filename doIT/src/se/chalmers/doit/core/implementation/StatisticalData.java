@@ -3,6 +3,7 @@ package se.chalmers.doit.core.implementation;
 import java.util.Date;
 
 import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.util.implementation.EpochDay;
 
 public class StatisticalData implements IStatisticalData {
 
@@ -94,17 +95,7 @@ public class StatisticalData implements IStatisticalData {
 
 	@Override
 	public boolean sameDay(final Date otherDate) {
-		boolean ret = false;
-
-		if (date.getYear() == otherDate.getYear()
-				&& date.getMonth() == otherDate.getMonth()
-				&& date.getDate() == otherDate.getDate()) {
-
-			ret = true;
-
-		}
-
-		return ret;
+		return EpochDay.getDay(date) == EpochDay.getDay(otherDate);
 	}
 
 }
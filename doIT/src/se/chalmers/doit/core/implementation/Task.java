@@ -53,6 +53,7 @@ public final class Task implements ITask {
 	final private int customPosition;
 	final private String description;
 	final private Date dueDate;
+	final private long id;
 	final private boolean isCompleted;
 	final private String name;
 	final private IPriority priority;
@@ -60,6 +61,11 @@ public final class Task implements ITask {
 	final private Date reminderDate;
 
 	public Task(final ITask task) {
+		this(task, task.getID());
+	}
+
+	public Task(final ITask task, final boolean completed) {
+		this.id = task.getID();
 		this.name = task.getName();
 		this.description = task.getDescription();
 		this.priority = task.getPriority();
@@ -68,10 +74,15 @@ public final class Task implements ITask {
 		this.reminderDate = task.getReminderDate() == null ? null : new Date(
 				task.getReminderDate().getTime());
 		this.customPosition = task.getCustomPosition();
-		this.isCompleted = task.isCompleted();
+		this.isCompleted = completed;
 	}
 
-	public Task(final ITask task, final boolean completed) {
+	/**
+	 * Creates a copy of a task carrying the provided ID, used when the task
+	 * has been saved.
+	 */
+	public Task(final ITask task, final long id) {
+		this.id = id;
 		this.name = task.getName();
 		this.description = task.getDescription();
 		this.priority = task.getPriority();
@@ -80,11 +91,27 @@ public final class Task implements ITask {
 		this.reminderDate = task.getReminderDate() == null ? null : new Date(
 				task.getReminderDate().getTime());
 		this.customPosition = task.getCustomPosition();
-		this.isCompleted = completed;
+		this.isCompleted = task.isCompleted();
+	}
+
+	public Task(final long id, final String name, final String description,
+			final IPriority priority, final Date dueDate,
+			final Date reminderDate, final int customPosition,
+			final boolean isCompleted) {
+		this.id = id;
+		this.name = name;
+		this.description = description;
+		this.priority = priority;
+		this.dueDate = dueDate == null ? null : new Date(dueDate.getTime());
+		this.reminderDate = reminderDate == null ? null : new Date(
+				reminderDate.getTime());
+		this.customPosition = customPosition;
+		this.isCompleted = isCompleted;
 	}
 
 	public Task(final String name, final String description,
 			final boolean completed) {
+		this.id = Constants.ID_UNSAVED;
 		this.name = name;
 		this.description = description;
 		this.priority = new Priority(Constants.PRIORITY_DEFAULT);
@@ -98,14 +125,23 @@ public final class Task implements ITask {
 			final IPriority priority, final Date dueDate,
 			final Date reminderDate, final int customPosition,
 			final boolean isCompleted) {
-		this.name = name;
-		this.description = description;
-		this.priority = priority;
-		this.dueDate = dueDate == null ? null : new Date(dueDate.getTime());
-		this.reminderDate = reminderDate == null ? null : new Date(
-				reminderDate.getTime());
-		this.customPosition = customPosition;
-		this.isCompleted = isCompleted;
+		this(Constants.ID_UNSAVED, name, description, priority, dueDate,
+				reminderDate, customPosition, isCompleted);
+	}
+
+	/**
+	 * Tasks are equal if they have the same ID. A task that has not been saved
+	 * is only equal to itself.
+	 */
+	@Override
+	public boolean equals(final Object o) {
+		if (id == Constants.ID_UNSAVED) {
+			return this == o;
+		}
+		if (o instanceof ITask) {
+			return ((ITask) o).getID() == id;
+		}
+		return false;
 	}
 
 	@Override
@@ -123,6 +159,11 @@ public final class Task implements ITask {
 		return dueDate;
 	}
 
+	@Override
+	public long getID() {
+		return id;
+	}
+
 	@Override
 	public String getName() {
 		return name;
@@ -138,6 +179,14 @@ public final class Task implements ITask {
 		return reminderDate;
 	}
 
+	@Override
+	public int hashCode() {
+		if (id == Constants.ID_UNSAVED) {
+			return System.identityHashCode(this);
+		}
+		return (int) (id ^ (id >>> 32));
+	}
+
 	@Override
 	public boolean isCompleted() {
 		return isCompleted;
@@ -3,42 +3,63 @@ package se.chalmers.doit.core.implementation;
 import java.util.*;
 
 import se.chalmers.doit.core.*;
+import se.chalmers.doit.util.implementation.Constants;
 
 public class TaskCollection implements ITaskCollection {
 
+	private final long id;
 	private String name;
-	private Collection<ITask> taskCollection;
+	private final Collection<ITask> taskCollection;
+	// Read-only view handed out by getTaskView()
+	private final Collection<ITask> taskView;
 
-	public TaskCollection(final String name) {
+	public TaskCollection(final long id, final String name,
+			final Collection<ITask> taskCollection) {
+		this.id = id;
 		this.name = name;
-		this.taskCollection = new ArrayList<ITask>();
+		this.taskCollection = new ArrayList<ITask>(taskCollection);
+		this.taskView = Collections.unmodifiableCollection(this.taskCollection);
+	}
+
+	public TaskCollection(final String name) {
+		this(Constants.ID_UNSAVED, name, new ArrayList<ITask>());
 	}
 
 	public TaskCollection(final String name,
 			final Collection<ITask> taskCollection) {
-		this(name);
-		this.taskCollection = new ArrayList<ITask>(taskCollection);
+		this(Constants.ID_UNSAVED, name, taskCollection);
 	}
 
+	/**
+	 * Lists are equal if they have the same ID. A list that has not been saved
+	 * is only equal to itself.
+	 */
 	@Override
 	public boolean equals(final Object o) {
+		if (id == Constants.ID_UNSAVED) {
+			return this == o;
+		}
 		if (o instanceof ITaskCollection) {
-			ITaskCollection collection = (ITaskCollection) o;
-
-			if (collection.getName().equals(this.name)
-					&& collection.getTasks().size() == this.taskCollection
-							.size()) {
-				return true;
-			}
+			return ((ITaskCollection) o).getID() == id;
 		}
 		return false;
 	}
 
+	@Override
+	public long getID() {
+		return id;
+	}
+
 	@Override
 	public String getName() {
 		return name;
 	}
 
+	@Override
+	public Collection<ITask> getTaskView() {
+		return taskView;
+	}
+
 	@Override
 	public Collection<ITask> getTasks() {
 		return new ArrayList<ITask>(taskCollection);
@@ -46,9 +67,14 @@ public class TaskCollection implements ITaskCollection {
 
 	@Override
 	public int hashCode() {
-		int hash = 101;
-		hash = hash * 31 + name.hashCode();
-		hash = hash * 19 + taskCollection.hashCode();
-		return hash;
+		if (id == Constants.ID_UNSAVED) {
+			return System.identityHashCode(this);
+		}
+		return (int) (id ^ (id >>> 32));
+	}
+
+	@Override
+	public int size() {
+		return taskCollection.size();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package se.chalmers.doit.data.storage;
+
+/**
+ * Interface for recording the changes made to a data storage, one event per
+ * changed task or list.
+ * 
+ * @author Boel
+ * 
+ */
+public interface IChangeRecorder {
+
+	/**
+	 * Records a change.
+	 * 
+	 * @param type
+	 *            the type of the change, one of the Constants.EVENT_* types
+	 * @param id
+	 *            the ID of the changed task or list
+	 */
+	public void recordChange(int type, long id);
+
+}
@@ -1,9 +1,10 @@
 package se.chalmers.doit.data.storage;
 
+import java.util.Collection;
 import java.util.Map;
 
 import se.chalmers.doit.core.*;
-import android.database.sqlite.SQLiteDatabase;
+import se.chalmers.doit.util.IComparatorStrategy;
 
 /**
  * Interface for managing tasks through an Android SQLite database
@@ -28,8 +29,8 @@ public interface IDataSQL {
 	 * 
 	 * @param lists
 	 *            An array containing the ITaskCollections to add
-	 * @return the id of each corresponding list. -1 for when the list was not
-	 *         added
+	 * @return the id of each corresponding list, in the same order as the
+	 *         provided lists. -1 for when the list was not added
 	 */
 	public int[] addLists(ITaskCollection[] lists);
 
@@ -40,7 +41,7 @@ public interface IDataSQL {
 	 *            The ITask to be added
 	 * @param listID
 	 *            The id of the list to which the ITask should be added
-	 * @return id of the added task
+	 * @return id of the added task. -1 if task was not added
 	 */
 	public int addTask(ITask task, int listID);
 
@@ -51,8 +52,8 @@ public interface IDataSQL {
 	 *            an array of ITasks to be added
 	 * @param listID
 	 *            the list to which the ITasks are added
-	 * @return the id of each corresponding task. -1 for when the task was not
-	 *         added
+	 * @return the id of each corresponding task, in the same order as the
+	 *         provided tasks. -1 for when the task was not added
 	 */
 	public int[] addTasks(ITask[] tasks, int listID);
 
@@ -86,7 +87,8 @@ public interface IDataSQL {
 
 	/**
 	 * Returns a Map of all the existing lists, mapping them to their
-	 * corresponding integer-based ID
+	 * corresponding integer-based ID. The returned lists carry their ID and
+	 * contain no tasks.
 	 * 
 	 * @return a map containing all existing ITaskCollections with their
 	 *         corresponding ID
@@ -95,12 +97,83 @@ public interface IDataSQL {
 
 	/**
 	 * Return a Map of all the existing tasks, mapping them to their
-	 * corresponding integer-based ID
+	 * corresponding integer-based ID. The returned tasks carry their ID.
 	 * 
 	 * @return a map containing all existing ITasks with their corresponding ID
 	 */
 	public Map<ITask, Integer> getAllTasks();
 
+	/**
+	 * Returns all existing tasks grouped by the ID of the list they are
+	 * connected to, read in a single pass over the task table. The returned
+	 * tasks carry their ID.
+	 * 
+	 * @return a map from list ID to the ITasks connected to that list, ordered
+	 *         by task ID
+	 */
+	public Map<Integer, Collection<ITask>> getAllTasksByList();
+
+	/**
+	 * Returns the generation of the lists and tasks, which is increased by
+	 * every change made to them. Data read at one generation is still up to
+	 * date as long as the generation is the same.
+	 * 
+	 * @return the current generation
+	 */
+	public long getGeneration();
+
+	/**
+	 * Returns the highest ID any list has had, also lists that have been
+	 * removed, so that a higher ID has not been used before.
+	 * 
+	 * @return the highest list ID, or 0 if no list has been added
+	 */
+	public int getLastListID();
+
+	/**
+	 * Returns the highest ID any task has had, also tasks that have been
+	 * removed, so that a higher ID has not been used before.
+	 * 
+	 * @return the highest task ID, or 0 if no task has been added
+	 */
+	public int getLastTaskID();
+
+	/**
+	 * Returns the ID of the list a task is connected to
+	 * 
+	 * @param taskID
+	 *            The ID of the task
+	 * @return the ID of the list, or -1 if there is no task with that ID
+	 */
+	public int getListID(int taskID);
+
+	/**
+	 * Returns the number of tasks connected to each list, counted without
+	 * reading the tasks
+	 * 
+	 * @return a map from list ID to the number of tasks connected to that
+	 *         list. Lists without tasks are left out
+	 */
+	public Map<Integer, Integer> getTaskCounts();
+
+	/**
+	 * Returns a cursor over the tasks connected to the provided list, sorted
+	 * by the database. Tasks are only read when they are asked for.
+	 * 
+	 * @param listID
+	 *            The ID of the list
+	 * @param primary
+	 *            The primary sorting criteria, or null
+	 * @param secondary
+	 *            The secondary sorting criteria, or null
+	 * @param tertiary
+	 *            The tertiary sorting criteria, or null
+	 * @return an ITaskCursor over the tasks, sorted like SortingComparator
+	 *         sorts them
+	 */
+	public ITaskCursor getTaskCursor(int listID, IComparatorStrategy primary,
+			IComparatorStrategy secondary, IComparatorStrategy tertiary);
+
 	/**
 	 * Returns the IDs of all tasks connected to the provided list
 	 * 
@@ -109,6 +182,16 @@ public interface IDataSQL {
 	 */
 	public int[] getTaskIDs(int listID);
 
+	/**
+	 * Returns the tasks connected to the provided list. The returned tasks
+	 * carry their ID.
+	 * 
+	 * @param listID
+	 *            The ID of the list
+	 * @return the ITasks connected to the list, ordered by task ID
+	 */
+	public Collection<ITask> getTasks(int listID);
+
 	/**
 	 * Moves a task from one list to another list
 	 * 
@@ -120,6 +203,30 @@ public interface IDataSQL {
 	 */
 	public boolean moveTask(int taskID, int listID);
 
+	/**
+	 * Adds a list with a given ID to the SQLite database, replacing any list
+	 * with that ID
+	 * 
+	 * @param listID
+	 *            The ID to store the list under
+	 * @param list
+	 *            The ITaskCollection to add. Its tasks are not added
+	 */
+	public void putList(int listID, ITaskCollection list);
+
+	/**
+	 * Adds a task with a given ID to a list in the SQLite database, replacing
+	 * any task with that ID
+	 * 
+	 * @param taskID
+	 *            The ID to store the task under
+	 * @param task
+	 *            The ITask to add
+	 * @param listID
+	 *            The id of the list to which the ITask should be added
+	 */
+	public void putTask(int taskID, ITask task, int listID);
+
 	/**
 	 * Removes a list from the SQLite database
 	 * 
@@ -157,12 +264,12 @@ public interface IDataSQL {
 	public boolean[] removeTasks(int[] taskIDs);
 
 	/**
-	 * Sets the database to use for storage. Tables will be created if they
-	 * don't exist in the database.
+	 * Runs a Runnable inside a single database transaction. The changes it
+	 * makes are only kept if it returns normally.
 	 * 
-	 * @param database
-	 *            database to add
+	 * @param runnable
+	 *            The Runnable making the changes
 	 */
-	public void setDatabase(SQLiteDatabase database);
+	public void runInTransaction(Runnable runnable);
 
 }
@@ -3,6 +3,7 @@ package se.chalmers.doit.data.storage;
 import java.util.Collection;
 
 import se.chalmers.doit.core.*;
+import se.chalmers.doit.util.IComparatorStrategy;
 
 /**
  * An interface handling the storage of tasks and lists between the application
@@ -99,6 +100,44 @@ public interface IDataStorage {
 	 */
 	public Collection<ITask> getAllTasks();
 
+	/**
+	 * Returns the stored task with the provided ID
+	 * 
+	 * @param taskID
+	 *            The ID of the task
+	 * @return the ITask with the ID, or null if there is no such task
+	 */
+	public ITask getTask(long taskID);
+
+	/**
+	 * Returns a cursor over the tasks in a list, sorted by the provided
+	 * strategies. Tasks are only read when they are asked for, so opening a
+	 * cursor does not copy the list.
+	 * 
+	 * @param collection
+	 *            The ITaskCollection whose tasks to return
+	 * @param primary
+	 *            The primary sorting criteria, or null
+	 * @param secondary
+	 *            The secondary sorting criteria, or null
+	 * @param tertiary
+	 *            The tertiary sorting criteria, or null
+	 * @return an ITaskCursor over the tasks, or null if the list does not
+	 *         exist
+	 */
+	public ITaskCursor getTaskCursor(ITaskCollection collection,
+			IComparatorStrategy primary, IComparatorStrategy secondary,
+			IComparatorStrategy tertiary);
+
+	/**
+	 * Returns the version of the stored data. The version is increased every
+	 * time a list or a task is changed, so a view showing the data only has
+	 * to be updated when the version differs from the one it was built from.
+	 * 
+	 * @return the current version of the data
+	 */
+	public long getVersion();
+
 	/**
 	 * Moves a task from one list to another list
 	 * 
@@ -145,4 +184,15 @@ public interface IDataStorage {
 	 * @return amount of removed tasks
 	 */
 	public int removeTasks(Collection<ITask> listOfTasksToRemove);
+
+	/**
+	 * Sets where the changes made to the storage are recorded. Each change is
+	 * recorded with the ID of every task and list it affects, after it has
+	 * been made.
+	 * 
+	 * @param recorder
+	 *            the IChangeRecorder to record changes with, or null to not
+	 *            record them
+	 */
+	public void setChangeRecorder(IChangeRecorder recorder);
 }
@@ -18,6 +18,12 @@ public interface IStatisticsDataStorage {
 	 */
 	public void clearData();
 
+	/**
+	 * Writes any statistics that are held in memory to the data storage, and
+	 * returns once they have been written
+	 */
+	public void flush();
+
 	/**
 	 * Returns all statistics data as a collection of IStatisticalData
 	 * 
@@ -25,6 +31,20 @@ public interface IStatisticsDataStorage {
 	 */
 	public Collection<IStatisticalData> getStatisticsData();
 
+	/**
+	 * Returns the statistics data of a range of days as a collection of
+	 * IStatisticalData, one for each day with any statistics
+	 * 
+	 * @param firstDay
+	 *            The first epoch day to return statistics for, as returned by
+	 *            EpochDay.getDay()
+	 * @param lastDay
+	 *            The last epoch day to return statistics for
+	 * @return a Collection of IStatisticalData
+	 */
+	public Collection<IStatisticalData> getStatisticsData(long firstDay,
+			long lastDay);
+
 	/**
 	 * Reports that a number of lists have been created on a given date to the
 	 * data storage
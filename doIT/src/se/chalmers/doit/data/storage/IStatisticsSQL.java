@@ -0,0 +1,54 @@
+package se.chalmers.doit.data.storage;
+
+import java.util.Collection;
+
+import se.chalmers.doit.core.IStatisticalData;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Interface for managing statistics through an Android SQLite database. The
+ * statistics are stored per day, keyed by epoch day.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public interface IStatisticsSQL {
+
+	/**
+	 * Adds statistics to the statistics stored for their days. All
+	 * statistics are added in one transaction.
+	 * 
+	 * @param data
+	 *            the statistics to add, each counted on the epoch day of its
+	 *            date
+	 */
+	public void addStatistics(Collection<IStatisticalData> data);
+
+	/**
+	 * Removes all statistics from the SQLite database
+	 */
+	public void clearStatistics();
+
+	/**
+	 * Returns the statistics stored for a range of days. Days without any
+	 * statistics are left out.
+	 * 
+	 * @param firstDay
+	 *            the first epoch day to return statistics for
+	 * @param lastDay
+	 *            the last epoch day to return statistics for
+	 * @return the statistics of each day in the range, in day order, with the
+	 *         start of the day as date
+	 */
+	public Collection<IStatisticalData> getStatistics(long firstDay,
+			long lastDay);
+
+	/**
+	 * Sets the database to use for storage. The statistics table will be
+	 * created if it doesn't exist in the database.
+	 * 
+	 * @param database
+	 *            database to add
+	 */
+	public void setDatabase(SQLiteDatabase database);
+}
@@ -0,0 +1,40 @@
+package se.chalmers.doit.data.storage;
+
+import se.chalmers.doit.core.ITask;
+
+/**
+ * Read-only, sorted view of the tasks in a list that reads tasks on demand
+ * instead of copying all of them up front. A cursor must be closed when it is
+ * no longer used.
+ * 
+ * @author Boel
+ * 
+ */
+public interface ITaskCursor {
+
+	/**
+	 * Releases the resources held by the cursor. The cursor can not be used
+	 * after it has been closed.
+	 */
+	public void close();
+
+	/**
+	 * Returns the number of tasks in the cursor
+	 * 
+	 * @return the number of tasks
+	 */
+	public int getCount();
+
+	/**
+	 * Returns the task at the provided position. The returned task carries its
+	 * ID.
+	 * 
+	 * @param position
+	 *            the position of the task, from 0 to getCount() - 1
+	 * @return the ITask at the position
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no task at the position
+	 */
+	public ITask getTask(int position) throws IndexOutOfBoundsException;
+
+}
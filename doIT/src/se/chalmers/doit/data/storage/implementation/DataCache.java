@@ -3,22 +3,167 @@ package se.chalmers.doit.data.storage.implementation;
 import java.util.*;
 
 import se.chalmers.doit.core.*;
-import se.chalmers.doit.core.implementation.TaskCollection;
-import se.chalmers.doit.data.storage.IDataStorage;
+import se.chalmers.doit.core.implementation.Task;
+import se.chalmers.doit.data.storage.*;
+import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.implementation.*;
 
 /**
  * Class storing lists and tasks temporarily as a cache.
  * 
+ * Lists are indexed by name and tasks by the list containing them, so that
+ * finding a list or a task does not require scanning the cache. The tasks of
+ * a cached list are changed in place, so adding, editing, moving or removing a
+ * task does not copy its list. The lists handed out are the cached lists, and
+ * show later changes to their tasks.
+ * 
  * @author Kaufmann
  */
 
 public class DataCache implements IDataStorage {
 
-	private final Collection<ITaskCollection> lists = new ArrayList<ITaskCollection>();
+	/**
+	 * A cached list whose tasks are changed in place. Each task is kept in a
+	 * slot, so that a task is found, replaced or removed without scanning the
+	 * list, and an edited task keeps its position.
+	 */
+	private static final class CachedList implements ITaskCollection {
+
+		private long id;
+		private String name;
+		private long nextSlot;
+		// The list as it was added, handed out until its tasks change. A list
+		// that has not been saved is only equal to itself
+		ITaskCollection original;
+		// Maps each task to its slot
+		private final Map<ITask, Long> slots = new HashMap<ITask, Long>();
+		// Maps each slot to its task, in the order the tasks were added
+		private final Map<Long, ITask> tasks = new LinkedHashMap<Long, ITask>();
+		private final Collection<ITask> taskView = Collections
+				.unmodifiableCollection(tasks.values());
+
+		CachedList(final ITaskCollection list) {
+			set(list);
+		}
+
+		void add(final ITask task) {
+			Long slot = Long.valueOf(nextSlot++);
+			slots.put(task, slot);
+			tasks.put(slot, task);
+			original = null;
+		}
+
+		/**
+		 * Lists are equal if they have the same ID. A list that has not been
+		 * saved is only equal to itself.
+		 */
+		@Override
+		public boolean equals(final Object o) {
+			if (id == Constants.ID_UNSAVED) {
+				return this == o;
+			}
+			if (o instanceof ITaskCollection) {
+				return ((ITaskCollection) o).getID() == id;
+			}
+			return false;
+		}
+
+		/**
+		 * Returns the stored task equal to the provided task, or null if the
+		 * list does not hold it.
+		 */
+		ITask get(final ITask task) {
+			Long slot = slots.get(task);
+			return slot == null ? null : tasks.get(slot);
+		}
+
+		@Override
+		public long getID() {
+			return id;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Collection<ITask> getTaskView() {
+			return taskView;
+		}
+
+		@Override
+		public Collection<ITask> getTasks() {
+			return new ArrayList<ITask>(tasks.values());
+		}
+
+		/**
+		 * Returns the list to hand out of the cache.
+		 */
+		ITaskCollection handedOut() {
+			return original == null ? this : original;
+		}
+
+		@Override
+		public int hashCode() {
+			if (id == Constants.ID_UNSAVED) {
+				return System.identityHashCode(this);
+			}
+			return (int) (id ^ (id >>> 32));
+		}
+
+		void remove(final ITask task) {
+			tasks.remove(slots.remove(task));
+			original = null;
+		}
+
+		/**
+		 * Puts the new task in the old task's slot.
+		 */
+		void replace(final ITask oldTask, final ITask newTask) {
+			Long slot = slots.remove(oldTask);
+			slots.put(newTask, slot);
+			tasks.put(slot, newTask);
+			original = null;
+		}
+
+		/**
+		 * Sets the ID, name and tasks of the list to those of the provided
+		 * list.
+		 */
+		void set(final ITaskCollection list) {
+			// Copied first, as the provided list may be this list
+			Collection<ITask> newTasks = new ArrayList<ITask>(list.getTaskView());
+			id = list.getID();
+			name = list.getName();
+			slots.clear();
+			tasks.clear();
+			for (ITask t : newTasks) {
+				add(t);
+			}
+			original = id == Constants.ID_UNSAVED ? list : null;
+		}
+
+		@Override
+		public int size() {
+			return tasks.size();
+		}
+	}
+
+	// Maps each list's name to the list, in the order the lists were added
+	private final Map<String, CachedList> lists = new LinkedHashMap<String, CachedList>();
+	private IChangeRecorder recorder;
+	// Maps each task to the list containing it
+	private final Map<ITask, CachedList> taskIndex = new HashMap<ITask, CachedList>();
+	private long version;
 
 	@Override
 	public boolean addList(final ITaskCollection collection) {
-		return _addList(collection);
+		if (_addList(collection)) {
+			_recordList(Constants.EVENT_LIST_ADDED, collection);
+			return true;
+		}
+		return false;
 	}
 
 	@Override
@@ -26,6 +171,7 @@ public class DataCache implements IDataStorage {
 		int nAdded = 0;
 		for (ITaskCollection t : collection) {
 			if (_addList(t)) {
+				_recordList(Constants.EVENT_LIST_ADDED, t);
 				nAdded++;
 			}
 		}
@@ -34,7 +180,11 @@ public class DataCache implements IDataStorage {
 
 	@Override
 	public boolean addTask(final ITask task, final ITaskCollection collection) {
-		return _addTask(task, collection);
+		if (_addTask(task, collection)) {
+			_record(Constants.EVENT_TASK_ADDED, task.getID());
+			return true;
+		}
+		return false;
 	}
 
 	@Override
@@ -46,26 +196,34 @@ public class DataCache implements IDataStorage {
 	@Override
 	public void clearData() {
 		lists.clear();
+		taskIndex.clear();
+		version++;
+		_record(Constants.EVENT_DATA_CLEARED, Constants.ID_UNSAVED);
 	}
 
 	@Override
 	public boolean editList(final ITaskCollection oldCollection,
 			final ITaskCollection newCollection) {
-		return _editList(oldCollection, newCollection);
+		if (_editList(oldCollection, newCollection)) {
+			_record(Constants.EVENT_LIST_EDITED, newCollection.getID());
+			return true;
+		}
+		return false;
 	}
 
 	@Override
 	public boolean editTask(final ITask oldTask, final ITask newTask) {
-		ITaskCollection tc = null;
-		for (ITaskCollection c : lists) {
-			if (c.getTasks().contains(oldTask)) {
-				tc = c;
-				break;
-			}
-		}
+		CachedList list = taskIndex.get(oldTask);
 
-		if (tc != null) {
-			return (_addTask(newTask, tc) && _removeTask(oldTask));
+		// A new version of a saved task has the same ID as the old one
+		if (list != null && (newTask.equals(oldTask) || !_taskExists(newTask))) {
+			boolean wasCompleted = list.get(oldTask).isCompleted();
+			taskIndex.remove(oldTask);
+			taskIndex.put(newTask, list);
+			list.replace(oldTask, newTask);
+			version++;
+			_recordEdit(newTask, wasCompleted);
+			return true;
 		}
 		return false;
 	}
@@ -73,8 +231,8 @@ public class DataCache implements IDataStorage {
 	@Override
 	public Collection<ITaskCollection> getAllLists() {
 		Collection<ITaskCollection> ret = new ArrayList<ITaskCollection>();
-		for (ITaskCollection w : lists) {
-			ret.add(w);
+		for (CachedList list : lists.values()) {
+			ret.add(list.handedOut());
 		}
 		return ret;
 	}
@@ -82,30 +240,122 @@ public class DataCache implements IDataStorage {
 	@Override
 	public Collection<ITask> getAllTasks() {
 		Collection<ITask> ret = new ArrayList<ITask>();
-		for (ITaskCollection w : lists) {
-			ret.addAll(w.getTasks());
+		for (ITaskCollection w : lists.values()) {
+			ret.addAll(w.getTaskView());
 		}
 		return ret;
 	}
 
+	/**
+	 * Returns the cached list matching the provided list. Saved lists are
+	 * matched by ID, lists that have not been saved by name and number of
+	 * tasks.
+	 * 
+	 * @param collection
+	 *            the list to look for
+	 * @return the list, or null if there is no matching list
+	 */
+	public ITaskCollection getList(final ITaskCollection collection) {
+		return _handOut(_getList(collection));
+	}
+
+	/**
+	 * Returns the cached list with the provided name.
+	 * 
+	 * @param name
+	 *            the name of the list
+	 * @return the list, or null if there is no list with that name
+	 */
+	public ITaskCollection getList(final String name) {
+		return _handOut(lists.get(name));
+	}
+
+	/**
+	 * Returns the cached list containing the provided task.
+	 * 
+	 * @param task
+	 *            the task to look for
+	 * @return the list, or null if no list contains the task
+	 */
+	public ITaskCollection getListContaining(final ITask task) {
+		return _handOut(taskIndex.get(task));
+	}
+
+	/**
+	 * Returns the cached version of the provided task.
+	 * 
+	 * @param task
+	 *            the task to look for
+	 * @return the cached task equal to the provided task, or null if no list
+	 *         contains the task
+	 */
+	public ITask getTask(final ITask task) {
+		CachedList list = taskIndex.get(task);
+		return list == null ? null : list.get(task);
+	}
+
+	@Override
+	public ITask getTask(final long taskID) {
+		if (taskID == Constants.ID_UNSAVED) {
+			return null;
+		}
+		// Saved tasks are equal if they have the same ID
+		return getTask(new Task(taskID, null, null, null, null, null, 0, false));
+	}
+
+	@Override
+	public ITaskCursor getTaskCursor(final ITaskCollection collection,
+			final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) {
+		ITaskCollection list = _getList(collection);
+		if (list == null) {
+			return null;
+		}
+		List<ITask> tasks = new ArrayList<ITask>(list.getTaskView());
+		new TaskListUtility().sortTasks(tasks, primary, secondary, tertiary);
+		return new TaskListCursor(tasks);
+	}
+
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
 	@Override
 	public boolean moveTask(final ITask task, final ITaskCollection collection) {
-		if (_taskExists(task) && _removeTask(task)) {
-			return _addTask(task, collection);
+		CachedList from = taskIndex.get(task);
+		CachedList to = _getList(collection);
+		if (from == null || to == null) {
+			return false;
+		}
+		if (from == to) {
+			return true;
+		}
+		// Move the stored version of the task, not the provided one
+		ITask stored = from.get(task);
+		if (_removeTask(stored) && _addTask(stored, to)) {
+			_record(Constants.EVENT_TASK_MOVED, stored.getID());
+			return true;
 		}
 		return false;
 	}
 
 	@Override
 	public boolean removeList(final ITaskCollection collection) {
-		return _removeList(collection);
+		CachedList list = _getList(collection);
+		if (_removeList(collection)) {
+			_recordList(Constants.EVENT_LIST_REMOVED, list);
+			return true;
+		}
+		return false;
 	}
 
 	@Override
 	public int removeLists(final Collection<ITaskCollection> collection) {
 		int nLists = 0;
 		for (ITaskCollection c : collection) {
-			if (_removeList(c)) {
+			if (removeList(c)) {
 				nLists++;
 			}
 		}
@@ -114,48 +364,65 @@ public class DataCache implements IDataStorage {
 
 	@Override
 	public boolean removeTask(final ITask task) {
-		return _removeTask(task);
+		if (_removeTask(task)) {
+			_record(Constants.EVENT_TASK_REMOVED, task.getID());
+			return true;
+		}
+		return false;
 	}
 
 	@Override
 	public int removeTasks(final Collection<ITask> listOfTasksToRemove) {
 		int nTasks = 0;
 		for (ITask t : listOfTasksToRemove) {
-			if (_removeTask(t)) {
+			if (removeTask(t)) {
 				nTasks++;
 			}
 		}
 		return nTasks;
 	}
 
+	@Override
+	public void setChangeRecorder(final IChangeRecorder recorder) {
+		this.recorder = recorder;
+	}
+
 	private boolean _addList(final ITaskCollection col) {
-		if (!_listExists(col)) {
-			for (ITask t : col.getTasks()) {
+		if (!lists.containsKey(col.getName())) {
+			for (ITask t : col.getTaskView()) {
 				if (_taskExists(t)) {
 					return false;
 				}
 			}
-			return lists.add(col);
+			CachedList list = new CachedList(col);
+			lists.put(col.getName(), list);
+			for (ITask t : list.getTaskView()) {
+				taskIndex.put(t, list);
+			}
+			version++;
+			return true;
 		}
 		return false;
 	}
 
 	private boolean _addTask(final ITask task, final ITaskCollection collection) {
-		if (_listExists(collection) && !_taskExists(task)) {
-			Collection<ITask> oldTasks = collection.getTasks();
-			oldTasks.add(task);
-			return _editList(collection,
-					new TaskCollection(collection.getName(), oldTasks));
+		CachedList list = _getList(collection);
+		if (list != null && !_taskExists(task)) {
+			list.add(task);
+			taskIndex.put(task, list);
+			version++;
+			return true;
 		}
 		return false;
 	}
 
 	private int _addTasks(final Collection<ITask> tasks,
 			final ITaskCollection collection) {
-		if (_listExists(collection)) {
+		CachedList list = _getList(collection);
+		if (list != null) {
 
 			// Check which tasks should be added
-			Collection<ITask> toAdd = new ArrayList<ITask>();
+			Collection<ITask> toAdd = new LinkedHashSet<ITask>();
 			for (ITask t : tasks) {
 				if (!_taskExists(t)) {
 					toAdd.add(t);
@@ -163,44 +430,140 @@ public class DataCache implements IDataStorage {
 			}
 
 			// Add those tasks
-			Collection<ITask> oldTasks = collection.getTasks();
-			oldTasks.addAll(toAdd);
-			if (_editList(collection, new TaskCollection(collection.getName(),
-					oldTasks))) {
-				return toAdd.size();
+			for (ITask t : toAdd) {
+				list.add(t);
+				taskIndex.put(t, list);
+				_record(Constants.EVENT_TASK_ADDED, t.getID());
 			}
+			if (!toAdd.isEmpty()) {
+				version++;
+			}
+			return toAdd.size();
 		}
 		return 0;
 	}
 
 	private boolean _editList(final ITaskCollection oc, final ITaskCollection nc) {
-		return (_removeList(oc) && _addList(nc));
+		CachedList list = _getList(oc);
+		if (list == null) {
+			return false;
+		}
+		if (!_holdsSameTasks(list, nc)) {
+			return _removeList(list) && _addList(nc);
+		}
+
+		// Only the list itself changes, so its tasks stay indexed
+		if (!nc.getName().equals(list.getName())
+				&& lists.containsKey(nc.getName())) {
+			return false;
+		}
+		lists.remove(list.getName());
+		list.set(nc);
+		lists.put(nc.getName(), list);
+		version++;
+		return true;
+	}
+
+	/**
+	 * Returns the cached list matching the provided list, or null if there is
+	 * no such list.
+	 */
+	private CachedList _getList(final ITaskCollection col) {
+		CachedList list = lists.get(col.getName());
+		if (list == null) {
+			return null;
+		}
+		if (list.original == col || list.equals(col)) {
+			return list;
+		}
+		// A list that has not been saved only names the list, and is stale
+		// once the cached list's tasks have changed
+		if (col.getID() == Constants.ID_UNSAVED
+				&& list.size() == col.size()) {
+			return list;
+		}
+		return null;
 	}
 
-	private boolean _listExists(final ITaskCollection col) {
-		return lists.contains(col);
+	private ITaskCollection _handOut(final CachedList list) {
+		return list == null ? null : list.handedOut();
 	}
 
-	private boolean _removeList(final ITaskCollection collection) {
-		return lists.remove(collection);
+	/**
+	 * Returns whether the provided list holds exactly the tasks of the cached
+	 * list.
+	 */
+	private boolean _holdsSameTasks(final CachedList list,
+			final ITaskCollection col) {
+		if (col.size() != list.size()) {
+			return false;
+		}
+		for (ITask t : col.getTaskView()) {
+			if (taskIndex.get(t) != list) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	private boolean _removeTask(final ITask task) {
-		for (ITaskCollection c : lists) {
-			Collection<ITask> col = c.getTasks();
-			if (col.remove(task)) {
-				return _editList(c, new TaskCollection(c.getName(), col));
+	private void _record(final int type, final long id) {
+		if (recorder != null) {
+			recorder.recordChange(type, id);
+		}
+	}
+
+	/**
+	 * Records an edit of a task, and whether the edit completed or
+	 * decompleted it.
+	 */
+	private void _recordEdit(final ITask newTask, final boolean wasCompleted) {
+		_record(Constants.EVENT_TASK_EDITED, newTask.getID());
+		if (newTask.isCompleted() != wasCompleted) {
+			_record(newTask.isCompleted() ? Constants.EVENT_TASK_COMPLETED
+					: Constants.EVENT_TASK_DECOMPLETED, newTask.getID());
+		}
+	}
+
+	/**
+	 * Records a change of the provided list, and the same change of each of
+	 * its tasks.
+	 */
+	private void _recordList(final int type, final ITaskCollection list) {
+		if (recorder == null) {
+			return;
+		}
+		_record(type, list.getID());
+		int taskType = type == Constants.EVENT_LIST_ADDED ? Constants.EVENT_TASK_ADDED
+				: Constants.EVENT_TASK_REMOVED;
+		for (ITask t : list.getTaskView()) {
+			_record(taskType, t.getID());
+		}
+	}
+
+	private boolean _removeList(final ITaskCollection collection) {
+		CachedList list = _getList(collection);
+		if (list != null) {
+			lists.remove(list.getName());
+			for (ITask t : list.getTaskView()) {
+				taskIndex.remove(t);
 			}
+			version++;
+			return true;
 		}
 		return false;
 	}
 
-	private boolean _taskExists(final ITask task) {
-		for (ITaskCollection c : lists) {
-			if (c.getTasks().contains(task)) {
-				return true;
-			}
+	private boolean _removeTask(final ITask task) {
+		CachedList list = taskIndex.remove(task);
+		if (list != null) {
+			list.remove(task);
+			version++;
+			return true;
 		}
 		return false;
 	}
-}
\ No newline at end of file
+
+	private boolean _taskExists(final ITask task) {
+		return taskIndex.containsKey(task);
+	}
+}
@@ -4,22 +4,88 @@ import java.util.*;
 
 import se.chalmers.doit.core.*;
 import se.chalmers.doit.core.implementation.*;
-import se.chalmers.doit.data.storage.IDataSQL;
+import se.chalmers.doit.data.storage.*;
+import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.implementation.NameComparatorStrategy;
 import se.chalmers.doit.util.implementation.SQLConstants;
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.*;
 
 /**
  * Persistent data class, storing and retrieving task/list data from a SQLite
  * database on Android mobile platform.
  * 
+ * Batch operations are run in a single transaction using one compiled
+ * statement per operation, so that a batch costs one journal write instead of
+ * one per row. The generation is increased once by each call making a change,
+ * in the same transaction as the change, and once by a transaction run with
+ * runInTransaction() rather than by each change made in it.
+ * 
  * @author Kaufmann
  * 
  */
 public class DataSQL implements IDataSQL {
 
+	/**
+	 * ITaskCursor reading tasks from the rows of a database cursor. The
+	 * database cursor only keeps a window of rows in memory, so a task is not
+	 * created until its row is asked for.
+	 */
+	private final class TaskCursor implements ITaskCursor {
+
+		private final Cursor cur;
+		// The last task read, as a row is often asked for more than once
+		private ITask lastTask;
+		private int lastPosition = -1;
+
+		TaskCursor(final Cursor cur) {
+			this.cur = cur;
+		}
+
+		@Override
+		public void close() {
+			cur.close();
+		}
+
+		@Override
+		public int getCount() {
+			return cur.getCount();
+		}
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public ITask getTask(final int position)
+				throws IndexOutOfBoundsException {
+			if (position != lastPosition) {
+				if (!cur.moveToPosition(position)) {
+					throw new IndexOutOfBoundsException("No task at position "
+							+ position);
+				}
+				lastTask = _getTask(cur);
+				lastPosition = position;
+			}
+			return lastTask;
+		}
+	}
+
+	private static byte[] _getNameKey(final String name) {
+		// The folded name as UTF-16BE, so that SQLite's bytewise comparison of
+		// keys orders them like String.compareTo() orders the folded names
+		final String folded = NameComparatorStrategy.foldCase(name);
+		final byte[] key = new byte[folded.length() * 2];
+		for (int i = 0; i < folded.length(); i++) {
+			final char c = folded.charAt(i);
+			key[2 * i] = (byte) (c >> 8);
+			key[2 * i + 1] = (byte) c;
+		}
+		return key;
+	}
+
 	private SQLiteDatabase db = null;
+	// Set while runInTransaction() runs, as the generation has then already
+	// been increased in the transaction
+	private boolean generationIncreased = false;
 
 	@Override
 	public int addList(final ITaskCollection list) {
@@ -43,41 +109,29 @@ public class DataSQL implements IDataSQL {
 
 	@Override
 	public void clearData() {
-		db.delete(SQLConstants.LIST_TABLE_NAME, null, null);
-		db.delete(SQLConstants.TASK_TABLE_NAME, null, null);
+		_beginWrite();
+		try {
+			db.delete(SQLConstants.LIST_TABLE_NAME, null, null);
+			db.delete(SQLConstants.TASK_TABLE_NAME, null, null);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 	}
 
 	@Override
 	public boolean editList(final int listID,
 			final ITaskCollection newListProperties) {
-		int nAffected = db.update(SQLConstants.LIST_TABLE_NAME,
-				_getContentValuesList(newListProperties), SQLConstants.LIST_ID
-						+ "=" + listID, null);
-		switch (nAffected) {
-			case 0:
-				return false;
-			case 1:
-				return true;
-			default:
-				throw new IllegalStateException(
-						"More than one line was modified. Database corrupt!");
-		}
+		return _updateRow(SQLConstants.LIST_TABLE_NAME,
+				_getContentValuesList(newListProperties), SQLConstants.LIST_ID,
+				listID);
 	}
 
 	@Override
 	public boolean editTask(final int taskID, final ITask newTaskProperties) {
-		int nAffected = db.update(SQLConstants.TASK_TABLE_NAME,
-				_getContentValuesTask(newTaskProperties), SQLConstants.TASK_ID
-						+ "=" + taskID, null);
-		switch (nAffected) {
-			case 0:
-				return false;
-			case 1:
-				return true;
-			default:
-				throw new IllegalStateException(
-						"More than one line was modified. Database corrupt!");
-		}
+		return _updateRow(SQLConstants.TASK_TABLE_NAME,
+				_getContentValuesTask(newTaskProperties), SQLConstants.TASK_ID,
+				taskID);
 	}
 
 	@Override
@@ -85,11 +139,12 @@ public class DataSQL implements IDataSQL {
 		Map<ITaskCollection, Integer> ret = new HashMap<ITaskCollection, Integer>();
 		Cursor cur = _getListCursor();
 		if (cur.moveToFirst()) {
+			int idIndex = cur.getColumnIndex(SQLConstants.LIST_ID);
+			int nameIndex = cur.getColumnIndex(SQLConstants.LIST_NAME);
 			do {
-				ret.put(new TaskCollection(cur.getString(cur
-						.getColumnIndex(SQLConstants.LIST_NAME))), Integer
-						.valueOf(cur.getInt(cur
-								.getColumnIndex(SQLConstants.LIST_ID))));
+				int id = cur.getInt(idIndex);
+				ret.put(new TaskCollection(id, cur.getString(nameIndex),
+						new ArrayList<ITask>()), Integer.valueOf(id));
 			} while (cur.moveToNext());
 		}
 		cur.close();
@@ -103,61 +158,104 @@ public class DataSQL implements IDataSQL {
 
 		if (cur.moveToFirst()) {
 			do {
+				ITask task = _getTask(cur);
+				ret.put(task, Integer.valueOf((int) task.getID()));
+			} while (cur.moveToNext());
+		}
+		cur.close();
+		return ret;
+	}
 
-				Date dueDate = null;
-				Date reminderDate = null;
+	@Override
+	public Map<Integer, Collection<ITask>> getAllTasksByList() {
+		Map<Integer, Collection<ITask>> ret = new HashMap<Integer, Collection<ITask>>();
+		Cursor cur = db.rawQuery(SQLConstants.SELECT_ALL_TASKS_BY_LIST, null);
+
+		int listIndex = cur.getColumnIndex(SQLConstants.TASK_CONNECTED_LIST_ID);
+		Collection<ITask> group = null;
+		int groupListID = 0;
+		while (cur.moveToNext()) {
+			// Rows are ordered by list, so a new group starts whenever the
+			// list ID changes
+			int listID = cur.getInt(listIndex);
+			if (group == null || listID != groupListID) {
+				group = new ArrayList<ITask>();
+				groupListID = listID;
+				ret.put(Integer.valueOf(listID), group);
+			}
+			group.add(_getTask(cur));
+		}
+		cur.close();
+		return ret;
+	}
 
-				if (!cur.isNull(cur.getColumnIndex(SQLConstants.TASK_DUEDATE))) {
-					dueDate = new Date(cur.getLong(cur
-							.getColumnIndex(SQLConstants.TASK_DUEDATE)));
-				}
-				if (!cur.isNull(cur
-						.getColumnIndex(SQLConstants.TASK_REMINDERDATE))) {
-					reminderDate = new Date(cur.getLong(cur
-							.getColumnIndex(SQLConstants.TASK_REMINDERDATE)));
-				}
+	@Override
+	public long getGeneration() {
+		return _getLong(SQLConstants.SELECT_GENERATION);
+	}
 
-				Task key = new Task(
-						cur.getString(cur
-								.getColumnIndex(SQLConstants.TASK_NAME)),
-						cur.getString(cur
-								.getColumnIndex(SQLConstants.TASK_DESCRIPTION)),
-						new Priority((byte) cur.getInt(cur
-								.getColumnIndex(SQLConstants.TASK_PRIORITY))),
-						dueDate,
-						reminderDate,
-						cur.getInt(cur
-								.getColumnIndex(SQLConstants.TASK_CUSTOMPOS)),
-						cur.getInt(cur
-								.getColumnIndex(SQLConstants.TASK_COMPLETED)) == 1);
-
-				Integer value = Integer.valueOf(cur.getInt(cur
-						.getColumnIndex(SQLConstants.TASK_ID)));
-				ret.put(key, value);
-			} while (cur.moveToNext());
+	@Override
+	public int getLastListID() {
+		return (int) _getLong(SQLConstants.SELECT_LAST_LIST_ID);
+	}
+
+	@Override
+	public int getLastTaskID() {
+		return (int) _getLong(SQLConstants.SELECT_LAST_TASK_ID);
+	}
+
+	@Override
+	public int getListID(final int taskID) {
+		Cursor cur = db.rawQuery(SQLConstants.SELECT_LIST_ID_OF_TASK,
+				new String[] { String.valueOf(taskID) });
+		int ret = cur.moveToFirst() ? cur.getInt(0) : -1;
+		cur.close();
+		return ret;
+	}
+
+	@Override
+	public Map<Integer, Integer> getTaskCounts() {
+		Map<Integer, Integer> ret = new HashMap<Integer, Integer>();
+		Cursor cur = db.rawQuery(SQLConstants.SELECT_TASK_COUNTS, null);
+		while (cur.moveToNext()) {
+			ret.put(Integer.valueOf(cur.getInt(0)),
+					Integer.valueOf(cur.getInt(1)));
 		}
 		cur.close();
 		return ret;
 	}
 
+	@Override
+	public ITaskCursor getTaskCursor(final int listID,
+			final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) {
+		return new TaskCursor(db.rawQuery(
+				SQLConstants.selectSortedTasks(primary, secondary, tertiary),
+				new String[] { String.valueOf(listID) }));
+	}
+
 	@Override
 	public int[] getTaskIDs(final int listID) {
-		Cursor cur = db.rawQuery("SELECT * FROM "
-				+ SQLConstants.TASK_TABLE_NAME + " WHERE "
-				+ SQLConstants.TASK_CONNECTED_LIST_ID + "=" + listID, null);
+		Cursor cur = db.rawQuery(SQLConstants.SELECT_TASK_IDS,
+				new String[] { String.valueOf(listID) });
 
-		ArrayList<Integer> tempList = new ArrayList<Integer>();
-		if (cur.moveToFirst()) {
-			int colIndex = cur.getColumnIndex(SQLConstants.TASK_ID);
-			do {
-				tempList.add(Integer.valueOf(cur.getInt(colIndex)));
-			} while (cur.moveToNext());
-		}
-		int[] ret = new int[tempList.size()];
+		int[] ret = new int[cur.getCount()];
 		int counter = 0;
-		for (Integer i : tempList) {
-			ret[counter] = i.intValue();
-			counter++;
+		while (cur.moveToNext()) {
+			ret[counter++] = cur.getInt(0);
+		}
+		cur.close();
+		return ret;
+	}
+
+	@Override
+	public Collection<ITask> getTasks(final int listID) {
+		Collection<ITask> ret = new ArrayList<ITask>();
+		Cursor cur = db.rawQuery(SQLConstants.SELECT_TASKS_IN_LIST,
+				new String[] { String.valueOf(listID) });
+		while (cur.moveToNext()) {
+			ret.add(_getTask(cur));
 		}
 		cur.close();
 		return ret;
@@ -167,79 +265,177 @@ public class DataSQL implements IDataSQL {
 	public boolean moveTask(final int taskID, final int listID) {
 		ContentValues cv = new ContentValues();
 		cv.put(SQLConstants.TASK_CONNECTED_LIST_ID, Integer.valueOf(listID));
-		int nAffected = db.update(SQLConstants.TASK_TABLE_NAME, cv,
-				SQLConstants.TASK_ID + "=" + taskID, null);
-		switch (nAffected) {
-			case 0:
-				return false;
-			case 1:
-				return true;
-			default:
-				throw new IllegalStateException(
-						"More than one line was modified. Database corrupt!");
+		return _updateRow(SQLConstants.TASK_TABLE_NAME, cv,
+				SQLConstants.TASK_ID, taskID);
+	}
+
+	@Override
+	public void putList(final int listID, final ITaskCollection list) {
+		SQLiteStatement insert = db
+				.compileStatement(SQLConstants.INSERT_OR_REPLACE_LIST);
+		_beginWrite();
+		try {
+			insert.bindString(1, list.getName());
+			insert.bindLong(2, listID);
+			insert.executeInsert();
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
+		}
+	}
+
+	@Override
+	public void putTask(final int taskID, final ITask task, final int listID) {
+		SQLiteStatement insert = db
+				.compileStatement(SQLConstants.INSERT_OR_REPLACE_TASK);
+		_beginWrite();
+		try {
+			_bindTask(insert, task, listID);
+			insert.bindLong(10, taskID);
+			insert.executeInsert();
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
 		}
 	}
 
 	@Override
 	public boolean removeList(final int listID) {
-		return _removeList(listID);
+		return _removeRows(SQLConstants.DELETE_LIST, new int[] { listID })[0];
 	}
 
 	@Override
 	public boolean[] removeLists(final int[] listIDs) {
-		boolean[] ret = new boolean[listIDs.length];
-		for (int i = 0; i < listIDs.length; i++) {
-			ret[i] = _removeList(listIDs[i]);
-		}
-		return ret;
+		return _removeRows(SQLConstants.DELETE_LIST, listIDs);
 	}
 
 	@Override
 	public boolean removeTask(final int taskID) {
-		return _removeTask(taskID);
+		return _removeRows(SQLConstants.DELETE_TASK, new int[] { taskID })[0];
 	}
 
 	@Override
 	public boolean[] removeTasks(final int[] taskIDs) {
-		boolean[] ret = new boolean[taskIDs.length];
-		for (int i = 0; i < taskIDs.length; i++) {
-			ret[i] = _removeTask(taskIDs[i]);
-		}
-		return ret;
+		return _removeRows(SQLConstants.DELETE_TASK, taskIDs);
 	}
 
 	@Override
+	public void runInTransaction(final Runnable runnable) {
+		_beginWrite();
+		// Only the outermost call resets the flag, as transactions nest
+		final boolean outermost = !generationIncreased;
+		generationIncreased = true;
+		try {
+			runnable.run();
+			db.setTransactionSuccessful();
+		} finally {
+			if (outermost) {
+				generationIncreased = false;
+			}
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Sets the database to use for storage. Tables will be created if they
+	 * don't exist in the database. Only DataSQL is set up with a database, the
+	 * IDataSQL decorators are handed the DataSQL they read from and write to.
+	 * 
+	 * @param database
+	 *            database to add
+	 */
 	public void setDatabase(final SQLiteDatabase database) {
 		this.db = database;
 		this.db.execSQL(SQLConstants.CREATE_TABLE_TASKS);
 		this.db.execSQL(SQLConstants.CREATE_TABLE_LISTS);
+		_upgradeDatabase();
 	}
 
 	private int[] _addLists(final ITaskCollection[] lists) {
-		boolean[] rowAdded = new boolean[lists.length];
+		int[] ids = new int[lists.length];
 
 		// Add each list to the database and retrieve it's row's value
-		for (int i = 0; i < lists.length; i++) {
-			rowAdded[i] = db.insert(SQLConstants.LIST_TABLE_NAME, null,
-					_getContentValuesList(lists[i])) != -1;
+		SQLiteStatement insert = db.compileStatement(SQLConstants.INSERT_LIST);
+		_beginWrite();
+		try {
+			for (int i = 0; i < lists.length; i++) {
+				insert.bindString(1, lists[i].getName());
+				ids[i] = (int) insert.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
 		}
 
-		return _getLastAddedIDs(SQLConstants.LIST_TABLE_NAME, rowAdded,
-				SQLConstants.LIST_ID);
+		return ids;
 	}
 
 	private int[] _addTasks(final ITask[] tasks, final int listID) {
-		boolean[] rowAdded = new boolean[tasks.length];
+		int[] ids = new int[tasks.length];
 
 		// Add each task to the database and retrieve it's row's value
-		for (int i = 0; i < tasks.length; i++) {
-			ContentValues cv = _getContentValuesTask(tasks[i]);
-			cv.put(SQLConstants.TASK_CONNECTED_LIST_ID, Integer.valueOf(listID));
-			rowAdded[i] = db.insert(SQLConstants.TASK_TABLE_NAME, null, cv) != -1;
+		SQLiteStatement insert = db.compileStatement(SQLConstants.INSERT_TASK);
+		_beginWrite();
+		try {
+			for (int i = 0; i < tasks.length; i++) {
+				_bindTask(insert, tasks[i], listID);
+				ids[i] = (int) insert.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
 		}
 
-		return _getLastAddedIDs(SQLConstants.TASK_TABLE_NAME, rowAdded,
-				SQLConstants.TASK_ID);
+		return ids;
+	}
+
+	private void _beginWrite() {
+		// Begins the transaction of a change, in which the generation is
+		// increased unless runInTransaction() has already done so
+		db.beginTransaction();
+		if (!generationIncreased) {
+			db.execSQL(SQLConstants.INCREASE_GENERATION);
+		}
+	}
+
+	private void _bindTask(final SQLiteStatement insert, final ITask task,
+			final int listID) {
+		// Binds all data in a task to the parameters of INSERT_TASK
+		insert.clearBindings();
+		insert.bindLong(1, listID);
+		insert.bindString(2, task.getName());
+		insert.bindString(3, task.getDescription());
+		insert.bindLong(4, task.getPriority().getValue());
+		if (task.getDueDate() != null) {
+			insert.bindLong(5, task.getDueDate().getTime());
+		}
+		if (task.getReminderDate() != null) {
+			insert.bindLong(6, task.getReminderDate().getTime());
+		}
+		insert.bindLong(7, task.getCustomPosition());
+		insert.bindLong(8, task.isCompleted() ? 1 : 0);
+		insert.bindBlob(9, _getNameKey(task.getName()));
+	}
+
+	private void _fillNameKeys() {
+		// Computes the name keys of the tasks stored before there were any
+		SQLiteStatement update = db
+				.compileStatement(SQLConstants.UPDATE_TASK_NAME_KEY);
+		Cursor cur = db.rawQuery(SQLConstants.SELECT_TASK_NAMES, null);
+		try {
+			while (cur.moveToNext()) {
+				update.bindBlob(1, _getNameKey(cur.getString(1)));
+				update.bindLong(2, cur.getInt(0));
+				update.execute();
+			}
+		} finally {
+			cur.close();
+			update.close();
+		}
 	}
 
 	private ContentValues _getContentValuesList(final ITaskCollection list) {
@@ -259,6 +455,7 @@ public class DataSQL implements IDataSQL {
 					Long.valueOf(task.getDueDate().getTime()));
 		}
 		ret.put(SQLConstants.TASK_NAME, task.getName());
+		ret.put(SQLConstants.TASK_NAME_KEY, _getNameKey(task.getName()));
 		ret.put(SQLConstants.TASK_PRIORITY,
 				Byte.valueOf(task.getPriority().getValue()));
 		if (task.getReminderDate() == null) {
@@ -275,24 +472,30 @@ public class DataSQL implements IDataSQL {
 		return ret;
 	}
 
-	private int[] _getLastAddedIDs(final String tableName,
-			final boolean[] idsToGet, final String idName) {
-		int[] idArray = new int[idsToGet.length];
-		Cursor cur = db.rawQuery("SELECT * FROM " + tableName + " ORDER BY "
-				+ idName, null);
-		cur.moveToLast();
-		for (int i = 0, j = idArray.length - 1; i < idArray.length; i++, j--) {
-			if (idsToGet[j]) {
-				idArray[i] = cur.getInt(cur.getColumnIndex(idName));
-			} else {
-				idArray[i] = -1;
-			}
-			if (!cur.moveToPrevious()) {
-				break;
-			}
+	private ITask _getTask(final Cursor cur) {
+		// Creates a task from the row the cursor is pointing at
+		Date dueDate = null;
+		Date reminderDate = null;
+
+		if (!cur.isNull(cur.getColumnIndex(SQLConstants.TASK_DUEDATE))) {
+			dueDate = new Date(cur.getLong(cur
+					.getColumnIndex(SQLConstants.TASK_DUEDATE)));
 		}
-		cur.close();
-		return idArray;
+		if (!cur.isNull(cur.getColumnIndex(SQLConstants.TASK_REMINDERDATE))) {
+			reminderDate = new Date(cur.getLong(cur
+					.getColumnIndex(SQLConstants.TASK_REMINDERDATE)));
+		}
+
+		return new Task(
+				cur.getInt(cur.getColumnIndex(SQLConstants.TASK_ID)),
+				cur.getString(cur.getColumnIndex(SQLConstants.TASK_NAME)),
+				cur.getString(cur.getColumnIndex(SQLConstants.TASK_DESCRIPTION)),
+				new Priority((byte) cur.getInt(cur
+						.getColumnIndex(SQLConstants.TASK_PRIORITY))),
+				dueDate,
+				reminderDate,
+				cur.getInt(cur.getColumnIndex(SQLConstants.TASK_CUSTOMPOS)),
+				cur.getInt(cur.getColumnIndex(SQLConstants.TASK_COMPLETED)) == 1);
 	}
 
 	private Cursor _getListCursor() {
@@ -300,36 +503,97 @@ public class DataSQL implements IDataSQL {
 		return db.rawQuery(SQLConstants.SELECT_ALL_LISTS, null);
 	}
 
+	private long _getLong(final String query) {
+		// The first column of the first row, which is 0 if it is NULL
+		Cursor cur = db.rawQuery(query, null);
+		long ret = cur.moveToFirst() ? cur.getLong(0) : 0;
+		cur.close();
+		return ret;
+	}
+
 	private Cursor _getTaskCursor() {
 		// Returns a cursor pointing to all rows in the task table
 		return db.rawQuery(SQLConstants.SELECT_ALL_TASKS, null);
 	}
 
-	private boolean _removeList(final int id) {
-		int nAffected = db.delete(SQLConstants.LIST_TABLE_NAME,
-				SQLConstants.LIST_ID + "=" + id, null);
-		switch (nAffected) {
-			case 0:
-				return false;
-			case 1:
-				return true;
-			default:
-				throw new IllegalStateException(
-						"More than one line was modified. Database corrupt!");
+	private boolean[] _removeRows(final String deleteStatement,
+			final int[] ids) {
+		boolean[] ret = new boolean[ids.length];
+
+		// Remove each row and check how many rows the removal affected
+		SQLiteStatement delete = db.compileStatement(deleteStatement);
+		SQLiteStatement changes = db
+				.compileStatement(SQLConstants.SELECT_CHANGES);
+		_beginWrite();
+		try {
+			for (int i = 0; i < ids.length; i++) {
+				delete.bindLong(1, ids[i]);
+				delete.execute();
+				long nAffected = changes.simpleQueryForLong();
+				if (nAffected > 1) {
+					throw new IllegalStateException(
+							"More than one line was modified. Database corrupt!");
+				}
+				ret[i] = nAffected == 1;
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			delete.close();
+			changes.close();
 		}
+		return ret;
 	}
 
-	private boolean _removeTask(final int id) {
-		int nAffected = db.delete(SQLConstants.TASK_TABLE_NAME,
-				SQLConstants.LIST_ID + "=" + id, null);
-		switch (nAffected) {
-			case 0:
-				return false;
-			case 1:
-				return true;
-			default:
+	private boolean _updateRow(final String table, final ContentValues cv,
+			final String idColumn, final int id) {
+		// Updates the row with the ID, and returns whether there was one
+		int nAffected;
+		_beginWrite();
+		try {
+			nAffected = db.update(table, cv, idColumn + "=?",
+					new String[] { String.valueOf(id) });
+			if (nAffected > 1) {
 				throw new IllegalStateException(
 						"More than one line was modified. Database corrupt!");
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		return nAffected == 1;
+	}
+
+	private void _upgradeDatabase() {
+		// Brings databases created by older versions up to date
+		int version = db.getVersion();
+		if (version >= SQLConstants.DATABASE_VERSION) {
+			return;
+		}
+		db.beginTransaction();
+		try {
+			if (version < 2) {
+				db.execSQL(SQLConstants.CREATE_INDEX_TASKS_LISTID);
+				db.execSQL(SQLConstants.CREATE_INDEX_TASKS_COMPLETED);
+				db.execSQL(SQLConstants.CREATE_INDEX_TASKS_DUEDATE);
+			}
+			if (version < 3) {
+				db.execSQL(SQLConstants.ADD_COLUMN_TASKS_NAME_KEY);
+				_fillNameKeys();
+				db.execSQL(SQLConstants.CREATE_INDEX_TASKS_ORDER);
+			}
+			if (version < 4) {
+				db.execSQL(SQLConstants.CREATE_TABLE_GENERATION);
+				// Starts at the time the table was created rather than at 0,
+				// so that data read from a database that has since been
+				// deleted does not match a new database
+				db.execSQL(SQLConstants.INSERT_GENERATION, new Object[] { Long
+						.valueOf(System.currentTimeMillis()) });
+			}
+			db.setVersion(SQLConstants.DATABASE_VERSION);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
 		}
 	}
-}
\ No newline at end of file
+}
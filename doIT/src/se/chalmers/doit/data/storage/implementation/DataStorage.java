@@ -3,46 +3,182 @@ package se.chalmers.doit.data.storage.implementation;
 import java.util.*;
 
 import se.chalmers.doit.core.*;
-import se.chalmers.doit.core.implementation.TaskCollection;
+import se.chalmers.doit.core.implementation.*;
 import se.chalmers.doit.data.storage.*;
+import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.implementation.Constants;
 import android.database.sqlite.SQLiteDatabase;
 
 /**
+ * Data storage writing every change through to the SQLite database and
+ * applying the same change to the cache, so that the cache never has to be
+ * rebuilt from the database after the initial load.
+ * 
+ * Stored tasks and lists carry their database ID, so the cache is the only
+ * index that needs to be kept up to date.
+ * 
+ * In lazy mode only the lists are read up front. The tasks of a list are read
+ * the first time they are needed, and only the tasks of the most recently
+ * used lists are kept in the cache.
  * 
  * @author Boel
  * 
  */
 public class DataStorage implements IDataStorage {
 
-	private IDataStorage cache;
-	// Maps ITaskCollection to correspond to an ID
-	private Map<ITaskCollection, Integer> listMap;
-	private IDataSQL sql;
-	// Maps ITask to correspond to an ID
-	private Map<ITask, Integer> taskMap;
+	/**
+	 * A list whose tasks are not loaded. The tasks are loaded the first time
+	 * they are read.
+	 */
+	private final class ListHeader implements ITaskCollection {
 
-	public DataStorage(final SQLiteDatabase database) {
-		cache = new DataCache();
-		sql = new DataSQL();
+		private final long id;
+		private final String name;
+		private final int size;
+
+		ListHeader(final long id, final String name, final int size) {
+			this.id = id;
+			this.name = name;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (o instanceof ITaskCollection) {
+				return ((ITaskCollection) o).getID() == id;
+			}
+			return false;
+		}
+
+		@Override
+		public long getID() {
+			return id;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Collection<ITask> getTaskView() {
+			return _loadTasks().getTaskView();
+		}
+
+		@Override
+		public Collection<ITask> getTasks() {
+			return _loadTasks().getTasks();
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (id ^ (id >>> 32));
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
 
-		sql.setDatabase(database);
+		@SuppressWarnings("synthetic-access")
+		private ITaskCollection _loadTasks() {
+			ITaskCollection list = _load(this);
+			// The list may have been removed since this header was handed out
+			if (list == null) {
+				return new TaskCollection(id, name, new ArrayList<ITask>());
+			}
+			return list;
+		}
+	}
 
-		listMap = sql.getAllLists();
-		taskMap = sql.getAllTasks();
+	// Keeps the tasks of every list loaded
+	private static final int ALL_LISTS = Integer.MAX_VALUE;
+
+	private final DataCache cache;
+	// Maps each list's name to its ID
+	private final Map<String, Long> listIDs = new HashMap<String, Long>();
+	// Maps each list's ID to the list, in the order the lists were added.
+	// Lists whose tasks are not loaded are ListHeaders
+	private final Map<Long, ITaskCollection> lists = new LinkedHashMap<Long, ITaskCollection>();
+	// IDs of the lists whose tasks are in the cache, least recently used first
+	private final Map<Long, Boolean> loadedLists = new LinkedHashMap<Long, Boolean>(
+			16, 0.75f, true);
+	private final int maxLoadedLists;
+	private IChangeRecorder recorder;
+	private final IDataSQL sql;
+	// Increased on every change, but not when lists are loaded or dropped
+	private long version;
+
+	/**
+	 * Creates a DataStorage on top of an already initialised IDataSQL. Used
+	 * when the SQL layer needs to be replaced, e.g. for instrumenting it in
+	 * tests.
+	 * 
+	 * @param sql
+	 *            the IDataSQL to use, with its database already set
+	 */
+	public DataStorage(final IDataSQL sql) {
+		this.cache = new DataCache();
+		this.sql = sql;
+		this.maxLoadedLists = ALL_LISTS;
+
+		Map<Integer, Collection<ITask>> tasksByList = sql.getAllTasksByList();
+		for (ITaskCollection c : _readLists()) {
+			Collection<ITask> tasks = tasksByList.get(Integer.valueOf((int) c
+					.getID()));
+			_putLoaded(new TaskCollection(c.getID(), c.getName(),
+					tasks == null ? new ArrayList<ITask>() : tasks));
+		}
+	}
 
-		_populateCache();
+	/**
+	 * Creates a DataStorage in lazy mode on top of an already initialised
+	 * IDataSQL. Only the lists and their number of tasks are read up front.
+	 * 
+	 * @param sql
+	 *            the IDataSQL to use, with its database already set
+	 * @param maxLoadedLists
+	 *            the number of lists to keep the tasks of in the cache, at
+	 *            least 2
+	 * @throws IllegalArgumentException
+	 *             if maxLoadedLists is less than 2
+	 */
+	public DataStorage(final IDataSQL sql, final int maxLoadedLists)
+			throws IllegalArgumentException {
+		// Moving a task needs the tasks of two lists
+		if (maxLoadedLists < 2) {
+			throw new IllegalArgumentException(
+					"At least two lists must be kept loaded!");
+		}
+		this.cache = new DataCache();
+		this.sql = sql;
+		this.maxLoadedLists = maxLoadedLists;
+
+		Map<Integer, Integer> counts = sql.getTaskCounts();
+		for (ITaskCollection c : _readLists()) {
+			Integer count = counts.get(Integer.valueOf((int) c.getID()));
+			_setList(new ListHeader(c.getID(), c.getName(),
+					count == null ? 0 : count.intValue()));
+		}
+	}
 
+	public DataStorage(final SQLiteDatabase database) {
+		this(_createDataSQL(database));
+	}
+
+	public DataStorage(final SQLiteDatabase database, final int maxLoadedLists) {
+		this(_createDataSQL(database), maxLoadedLists);
 	}
 
 	@Override
 	public boolean addList(final ITaskCollection collection) {
-		if (cache.addList(collection)) {
+		if (_canAdd(collection)) {
 			int id = sql.addList(collection);
 			if (id != -1) {
-				_addTasksSQL(collection.getTasks(), id);
+				_storeList(collection, id);
+				version++;
+				return true;
 			}
-			_rebuildCache();
-			return true;
 		}
 		return false;
 
@@ -50,53 +186,64 @@ public class DataStorage implements IDataStorage {
 
 	@Override
 	public int addLists(final Collection<ITaskCollection> collection) {
-		int[] listIDs;
-		int count = 0;
+		// Lists are only added if all of them can be added
+		Set<String> names = new HashSet<String>();
+		for (ITaskCollection c : collection) {
+			if (!_canAdd(c) || !names.add(c.getName())) {
+				return 0;
+			}
+		}
 
 		ITaskCollection[] listArray = new ITaskCollection[collection.size()];
 		listArray = collection.toArray(listArray);
+		int[] ids = sql.addLists(listArray);
 
-		if (cache.addLists(collection) == collection.size()) {
-			listIDs = sql.addLists(listArray);
-
-			for (int i = 0; i < listIDs.length; i++) {
-				if (listIDs[i] != -1) {
-					_addTasksSQL(listArray[i].getTasks(), listIDs[i]);
-					count++;
-				}
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] != -1) {
+				_storeList(listArray[i], ids[i]);
+				count++;
 			}
 		}
-
-		_rebuildCache();
+		if (count > 0) {
+			version++;
+		}
 		return count;
 	}
 
 	@Override
 	public boolean addTask(final ITask task, final ITaskCollection collection) {
-		int id = -1;
-		if (cache.addTask(task, collection)) {
-			id = sql.addTask(task, listMap.get(collection).intValue());
-			_rebuildCache();
-		}
-		return id != -1;
+		return addTasks(Collections.singletonList(task), collection) == 1;
 	}
 
 	@Override
 	public int addTasks(final Collection<ITask> tasks,
 			final ITaskCollection collection) {
-		int[] ids = new int[0];
-		if (cache.addTasks(tasks, collection) == tasks.size()) {
-			ids = _addTasksSQL(tasks, listMap.get(collection).intValue());
+		ITaskCollection list = _getList(collection);
+		if (list == null) {
+			return 0;
 		}
-		_rebuildCache();
-
-		int count = 0;
-		for (int i : ids) {
-			if (i != -1) {
-				count++;
+		for (ITask t : tasks) {
+			if (_getListID(t) != Constants.ID_UNSAVED) {
+				return 0;
 			}
 		}
-		return count;
+
+		Collection<ITask> added = _addTasksSQL(tasks, (int) list.getID());
+		if (_isLoaded(list)) {
+			cache.addTasks(added, list);
+			_touch(list);
+		} else {
+			// The tasks are read from the database when the list is loaded
+			_setList(new ListHeader(list.getID(), list.getName(), list.size()
+					+ added.size()));
+		}
+
+		if (!added.isEmpty()) {
+			version++;
+			_recordTasks(Constants.EVENT_TASK_ADDED, added);
+		}
+		return added.size();
 	}
 
 	@Override
@@ -105,8 +252,11 @@ public class DataStorage implements IDataStorage {
 		sql.clearData();
 		cache.clearData();
 
-		listMap.clear();
-		taskMap.clear();
+		listIDs.clear();
+		lists.clear();
+		loadedLists.clear();
+		version++;
+		_record(Constants.EVENT_DATA_CLEARED, Constants.ID_UNSAVED);
 
 	}
 
@@ -114,10 +264,30 @@ public class DataStorage implements IDataStorage {
 	public boolean editList(final ITaskCollection oldCollection,
 			final ITaskCollection newCollection) {
 
-		int listID = listMap.get(oldCollection).intValue();
+		ITaskCollection list = _getList(oldCollection);
+		if (list == null) {
+			return false;
+		}
+		Long existing = listIDs.get(newCollection.getName());
+		if (existing != null && existing.longValue() != list.getID()) {
+			return false;
+		}
 
-		if (sql.editList(listID, newCollection)) {
-			_rebuildCache();
+		if (sql.editList((int) list.getID(), newCollection)) {
+			// Only the name is stored for a list, its tasks are kept
+			if (_isLoaded(list)) {
+				// The cached list is renamed in place
+				listIDs.remove(list.getName());
+				cache.editList(list, new TaskCollection(list.getID(),
+						newCollection.getName(), list.getTaskView()));
+				_setList(cache.getList(newCollection.getName()));
+				_touch(list);
+			} else {
+				_setList(new ListHeader(list.getID(), newCollection.getName(),
+						list.size()));
+			}
+			version++;
+			_record(Constants.EVENT_LIST_EDITED, list.getID());
 			return true;
 		}
 		return false;
@@ -126,10 +296,22 @@ public class DataStorage implements IDataStorage {
 
 	@Override
 	public boolean editTask(final ITask oldTask, final ITask newTask) {
-		int taskID = taskMap.get(oldTask).intValue();
+		ITaskCollection list = _getListContaining(oldTask);
+		if (list == null) {
+			return false;
+		}
 
-		if (sql.editTask(taskID, newTask)) {
-			_rebuildCache();
+		if (sql.editTask((int) oldTask.getID(), newTask)) {
+			ITask stored = new Task(newTask, oldTask.getID());
+			ITask cached = cache.getTask(oldTask);
+			boolean wasCompleted = (cached == null ? oldTask : cached)
+					.isCompleted();
+
+			// The task is replaced at its current position in the list
+			cache.editTask(oldTask, stored);
+			_touch(list);
+			version++;
+			_recordEdit(stored, wasCompleted);
 			return true;
 		}
 
@@ -138,22 +320,80 @@ public class DataStorage implements IDataStorage {
 
 	@Override
 	public Collection<ITaskCollection> getAllLists() {
-		return cache.getAllLists();
+		return new ArrayList<ITaskCollection>(lists.values());
 	}
 
 	@Override
 	public Collection<ITask> getAllTasks() {
-		return cache.getAllTasks();
+		if (_isFullyLoaded()) {
+			return cache.getAllTasks();
+		}
+
+		// Only the tasks of lists that are not loaded are read, without loading
+		// them. Their headers tell which of them are empty
+		Collection<ITask> ret = new ArrayList<ITask>();
+		for (ITaskCollection list : lists.values()) {
+			if (_isLoaded(list)) {
+				ret.addAll(list.getTaskView());
+			} else if (list.size() > 0) {
+				ret.addAll(sql.getTasks((int) list.getID()));
+			}
+		}
+		return ret;
 	}
 
 	@Override
-	public boolean moveTask(final ITask task, final ITaskCollection collection) {
+	public ITask getTask(final long taskID) {
+		if (taskID == Constants.ID_UNSAVED) {
+			return null;
+		}
+		// Saved tasks are equal if they have the same ID, and the list of the
+		// task is loaded if it is not
+		ITask task = new Task(taskID, null, null, null, null, null, 0, false);
+		return _getListContaining(task) == null ? null : cache.getTask(task);
+	}
 
-		int listID = listMap.get(collection).intValue();
-		int taskID = taskMap.get(task).intValue();
+	@Override
+	public ITaskCursor getTaskCursor(final ITaskCollection collection,
+			final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) {
+		// Every change is written through, so the database is up to date and
+		// the list does not need to be loaded
+		ITaskCollection list = _getList(collection);
+		if (list == null) {
+			return null;
+		}
+		return sql.getTaskCursor((int) list.getID(), primary, secondary,
+				tertiary);
+	}
 
-		if (sql.moveTask(taskID, listID)) {
-			_rebuildCache();
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public boolean moveTask(final ITask task, final ITaskCollection collection) {
+
+		ITaskCollection from = _getListContaining(task);
+		ITaskCollection to = _getList(collection);
+		if (from == null || to == null) {
+			return false;
+		}
+		// Loading the target list does not drop the list just loaded
+		to = _load(to);
+		from = lists.get(Long.valueOf(from.getID()));
+
+		if (sql.moveTask((int) task.getID(), (int) to.getID())) {
+			if (from != to) {
+				// The cache moves the stored version of the task
+				cache.moveTask(task, to);
+				_touch(from);
+				_touch(to);
+				version++;
+				_record(Constants.EVENT_TASK_MOVED, task.getID());
+			}
 			return true;
 		}
 
@@ -163,16 +403,23 @@ public class DataStorage implements IDataStorage {
 	@Override
 	public boolean removeList(final ITaskCollection collection) {
 
-		if (cache.removeList(collection)) {
-			if (sql.removeList(listMap.get(collection).intValue())) {
-
-				int[] ids = sql.getTaskIDs(listMap.get(collection).intValue());
+		ITaskCollection list = _getList(collection);
+		if (list == null) {
+			return false;
+		}
 
-				sql.removeTasks(ids);
+		if (sql.removeList((int) list.getID())) {
+			int[] taskIDs = _isLoaded(list) ? _getTaskIDs(list.getTaskView())
+					: sql.getTaskIDs((int) list.getID());
+			sql.removeTasks(taskIDs);
 
-				_rebuildCache();
-				return true;
+			_removeList(list);
+			version++;
+			_record(Constants.EVENT_LIST_REMOVED, list.getID());
+			for (int id : taskIDs) {
+				_record(Constants.EVENT_TASK_REMOVED, id);
 			}
+			return true;
 		}
 
 		return false;
@@ -180,112 +427,299 @@ public class DataStorage implements IDataStorage {
 
 	@Override
 	public int removeLists(final Collection<ITaskCollection> collection) {
-		if (cache.removeLists(collection) == collection.size()) {
-			int[] ids = new int[collection.size()];
-			int index = 0;
-			for (ITaskCollection c : collection) {
-				ids[index++] = listMap.get(c).intValue();
+		// Lists are only removed if all of them exist
+		for (ITaskCollection c : collection) {
+			if (_getList(c) == null) {
+				return 0;
 			}
+		}
 
-			int count = 0;
-			for (int id : ids) {
-				int[] taskIds = sql.getTaskIDs(id);
-				if (sql.removeList(id)) {
-					sql.removeTasks(taskIds);
-					count++;
-				}
+		int count = 0;
+		for (ITaskCollection c : collection) {
+			if (removeList(c)) {
+				count++;
 			}
-
-			return count;
 		}
-
-		return 0;
+		return count;
 	}
 
 	@Override
 	public boolean removeTask(final ITask task) {
-		boolean canBeRemoved = false;
-		if (cache.removeTask(task)) {
-			canBeRemoved = sql.removeTask(taskMap.get(task).intValue());
-			_rebuildCache();
-		}
-
-		return canBeRemoved;
+		return removeTasks(Collections.singletonList(task)) == 1;
 	}
 
 	@Override
 	public int removeTasks(final Collection<ITask> listOfTasksToRemove) {
-		int[] array = new int[listOfTasksToRemove.size()];
-
-		int loopCount = 0;
-		for (ITask t : listOfTasksToRemove) {
-			array[loopCount++] = taskMap.get(t).intValue();
+		ITask[] array = new ITask[listOfTasksToRemove.size()];
+		array = listOfTasksToRemove.toArray(array);
+
+		// Tasks are only removed if all of them exist
+		long[] containingIDs = new long[array.length];
+		for (int i = 0; i < array.length; i++) {
+			containingIDs[i] = _getListID(array[i]);
+			if (containingIDs[i] == Constants.ID_UNSAVED) {
+				return 0;
+			}
 		}
 
-		if (cache.removeTasks(listOfTasksToRemove) == listOfTasksToRemove
-				.size()) {
-			boolean[] boolArray = sql.removeTasks(array);
+		boolean[] removed = sql.removeTasks(_getTaskIDs(listOfTasksToRemove));
 
-			int count = 0;
-			for (boolean i : boolArray) {
-				count += i ? 1 : 0;
+		int count = 0;
+		for (int i = 0; i < removed.length; i++) {
+			if (removed[i]) {
+				_removeFromList(containingIDs[i], array[i]);
+				_record(Constants.EVENT_TASK_REMOVED, array[i].getID());
+				count++;
 			}
-			_rebuildCache();
-			return count;
 		}
+		if (count > 0) {
+			version++;
+		}
+		return count;
+	}
 
-		return 0;
+	@Override
+	public void setChangeRecorder(final IChangeRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	private static IDataSQL _createDataSQL(final SQLiteDatabase database) {
+		final DataSQL ret = new DataSQL();
+		ret.setDatabase(database);
+		return ret;
 	}
 
-	private int[] _addTasksSQL(final Collection<ITask> tasks, final int listID) {
+	/**
+	 * Adds the tasks to the list with the given ID in the database.
+	 * 
+	 * @return copies of the added tasks, carrying the ID each was given
+	 */
+	private Collection<ITask> _addTasksSQL(final Collection<ITask> tasks,
+			final int listID) {
 		ITask[] array = new ITask[tasks.size()];
 		array = tasks.toArray(array);
 
-		return sql.addTasks(array, listID);
-	}
+		int[] ids = sql.addTasks(array, listID);
 
-	private Collection<ITask> _getTasksFromIDs(final int[] taskIDs) {
 		Collection<ITask> ret = new ArrayList<ITask>();
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] != -1) {
+				ret.add(new Task(array[i], ids[i]));
+			}
+		}
+		return ret;
+	}
 
-		for (int i : taskIDs) {
-			for (ITask task : taskMap.keySet()) {
-				if (i == taskMap.get(task).intValue()) {
-					ret.add(task);
-				}
-
+	/**
+	 * Returns whether a list can be added, i.e. that its name is not used and
+	 * that none of its tasks are already stored.
+	 */
+	private boolean _canAdd(final ITaskCollection collection) {
+		if (listIDs.containsKey(collection.getName())) {
+			return false;
+		}
+		for (ITask t : collection.getTaskView()) {
+			if (_getListID(t) != Constants.ID_UNSAVED) {
+				return false;
 			}
 		}
+		return true;
+	}
+
+	/**
+	 * Returns the list matching the provided list, or null if there is no
+	 * such list. The returned list's tasks are not necessarily loaded.
+	 */
+	private ITaskCollection _getList(final ITaskCollection collection) {
+		Long id = listIDs.get(collection.getName());
+		if (id == null) {
+			return null;
+		}
+		ITaskCollection list = lists.get(id);
+		if (list.equals(collection)) {
+			return list;
+		}
+		// A list that has not been saved only names the list, and is stale
+		// once the stored list's tasks have changed
+		if (collection.getID() == Constants.ID_UNSAVED
+				&& list.size() == collection.size()) {
+			return list;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the loaded list containing the provided task, loading it if
+	 * needed, or null if no list contains it.
+	 */
+	private ITaskCollection _getListContaining(final ITask task) {
+		long listID = _getListID(task);
+		if (listID == Constants.ID_UNSAVED) {
+			return null;
+		}
+		ITaskCollection list = lists.get(Long.valueOf(listID));
+		return list == null ? null : _load(list);
+	}
+
+	/**
+	 * Returns the ID of the list containing the provided task, or
+	 * Constants.ID_UNSAVED if the task is not stored. The database is only
+	 * asked if the task may be in a list that is not loaded.
+	 */
+	private long _getListID(final ITask task) {
+		ITaskCollection list = cache.getListContaining(task);
+		if (list != null) {
+			return list.getID();
+		}
+		if (task.getID() == Constants.ID_UNSAVED || _isFullyLoaded()) {
+			return Constants.ID_UNSAVED;
+		}
+		int listID = sql.getListID((int) task.getID());
+		return listID == -1 ? Constants.ID_UNSAVED : listID;
+	}
+
+	private int[] _getTaskIDs(final Collection<ITask> tasks) {
+		int[] ret = new int[tasks.size()];
+		int index = 0;
+		for (ITask t : tasks) {
+			ret[index++] = (int) t.getID();
+		}
 		return ret;
 	}
 
-	private void _populateCache() {
-		// Get all ITaskCollections
-		ITaskCollection[] collection = new ITaskCollection[listMap.keySet()
-				.size()];
-		collection = listMap.keySet().toArray(collection);
+	private boolean _isFullyLoaded() {
+		return loadedLists.size() == lists.size();
+	}
 
-		// Loop through each list and add it
-		for (ITaskCollection c : collection) {
-			// Get all ITasks
-			int[] taskIDs = sql.getTaskIDs(listMap.get(c).intValue());
-			ITaskCollection taskCollection = new TaskCollection(c.getName(),
-					_getTasksFromIDs(taskIDs));
-			cache.addList(taskCollection);
+	private boolean _isLoaded(final ITaskCollection list) {
+		return loadedLists.containsKey(Long.valueOf(list.getID()));
+	}
 
-			// TODO: check this out
-			Integer id = listMap.get(c);
-			listMap.remove(c);
-			listMap.put(taskCollection, id);
+	/**
+	 * Returns the current version of a list with its tasks loaded, reading
+	 * the tasks from the database if needed. Returns null if the list has
+	 * been removed.
+	 */
+	private ITaskCollection _load(final ITaskCollection list) {
+		Long id = Long.valueOf(list.getID());
+		ITaskCollection current = lists.get(id);
+		// Getting the ID from loadedLists marks the list as recently used
+		if (current == null || loadedLists.get(id) != null) {
+			return current;
+		}
 
+		_putLoaded(new TaskCollection(current.getID(), current.getName(), sql
+				.getTasks((int) current.getID())));
+		return lists.get(id);
+	}
+
+	/**
+	 * Adds a list with its tasks to the cache, dropping the tasks of the least
+	 * recently used lists if too many lists are loaded.
+	 */
+	private void _putLoaded(final ITaskCollection list) {
+		// The cache keeps its own version of the list, changed in place
+		cache.addList(list);
+		_setList(cache.getList(list.getName()));
+		loadedLists.put(Long.valueOf(list.getID()), Boolean.TRUE);
+
+		Iterator<Long> leastRecentlyUsed = loadedLists.keySet().iterator();
+		while (loadedLists.size() > maxLoadedLists) {
+			Long id = leastRecentlyUsed.next();
+			leastRecentlyUsed.remove();
+			ITaskCollection dropped = lists.get(id);
+			cache.removeList(dropped);
+			_setList(new ListHeader(dropped.getID(), dropped.getName(),
+					dropped.size()));
 		}
 	}
 
-	private void _rebuildCache() {
-		cache.clearData();
-		listMap = sql.getAllLists();
-		taskMap = sql.getAllTasks();
+	/**
+	 * Reads all lists from the database, ordered by ID.
+	 */
+	private Collection<ITaskCollection> _readLists() {
+		Map<Long, ITaskCollection> ret = new TreeMap<Long, ITaskCollection>();
+		for (ITaskCollection c : sql.getAllLists().keySet()) {
+			ret.put(Long.valueOf(c.getID()), c);
+		}
+		return ret.values();
+	}
+
+	private void _record(final int type, final long id) {
+		if (recorder != null) {
+			recorder.recordChange(type, id);
+		}
+	}
+
+	/**
+	 * Records an edit of a task, and whether the edit completed or
+	 * decompleted it.
+	 */
+	private void _recordEdit(final ITask newTask, final boolean wasCompleted) {
+		_record(Constants.EVENT_TASK_EDITED, newTask.getID());
+		if (newTask.isCompleted() != wasCompleted) {
+			_record(newTask.isCompleted() ? Constants.EVENT_TASK_COMPLETED
+					: Constants.EVENT_TASK_DECOMPLETED, newTask.getID());
+		}
+	}
+
+	private void _recordTasks(final int type, final Collection<ITask> tasks) {
+		for (ITask t : tasks) {
+			_record(type, t.getID());
+		}
+	}
+
+	/**
+	 * Removes a task that was removed from the database from the list with
+	 * the provided ID.
+	 */
+	private void _removeFromList(final long listID, final ITask task) {
+		ITaskCollection list = lists.get(Long.valueOf(listID));
+		if (_isLoaded(list)) {
+			cache.removeTask(task);
+			_touch(list);
+		} else {
+			_setList(new ListHeader(listID, list.getName(), list.size() - 1));
+		}
+	}
+
+	private void _removeList(final ITaskCollection list) {
+		Long id = Long.valueOf(list.getID());
+		if (loadedLists.remove(id) != null) {
+			cache.removeList(list);
+		}
+		lists.remove(id);
+		listIDs.remove(list.getName());
+	}
+
+	/**
+	 * Sets the current version of a list, keeping its place among the lists.
+	 */
+	private void _setList(final ITaskCollection list) {
+		Long id = Long.valueOf(list.getID());
+		ITaskCollection old = lists.put(id, list);
+		if (old != null) {
+			listIDs.remove(old.getName());
+		}
+		listIDs.put(list.getName(), id);
+	}
+
+	/**
+	 * Adds the tasks of a list just added to the database and adds the list
+	 * to the cache with the stored tasks.
+	 */
+	private void _storeList(final ITaskCollection collection, final int listID) {
+		Collection<ITask> tasks = _addTasksSQL(collection.getTaskView(), listID);
+		_putLoaded(new TaskCollection(listID, collection.getName(), tasks));
+		_record(Constants.EVENT_LIST_ADDED, listID);
+		_recordTasks(Constants.EVENT_TASK_ADDED, tasks);
+	}
 
-		_populateCache();
+	/**
+	 * Marks a loaded list as the most recently used.
+	 */
+	private void _touch(final ITaskCollection list) {
+		loadedLists.get(Long.valueOf(list.getID()));
 	}
 
 }
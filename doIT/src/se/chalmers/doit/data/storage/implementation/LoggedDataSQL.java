@@ -0,0 +1,894 @@
+package se.chalmers.doit.data.storage.implementation;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import se.chalmers.doit.core.*;
+import se.chalmers.doit.core.implementation.*;
+import se.chalmers.doit.data.storage.*;
+import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.implementation.Constants;
+import se.chalmers.doit.util.implementation.TaskListUtility;
+import android.util.Log;
+
+/**
+ * An IDataSQL logging every change in an OperationLog and returning, while
+ * the changes are written to another IDataSQL on a background thread.
+ * 
+ * IDs of new lists and tasks are handed out here, so adding does not wait for
+ * the database. Changes are written in groups: the log is synced once for a
+ * group, and the group is then written in a single transaction. A write is
+ * made OPERATION_LOG_WRITE_DELAY milliseconds after the first change that has
+ * not been written, or right away once OPERATION_LOG_WRITE_THRESHOLD changes
+ * have not been written. Changes are only synced and written on the write
+ * thread.
+ * 
+ * Reads do not wait for the write thread. The lists and tasks changed by the
+ * changes that have not been written are kept in memory, and laid over what is
+ * read from the database, so that a read sees every change made. Only
+ * getGeneration() and flush() wait for the changes to be written, so they
+ * should not be called on the UI thread.
+ * 
+ * Each logged change writes a whole row under its ID, so writing a change
+ * twice leaves the same row. If the process is killed, the log is written to
+ * the database again when it is next opened, also the changes that had been
+ * written before. Changes that had not been synced are lost. A change that
+ * cannot be written to the database is skipped, so that it does not keep the
+ * other changes from being written.
+ * 
+ * Changes are assumed to be valid, as DataStorage checks them, so they are
+ * reported as made without asking the database.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class LoggedDataSQL implements IDataSQL {
+
+	/**
+	 * The changes that had not been written when a read was made.
+	 */
+	private static final class Pending {
+
+		// Whether the data had been cleared, hiding what is in the database
+		final boolean cleared;
+		final Map<Integer, PendingList> lists;
+		final Map<Integer, PendingTask> tasks;
+
+		Pending(final boolean cleared, final Map<Integer, PendingList> lists,
+				final Map<Integer, PendingTask> tasks) {
+			this.cleared = cleared;
+			this.lists = new HashMap<Integer, PendingList>(lists);
+			this.tasks = new HashMap<Integer, PendingTask>(tasks);
+		}
+	}
+
+	/**
+	 * A list as left by the changes that have not been written.
+	 */
+	private static final class PendingList {
+
+		// The number of the last change made to the list
+		final long change;
+		// The name of the list, or null if it has been removed
+		final String name;
+
+		PendingList(final long change, final String name) {
+			this.change = change;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * A task as left by the changes that have not been written.
+	 */
+	private static final class PendingTask {
+
+		// The number of the last change made to the task
+		final long change;
+		// The ID of the list the task is connected to, or NO_LIST if it has
+		// not been changed
+		final int listID;
+		final boolean removed;
+		// The task carrying its ID, or null if its properties have not been
+		// changed
+		final ITask task;
+
+		PendingTask(final long change, final ITask task, final int listID,
+				final boolean removed) {
+			this.change = change;
+			this.task = task;
+			this.listID = listID;
+			this.removed = removed;
+		}
+	}
+
+	/**
+	 * Writes the fields of a log record.
+	 */
+	private static final class RecordWriter {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		RecordWriter(final byte type, final int id) {
+			try {
+				out.writeByte(type);
+				out.writeInt(id);
+			} catch (final IOException e) {
+				throw new IllegalStateException(e.toString());
+			}
+		}
+
+		byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+
+		void writeInt(final int value) {
+			try {
+				out.writeInt(value);
+			} catch (final IOException e) {
+				throw new IllegalStateException(e.toString());
+			}
+		}
+
+		void writeString(final String value) {
+			try {
+				out.writeUTF(value);
+			} catch (final IOException e) {
+				throw new IllegalStateException(e.toString());
+			}
+		}
+
+		void writeTask(final ITask task) {
+			try {
+				out.writeUTF(task.getName());
+				out.writeUTF(task.getDescription());
+				out.writeByte(task.getPriority().getValue());
+				_writeDate(task.getDueDate());
+				_writeDate(task.getReminderDate());
+				out.writeInt(task.getCustomPosition());
+				out.writeBoolean(task.isCompleted());
+			} catch (final IOException e) {
+				throw new IllegalStateException(e.toString());
+			}
+		}
+
+		private void _writeDate(final Date date) throws IOException {
+			out.writeBoolean(date != null);
+			if (date != null) {
+				out.writeLong(date.getTime());
+			}
+		}
+	}
+
+	public static final String LOG_TAG = "doIT.log";
+
+	private static final byte ADD_LIST = 0;
+	private static final byte ADD_TASK = 1;
+	private static final byte CLEAR_DATA = 2;
+	private static final byte EDIT_LIST = 3;
+	private static final byte EDIT_TASK = 4;
+	private static final byte MOVE_TASK = 5;
+	private static final int NO_LIST = -1;
+	private static final byte REMOVE_LIST = 6;
+	private static final byte REMOVE_TASK = 7;
+	private static final ScheduledExecutorService writer = Executors
+			.newSingleThreadScheduledExecutor();
+
+	private static Date _readDate(final DataInputStream in)
+			throws IOException {
+		return in.readBoolean() ? new Date(in.readLong()) : null;
+	}
+
+	private static ITask _readTask(final DataInputStream in, final int id)
+			throws IOException {
+		final String name = in.readUTF();
+		final String description = in.readUTF();
+		final IPriority priority = new Priority(in.readByte());
+		final Date dueDate = _readDate(in);
+		final Date reminderDate = _readDate(in);
+		return new Task(id, name, description, priority, dueDate,
+				reminderDate, in.readInt(), in.readBoolean());
+	}
+
+	// The number of the last change clearing the data
+	private long clearChange;
+	private final OperationLog log;
+	// Number of changes logged
+	private long logged;
+	// The highest IDs handed out
+	private int lastListID;
+	private int lastTaskID;
+	// The lists and tasks changed by the logged changes that have not been
+	// written, by ID
+	private final Map<Integer, PendingList> pendingLists = new HashMap<Integer, PendingList>();
+	private final Map<Integer, PendingTask> pendingTasks = new HashMap<Integer, PendingTask>();
+	private final IDataSQL sql;
+	// The logged changes that have not been written, in the order they were
+	// made
+	private List<byte[]> unwritten = new ArrayList<byte[]>();
+	private final ScheduledExecutorService writeExecutor;
+	private final long writeDelay;
+	// Number of the first changes logged that have been written
+	private long written;
+	// Held while writing, so that groups are written in the order they were
+	// logged
+	private final Object writeLock = new Object();
+	private boolean writeScheduled = false;
+	private final Runnable writeTask = new Runnable() {
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public void run() {
+			_write();
+		}
+	};
+	private final int writeThreshold;
+
+	/**
+	 * Writes the changes left in the log to the database.
+	 * 
+	 * @param sql
+	 *            the IDataSQL to write the changes to, with its database
+	 *            already set
+	 * @param log
+	 *            the log to keep the changes in
+	 * @throws IOException
+	 *             if the log cannot be read
+	 */
+	public LoggedDataSQL(final IDataSQL sql, final OperationLog log)
+			throws IOException {
+		this(sql, log, writer, Constants.OPERATION_LOG_WRITE_DELAY,
+				Constants.OPERATION_LOG_WRITE_THRESHOLD);
+	}
+
+	/**
+	 * Writes the changes left in the log to the database.
+	 * 
+	 * @param sql
+	 *            the IDataSQL to write the changes to, with its database
+	 *            already set
+	 * @param log
+	 *            the log to keep the changes in
+	 * @param writeExecutor
+	 *            the executor to write the changes on
+	 * @param writeDelay
+	 *            the longest time in milliseconds a change is held before it
+	 *            is written
+	 * @param writeThreshold
+	 *            the number of changes after which they are written right
+	 *            away
+	 * @throws IOException
+	 *             if the log cannot be read
+	 */
+	public LoggedDataSQL(final IDataSQL sql, final OperationLog log,
+			final ScheduledExecutorService writeExecutor,
+			final long writeDelay, final int writeThreshold)
+			throws IOException {
+		this.sql = sql;
+		this.log = log;
+		this.writeExecutor = writeExecutor;
+		this.writeDelay = writeDelay;
+		this.writeThreshold = writeThreshold;
+
+		final List<byte[]> logged = log.readAll();
+		if (!logged.isEmpty()) {
+			_writeToSQL(logged);
+			log.reset();
+		}
+		lastListID = sql.getLastListID();
+		lastTaskID = sql.getLastTaskID();
+	}
+
+	@Override
+	public synchronized int addList(final ITaskCollection list) {
+		lastListID++;
+		final RecordWriter record = new RecordWriter(ADD_LIST, lastListID);
+		record.writeString(list.getName());
+		_log(record);
+		_setPendingList(lastListID, list.getName());
+		return lastListID;
+	}
+
+	@Override
+	public synchronized int[] addLists(final ITaskCollection[] lists) {
+		final int[] ret = new int[lists.length];
+		for (int i = 0; i < lists.length; i++) {
+			ret[i] = addList(lists[i]);
+		}
+		return ret;
+	}
+
+	@Override
+	public synchronized int addTask(final ITask task, final int listID) {
+		lastTaskID++;
+		final RecordWriter record = new RecordWriter(ADD_TASK, lastTaskID);
+		record.writeInt(listID);
+		record.writeTask(task);
+		_log(record);
+		_setPendingTask(lastTaskID, new Task(task, lastTaskID), listID, false);
+		return lastTaskID;
+	}
+
+	@Override
+	public synchronized int[] addTasks(final ITask[] tasks, final int listID) {
+		final int[] ret = new int[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			ret[i] = addTask(tasks[i], listID);
+		}
+		return ret;
+	}
+
+	@Override
+	public synchronized void clearData() {
+		_log(new RecordWriter(CLEAR_DATA, 0));
+		// Everything changed before is hidden by the clear
+		pendingLists.clear();
+		pendingTasks.clear();
+		clearChange = logged;
+	}
+
+	@Override
+	public synchronized boolean editList(final int listID,
+			final ITaskCollection newListProperties) {
+		final RecordWriter record = new RecordWriter(EDIT_LIST, listID);
+		record.writeString(newListProperties.getName());
+		_log(record);
+		_setPendingList(listID, newListProperties.getName());
+		return true;
+	}
+
+	@Override
+	public synchronized boolean editTask(final int taskID,
+			final ITask newTaskProperties) {
+		final RecordWriter record = new RecordWriter(EDIT_TASK, taskID);
+		record.writeTask(newTaskProperties);
+		_log(record);
+		final PendingTask old = pendingTasks.get(Integer.valueOf(taskID));
+		_setPendingTask(taskID, new Task(newTaskProperties, taskID),
+				old == null ? NO_LIST : old.listID, old != null && old.removed);
+		return true;
+	}
+
+	/**
+	 * Has all logged changes written to the database on the write thread, and
+	 * returns once they have been written. Should not be called on the UI
+	 * thread.
+	 */
+	public void flush() {
+		final long target;
+		synchronized (this) {
+			if (written == logged) {
+				return;
+			}
+			target = logged;
+		}
+		writeExecutor.execute(writeTask);
+		synchronized (this) {
+			while (written < target) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	@Override
+	public Map<ITaskCollection, Integer> getAllLists() {
+		final Pending pending = _getPending();
+		if (pending == null) {
+			return sql.getAllLists();
+		}
+
+		final Map<ITaskCollection, Integer> ret = new HashMap<ITaskCollection, Integer>();
+		if (!pending.cleared) {
+			for (final Map.Entry<ITaskCollection, Integer> e : sql
+					.getAllLists().entrySet()) {
+				if (!pending.lists.containsKey(e.getValue())) {
+					ret.put(e.getKey(), e.getValue());
+				}
+			}
+		}
+		for (final Map.Entry<Integer, PendingList> e : pending.lists
+				.entrySet()) {
+			if (e.getValue().name != null) {
+				ret.put(new TaskCollection(e.getKey().intValue(),
+						e.getValue().name, new ArrayList<ITask>()), e.getKey());
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public Map<ITask, Integer> getAllTasks() {
+		final Pending pending = _getPending();
+		if (pending == null) {
+			return sql.getAllTasks();
+		}
+
+		final Map<ITask, Integer> ret = new HashMap<ITask, Integer>();
+		for (final Collection<ITask> tasks : _readAllTasksByList(pending)
+				.values()) {
+			for (final ITask task : tasks) {
+				ret.put(task, Integer.valueOf((int) task.getID()));
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public Map<Integer, Collection<ITask>> getAllTasksByList() {
+		final Pending pending = _getPending();
+		if (pending == null) {
+			return sql.getAllTasksByList();
+		}
+		return _readAllTasksByList(pending);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Waits for the logged changes to be written, so that the generation
+	 * counts them. Should not be called on the UI thread.
+	 */
+	@Override
+	public long getGeneration() {
+		flush();
+		return sql.getGeneration();
+	}
+
+	@Override
+	public synchronized int getLastListID() {
+		return lastListID;
+	}
+
+	@Override
+	public synchronized int getLastTaskID() {
+		return lastTaskID;
+	}
+
+	@Override
+	public int getListID(final int taskID) {
+		final Pending pending = _getPending();
+		if (pending != null) {
+			final PendingTask task = pending.tasks.get(Integer.valueOf(taskID));
+			if (task != null && task.removed) {
+				return -1;
+			}
+			if (task != null && task.listID != NO_LIST) {
+				return task.listID;
+			}
+			if (pending.cleared) {
+				return -1;
+			}
+		}
+		return sql.getListID(taskID);
+	}
+
+	@Override
+	public Map<Integer, Integer> getTaskCounts() {
+		final Pending pending = _getPending();
+		if (pending == null) {
+			return sql.getTaskCounts();
+		}
+
+		// Only read when the data is loaded, so the tasks are counted rather
+		// than working out which list each changed task was in
+		final Map<Integer, Integer> ret = new HashMap<Integer, Integer>();
+		for (final Map.Entry<Integer, Collection<ITask>> e : _readAllTasksByList(
+				pending).entrySet()) {
+			ret.put(e.getKey(), Integer.valueOf(e.getValue().size()));
+		}
+		return ret;
+	}
+
+	@Override
+	public ITaskCursor getTaskCursor(final int listID,
+			final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) {
+		final Pending pending = _getPending();
+		if (pending == null || (!pending.cleared && pending.tasks.isEmpty())) {
+			return sql.getTaskCursor(listID, primary, secondary, tertiary);
+		}
+
+		// The tasks are sorted in memory, like the database sorts them
+		final List<ITask> tasks = new ArrayList<ITask>(_readTasks(pending,
+				listID));
+		new TaskListUtility().sortTasks(tasks, primary, secondary, tertiary);
+		return new TaskListCursor(tasks);
+	}
+
+	@Override
+	public int[] getTaskIDs(final int listID) {
+		final Pending pending = _getPending();
+		if (pending == null) {
+			return sql.getTaskIDs(listID);
+		}
+
+		final Collection<ITask> tasks = _readTasks(pending, listID);
+		final int[] ret = new int[tasks.size()];
+		int index = 0;
+		for (final ITask task : tasks) {
+			ret[index++] = (int) task.getID();
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<ITask> getTasks(final int listID) {
+		final Pending pending = _getPending();
+		if (pending == null) {
+			return sql.getTasks(listID);
+		}
+		return _readTasks(pending, listID);
+	}
+
+	@Override
+	public synchronized boolean moveTask(final int taskID, final int listID) {
+		final RecordWriter record = new RecordWriter(MOVE_TASK, taskID);
+		record.writeInt(listID);
+		_log(record);
+		final PendingTask old = pendingTasks.get(Integer.valueOf(taskID));
+		_setPendingTask(taskID, old == null ? null : old.task, listID,
+				old != null && old.removed);
+		return true;
+	}
+
+	@Override
+	public synchronized void putList(final int listID,
+			final ITaskCollection list) {
+		lastListID = Math.max(lastListID, listID);
+		final RecordWriter record = new RecordWriter(ADD_LIST, listID);
+		record.writeString(list.getName());
+		_log(record);
+		_setPendingList(listID, list.getName());
+	}
+
+	@Override
+	public synchronized void putTask(final int taskID, final ITask task,
+			final int listID) {
+		lastTaskID = Math.max(lastTaskID, taskID);
+		final RecordWriter record = new RecordWriter(ADD_TASK, taskID);
+		record.writeInt(listID);
+		record.writeTask(task);
+		_log(record);
+		_setPendingTask(taskID, new Task(task, taskID), listID, false);
+	}
+
+	/**
+	 * Starts writing all logged changes to the database on the write thread,
+	 * without waiting for them to be written. Should be called when the
+	 * application is paused.
+	 */
+	public synchronized void startWrite() {
+		if (written < logged) {
+			writeExecutor.execute(writeTask);
+		}
+	}
+
+	@Override
+	public synchronized boolean removeList(final int listID) {
+		_log(new RecordWriter(REMOVE_LIST, listID));
+		_setPendingList(listID, null);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean[] removeLists(final int[] listIDs) {
+		final boolean[] ret = new boolean[listIDs.length];
+		for (int i = 0; i < listIDs.length; i++) {
+			ret[i] = removeList(listIDs[i]);
+		}
+		return ret;
+	}
+
+	@Override
+	public synchronized boolean removeTask(final int taskID) {
+		_log(new RecordWriter(REMOVE_TASK, taskID));
+		_setPendingTask(taskID, null, NO_LIST, true);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean[] removeTasks(final int[] taskIDs) {
+		final boolean[] ret = new boolean[taskIDs.length];
+		for (int i = 0; i < taskIDs.length; i++) {
+			ret[i] = removeTask(taskIDs[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The changes made by the Runnable are logged like any other changes, and
+	 * are not written in a transaction of their own.
+	 */
+	@Override
+	public void runInTransaction(final Runnable runnable) {
+		runnable.run();
+	}
+
+	private void _dropWritten() {
+		// Called while holding this. The changes that have been written are
+		// read from the database
+		final Iterator<PendingList> lists = pendingLists.values().iterator();
+		while (lists.hasNext()) {
+			if (lists.next().change <= written) {
+				lists.remove();
+			}
+		}
+		final Iterator<PendingTask> tasks = pendingTasks.values().iterator();
+		while (tasks.hasNext()) {
+			if (tasks.next().change <= written) {
+				tasks.remove();
+			}
+		}
+	}
+
+	private synchronized Pending _getPending() {
+		// A copy, so that the database can be read without holding this. It is
+		// taken before the database is read, as the changes may be written and
+		// dropped while it is read, and laying them over rows they were
+		// written to leaves the same rows
+		if (written == logged) {
+			return null;
+		}
+		return new Pending(clearChange > written, pendingLists, pendingTasks);
+	}
+
+	private Map<Long, ITask> _getTasks(
+			final Map<Integer, Map<Long, ITask>> byList, final int listID) {
+		final Integer id = Integer.valueOf(listID);
+		Map<Long, ITask> ret = byList.get(id);
+		if (ret == null) {
+			ret = new TreeMap<Long, ITask>();
+			byList.put(id, ret);
+		}
+		return ret;
+	}
+
+	private void _log(final RecordWriter record) {
+		// Called while holding this
+		final byte[] bytes = record.toByteArray();
+		log.append(bytes);
+		unwritten.add(bytes);
+		logged++;
+		if (unwritten.size() == writeThreshold) {
+			writeExecutor.execute(writeTask);
+		} else if (!writeScheduled) {
+			writeScheduled = true;
+			writeExecutor.schedule(writeTask, writeDelay,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Lays the changed tasks over the tasks read from the database, by list.
+	 * The tasks of each list are ordered by ID, like the tasks read from the
+	 * database. Tasks moved to a list that was read are read from the
+	 * database if needed.
+	 */
+	private Map<Integer, Collection<ITask>> _overlayTasks(
+			final Pending pending, final Map<Integer, Collection<ITask>> stored) {
+		final Map<Integer, Map<Long, ITask>> byList = new HashMap<Integer, Map<Long, ITask>>();
+		for (final Map.Entry<Integer, Collection<ITask>> e : stored.entrySet()) {
+			for (final ITask task : e.getValue()) {
+				final PendingTask changed = pending.tasks.get(Integer
+						.valueOf((int) task.getID()));
+				int listID = e.getKey().intValue();
+				ITask current = task;
+				if (changed != null) {
+					if (changed.removed) {
+						continue;
+					}
+					if (changed.listID != NO_LIST) {
+						listID = changed.listID;
+					}
+					if (changed.task != null) {
+						current = changed.task;
+					}
+				}
+				_getTasks(byList, listID).put(Long.valueOf(task.getID()),
+						current);
+			}
+		}
+
+		for (final Map.Entry<Integer, PendingTask> e : pending.tasks
+				.entrySet()) {
+			final PendingTask changed = e.getValue();
+			if (changed.removed || changed.listID == NO_LIST) {
+				continue;
+			}
+			final Long id = Long.valueOf(e.getKey().intValue());
+			final Map<Long, ITask> tasks = _getTasks(byList, changed.listID);
+			if (changed.task != null) {
+				tasks.put(id, changed.task);
+			} else if (!tasks.containsKey(id) && !pending.cleared
+					&& stored.containsKey(Integer.valueOf(changed.listID))) {
+				final ITask task = _readStoredTask(e.getKey().intValue());
+				if (task != null) {
+					tasks.put(id, task);
+				}
+			}
+		}
+
+		final Map<Integer, Collection<ITask>> ret = new HashMap<Integer, Collection<ITask>>();
+		for (final Map.Entry<Integer, Map<Long, ITask>> e : byList.entrySet()) {
+			if (!e.getValue().isEmpty()) {
+				ret.put(e.getKey(), new ArrayList<ITask>(e.getValue().values()));
+			}
+		}
+		return ret;
+	}
+
+	private void _write() {
+		// Only called on the write thread
+		synchronized (writeLock) {
+			final List<byte[]> toWrite;
+			final long target;
+			synchronized (this) {
+				writeScheduled = false;
+				if (unwritten.isEmpty()) {
+					return;
+				}
+				toWrite = unwritten;
+				unwritten = new ArrayList<byte[]>();
+				target = logged;
+			}
+			try {
+				log.sync();
+			} catch (final IOException e) {
+				// The changes are still written to the database, only they
+				// are lost if the process is killed before that
+				Log.w(LOG_TAG, "Could not sync the operation log: " + e);
+			}
+
+			_writeToSQL(toWrite);
+			synchronized (this) {
+				written = target;
+				_dropWritten();
+				if (unwritten.isEmpty()) {
+					_resetLog();
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	private Map<Integer, Collection<ITask>> _readAllTasksByList(
+			final Pending pending) {
+		final Map<Integer, Collection<ITask>> stored = pending.cleared ? new HashMap<Integer, Collection<ITask>>()
+				: sql.getAllTasksByList();
+		return _overlayTasks(pending, stored);
+	}
+
+	private ITask _readStoredTask(final int taskID) {
+		// Reads a task that was moved by a change that has not been written.
+		// The write thread may move the task between the two reads, so they
+		// are made again until the task is in the same list after them
+		int listID = sql.getListID(taskID);
+		while (listID != -1) {
+			for (final ITask task : sql.getTasks(listID)) {
+				if (task.getID() == taskID) {
+					return task;
+				}
+			}
+			final int movedTo = sql.getListID(taskID);
+			if (movedTo == listID) {
+				return null;
+			}
+			listID = movedTo;
+		}
+		return null;
+	}
+
+	private Collection<ITask> _readTasks(final Pending pending,
+			final int listID) {
+		final Integer id = Integer.valueOf(listID);
+		final Map<Integer, Collection<ITask>> stored = new HashMap<Integer, Collection<ITask>>();
+		stored.put(id, pending.cleared ? new ArrayList<ITask>() : sql
+				.getTasks(listID));
+		final Collection<ITask> ret = _overlayTasks(pending, stored).get(id);
+		return ret == null ? new ArrayList<ITask>() : ret;
+	}
+
+	private void _resetLog() {
+		// Every logged change has been written, so the log can start over
+		try {
+			log.reset();
+		} catch (final IOException e) {
+			// Writing the logged changes again when the log is next opened
+			// leaves the same rows
+			Log.w(LOG_TAG, "Could not reset the operation log: " + e);
+		}
+	}
+
+	private void _setPendingList(final int listID, final String name) {
+		// Called while holding this, right after the change has been logged
+		pendingLists.put(Integer.valueOf(listID), new PendingList(logged, name));
+	}
+
+	private void _setPendingTask(final int taskID, final ITask task,
+			final int listID, final boolean removed) {
+		// Called while holding this, right after the change has been logged
+		pendingTasks.put(Integer.valueOf(taskID), new PendingTask(logged, task,
+				listID, removed));
+	}
+
+	private void _writeToSQL(final List<byte[]> records) {
+		try {
+			_writeInTransaction(records);
+		} catch (final RuntimeException e) {
+			// Written one at a time instead, so that only the changes that
+			// cannot be written are lost
+			Log.w(LOG_TAG, "Could not write the logged changes: " + e);
+			for (final byte[] record : records) {
+				try {
+					_writeInTransaction(Collections.singletonList(record));
+				} catch (final RuntimeException recordException) {
+					Log.w(LOG_TAG, "Skipped a logged change: "
+							+ recordException);
+				}
+			}
+		}
+	}
+
+	private void _writeInTransaction(final List<byte[]> records) {
+		sql.runInTransaction(new Runnable() {
+			@SuppressWarnings("synthetic-access")
+			@Override
+			public void run() {
+				for (final byte[] record : records) {
+					_writeToSQL(record);
+				}
+			}
+		});
+	}
+
+	private void _writeToSQL(final byte[] record) {
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(record));
+		try {
+			final byte type = in.readByte();
+			final int id = in.readInt();
+			switch (type) {
+				case ADD_LIST:
+					sql.putList(id, new TaskCollection(in.readUTF()));
+					break;
+				case ADD_TASK:
+					final int listID = in.readInt();
+					sql.putTask(id, _readTask(in, id), listID);
+					break;
+				case CLEAR_DATA:
+					sql.clearData();
+					break;
+				case EDIT_LIST:
+					sql.editList(id, new TaskCollection(in.readUTF()));
+					break;
+				case EDIT_TASK:
+					sql.editTask(id, _readTask(in, id));
+					break;
+				case MOVE_TASK:
+					sql.moveTask(id, in.readInt());
+					break;
+				case REMOVE_LIST:
+					sql.removeList(id);
+					break;
+				case REMOVE_TASK:
+					sql.removeTask(id);
+					break;
+				default:
+					throw new IllegalStateException("Unknown operation " + type
+							+ " in the operation log!");
+			}
+		} catch (final IOException e) {
+			// The checksum of the record was correct, so it was logged so
+			throw new IllegalStateException("Malformed operation log record!");
+		}
+	}
+}
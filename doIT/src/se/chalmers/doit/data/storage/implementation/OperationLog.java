@@ -0,0 +1,153 @@
+package se.chalmers.doit.data.storage.implementation;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records kept in a file.
+ * 
+ * Each record is stored with its length and a checksum, so that a record that
+ * was only partly written when the process was killed is detected, and the
+ * records after it are ignored. Appended
+ * records are buffered in memory until sync() writes them and waits for them
+ * to reach the disk, so that a group of records costs a single sync.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class OperationLog {
+
+	// The length and checksum around each record
+	private static final int RECORD_OVERHEAD = 8;
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private final CRC32 checksum = new CRC32();
+	private final RandomAccessFile file;
+
+	/**
+	 * Opens a log, creating the file if it does not exist.
+	 * 
+	 * @param file
+	 *            the file to keep the log in
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public OperationLog(final File file) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+	}
+
+	/**
+	 * Appends a record to the log. The record is not written to the file
+	 * until sync() is called.
+	 * 
+	 * @param record
+	 *            the record to append
+	 */
+	public synchronized void append(final byte[] record) {
+		_writeInt(record.length);
+		buffer.write(record, 0, record.length);
+		_writeInt(_getChecksum(record));
+	}
+
+	/**
+	 * Closes the file, dropping any records that have not been synced.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	public synchronized void close() throws IOException {
+		buffer.reset();
+		file.close();
+	}
+
+	/**
+	 * Reads the records in the file, in the order they were appended. Reading
+	 * stops at the first record that was not completely written, and the file
+	 * is cut there, so that records appended later are not lost behind it.
+	 * 
+	 * @return the records that were completely written
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public synchronized List<byte[]> readAll() throws IOException {
+		final List<byte[]> ret = new ArrayList<byte[]>();
+		final long length = file.length();
+		long end = 0;
+		file.seek(0);
+		while (length - end >= RECORD_OVERHEAD) {
+			final int recordLength = file.readInt();
+			if (recordLength < 0
+					|| recordLength > length - end - RECORD_OVERHEAD) {
+				break;
+			}
+			final byte[] record = new byte[recordLength];
+			file.readFully(record);
+			if (file.readInt() != _getChecksum(record)) {
+				break;
+			}
+			ret.add(record);
+			end += recordLength + RECORD_OVERHEAD;
+		}
+		if (end != length) {
+			file.setLength(end);
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes all records, both from the file and the ones not synced.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be cut
+	 */
+	public synchronized void reset() throws IOException {
+		buffer.reset();
+		file.setLength(0);
+	}
+
+	/**
+	 * Writes the appended records to the file, and returns once they have
+	 * reached the disk.
+	 * 
+	 * @throws IOException
+	 *             if the records cannot be written
+	 */
+	public synchronized void sync() throws IOException {
+		if (buffer.size() == 0) {
+			return;
+		}
+		final long end = file.length();
+		try {
+			file.seek(end);
+			file.write(buffer.toByteArray());
+			file.getFD().sync();
+		} catch (final IOException e) {
+			// Cut off what was written, so that the records are written whole
+			// by the next sync
+			file.setLength(end);
+			throw e;
+		}
+		buffer.reset();
+	}
+
+	private int _getChecksum(final byte[] record) {
+		// The length is included, so that a file cut short and filled with
+		// zeros does not read as empty records
+		checksum.reset();
+		checksum.update(record.length >>> 24);
+		checksum.update(record.length >>> 16);
+		checksum.update(record.length >>> 8);
+		checksum.update(record.length);
+		checksum.update(record);
+		return (int) checksum.getValue();
+	}
+
+	private void _writeInt(final int value) {
+		// Big-endian, as read by RandomAccessFile.readInt()
+		buffer.write(value >>> 24);
+		buffer.write(value >>> 16);
+		buffer.write(value >>> 8);
+		buffer.write(value);
+	}
+}
@@ -0,0 +1,267 @@
+package se.chalmers.doit.data.storage.implementation;
+
+import java.io.*;
+import java.util.*;
+
+import se.chalmers.doit.core.*;
+import se.chalmers.doit.data.storage.*;
+import se.chalmers.doit.util.IComparatorStrategy;
+import android.util.Log;
+
+/**
+ * An IDataSQL reading the lists and tasks from a TaskSnapshot, so that
+ * loading the data does not read every row of the database.
+ * 
+ * The snapshot is only used if it was written at the database's current
+ * generation, that is if the database has not changed since. Once a change is
+ * made the snapshot is dropped, and everything is read from the database.
+ * Reads that are not made when the data is loaded are always made from the
+ * database.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class SnapshotDataSQL implements IDataSQL {
+
+	public static final String LOG_TAG = "doIT.snapshot";
+	// Generation of a file without a snapshot
+	private static final long NO_GENERATION = Long.MIN_VALUE;
+
+	private final File file;
+	// The snapshot the data is read from, or null once it has been dropped
+	private TaskSnapshot snapshot;
+	// The generation of the snapshot in the file
+	private long snapshotGeneration = NO_GENERATION;
+	private final IDataSQL sql;
+
+	/**
+	 * Reads the snapshot in the provided file, and uses it if the database
+	 * has not changed since it was written.
+	 * 
+	 * @param sql
+	 *            the IDataSQL to make changes and other reads with, with its
+	 *            database already set
+	 * @param file
+	 *            the file the snapshot is kept in
+	 */
+	public SnapshotDataSQL(final IDataSQL sql, final File file) {
+		this.sql = sql;
+		this.file = file;
+
+		try {
+			final TaskSnapshot read = TaskSnapshot.read(file);
+			if (read != null) {
+				snapshotGeneration = read.getGeneration();
+				if (snapshotGeneration == sql.getGeneration()) {
+					snapshot = read;
+				}
+			}
+		} catch (final IOException e) {
+			// Everything is read from the database instead
+			Log.w(LOG_TAG, "Could not read the snapshot: " + e);
+		}
+	}
+
+	@Override
+	public int addList(final ITaskCollection list) {
+		_drop();
+		return sql.addList(list);
+	}
+
+	@Override
+	public int[] addLists(final ITaskCollection[] lists) {
+		_drop();
+		return sql.addLists(lists);
+	}
+
+	@Override
+	public int addTask(final ITask task, final int listID) {
+		_drop();
+		return sql.addTask(task, listID);
+	}
+
+	@Override
+	public int[] addTasks(final ITask[] tasks, final int listID) {
+		_drop();
+		return sql.addTasks(tasks, listID);
+	}
+
+	@Override
+	public void clearData() {
+		_drop();
+		sql.clearData();
+	}
+
+	@Override
+	public boolean editList(final int listID,
+			final ITaskCollection newListProperties) {
+		_drop();
+		return sql.editList(listID, newListProperties);
+	}
+
+	@Override
+	public boolean editTask(final int taskID, final ITask newTaskProperties) {
+		_drop();
+		return sql.editTask(taskID, newTaskProperties);
+	}
+
+	@Override
+	public Map<ITaskCollection, Integer> getAllLists() {
+		if (snapshot != null) {
+			return snapshot.getAllLists();
+		}
+		return sql.getAllLists();
+	}
+
+	@Override
+	public Map<ITask, Integer> getAllTasks() {
+		return sql.getAllTasks();
+	}
+
+	@Override
+	public Map<Integer, Collection<ITask>> getAllTasksByList() {
+		if (snapshot != null) {
+			return snapshot.getAllTasksByList();
+		}
+		return sql.getAllTasksByList();
+	}
+
+	@Override
+	public long getGeneration() {
+		return sql.getGeneration();
+	}
+
+	@Override
+	public int getLastListID() {
+		return sql.getLastListID();
+	}
+
+	@Override
+	public int getLastTaskID() {
+		return sql.getLastTaskID();
+	}
+
+	@Override
+	public int getListID(final int taskID) {
+		return sql.getListID(taskID);
+	}
+
+	@Override
+	public Map<Integer, Integer> getTaskCounts() {
+		if (snapshot != null) {
+			return snapshot.getTaskCounts();
+		}
+		return sql.getTaskCounts();
+	}
+
+	@Override
+	public ITaskCursor getTaskCursor(final int listID,
+			final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) {
+		return sql.getTaskCursor(listID, primary, secondary, tertiary);
+	}
+
+	@Override
+	public int[] getTaskIDs(final int listID) {
+		return sql.getTaskIDs(listID);
+	}
+
+	@Override
+	public Collection<ITask> getTasks(final int listID) {
+		if (snapshot != null) {
+			return snapshot.getTasks(listID);
+		}
+		return sql.getTasks(listID);
+	}
+
+	/**
+	 * Returns whether the data is read from the snapshot.
+	 * 
+	 * @return true if the snapshot was up to date and no change has been made
+	 *         since, false if not
+	 */
+	public boolean isSnapshotUsed() {
+		return snapshot != null;
+	}
+
+	@Override
+	public boolean moveTask(final int taskID, final int listID) {
+		_drop();
+		return sql.moveTask(taskID, listID);
+	}
+
+	@Override
+	public void putList(final int listID, final ITaskCollection list) {
+		_drop();
+		sql.putList(listID, list);
+	}
+
+	@Override
+	public void putTask(final int taskID, final ITask task, final int listID) {
+		_drop();
+		sql.putTask(taskID, task, listID);
+	}
+
+	@Override
+	public boolean removeList(final int listID) {
+		_drop();
+		return sql.removeList(listID);
+	}
+
+	@Override
+	public boolean[] removeLists(final int[] listIDs) {
+		_drop();
+		return sql.removeLists(listIDs);
+	}
+
+	@Override
+	public boolean removeTask(final int taskID) {
+		_drop();
+		return sql.removeTask(taskID);
+	}
+
+	@Override
+	public boolean[] removeTasks(final int[] taskIDs) {
+		_drop();
+		return sql.removeTasks(taskIDs);
+	}
+
+	@Override
+	public void runInTransaction(final Runnable runnable) {
+		sql.runInTransaction(runnable);
+	}
+
+	/**
+	 * Writes a snapshot of the database to the file, unless the snapshot in
+	 * the file is up to date. Reads every list and task from the database, so
+	 * should not be called on the UI thread.
+	 * 
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public synchronized void writeSnapshot() throws IOException {
+		// Read before the data, so that a change made while the data is read
+		// leaves a snapshot older than the database, which is not used
+		final long generation = sql.getGeneration();
+		if (generation == snapshotGeneration) {
+			return;
+		}
+		final Map<ITaskCollection, Integer> lists = sql.getAllLists();
+		final Map<Integer, Collection<ITask>> tasksByList = sql
+				.getAllTasksByList();
+		// The data may hold changes that have not been written to the
+		// database, which the generation does not count yet. The snapshot is
+		// written at the next pause instead
+		if (sql.getGeneration() != generation) {
+			return;
+		}
+		TaskSnapshot.write(file, generation, lists, tasksByList);
+		snapshotGeneration = generation;
+	}
+
+	private void _drop() {
+		// The database is about to change, so the snapshot is out of date
+		snapshot = null;
+	}
+}
@@ -5,16 +5,17 @@ import java.util.*;
 import se.chalmers.doit.core.IStatisticalData;
 import se.chalmers.doit.core.implementation.StatisticalData;
 import se.chalmers.doit.data.storage.IStatisticsDataStorage;
+import se.chalmers.doit.util.implementation.EpochDay;
 
 /**
- * Class storing cached statistics data
+ * Class storing cached statistics data, keyed by epoch day
  * 
  * @author Karl Bristav
  * 
  */
 public class StatisticsDataCache implements IStatisticsDataStorage {
 
-	private final Collection<IStatisticalData> data = new ArrayList<IStatisticalData>();
+	private final Map<Long, IStatisticalData> data = new LinkedHashMap<Long, IStatisticalData>();
 
 	@Override
 	public void clearData() {
@@ -22,15 +23,33 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 
 	}
 
+	@Override
+	public void flush() {
+		// Nothing is stored outside of memory
+	}
+
 	@Override
 	public Collection<IStatisticalData> getStatisticsData() {
 		final Collection<IStatisticalData> ret = new ArrayList<IStatisticalData>();
-		for (final IStatisticalData d : data) {
+		for (final IStatisticalData d : data.values()) {
 			ret.add(d);
 		}
 		return ret;
 	}
 
+	@Override
+	public Collection<IStatisticalData> getStatisticsData(final long firstDay,
+			final long lastDay) {
+		final Collection<IStatisticalData> ret = new ArrayList<IStatisticalData>();
+		for (final Map.Entry<Long, IStatisticalData> e : data.entrySet()) {
+			final long day = e.getKey().longValue();
+			if (day >= firstDay && day <= lastDay) {
+				ret.add(e.getValue());
+			}
+		}
+		return ret;
+	}
+
 	@Override
 	public void reportCreatedLists(final int numberOfCreatedLists,
 			final Date date) {
@@ -45,7 +64,8 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 				final StatisticalData anotherData = new StatisticalData(date);
 				anotherData.addCreatedLists(numberOfCreatedLists);
 
-				data.add(anotherData);
+				data.put(Long.valueOf(EpochDay.getDay(date)),
+						anotherData);
 			}
 		}
 	}
@@ -64,7 +84,8 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 				final StatisticalData anotherData = new StatisticalData(date);
 				anotherData.addCreatedTasks(numberOfCreatedTasks);
 
-				data.add(anotherData);
+				data.put(Long.valueOf(EpochDay.getDay(date)),
+						anotherData);
 			}
 		}
 	}
@@ -83,7 +104,8 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 				final StatisticalData anotherData = new StatisticalData(date);
 				anotherData.addDeletedLists(numberOfDeletedLists);
 
-				data.add(anotherData);
+				data.put(Long.valueOf(EpochDay.getDay(date)),
+						anotherData);
 			}
 		}
 	}
@@ -102,7 +124,8 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 				final StatisticalData anotherData = new StatisticalData(date);
 				anotherData.addDeletedTasks(numberOfDeletedTasks);
 
-				data.add(anotherData);
+				data.put(Long.valueOf(EpochDay.getDay(date)),
+						anotherData);
 			}
 		}
 	}
@@ -121,7 +144,8 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 				final StatisticalData anotherData = new StatisticalData(date);
 				anotherData.addFinishedTasks(numberOfFinishedTasks);
 
-				data.add(anotherData);
+				data.put(Long.valueOf(EpochDay.getDay(date)),
+						anotherData);
 			}
 		}
 	}
@@ -140,7 +164,8 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 				final StatisticalData anotherData = new StatisticalData(date);
 				anotherData.addOverdueTasks(numberOfOverdueTasks);
 
-				data.add(anotherData);
+				data.put(Long.valueOf(EpochDay.getDay(date)),
+						anotherData);
 			}
 		}
 	}
@@ -155,16 +180,7 @@ public class StatisticsDataCache implements IStatisticsDataStorage {
 	 *         exists no IStatisticalData with the current date
 	 */
 	private IStatisticalData _getExistingData(final Date date) {
-
-		IStatisticalData retData = null;
-
-		for (final IStatisticalData d : data) {
-			if (d.sameDay(date)) {
-				retData = d;
-			}
-		}
-
-		return retData;
+		return data.get(Long.valueOf(EpochDay.getDay(date)));
 	}
 
 }
@@ -1,96 +1,287 @@
 package se.chalmers.doit.data.storage.implementation;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import se.chalmers.doit.core.IStatisticalData;
 import se.chalmers.doit.core.implementation.StatisticalData;
 import se.chalmers.doit.data.storage.IStatisticsDataStorage;
+import se.chalmers.doit.data.storage.IStatisticsSQL;
+import se.chalmers.doit.util.implementation.Constants;
+import se.chalmers.doit.util.implementation.EpochDay;
 import android.content.SharedPreferences;
 
+/**
+ * Stores statistics per day in a SQLite database.
+ * 
+ * Reports are added to counts held in memory, which are written on a
+ * background thread. A write is made STATISTICS_FLUSH_DELAY milliseconds after
+ * the first report that has not been written, or right away once
+ * STATISTICS_FLUSH_THRESHOLD reports have not been written. flush() writes the
+ * counts at once, while startWrite() writes them on the background thread
+ * without waiting, and should be called when the application is paused.
+ */
 public class StatisticsDataStorage implements IStatisticsDataStorage {
 
-	private final String LISTS_CREATED = "CREATEDLISTS";
-	private final String LISTS_DELETED = "DELETELISTS";
-	private SharedPreferences pref;
-	private final String TASKS_CREATED = "CREATEDTASKS";
-	private final String TASKS_DELETED = "DELETEDTASKS";
-	private final String TASKS_FINISHED = "FINISHEDTASKS";
-	private final String TASKS_OVERDUE = "OVERDUETASKS";
+	// Keys of the totals kept in SharedPreferences by earlier versions
+	private static final String LISTS_CREATED = "CREATEDLISTS";
+	private static final String LISTS_DELETED = "DELETELISTS";
+	private static final String TASKS_CREATED = "CREATEDTASKS";
+	private static final String TASKS_DELETED = "DELETEDTASKS";
+	private static final String TASKS_FINISHED = "FINISHEDTASKS";
+	private static final String TASKS_OVERDUE = "OVERDUETASKS";
+	private static final ScheduledExecutorService writer = Executors
+			.newSingleThreadScheduledExecutor();
 
-	public StatisticsDataStorage(final SharedPreferences pref) {
-		this.pref = pref;
+	private final long flushDelay;
+	private final int flushThreshold;
+	private final IStatisticsSQL sql;
+	// The counts that have not been written, by epoch day
+	private Map<Long, StatisticalData> unwritten = new HashMap<Long, StatisticalData>();
+	// The number of reports made since the counts were last written
+	private int unwrittenReports = 0;
+	private final ScheduledExecutorService writeExecutor;
+	// Held while writing, so that the counts being written are not missed by
+	// readers, and writes are made in the order their counts were taken
+	private final Object writeLock = new Object();
+	private boolean writeScheduled = false;
+	private final Runnable writeTask = new Runnable() {
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public void run() {
+			_write();
+		}
+	};
+
+	/**
+	 * @param sql
+	 *            the database to store the statistics in
+	 */
+	public StatisticsDataStorage(final IStatisticsSQL sql) {
+		this(sql, writer, Constants.STATISTICS_FLUSH_DELAY,
+				Constants.STATISTICS_FLUSH_THRESHOLD);
+	}
+
+	/**
+	 * @param sql
+	 *            the database to store the statistics in
+	 * @param writeExecutor
+	 *            the executor to write the statistics on
+	 * @param flushDelay
+	 *            the longest time in milliseconds a report is held in memory
+	 *            before it is written
+	 * @param flushThreshold
+	 *            the number of reports after which the statistics are written
+	 *            right away
+	 */
+	public StatisticsDataStorage(final IStatisticsSQL sql,
+			final ScheduledExecutorService writeExecutor,
+			final long flushDelay, final int flushThreshold) {
+		this.sql = sql;
+		this.writeExecutor = writeExecutor;
+		this.flushDelay = flushDelay;
+		this.flushThreshold = flushThreshold;
 	}
 
 	@Override
 	public void clearData() {
-		_clearVariable(LISTS_CREATED);
-		_clearVariable(LISTS_DELETED);
-		_clearVariable(TASKS_CREATED);
-		_clearVariable(TASKS_DELETED);
-		_clearVariable(TASKS_FINISHED);
-		_clearVariable(TASKS_OVERDUE);
+		synchronized (writeLock) {
+			synchronized (this) {
+				unwritten.clear();
+				unwrittenReports = 0;
+			}
+			sql.clearStatistics();
+		}
+	}
+
+	@Override
+	public void flush() {
+		_write();
 	}
 
 	@Override
 	public Collection<IStatisticalData> getStatisticsData() {
-		Collection<IStatisticalData> ret = new ArrayList<IStatisticalData>();
-		StatisticalData dat = new StatisticalData(new Date());
-		dat.addCreatedLists(pref.getInt(LISTS_CREATED, 0));
-		dat.addCreatedTasks(pref.getInt(TASKS_CREATED, 0));
-		dat.addDeletedLists(pref.getInt(LISTS_DELETED, 0));
-		dat.addDeletedTasks(pref.getInt(TASKS_DELETED, 0));
-		dat.addFinishedTasks(pref.getInt(TASKS_FINISHED, 0));
-		dat.addOverdueTasks(pref.getInt(TASKS_OVERDUE, 0));
-		ret.add(dat);
-		return ret;
+		return getStatisticsData(Long.MIN_VALUE, Long.MAX_VALUE);
 	}
 
 	@Override
-	public void reportCreatedLists(final int numberOfCreatedLists,
-			final Date date) {
-		_addToVariable(LISTS_CREATED, numberOfCreatedLists);
+	public Collection<IStatisticalData> getStatisticsData(final long firstDay,
+			final long lastDay) {
+		synchronized (writeLock) {
+			final Map<Long, IStatisticalData> ret = new TreeMap<Long, IStatisticalData>();
+			for (final IStatisticalData d : sql.getStatistics(firstDay,
+					lastDay)) {
+				ret.put(Long.valueOf(EpochDay.getDay(d.getDate())), d);
+			}
+			synchronized (this) {
+				for (final Map.Entry<Long, StatisticalData> e : unwritten
+						.entrySet()) {
+					final long day = e.getKey().longValue();
+					if (day < firstDay || day > lastDay) {
+						continue;
+					}
+					final IStatisticalData stored = ret.get(e.getKey());
+					if (stored == null) {
+						ret.put(e.getKey(), _copy(e.getValue(),
+								EpochDay.getDate(day)));
+					} else {
+						_addTo(stored, e.getValue());
+					}
+				}
+			}
+			return new ArrayList<IStatisticalData>(ret.values());
+		}
+	}
+
+	/**
+	 * Moves the lifetime totals kept in SharedPreferences by earlier versions
+	 * into the database. The totals are counted on epoch day 0, so that they
+	 * are only included in statistics covering all days. The totals are not
+	 * imported again if the process was killed after they were written but
+	 * before they were removed from the preferences.
+	 * 
+	 * @param pref
+	 *            the preferences the totals were kept in
+	 */
+	public void importTotals(final SharedPreferences pref) {
+		if (pref.getAll().isEmpty()) {
+			return;
+		}
+		final StatisticalData totals = new StatisticalData(
+				EpochDay.getDate(0));
+		totals.addCreatedLists(pref.getInt(LISTS_CREATED, 0));
+		totals.addCreatedTasks(pref.getInt(TASKS_CREATED, 0));
+		totals.addDeletedLists(pref.getInt(LISTS_DELETED, 0));
+		totals.addDeletedTasks(pref.getInt(TASKS_DELETED, 0));
+		totals.addFinishedTasks(pref.getInt(TASKS_FINISHED, 0));
+		totals.addOverdueTasks(pref.getInt(TASKS_OVERDUE, 0));
+		synchronized (writeLock) {
+			// Nothing else is counted on epoch day 0, so any statistics there
+			// are totals that have already been imported
+			if (sql.getStatistics(0, 0).isEmpty()) {
+				final Collection<IStatisticalData> data = new ArrayList<IStatisticalData>();
+				data.add(totals);
+				sql.addStatistics(data);
+			}
+			pref.edit().clear().commit();
+		}
+	}
+
+	/**
+	 * Starts writing the counts held in memory on the background thread, and
+	 * returns without waiting for them to be written.
+	 */
+	public void startWrite() {
+		writeExecutor.execute(writeTask);
 	}
 
 	@Override
-	public void reportCreatedTasks(final int numberOFCreatedTasks,
-			final Date date) {
-		_addToVariable(TASKS_CREATED, numberOFCreatedTasks);
+	public synchronized void reportCreatedLists(
+			final int numberOfCreatedLists, final Date date) {
+		if (numberOfCreatedLists != 0) {
+			_getUnwritten(date).addCreatedLists(numberOfCreatedLists);
+			_reported();
+		}
 	}
 
 	@Override
-	public void reportDeletedLists(final int numberOfDeletedLists,
-			final Date date) {
-		_addToVariable(LISTS_DELETED, numberOfDeletedLists);
+	public synchronized void reportCreatedTasks(
+			final int numberOFCreatedTasks, final Date date) {
+		if (numberOFCreatedTasks != 0) {
+			_getUnwritten(date).addCreatedTasks(numberOFCreatedTasks);
+			_reported();
+		}
 	}
 
 	@Override
-	public void reportDeletedTasks(final int numberOfDeletedTasks,
-			final Date date) {
-		_addToVariable(TASKS_DELETED, numberOfDeletedTasks);
+	public synchronized void reportDeletedLists(
+			final int numberOfDeletedLists, final Date date) {
+		if (numberOfDeletedLists != 0) {
+			_getUnwritten(date).addDeletedLists(numberOfDeletedLists);
+			_reported();
+		}
 	}
 
 	@Override
-	public void reportFinishedTasks(final int numberOfFinishedTasks,
-			final Date date) {
-		_addToVariable(TASKS_FINISHED, numberOfFinishedTasks);
+	public synchronized void reportDeletedTasks(
+			final int numberOfDeletedTasks, final Date date) {
+		if (numberOfDeletedTasks != 0) {
+			_getUnwritten(date).addDeletedTasks(numberOfDeletedTasks);
+			_reported();
+		}
 	}
 
 	@Override
-	public void reportOverdueTasks(final int numberOfOverdueTasks,
+	public synchronized void reportFinishedTasks(
+			final int numberOfFinishedTasks, final Date date) {
+		if (numberOfFinishedTasks != 0) {
+			_getUnwritten(date).addFinishedTasks(numberOfFinishedTasks);
+			_reported();
+		}
+	}
+
+	@Override
+	public synchronized void reportOverdueTasks(
+			final int numberOfOverdueTasks, final Date date) {
+		if (numberOfOverdueTasks != 0) {
+			_getUnwritten(date).addOverdueTasks(numberOfOverdueTasks);
+			_reported();
+		}
+	}
+
+	private void _addTo(final IStatisticalData to,
+			final IStatisticalData from) {
+		to.addCreatedLists(from.getCreatedLists());
+		to.addCreatedTasks(from.getCreatedTasks());
+		to.addDeletedLists(from.getDeletedLists());
+		to.addDeletedTasks(from.getDeletedTasks());
+		to.addFinishedTasks(from.getFinishedTasks());
+		to.addOverdueTasks(from.getOverdueTasks());
+	}
+
+	private IStatisticalData _copy(final IStatisticalData data,
 			final Date date) {
-		_addToVariable(TASKS_OVERDUE, numberOfOverdueTasks);
+		final StatisticalData ret = new StatisticalData(date);
+		_addTo(ret, data);
+		return ret;
+	}
+
+	private StatisticalData _getUnwritten(final Date date) {
+		// Returns the unwritten counts of the day of the date
+		final Long day = Long.valueOf(EpochDay.getDay(date));
+		StatisticalData ret = unwritten.get(day);
+		if (ret == null) {
+			ret = new StatisticalData(EpochDay.getDate(day.longValue()));
+			unwritten.put(day, ret);
+		}
+		return ret;
 	}
 
-	private void _addToVariable(final String name, final int value) {
-		int toSet = pref.getInt(name, 0) + value;
-		SharedPreferences.Editor ed = pref.edit();
-		ed.putInt(name, toSet);
-		ed.commit();
+	private void _reported() {
+		// Schedules a write of the counts after a report
+		unwrittenReports++;
+		if (unwrittenReports == flushThreshold) {
+			writeExecutor.execute(writeTask);
+		} else if (!writeScheduled) {
+			writeScheduled = true;
+			writeExecutor.schedule(writeTask, flushDelay,
+					TimeUnit.MILLISECONDS);
+		}
 	}
 
-	private void _clearVariable(final String name) {
-		SharedPreferences.Editor ed = pref.edit();
-		ed.putInt(name, 0);
-		ed.commit();
+	private void _write() {
+		synchronized (writeLock) {
+			final Collection<IStatisticalData> toWrite;
+			synchronized (this) {
+				writeScheduled = false;
+				if (unwrittenReports == 0) {
+					return;
+				}
+				unwrittenReports = 0;
+				toWrite = new ArrayList<IStatisticalData>(unwritten.values());
+				unwritten = new HashMap<Long, StatisticalData>();
+			}
+			sql.addStatistics(toWrite);
+		}
 	}
 }
@@ -0,0 +1,91 @@
+package se.chalmers.doit.data.storage.implementation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.core.implementation.StatisticalData;
+import se.chalmers.doit.data.storage.IStatisticsSQL;
+import se.chalmers.doit.util.implementation.EpochDay;
+import se.chalmers.doit.util.implementation.SQLConstants;
+import android.database.Cursor;
+import android.database.sqlite.*;
+
+/**
+ * Persistent statistics class, storing the statistics of each day in a row of
+ * its own in a SQLite database. The epoch day is the primary key, so adding
+ * to a day and reading a range of days only reads the rows involved.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class StatisticsSQL implements IStatisticsSQL {
+
+	private SQLiteDatabase db = null;
+
+	@Override
+	public void addStatistics(final Collection<IStatisticalData> data) {
+		SQLiteStatement insert = db
+				.compileStatement(SQLConstants.INSERT_STATISTICS_DAY);
+		SQLiteStatement update = db
+				.compileStatement(SQLConstants.UPDATE_STATISTICS_DAY);
+		db.beginTransaction();
+		try {
+			for (final IStatisticalData d : data) {
+				final long day = EpochDay.getDay(d.getDate());
+				// Creates the row of the day unless it already exists
+				insert.bindLong(1, day);
+				insert.execute();
+
+				update.bindLong(1, d.getCreatedLists());
+				update.bindLong(2, d.getCreatedTasks());
+				update.bindLong(3, d.getDeletedLists());
+				update.bindLong(4, d.getDeletedTasks());
+				update.bindLong(5, d.getFinishedTasks());
+				update.bindLong(6, d.getOverdueTasks());
+				update.bindLong(7, day);
+				update.execute();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
+			update.close();
+		}
+	}
+
+	@Override
+	public void clearStatistics() {
+		db.execSQL(SQLConstants.DELETE_ALL_STATISTICS);
+	}
+
+	@Override
+	public Collection<IStatisticalData> getStatistics(final long firstDay,
+			final long lastDay) {
+		Collection<IStatisticalData> ret = new ArrayList<IStatisticalData>();
+		Cursor cur = db.rawQuery(SQLConstants.SELECT_STATISTICS_RANGE,
+				new String[] { String.valueOf(firstDay),
+						String.valueOf(lastDay) });
+		try {
+			while (cur.moveToNext()) {
+				StatisticalData d = new StatisticalData(
+						EpochDay.getDate(cur.getLong(0)));
+				d.addCreatedLists(cur.getInt(1));
+				d.addCreatedTasks(cur.getInt(2));
+				d.addDeletedLists(cur.getInt(3));
+				d.addDeletedTasks(cur.getInt(4));
+				d.addFinishedTasks(cur.getInt(5));
+				d.addOverdueTasks(cur.getInt(6));
+				ret.add(d);
+			}
+		} finally {
+			cur.close();
+		}
+		return ret;
+	}
+
+	@Override
+	public void setDatabase(final SQLiteDatabase database) {
+		this.db = database;
+		this.db.execSQL(SQLConstants.CREATE_TABLE_STATISTICS);
+	}
+}
@@ -0,0 +1,37 @@
+package se.chalmers.doit.data.storage.implementation;
+
+import java.util.List;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.data.storage.ITaskCursor;
+
+/**
+ * ITaskCursor over a sorted list of tasks held in memory.
+ * 
+ * @author Kaufmann
+ * 
+ */
+final class TaskListCursor implements ITaskCursor {
+
+	private final List<ITask> tasks;
+
+	TaskListCursor(final List<ITask> tasks) {
+		this.tasks = tasks;
+	}
+
+	@Override
+	public void close() {
+		// Nothing to release
+	}
+
+	@Override
+	public int getCount() {
+		return tasks.size();
+	}
+
+	@Override
+	public ITask getTask(final int position)
+			throws IndexOutOfBoundsException {
+		return tasks.get(position);
+	}
+}
@@ -0,0 +1,290 @@
+package se.chalmers.doit.data.storage.implementation;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import se.chalmers.doit.core.*;
+import se.chalmers.doit.core.implementation.*;
+
+/**
+ * The lists and tasks at one generation of the database, kept in a file in a
+ * compact binary format.
+ * 
+ * The file is mapped into memory when it is read. Only the lists are read up
+ * front, and the tasks of a list are not read from the mapped file until they
+ * are asked for. A snapshot is written to a temporary file that then replaces
+ * the old snapshot, so a snapshot is either read whole or not at all.
+ * 
+ * The file starts with a header holding the format version, the generation,
+ * the number of lists and the length of the tasks. The header is followed by
+ * each list's ID, number of tasks, name and the offset of its tasks, and then
+ * by the tasks of each list.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public final class TaskSnapshot {
+
+	// Increased whenever the format changes. Snapshots in any other format
+	// are not read
+	public static final int FORMAT_VERSION = 1;
+
+	// The magic number, format version, generation, number of lists and
+	// length of the tasks
+	private static final int HEADER_SIZE = 24;
+	private static final int MAGIC = 0x646F4954;
+	// Stored in place of a date that is not set
+	private static final long NO_DATE = Long.MIN_VALUE;
+	private static final String UTF_8 = "UTF-8";
+
+	/**
+	 * Reads the snapshot in the provided file.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @return the snapshot, or null if there is no file or it does not hold a
+	 *         snapshot in the current format
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static TaskSnapshot read(final File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		final RandomAccessFile in = new RandomAccessFile(file, "r");
+		final ByteBuffer buffer;
+		try {
+			// The mapping stays valid after the file has been closed
+			buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					in.length());
+		} finally {
+			in.close();
+		}
+
+		try {
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC
+					|| buffer.getInt() != FORMAT_VERSION) {
+				return null;
+			}
+			final TaskSnapshot ret = new TaskSnapshot(buffer, buffer.getLong());
+			final int nLists = buffer.getInt();
+			final int tasksLength = buffer.getInt();
+			for (int i = 0; i < nLists; i++) {
+				final Integer id = Integer.valueOf(buffer.getInt());
+				final int size = buffer.getInt();
+				final String name = _getString(buffer);
+				ret.lists.put(new TaskCollection(id.intValue(), name,
+						new ArrayList<ITask>()), id);
+				ret.offsets.put(id, Integer.valueOf(buffer.getInt()));
+				if (size > 0) {
+					ret.counts.put(id, Integer.valueOf(size));
+				}
+			}
+			if (buffer.remaining() != tasksLength) {
+				return null;
+			}
+			ret.tasksStart = buffer.position();
+			return ret;
+		} catch (final BufferUnderflowException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a snapshot to the provided file, replacing the snapshot in it.
+	 * 
+	 * @param file
+	 *            the file to write
+	 * @param generation
+	 *            the generation the lists and tasks were read at
+	 * @param lists
+	 *            the lists, mapped to their IDs
+	 * @param tasksByList
+	 *            the tasks of each list, by list ID. The tasks must carry
+	 *            their ID
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void write(final File file, final long generation,
+			final Map<ITaskCollection, Integer> lists,
+			final Map<Integer, Collection<ITask>> tasksByList)
+			throws IOException {
+		// The tasks are written first, so that the offsets of the lists' tasks
+		// are known when the lists are written
+		final ByteArrayOutputStream tasks = new ByteArrayOutputStream();
+		final DataOutputStream tasksOut = new DataOutputStream(tasks);
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		final DataOutputStream headerOut = new DataOutputStream(header);
+		for (final Map.Entry<ITaskCollection, Integer> e : lists.entrySet()) {
+			Collection<ITask> listTasks = tasksByList.get(e.getValue());
+			if (listTasks == null) {
+				listTasks = Collections.emptyList();
+			}
+			headerOut.writeInt(e.getValue().intValue());
+			headerOut.writeInt(listTasks.size());
+			_writeString(headerOut, e.getKey().getName());
+			headerOut.writeInt(tasksOut.size());
+			for (final ITask task : listTasks) {
+				_writeTask(tasksOut, task);
+			}
+		}
+
+		final File temp = new File(file.getPath() + ".tmp");
+		final FileOutputStream stream = new FileOutputStream(temp);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(stream));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(generation);
+			out.writeInt(lists.size());
+			out.writeInt(tasksOut.size());
+			header.writeTo(out);
+			tasks.writeTo(out);
+			out.flush();
+			stream.getFD().sync();
+		} finally {
+			stream.close();
+		}
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Could not replace " + file);
+		}
+	}
+
+	private static Date _getDate(final ByteBuffer buffer) {
+		final long time = buffer.getLong();
+		return time == NO_DATE ? null : new Date(time);
+	}
+
+	private static String _getString(final ByteBuffer buffer) {
+		final int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, UTF_8);
+		} catch (final UnsupportedEncodingException e) {
+			// Every Java platform supports UTF-8
+			throw new IllegalStateException(e.toString());
+		}
+	}
+
+	private static void _writeDate(final DataOutputStream out,
+			final Date date) throws IOException {
+		out.writeLong(date == null ? NO_DATE : date.getTime());
+	}
+
+	private static void _writeString(final DataOutputStream out,
+			final String value) throws IOException {
+		final byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void _writeTask(final DataOutputStream out,
+			final ITask task) throws IOException {
+		out.writeInt((int) task.getID());
+		_writeString(out, task.getName());
+		_writeString(out, task.getDescription());
+		out.writeByte(task.getPriority().getValue());
+		_writeDate(out, task.getDueDate());
+		_writeDate(out, task.getReminderDate());
+		out.writeInt(task.getCustomPosition());
+		out.writeBoolean(task.isCompleted());
+	}
+
+	private final ByteBuffer buffer;
+	// Number of tasks of each list, leaving out lists without tasks
+	private final Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+	private final long generation;
+	private final Map<ITaskCollection, Integer> lists = new HashMap<ITaskCollection, Integer>();
+	// Offset of each list's tasks from the start of the tasks
+	private final Map<Integer, Integer> offsets = new HashMap<Integer, Integer>();
+	private int tasksStart;
+
+	private TaskSnapshot(final ByteBuffer buffer, final long generation) {
+		this.buffer = buffer;
+		this.generation = generation;
+	}
+
+	/**
+	 * Returns the lists in the snapshot, mapped to their IDs. The lists are
+	 * returned without their tasks.
+	 * 
+	 * @return a map from each list to its ID
+	 */
+	public Map<ITaskCollection, Integer> getAllLists() {
+		return new HashMap<ITaskCollection, Integer>(lists);
+	}
+
+	/**
+	 * Returns the tasks in the snapshot, by the ID of the list they are
+	 * connected to. Lists without tasks are left out.
+	 * 
+	 * @return a map from list ID to the tasks connected to that list
+	 */
+	public Map<Integer, Collection<ITask>> getAllTasksByList() {
+		final Map<Integer, Collection<ITask>> ret = new HashMap<Integer, Collection<ITask>>();
+		for (final Integer listID : counts.keySet()) {
+			ret.put(listID, getTasks(listID.intValue()));
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the generation of the database the snapshot was written at.
+	 * 
+	 * @return the generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the number of tasks connected to each list. Lists without tasks
+	 * are left out.
+	 * 
+	 * @return a map from list ID to the number of tasks connected to that
+	 *         list
+	 */
+	public Map<Integer, Integer> getTaskCounts() {
+		return new HashMap<Integer, Integer>(counts);
+	}
+
+	/**
+	 * Returns the tasks connected to a list, read from the mapped file.
+	 * 
+	 * @param listID
+	 *            the ID of the list
+	 * @return the tasks in the order they were written, which is empty if
+	 *         there is no list with that ID
+	 */
+	public Collection<ITask> getTasks(final int listID) {
+		final Integer id = Integer.valueOf(listID);
+		final Integer count = counts.get(id);
+		final Collection<ITask> ret = new ArrayList<ITask>();
+		if (count == null) {
+			return ret;
+		}
+
+		// A buffer of its own, so that tasks can be read on several threads
+		final ByteBuffer in = buffer.duplicate();
+		in.position(tasksStart + offsets.get(id).intValue());
+		for (int i = 0; i < count.intValue(); i++) {
+			final int taskID = in.getInt();
+			final String name = _getString(in);
+			final String description = _getString(in);
+			final IPriority priority = new Priority(in.get());
+			final Date dueDate = _getDate(in);
+			final Date reminderDate = _getDate(in);
+			ret.add(new Task(taskID, name, description, priority, dueDate,
+					reminderDate, in.getInt(), in.get() != 0));
+		}
+		return ret;
+	}
+}
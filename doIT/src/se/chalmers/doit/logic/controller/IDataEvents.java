@@ -0,0 +1,48 @@
+package se.chalmers.doit.logic.controller;
+
+/**
+ * A batch of data change events, in the order the changes were made. Each
+ * event has a type, one of the Constants.EVENT_* types, and the ID of the
+ * changed task or list. A change that is made several times in a batch is
+ * only included once, at the place it was last made.
+ * 
+ * @author Boel
+ * 
+ */
+public interface IDataEvents {
+
+	/**
+	 * Returns whether the batch contains an event of the provided type
+	 * 
+	 * @param type
+	 *            the type of event
+	 * @return true if there is such an event, else false
+	 */
+	public boolean contains(int type);
+
+	/**
+	 * Returns the number of events in the batch
+	 * 
+	 * @return the number of events
+	 */
+	public int getCount();
+
+	/**
+	 * Returns the ID of the task or list changed by an event
+	 * 
+	 * @param index
+	 *            the index of the event, from 0 to getCount() - 1
+	 * @return the ID of the changed task or list
+	 */
+	public long getID(int index);
+
+	/**
+	 * Returns the type of an event
+	 * 
+	 * @param index
+	 *            the index of the event, from 0 to getCount() - 1
+	 * @return the type of the event
+	 */
+	public int getType(int index);
+
+}
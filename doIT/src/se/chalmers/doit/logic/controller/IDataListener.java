@@ -0,0 +1,20 @@
+package se.chalmers.doit.logic.controller;
+
+/**
+ * Interface for listening to changes of the lists and tasks.
+ * 
+ * @author Boel
+ * 
+ */
+public interface IDataListener {
+
+	/**
+	 * Called after a batch of changes has been made. The events are reused
+	 * for later batches, so they are only valid during the call.
+	 * 
+	 * @param events
+	 *            the changes made
+	 */
+	public void onDataChanged(IDataEvents events);
+
+}
@@ -4,6 +4,7 @@ import java.util.Collection;
 
 import se.chalmers.doit.core.*;
 import se.chalmers.doit.data.storage.*;
+import se.chalmers.doit.util.IComparatorStrategy;
 
 /**
  * An interface to delegate instructions from the GUI to the logic layer.
@@ -13,6 +14,15 @@ import se.chalmers.doit.data.storage.*;
  */
 public interface ILogicController {
 
+	/**
+	 * Adds a listener that is notified of changes to the lists and tasks.
+	 * Adding a listener that has already been added does nothing.
+	 * 
+	 * @param listener
+	 *            The listener to add
+	 */
+	public void addDataListener(IDataListener listener);
+
 	/**
 	 * Adds a list to the data storage.
 	 * 
@@ -65,6 +75,14 @@ public interface ILogicController {
 	public int addTasks(Collection<ITask> tasks, ITaskCollection collection)
 			throws IllegalStateException;
 
+	/**
+	 * Starts a batch of changes. The changes made until the matching call to
+	 * endBatch() are delivered to the listeners together, with duplicates
+	 * removed. Batches may be nested, in which case the changes are delivered
+	 * when the outermost batch ends.
+	 */
+	public void beginBatch();
+
 	/**
 	 * Clears all task- and list-related data from the data storage
 	 * 
@@ -131,6 +149,24 @@ public interface ILogicController {
 	public boolean editTask(ITask oldTask, ITask newTask)
 			throws IllegalStateException;
 
+	/**
+	 * Ends a batch of changes started by beginBatch(), and delivers the
+	 * changes to the listeners if it was the outermost batch.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no batch has been started
+	 */
+	public void endBatch() throws IllegalStateException;
+
+	/**
+	 * Writes any statistics held in memory to the statistics storage. Should
+	 * be called when the application is paused.
+	 * 
+	 * @throws IllegalStateException
+	 *             if statistics strategy is not set
+	 */
+	public void flushStatisticsData() throws IllegalStateException;
+
 	/**
 	 * Returns all lists.
 	 * 
@@ -150,6 +186,17 @@ public interface ILogicController {
 	 */
 	public Collection<ITask> getAllTasks() throws IllegalStateException;
 
+	/**
+	 * Returns the version of the lists and tasks. The version is increased by
+	 * every change, including replacing the storage strategy, so views only
+	 * need to be rebuilt when it differs from the version they show.
+	 * 
+	 * @return the current version of the data
+	 * @throws IllegalStateException
+	 *             if storage strategy is not set
+	 */
+	public long getDataVersion() throws IllegalStateException;
+
 	/**
 	 * Returns the number of created lists between the current day and a
 	 * specified number of days in the past.
@@ -228,6 +275,84 @@ public interface ILogicController {
 	public int getNumberOfOverdueTasks(int pastDays)
 			throws IllegalStateException;
 
+	/**
+	 * Returns all statistics between the current day and a specified number
+	 * of days in the past. Any interval is answered in O(log n) time for n
+	 * days with statistics.
+	 * 
+	 * @param pastDays
+	 *            The number of days in the past the interval will reach to,
+	 *            or a negative number for all days
+	 * @return a snapshot of the statistics for the interval
+	 * @throws IllegalStateException
+	 *             if statistics strategy is not set
+	 */
+	public IStatisticalData getStatistics(int pastDays)
+			throws IllegalStateException;
+
+	/**
+	 * Returns the statistics of a range of days, one IStatisticalData for
+	 * each day with any statistics.
+	 * 
+	 * @param firstDay
+	 *            The first epoch day to return statistics for, as returned by
+	 *            EpochDay.getDay()
+	 * @param lastDay
+	 *            The last epoch day to return statistics for
+	 * @return a Collection of IStatisticalData
+	 * @throws IllegalStateException
+	 *             if statistics strategy is not set
+	 */
+	public Collection<IStatisticalData> getStatisticsData(long firstDay,
+			long lastDay) throws IllegalStateException;
+
+	/**
+	 * Returns the task with the provided ID.
+	 * 
+	 * @param taskID
+	 *            the ID of the task
+	 * @return the ITask with the ID, or null if there is no such task
+	 * @throws IllegalStateException
+	 *             if storage strategy is not set
+	 */
+	public ITask getTask(long taskID) throws IllegalStateException;
+
+	/**
+	 * Returns a cursor over the tasks in a list, sorted by the provided
+	 * strategies. The cursor has to be closed when it is no longer used.
+	 * 
+	 * @param collection
+	 *            the ITaskCollection whose tasks to return
+	 * @param primary
+	 *            the primary sorting criteria, or null
+	 * @param secondary
+	 *            the secondary sorting criteria, or null
+	 * @param tertiary
+	 *            the tertiary sorting criteria, or null
+	 * @return an ITaskCursor over the tasks, or null if the list does not
+	 *         exist
+	 * @throws IllegalStateException
+	 *             if storage strategy is not set
+	 */
+	public ITaskCursor getTaskCursor(ITaskCollection collection,
+			IComparatorStrategy primary, IComparatorStrategy secondary,
+			IComparatorStrategy tertiary) throws IllegalStateException;
+
+	/**
+	 * Returns whether a statistics strategy has been set.
+	 * 
+	 * @return true if a statistics strategy is set, false if not
+	 */
+	public boolean hasStatisticsStrategy();
+
+	/**
+	 * Returns whether a storage strategy has been set. Until then the data
+	 * cannot be used, e.g. while it is still being loaded at startup.
+	 * 
+	 * @return true if a storage strategy is set, false if not
+	 */
+	public boolean hasStorageStrategy();
+
 	/**
 	 * Increments the number of created lists by a given amount
 	 * 
@@ -309,6 +434,14 @@ public interface ILogicController {
 	public boolean moveTask(ITask task, ITaskCollection taskCollection)
 			throws IllegalStateException;
 
+	/**
+	 * Removes a listener added by addDataListener().
+	 * 
+	 * @param listener
+	 *            The listener to remove
+	 */
+	public void removeDataListener(IDataListener listener);
+
 	/**
 	 * Removes a list from the data storage.
 	 * 
@@ -0,0 +1,182 @@
+package se.chalmers.doit.logic.controller.implementation;
+
+import java.util.Arrays;
+
+import se.chalmers.doit.data.storage.IChangeRecorder;
+import se.chalmers.doit.logic.controller.IDataEvents;
+
+/**
+ * Reusable buffer of data change events. Events are kept in primitive arrays
+ * that only grow, so recording and delivering a batch does not allocate
+ * anything once the buffer is large enough.
+ * 
+ * Recording an event that is already in the buffer moves it to the end, so
+ * that the order of the events still ends in the last change made. Duplicates
+ * are found through an open addressing hash table mapping each event to its
+ * index. The earlier entry is only marked as removed, and the removed entries
+ * are dropped the next time the events are read.
+ * 
+ * @author Boel
+ * 
+ */
+public final class DataEvents implements IChangeRecorder, IDataEvents {
+
+	// Marks an empty slot in the hash table
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final int INITIAL_CAPACITY = 16;
+	// Type of an entry whose event has been recorded again later
+	private static final int REMOVED = -1;
+	// Event types fit in the lowest bits of a key
+	private static final int TYPE_BITS = 4;
+
+	private static long[] _createTable(final int size) {
+		long[] ret = new long[size];
+		Arrays.fill(ret, EMPTY);
+		return ret;
+	}
+
+	private static long _getKey(final int type, final long id) {
+		return (id << TYPE_BITS) | type;
+	}
+
+	/**
+	 * Returns the slot of a key in a hash table, which is an empty slot if
+	 * the key is not there.
+	 */
+	private static int _findSlot(final long[] table, final long key) {
+		int mask = table.length - 1;
+		int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+		while (table[slot] != EMPTY && table[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// Number of entries, also those that have been removed
+	private int count;
+	private long[] ids = new long[INITIAL_CAPACITY];
+	// Keys of the recorded events, twice as many slots as events
+	private long[] keys = _createTable(INITIAL_CAPACITY * 2);
+	// Index of the entry of the key in the same slot
+	private int[] positions = new int[INITIAL_CAPACITY * 2];
+	private int removed;
+	private int[] types = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Removes all events from the buffer.
+	 */
+	public void clear() {
+		if (count > 0) {
+			Arrays.fill(keys, EMPTY);
+			count = 0;
+			removed = 0;
+		}
+	}
+
+	@Override
+	public boolean contains(final int type) {
+		// Removed entries never match, as REMOVED is not an event type
+		for (int i = 0; i < count; i++) {
+			if (types[i] == type) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int getCount() {
+		return count - removed;
+	}
+
+	@Override
+	public long getID(final int index) {
+		_checkIndex(index);
+		return ids[index];
+	}
+
+	@Override
+	public int getType(final int index) {
+		_checkIndex(index);
+		return types[index];
+	}
+
+	@Override
+	public void recordChange(final int type, final long id) {
+		// Room is made first, as the table is rebuilt from the recorded events
+		if (count == types.length) {
+			if (removed == 0) {
+				_grow();
+			} else {
+				_compact();
+			}
+		}
+		long key = _getKey(type, id);
+		int slot = _findSlot(keys, key);
+		if (keys[slot] == key) {
+			int position = positions[slot];
+			if (position == count - 1) {
+				// Already the last change made
+				return;
+			}
+			types[position] = REMOVED;
+			removed++;
+		} else {
+			keys[slot] = key;
+		}
+		positions[slot] = count;
+		types[count] = type;
+		ids[count] = id;
+		count++;
+	}
+
+	private void _checkIndex(final int index) {
+		if (removed > 0) {
+			_compact();
+		}
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("No event at index " + index);
+		}
+	}
+
+	private void _compact() {
+		// Drops the removed entries, keeping the order of the others
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			if (types[i] != REMOVED) {
+				types[n] = types[i];
+				ids[n] = ids[i];
+				n++;
+			}
+		}
+		count = n;
+		removed = 0;
+		_rebuildTable(keys.length);
+	}
+
+	private void _grow() {
+		int capacity = types.length * 2;
+		int[] newTypes = new int[capacity];
+		long[] newIDs = new long[capacity];
+		System.arraycopy(types, 0, newTypes, 0, count);
+		System.arraycopy(ids, 0, newIDs, 0, count);
+		types = newTypes;
+		ids = newIDs;
+		_rebuildTable(capacity * 2);
+	}
+
+	private void _rebuildTable(final int size) {
+		if (keys.length == size) {
+			Arrays.fill(keys, EMPTY);
+		} else {
+			keys = _createTable(size);
+			positions = new int[size];
+		}
+		for (int i = 0; i < count; i++) {
+			long key = _getKey(types[i], ids[i]);
+			int slot = _findSlot(keys, key);
+			keys[slot] = key;
+			positions[slot] = i;
+		}
+	}
+}
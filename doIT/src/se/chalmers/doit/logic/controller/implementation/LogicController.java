@@ -3,15 +3,32 @@ package se.chalmers.doit.logic.controller.implementation;
 import java.util.*;
 
 import se.chalmers.doit.core.*;
+import se.chalmers.doit.core.implementation.StatisticalData;
 import se.chalmers.doit.core.implementation.Task;
 import se.chalmers.doit.data.storage.*;
-import se.chalmers.doit.logic.controller.ILogicController;
+import se.chalmers.doit.logic.controller.*;
 import se.chalmers.doit.logic.verification.IDataVerifier;
 import se.chalmers.doit.logic.verification.implementation.DataVerifier;
+import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.IStatisticsIndex;
 import se.chalmers.doit.util.implementation.Constants;
+import se.chalmers.doit.util.implementation.EpochDay;
+import se.chalmers.doit.util.implementation.StatisticsIndex;
 
 public final class LogicController implements ILogicController {
 
+	/**
+	 * Records the changes made by the storage strategy as pending events.
+	 */
+	private final class PendingRecorder implements IChangeRecorder {
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public void recordChange(final int type, final long id) {
+			pending.recordChange(type, id);
+		}
+	}
+
 	private static LogicController instance;
 
 	public static synchronized ILogicController getInstance() {
@@ -21,8 +38,26 @@ public final class LogicController implements ILogicController {
 		return instance;
 	}
 
+	// Number of batches that have been started but not ended
+	private int batchDepth;
 	private IDataStorage data;
+	// The events being delivered, swapped with pending for each delivery
+	private DataEvents delivering = new DataEvents();
+	// Copied when changed, so that listeners can be added and removed while
+	// events are delivered
+	private IDataListener[] listeners = new IDataListener[0];
+	// First data version of the next storage strategy
+	private long nextVersion;
+	// The events recorded since the last delivery
+	private DataEvents pending = new DataEvents();
+	private boolean publishing;
+	private final IChangeRecorder recorder = new PendingRecorder();
 	private IStatisticsDataStorage statistics;
+	// Totals of the statistics, kept up to date with the reports made
+	private IStatisticsIndex statisticsIndex;
+	// Added to the version of the storage, so that the data version keeps
+	// increasing when the storage strategy is replaced
+	private long versionOffset;
 
 	private final IDataVerifier verifier;
 
@@ -30,6 +65,19 @@ public final class LogicController implements ILogicController {
 		verifier = new DataVerifier();
 	}
 
+	@Override
+	public void addDataListener(final IDataListener listener) {
+		for (IDataListener l : listeners) {
+			if (l == listener) {
+				return;
+			}
+		}
+		IDataListener[] newListeners = new IDataListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+		newListeners[listeners.length] = listener;
+		listeners = newListeners;
+	}
+
 	@Override
 	public boolean addList(final ITaskCollection taskCollection)
 			throws IllegalStateException {
@@ -37,13 +85,18 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		if (verifier.verifyList(taskCollection, data.getAllLists())) {
-			if (data.addList(taskCollection)) {
-				incrementNumberOfCreatedLists(1);
-				return true;
+		beginBatch();
+		try {
+			if (verifier.verifyList(taskCollection, data.getAllLists())) {
+				if (data.addList(taskCollection)) {
+					incrementNumberOfCreatedLists(1);
+					return true;
+				}
 			}
+			return false;
+		} finally {
+			endBatch();
 		}
-		return false;
 	}
 
 	@Override
@@ -53,23 +106,28 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		if (data.getAllLists().size() == 0) {
-			return data.addLists(collection);
-		}
+		beginBatch();
+		try {
+			if (data.getAllLists().size() == 0) {
+				return data.addLists(collection);
+			}
 
-		boolean canBeAdded = true;
-		for (ITaskCollection newCollection : collection) {
-			if (!verifier.verifyList(newCollection, data.getAllLists())) {
-				canBeAdded = false;
+			boolean canBeAdded = true;
+			for (ITaskCollection newCollection : collection) {
+				if (!verifier.verifyList(newCollection, data.getAllLists())) {
+					canBeAdded = false;
+				}
 			}
-		}
 
-		if (canBeAdded) {
-			int nAdded = data.addLists(collection);
-			incrementNumberOfCreatedLists(nAdded);
-			return nAdded;
+			if (canBeAdded) {
+				int nAdded = data.addLists(collection);
+				incrementNumberOfCreatedLists(nAdded);
+				return nAdded;
+			}
+			return 0;
+		} finally {
+			endBatch();
 		}
-		return 0;
 	}
 
 	@Override
@@ -79,13 +137,18 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		if (verifier.verifyTask(task)) {
-			if (data.addTask(task, collection)) {
-				incrementNumberOfCreatedTasks(1);
-				return true;
+		beginBatch();
+		try {
+			if (verifier.verifyTask(task)) {
+				if (data.addTask(task, collection)) {
+					incrementNumberOfCreatedTasks(1);
+					return true;
+				}
 			}
+			return false;
+		} finally {
+			endBatch();
 		}
-		return false;
 	}
 
 	@Override
@@ -95,15 +158,25 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		for (final ITask task : tasks) {
-			if (!verifier.verifyTask(task)) {
-				return 0;
+		beginBatch();
+		try {
+			for (final ITask task : tasks) {
+				if (!verifier.verifyTask(task)) {
+					return 0;
+				}
 			}
+
+			int nAdded = data.addTasks(tasks, collection);
+			incrementNumberOfCreatedTasks(nAdded);
+			return nAdded;
+		} finally {
+			endBatch();
 		}
+	}
 
-		int nAdded = data.addTasks(tasks, collection);
-		incrementNumberOfCreatedTasks(nAdded);
-		return nAdded;
+	@Override
+	public void beginBatch() {
+		batchDepth++;
 	}
 
 	@Override
@@ -112,7 +185,12 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		data.clearData();
+		beginBatch();
+		try {
+			data.clearData();
+		} finally {
+			endBatch();
+		}
 	}
 
 	@Override
@@ -123,6 +201,7 @@ public final class LogicController implements ILogicController {
 		}
 
 		statistics.clearData();
+		statisticsIndex = null;
 	}
 
 	@Override
@@ -131,7 +210,12 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		return _completeTask(task);
+		beginBatch();
+		try {
+			return _completeTask(task);
+		} finally {
+			endBatch();
+		}
 	}
 
 	@Override
@@ -141,30 +225,38 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		return _decompleteTask(task);
+		beginBatch();
+		try {
+			return _decompleteTask(task);
+		} finally {
+			endBatch();
+		}
 	}
 
 	@Override
 	public boolean editList(final ITaskCollection oldCollection,
 			final ITaskCollection newCollection) throws IllegalStateException {
-
 		if (data == null) {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		for (final ITaskCollection list : data.getAllLists()) {
-			if (newCollection.getName().equals(list.getName())) {
-				return false;
+		beginBatch();
+		try {
+			for (final ITaskCollection list : data.getAllLists()) {
+				if (newCollection.getName().equals(list.getName())) {
+					return false;
+				}
 			}
-		}
-		for (ITask t : newCollection.getTasks()) {
-			if (!verifier.verifyTask(t)) {
-				return false;
+			for (ITask t : newCollection.getTaskView()) {
+				if (!verifier.verifyTask(t)) {
+					return false;
+				}
 			}
-		}
-
-		return data.editList(oldCollection, newCollection);
 
+			return data.editList(oldCollection, newCollection);
+		} finally {
+			endBatch();
+		}
 	}
 
 	@Override
@@ -174,10 +266,37 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		if (verifier.verifyTask(newTask)) {
-			return data.editTask(oldTask, newTask);
+		beginBatch();
+		try {
+			if (verifier.verifyTask(newTask)) {
+				return data.editTask(oldTask, newTask);
+			}
+			return false;
+		} finally {
+			endBatch();
 		}
-		return false;
+	}
+
+	@Override
+	public void endBatch() throws IllegalStateException {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No batch has been started!");
+		}
+
+		batchDepth--;
+		if (batchDepth == 0) {
+			_publish();
+		}
+	}
+
+	@Override
+	public void flushStatisticsData() throws IllegalStateException {
+		if (statistics == null) {
+			throw new IllegalStateException(
+					"No statistics strategy has been set!");
+		}
+
+		statistics.flush();
 	}
 
 	@Override
@@ -200,99 +319,111 @@ public final class LogicController implements ILogicController {
 	}
 
 	@Override
-	public int getNumberOfCreatedLists(final int pastDays)
-			throws IllegalStateException {
-		if (statistics == null) {
-			throw new IllegalStateException(
-					"No statistics strategy has been set!");
+	public long getDataVersion() throws IllegalStateException {
+		if (data == null) {
+			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		int retVal = 0;
-		for (final IStatisticalData d : _getDataForInterval(pastDays)) {
-			retVal += d.getCreatedLists();
-		}
+		return data.getVersion() + versionOffset;
+	}
 
-		return retVal;
+	@Override
+	public int getNumberOfCreatedLists(final int pastDays)
+			throws IllegalStateException {
+		return getStatistics(pastDays).getCreatedLists();
 	}
 
 	@Override
 	public int getNumberOfCreatedTasks(final int pastDays)
 			throws IllegalStateException {
-		if (statistics == null) {
-			throw new IllegalStateException(
-					"No statistics strategy has been set!");
-		}
-
-		int retVal = 0;
-		for (final IStatisticalData d : _getDataForInterval(pastDays)) {
-			retVal += d.getCreatedTasks();
-		}
-
-		return retVal;
+		return getStatistics(pastDays).getCreatedTasks();
 	}
 
 	@Override
 	public int getNumberOfDeletedLists(final int pastDays)
 			throws IllegalStateException {
-		if (statistics == null) {
-			throw new IllegalStateException(
-					"No statistics strategy has been set!");
-		}
+		return getStatistics(pastDays).getDeletedLists();
+	}
 
-		int retVal = 0;
-		for (final IStatisticalData d : _getDataForInterval(pastDays)) {
-			retVal += d.getDeletedLists();
-		}
+	@Override
+	public int getNumberOfDeletedTasks(final int pastDays)
+			throws IllegalStateException {
+		return getStatistics(pastDays).getDeletedTasks();
+	}
 
-		return retVal;
+	@Override
+	public int getNumberOfFinishedTasks(final int pastDays)
+			throws IllegalStateException {
+		return getStatistics(pastDays).getFinishedTasks();
 	}
 
 	@Override
-	public int getNumberOfDeletedTasks(final int pastDays)
+	public int getNumberOfOverdueTasks(final int pastDays)
+			throws IllegalStateException {
+		return getStatistics(pastDays).getOverdueTasks();
+	}
+
+	@Override
+	public IStatisticalData getStatistics(final int pastDays)
 			throws IllegalStateException {
 		if (statistics == null) {
 			throw new IllegalStateException(
 					"No statistics strategy has been set!");
 		}
 
-		int retVal = 0;
-		for (final IStatisticalData d : _getDataForInterval(pastDays)) {
-			retVal += d.getDeletedTasks();
+		// Built on first use, as it reads all statistics
+		if (statisticsIndex == null) {
+			statisticsIndex = new StatisticsIndex(
+					statistics.getStatisticsData());
 		}
-
-		return retVal;
+		// Today and the past days before it, or all days if negative
+		long firstDay = Long.MIN_VALUE;
+		if (pastDays >= 0) {
+			firstDay = EpochDay.getDay(new Date()) - pastDays;
+		}
+		return statisticsIndex.getTotals(firstDay, Long.MAX_VALUE);
 	}
 
 	@Override
-	public int getNumberOfFinishedTasks(final int pastDays)
-			throws IllegalStateException {
+	public Collection<IStatisticalData> getStatisticsData(final long firstDay,
+			final long lastDay) throws IllegalStateException {
 		if (statistics == null) {
 			throw new IllegalStateException(
 					"No statistics strategy has been set!");
 		}
 
-		int retVal = 0;
-		for (final IStatisticalData d : _getDataForInterval(pastDays)) {
-			retVal += d.getFinishedTasks();
+		return statistics.getStatisticsData(firstDay, lastDay);
+	}
+
+	@Override
+	public ITask getTask(final long taskID) throws IllegalStateException {
+		if (data == null) {
+			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		return retVal;
+		return data.getTask(taskID);
 	}
 
 	@Override
-	public int getNumberOfOverdueTasks(final int pastDays)
-			throws IllegalStateException {
-		if (statistics == null) {
-			throw new IllegalStateException(
-					"No statistics strategy has been set!");
+	public ITaskCursor getTaskCursor(final ITaskCollection collection,
+			final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) throws IllegalStateException {
+		if (data == null) {
+			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		int retVal = 0;
-		for (final IStatisticalData d : _getDataForInterval(pastDays)) {
-			retVal += d.getOverdueTasks();
-		}
+		return data.getTaskCursor(collection, primary, secondary, tertiary);
+	}
 
-		return retVal;
+	@Override
+	public boolean hasStatisticsStrategy() {
+		return statistics != null;
+	}
+
+	@Override
+	public boolean hasStorageStrategy() {
+		return data != null;
 	}
 
 	@Override
@@ -303,8 +434,10 @@ public final class LogicController implements ILogicController {
 					"No statistics strategy has been set!");
 		}
 
-		statistics.reportCreatedLists(amount, new Date());
-
+		final StatisticalData report = new StatisticalData(new Date());
+		report.addCreatedLists(amount);
+		statistics.reportCreatedLists(amount, report.getDate());
+		_addToStatisticsIndex(report);
 	}
 
 	@Override
@@ -315,7 +448,10 @@ public final class LogicController implements ILogicController {
 					"No statistics strategy has been set!");
 		}
 
-		statistics.reportCreatedTasks(amount, new Date());
+		final StatisticalData report = new StatisticalData(new Date());
+		report.addCreatedTasks(amount);
+		statistics.reportCreatedTasks(amount, report.getDate());
+		_addToStatisticsIndex(report);
 	}
 
 	@Override
@@ -326,7 +462,10 @@ public final class LogicController implements ILogicController {
 					"No statistics strategy has been set!");
 		}
 
-		statistics.reportDeletedLists(amount, new Date());
+		final StatisticalData report = new StatisticalData(new Date());
+		report.addDeletedLists(amount);
+		statistics.reportDeletedLists(amount, report.getDate());
+		_addToStatisticsIndex(report);
 	}
 
 	@Override
@@ -337,8 +476,10 @@ public final class LogicController implements ILogicController {
 					"No statistics strategy has been set!");
 		}
 
-		statistics.reportDeletedTasks(amount, new Date());
-
+		final StatisticalData report = new StatisticalData(new Date());
+		report.addDeletedTasks(amount);
+		statistics.reportDeletedTasks(amount, report.getDate());
+		_addToStatisticsIndex(report);
 	}
 
 	@Override
@@ -349,8 +490,10 @@ public final class LogicController implements ILogicController {
 					"No statistics strategy has been set!");
 		}
 
-		statistics.reportFinishedTasks(amount, new Date());
-
+		final StatisticalData report = new StatisticalData(new Date());
+		report.addFinishedTasks(amount);
+		statistics.reportFinishedTasks(amount, report.getDate());
+		_addToStatisticsIndex(report);
 	}
 
 	@Override
@@ -361,8 +504,10 @@ public final class LogicController implements ILogicController {
 					"No statistics strategy has been set!");
 		}
 
-		statistics.reportOverdueTasks(amount, new Date());
-
+		final StatisticalData report = new StatisticalData(new Date());
+		report.addOverdueTasks(amount);
+		statistics.reportOverdueTasks(amount, report.getDate());
+		_addToStatisticsIndex(report);
 	}
 
 	@Override
@@ -372,7 +517,26 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		return data.moveTask(task, taskCollection);
+		beginBatch();
+		try {
+			return data.moveTask(task, taskCollection);
+		} finally {
+			endBatch();
+		}
+	}
+
+	@Override
+	public void removeDataListener(final IDataListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				IDataListener[] newListeners = new IDataListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, newListeners, 0, i);
+				System.arraycopy(listeners, i + 1, newListeners, i,
+						newListeners.length - i);
+				listeners = newListeners;
+				return;
+			}
+		}
 	}
 
 	@Override
@@ -382,12 +546,17 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		if (data.removeList(collection)) {
-			incrementNumberOfDeletedLists(1);
-			incrementNumberOfDeletedTasks(collection.getTasks().size());
-			return true;
+		beginBatch();
+		try {
+			if (data.removeList(collection)) {
+				incrementNumberOfDeletedLists(1);
+				incrementNumberOfDeletedTasks(collection.size());
+				return true;
+			}
+			return false;
+		} finally {
+			endBatch();
 		}
-		return false;
 	}
 
 	@Override
@@ -397,13 +566,18 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		int nTasks = 0;
-		for (ITaskCollection t : collection) {
-			nTasks += t.getTasks().size();
+		beginBatch();
+		try {
+			int nTasks = 0;
+			for (ITaskCollection t : collection) {
+				nTasks += t.size();
+			}
+			incrementNumberOfDeletedTasks(nTasks);
+			incrementNumberOfDeletedLists(collection.size());
+			return data.removeLists(collection);
+		} finally {
+			endBatch();
 		}
-		incrementNumberOfDeletedTasks(nTasks);
-		incrementNumberOfDeletedLists(collection.size());
-		return data.removeLists(collection);
 	}
 
 	@Override
@@ -412,11 +586,16 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		if (data.removeTask(task)) {
-			incrementNumberOfDeletedTasks(1);
-			return true;
+		beginBatch();
+		try {
+			if (data.removeTask(task)) {
+				incrementNumberOfDeletedTasks(1);
+				return true;
+			}
+			return false;
+		} finally {
+			endBatch();
 		}
-		return false;
 	}
 
 	@Override
@@ -426,20 +605,45 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		int nRemoved = data.removeTasks(listOfTasksToRemove);
-		incrementNumberOfDeletedTasks(nRemoved);
-		return nRemoved;
+		beginBatch();
+		try {
+			int nRemoved = data.removeTasks(listOfTasksToRemove);
+			incrementNumberOfDeletedTasks(nRemoved);
+			return nRemoved;
+		} finally {
+			endBatch();
+		}
 	}
 
 	@Override
 	public void setStatisticsStrategy(
 			final IStatisticsDataStorage statisticsStorage) {
+		// Statistics held in memory by the old storage would otherwise be lost
+		if (statistics != null) {
+			statistics.flush();
+		}
 		statistics = statisticsStorage;
+		statisticsIndex = null;
 	}
 
 	@Override
 	public void setStorageStrategy(final IDataStorage dataStorage) {
-		data = dataStorage;
+		beginBatch();
+		try {
+			if (data != null) {
+				nextVersion = getDataVersion() + 1;
+				data.setChangeRecorder(null);
+				pending.recordChange(Constants.EVENT_DATA_CLEARED,
+						Constants.ID_UNSAVED);
+			}
+			data = dataStorage;
+			if (data != null) {
+				versionOffset = nextVersion - data.getVersion();
+				data.setChangeRecorder(recorder);
+			}
+		} finally {
+			endBatch();
+		}
 	}
 
 	@Override
@@ -449,10 +653,21 @@ public final class LogicController implements ILogicController {
 			throw new IllegalStateException("No storage strategy has been set!");
 		}
 
-		if (task.isCompleted()) {
-			return _decompleteTask(task);
+		beginBatch();
+		try {
+			if (task.isCompleted()) {
+				return _decompleteTask(task);
+			}
+			return _completeTask(task);
+		} finally {
+			endBatch();
+		}
+	}
+
+	private void _addToStatisticsIndex(final IStatisticalData report) {
+		if (statisticsIndex != null) {
+			statisticsIndex.add(EpochDay.getDay(report.getDate()), report);
 		}
-		return _completeTask(task);
 	}
 
 	private boolean _completeTask(final ITask task) {
@@ -464,30 +679,36 @@ public final class LogicController implements ILogicController {
 		return data.editTask(task, new Task(task, false));
 	}
 
-	private Collection<IStatisticalData> _getDataForInterval(final int interval) {
-
-		final Collection<IStatisticalData> retList = new ArrayList<IStatisticalData>();
-
-		final Date tempDate = new Date();
-
-		tempDate.setSeconds(0);
-		tempDate.setMinutes(0);
-		tempDate.setHours(0);
-
-		Date date = new Date(tempDate.getTime()
-				- (long) Constants.MILLISECONDS_IN_A_DAY * (long) interval);
-
-		if (interval < 0) {
-			date = new Date(0);
-		}
-
-		for (final IStatisticalData d : statistics.getStatisticsData()) {
-			if (d.getDate().compareTo(date) > 0) {
-				retList.add(d);
+	/**
+	 * Delivers the pending events to the listeners. Events recorded by the
+	 * listeners are delivered after the current delivery has finished.
+	 */
+	private void _publish() {
+		if (publishing) {
+			return;
+		}
+
+		publishing = true;
+		try {
+			while (pending.getCount() > 0) {
+				IDataListener[] toNotify = listeners;
+				if (toNotify.length == 0) {
+					pending.clear();
+					return;
+				}
+				DataEvents events = pending;
+				pending = delivering;
+				delivering = events;
+				try {
+					for (IDataListener l : toNotify) {
+						l.onDataChanged(events);
+					}
+				} finally {
+					events.clear();
+				}
 			}
+		} finally {
+			publishing = false;
 		}
-
-		return retList;
-
 	}
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package se.chalmers.doit.logic.service;
+
+import java.util.Collection;
+
+import se.chalmers.doit.core.ITask;
+
+/**
+ * An interface to detect tasks becoming overdue and report them to the
+ * statistics.
+ * 
+ * Only tasks that are not completed and have a due date are tracked. Setting
+ * a task again replaces it, so only an edited task has to be set again, not
+ * all tasks. Each task is reported as overdue at most once.
+ * 
+ * @author Boel
+ * 
+ */
+public interface IOverdueTracker {
+
+	/**
+	 * Stops tracking all tasks.
+	 */
+	public void clearTasks();
+
+	/**
+	 * Returns the time of the last update.
+	 * 
+	 * @return the time in milliseconds, which can be given to a new tracker so
+	 *         that tasks already reported are not reported again
+	 */
+	public long getLastUpdate();
+
+	/**
+	 * Stops tracking all ITasks in the Collection.
+	 * 
+	 * @param tasks
+	 *            The ITasks to stop tracking
+	 */
+	public void removeTasks(Collection<ITask> tasks);
+
+	/**
+	 * Tracks all ITasks in the Collection, replacing their current due dates.
+	 * A task without a due date, or that is completed, is no longer tracked.
+	 * 
+	 * @param tasks
+	 *            The ITasks to track
+	 */
+	public void setTasks(Collection<ITask> tasks);
+
+	/**
+	 * Reports all tracked tasks whose due date has passed, and stops
+	 * tracking them.
+	 * 
+	 * @return the number of tasks that became overdue
+	 */
+	public int update();
+
+}
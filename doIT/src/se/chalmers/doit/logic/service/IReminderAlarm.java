@@ -0,0 +1,37 @@
+package se.chalmers.doit.logic.service;
+
+import se.chalmers.doit.core.ITask;
+
+/**
+ * An interface to the platform alarm waking up the reminder service. At most
+ * one wake-up is set at a time, for the next reminder.
+ * 
+ * @author Boel
+ * 
+ */
+public interface IReminderAlarm {
+
+	/**
+	 * Cancels the wake-up, if any.
+	 */
+	public void cancel();
+
+	/**
+	 * Reminds the user of a task.
+	 * 
+	 * @param task
+	 *            The task whose reminder time has come
+	 */
+	public void remind(ITask task);
+
+	/**
+	 * Sets the wake-up, replacing any earlier one. IReminderService.onAlarm()
+	 * should be called at the time.
+	 * 
+	 * @param time
+	 *            The time to wake up at, in milliseconds since January 1, 1970
+	 *            UTC
+	 */
+	public void set(long time);
+
+}
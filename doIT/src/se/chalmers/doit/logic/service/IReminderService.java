@@ -7,6 +7,10 @@ import se.chalmers.doit.core.ITask;
 /**
  * An interface to set reminder-events.
  * 
+ * Reminders are kept for tasks that are not completed and whose reminder date
+ * has not passed. Setting the reminder of a task again replaces it, so only
+ * an edited task has to be set again, not all tasks.
+ * 
  * @author Boel
  * 
  */
@@ -18,7 +22,23 @@ public interface IReminderService {
 	public void clearReminders();
 
 	/**
-	 * Sets reminders for all ITasks in the Collection.
+	 * Reminds of all tasks whose reminder time has come. Called when the
+	 * alarm set for the next reminder goes off.
+	 */
+	public void onAlarm();
+
+	/**
+	 * Removes the reminders of all ITasks in the Collection.
+	 * 
+	 * @param tasks
+	 *            The ITasks to remove the reminders of
+	 */
+	public void removeReminders(Collection<ITask> tasks);
+
+	/**
+	 * Sets reminders for all ITasks in the Collection, replacing their
+	 * current reminders. A task without a reminder date, or that is
+	 * completed, has its reminder removed.
 	 * 
 	 * @param tasks
 	 *            The ITasks to set the reminders for
@@ -0,0 +1,179 @@
+package se.chalmers.doit.logic.service.implementation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.logic.controller.*;
+import se.chalmers.doit.logic.service.IOverdueTracker;
+import se.chalmers.doit.util.IClock;
+import se.chalmers.doit.util.implementation.Constants;
+
+/**
+ * An implementation of IOverdueTracker keeping the tracked tasks sorted by
+ * due date.
+ * 
+ * An update only looks at the tasks that have become overdue, so reporting k
+ * tasks takes O(k log n) time. A task is reported when its due date falls
+ * between two updates, and the IDs of reported tasks are kept so that a task
+ * whose due date is moved is not reported again.
+ * 
+ * Added to the controller as an IDataListener, the tracker follows the
+ * changed tasks, so it only has to be given all tasks once, after they have
+ * been loaded.
+ * 
+ * @author Boel
+ * 
+ */
+public class OverdueTracker implements IOverdueTracker, IDataListener {
+
+	// Orders tasks by due date, and tasks due at the same time by ID
+	private static final Comparator<ITask> DUE_ORDER = new Comparator<ITask>() {
+
+		@Override
+		public int compare(final ITask t1, final ITask t2) {
+			final long d1 = t1.getDueDate().getTime();
+			final long d2 = t2.getDueDate().getTime();
+			if (d1 != d2) {
+				return d1 < d2 ? -1 : 1;
+			}
+			if (t1.getID() != t2.getID()) {
+				return t1.getID() < t2.getID() ? -1 : 1;
+			}
+			return 0;
+		}
+	};
+
+	private final IClock clock;
+	private final ILogicController controller;
+	private final SortedSet<ITask> dueTasks = new TreeSet<ITask>(DUE_ORDER);
+	private long lastUpdate;
+	// The IDs of the tasks that have been reported
+	private final Set<Long> reported = new HashSet<Long>();
+	// The tracked tasks, by task ID
+	private final Map<Long, ITask> tracked = new HashMap<Long, ITask>();
+
+	/**
+	 * @param controller
+	 *            The controller to report overdue tasks to
+	 * @param clock
+	 *            The clock to read the current time from
+	 * @param lastUpdate
+	 *            The time of the last update of an earlier tracker. Tasks due
+	 *            before it are not reported.
+	 */
+	public OverdueTracker(final ILogicController controller,
+			final IClock clock, final long lastUpdate) {
+		this.controller = controller;
+		this.clock = clock;
+		this.lastUpdate = lastUpdate;
+	}
+
+	@Override
+	public void clearTasks() {
+		dueTasks.clear();
+		tracked.clear();
+	}
+
+	/**
+	 * Returns the number of tracked tasks.
+	 * 
+	 * @return the number of tasks that have not become overdue
+	 */
+	public int getCount() {
+		return tracked.size();
+	}
+
+	@Override
+	public long getLastUpdate() {
+		return lastUpdate;
+	}
+
+	@Override
+	public void onDataChanged(final IDataEvents events) {
+		for (int i = 0; i < events.getCount(); i++) {
+			final long id = events.getID(i);
+			switch (events.getType(i)) {
+				case Constants.EVENT_DATA_CLEARED:
+					clearTasks();
+					break;
+				case Constants.EVENT_TASK_ADDED:
+				case Constants.EVENT_TASK_COMPLETED:
+				case Constants.EVENT_TASK_DECOMPLETED:
+				case Constants.EVENT_TASK_EDITED:
+					// The task may have been removed later in the batch
+					final ITask task = controller.getTask(id);
+					if (task != null) {
+						setTasks(Collections.singleton(task));
+					}
+					break;
+				case Constants.EVENT_TASK_REMOVED:
+					_remove(id);
+					reported.remove(Long.valueOf(id));
+					break;
+			}
+		}
+	}
+
+	@Override
+	public void removeTasks(final Collection<ITask> tasksToRemove) {
+		for (final ITask task : tasksToRemove) {
+			_remove(task.getID());
+			reported.remove(Long.valueOf(task.getID()));
+		}
+	}
+
+	@Override
+	public void setTasks(final Collection<ITask> tasksToSet) {
+		for (final ITask task : tasksToSet) {
+			if (task.getID() == Constants.ID_UNSAVED) {
+				// Cannot be told apart from other unsaved tasks
+				continue;
+			}
+			_remove(task.getID());
+			if (task.getDueDate() != null && !task.isCompleted()
+					&& task.getDueDate().getTime() > lastUpdate
+					&& !reported.contains(Long.valueOf(task.getID()))) {
+				dueTasks.add(task);
+				tracked.put(Long.valueOf(task.getID()), task);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalStateException
+	 *             if the controller has no statistics strategy
+	 */
+	@Override
+	public int update() throws IllegalStateException {
+		if (!controller.hasStatisticsStrategy()) {
+			throw new IllegalStateException(
+					"No statistics strategy has been set!");
+		}
+
+		final long now = clock.currentTimeMillis();
+		int nOverdue = 0;
+		while (!dueTasks.isEmpty()
+				&& dueTasks.first().getDueDate().getTime() <= now) {
+			final ITask task = dueTasks.first();
+			_remove(task.getID());
+			reported.add(Long.valueOf(task.getID()));
+			nOverdue++;
+		}
+		if (now > lastUpdate) {
+			lastUpdate = now;
+		}
+		if (nOverdue > 0) {
+			controller.incrementNumberOfOverdueTasks(nOverdue);
+		}
+		return nOverdue;
+	}
+
+	private void _remove(final long taskID) {
+		final ITask task = tracked.remove(Long.valueOf(taskID));
+		if (task != null) {
+			dueTasks.remove(task);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package se.chalmers.doit.logic.service.implementation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.logic.service.IReminderAlarm;
+import se.chalmers.doit.logic.service.IReminderService;
+import se.chalmers.doit.util.IClock;
+import se.chalmers.doit.util.implementation.Constants;
+
+/**
+ * An implementation of IReminderService keeping the pending reminders in a
+ * binary min-heap ordered by reminder time.
+ * 
+ * The position of each task in the heap is kept by task ID, so a reminder is
+ * set, moved or removed in O(log n) time. Only the wake-up of the first
+ * reminder is set on the alarm, and only when that time changes.
+ * 
+ * @author Boel
+ * 
+ */
+public class ReminderService implements IReminderService {
+
+	// The armed time when no wake-up is set
+	private static final long NOT_ARMED = Long.MIN_VALUE;
+
+	private final IReminderAlarm alarm;
+	private long armedTime = NOT_ARMED;
+	private final IClock clock;
+	// The heap position of each task, by task ID
+	private final Map<Long, Integer> positions = new HashMap<Long, Integer>();
+	private int size = 0;
+	private ITask[] tasks = new ITask[16];
+	private long[] times = new long[16];
+
+	/**
+	 * @param alarm
+	 *            The alarm to set wake-ups on and to remind the user through
+	 * @param clock
+	 *            The clock to read the current time from
+	 */
+	public ReminderService(final IReminderAlarm alarm, final IClock clock) {
+		this.alarm = alarm;
+		this.clock = clock;
+	}
+
+	@Override
+	public void clearReminders() {
+		Arrays.fill(tasks, 0, size, null);
+		size = 0;
+		positions.clear();
+		_arm();
+	}
+
+	/**
+	 * Returns the number of pending reminders.
+	 * 
+	 * @return the number of reminders that have not been delivered
+	 */
+	public int getCount() {
+		return size;
+	}
+
+	@Override
+	public void onAlarm() {
+		// The wake-up has gone off, so a new one is set even for the same time
+		armedTime = NOT_ARMED;
+		final long now = clock.currentTimeMillis();
+		while (size > 0 && times[0] <= now) {
+			final ITask task = tasks[0];
+			_removeAt(0);
+			alarm.remind(task);
+		}
+		_arm();
+	}
+
+	@Override
+	public void removeReminders(final Collection<ITask> tasksToRemove) {
+		for (final ITask task : tasksToRemove) {
+			_remove(task.getID());
+		}
+		_arm();
+	}
+
+	@Override
+	public void setReminders(final Collection<ITask> tasksToSet) {
+		final long now = clock.currentTimeMillis();
+		for (final ITask task : tasksToSet) {
+			if (task.getID() == Constants.ID_UNSAVED) {
+				// Cannot be told apart from other unsaved tasks
+				continue;
+			}
+			final Date reminderDate = task.getReminderDate();
+			if (reminderDate == null || task.isCompleted()
+					|| reminderDate.getTime() <= now) {
+				_remove(task.getID());
+			} else {
+				_set(task, reminderDate.getTime());
+			}
+		}
+		_arm();
+	}
+
+	private void _arm() {
+		// Sets the wake-up of the first reminder, unless it is already set
+		final long next = size == 0 ? NOT_ARMED : times[0];
+		if (next == armedTime) {
+			return;
+		}
+		armedTime = next;
+		if (next == NOT_ARMED) {
+			alarm.cancel();
+		} else {
+			alarm.set(next);
+		}
+	}
+
+	private void _move(final int from, final int to) {
+		tasks[to] = tasks[from];
+		times[to] = times[from];
+		positions.put(Long.valueOf(tasks[to].getID()), Integer.valueOf(to));
+	}
+
+	private void _place(final int pos, final ITask task, final long time) {
+		tasks[pos] = task;
+		times[pos] = time;
+		positions.put(Long.valueOf(task.getID()), Integer.valueOf(pos));
+	}
+
+	private void _remove(final long taskID) {
+		final Integer pos = positions.get(Long.valueOf(taskID));
+		if (pos != null) {
+			_removeAt(pos.intValue());
+		}
+	}
+
+	private void _removeAt(final int pos) {
+		positions.remove(Long.valueOf(tasks[pos].getID()));
+		size--;
+		if (pos != size) {
+			// The last reminder takes the place of the removed one
+			final ITask last = tasks[size];
+			final long lastTime = times[size];
+			tasks[size] = null;
+			_sift(pos, last, lastTime);
+		} else {
+			tasks[size] = null;
+		}
+	}
+
+	private void _set(final ITask task, final long time) {
+		final Integer pos = positions.get(Long.valueOf(task.getID()));
+		if (pos != null) {
+			_sift(pos.intValue(), task, time);
+			return;
+		}
+		if (size == tasks.length) {
+			final ITask[] newTasks = new ITask[size * 2];
+			System.arraycopy(tasks, 0, newTasks, 0, size);
+			tasks = newTasks;
+			final long[] newTimes = new long[size * 2];
+			System.arraycopy(times, 0, newTimes, 0, size);
+			times = newTimes;
+		}
+		size++;
+		_sift(size - 1, task, time);
+	}
+
+	private void _sift(final int start, final ITask task, final long time) {
+		// Places a reminder at a free position, moving it up or down the
+		// heap until it is in order
+		int pos = start;
+		while (pos > 0 && times[(pos - 1) / 2] > time) {
+			final int parent = (pos - 1) / 2;
+			_move(parent, pos);
+			pos = parent;
+		}
+		if (pos == start) {
+			int child = 2 * pos + 1;
+			while (child < size) {
+				if (child + 1 < size && times[child + 1] < times[child]) {
+					child++;
+				}
+				if (times[child] >= time) {
+					break;
+				}
+				_move(child, pos);
+				pos = child;
+				child = 2 * pos + 1;
+			}
+		}
+		_place(pos, task, time);
+	}
+}
@@ -32,7 +32,7 @@ public class ListListAdapter extends ArrayAdapter<ITaskCollection> {
 		TextView topText = (TextView) view.findViewById(R.id.toptext);
 		TextView bottomText = (TextView) view.findViewById(R.id.bottomtext);
 		topText.setText(item.getName());
-		bottomText.setText(item.getTasks().size() + " tasks");
+		bottomText.setText(item.size() + " tasks");
 
 		return view;
 	}
@@ -23,6 +23,8 @@ import android.widget.*;
 public class ListViewer extends ListActivity {
 	private ListListAdapter adapter;
 	private final HashMap<Integer, Intent> intentMap = new HashMap<Integer, Intent>();
+	// Version of the data the view was last built from
+	private long shownVersion = -1;
 
 	@Override
 	public boolean onContextItemSelected(final MenuItem item) {
@@ -57,7 +59,7 @@ public class ListViewer extends ListActivity {
 											.editList(
 													col,
 													new TaskCollection(value,
-															col.getTasks()))) {
+															col.getTaskView()))) {
 										Toast.makeText(
 												ListViewer.this,
 												"List named " + value
@@ -188,6 +190,11 @@ public class ListViewer extends ListActivity {
 	}
 
 	private void _addList(final ITaskCollection col) {
+		if (!LogicController.getInstance().hasStorageStrategy()) {
+			Toast.makeText(ListViewer.this, "Lists are still loading!",
+					Toast.LENGTH_SHORT).show();
+			return;
+		}
 		if (LogicController.getInstance().addList(col)) {
 			_updateView();
 			Toast.makeText(ListViewer.this, "List added!", Toast.LENGTH_SHORT)
@@ -219,14 +226,27 @@ public class ListViewer extends ListActivity {
 	}
 
 	private void _populateList() {
+		// Observers are notified once, not once per list
+		adapter.setNotifyOnChange(false);
 		adapter.clear();
 		for (final ITaskCollection t : LogicController.getInstance()
 				.getAllLists()) {
 			adapter.add(t);
 		}
+		adapter.notifyDataSetChanged();
 	}
 
 	private void _updateView() {
-		_populateList();
+		// The data is loaded in the background when the application starts
+		if (!LogicController.getInstance().hasStorageStrategy()) {
+			return;
+		}
+
+		// The lists are only rebuilt if the data has changed
+		final long version = LogicController.getInstance().getDataVersion();
+		if (version != shownVersion) {
+			_populateList();
+			shownVersion = version;
+		}
 	}
 }
\ No newline at end of file
@@ -1,30 +1,76 @@
 package se.chalmers.doit.presentation.activities.implementation;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.*;
+
 import se.chalmers.doit.R;
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.data.storage.*;
 import se.chalmers.doit.data.storage.implementation.*;
+import se.chalmers.doit.logic.controller.ILogicController;
 import se.chalmers.doit.logic.controller.implementation.LogicController;
-import se.chalmers.doit.util.implementation.Constants;
+import se.chalmers.doit.logic.service.implementation.OverdueTracker;
+import se.chalmers.doit.util.implementation.*;
 import android.app.TabActivity;
-import android.content.Intent;
+import android.content.*;
 import android.content.res.Resources;
-import android.os.Bundle;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.*;
+import android.util.Log;
 import android.widget.*;
 import android.widget.TabHost.OnTabChangeListener;
 
+/**
+ * Activity holding the task and list tabs.
+ * 
+ * The tabs are shown right away, while the task and statistics databases are
+ * opened and loaded on a background thread. The tabs are filled in once the
+ * data has been loaded. Tasks becoming overdue are reported to the statistics
+ * while the activity is shown.
+ * 
+ * @author Marco Baxemyr
+ * 
+ */
 public class MainActivity extends TabActivity {
 
+	// The activity to notify when the data has been loaded
+	private static MainActivity active;
+	private static final ExecutorService loader = Executors
+			.newSingleThreadExecutor();
+	private static boolean loading = false;
+	private static boolean loadingStatistics = false;
+	// The log of the changes made to the loaded data, or null
+	private static LoggedDataSQL operations;
+	// Tracks the loaded tasks until they become overdue, or null
+	private static OverdueTracker overdue;
+	// Keeps the snapshot of the loaded data, or null
+	private static SnapshotDataSQL snapshot;
+	// The statistics storage once it has been opened, or null
+	private static StatisticsDataStorage statistics;
+
+	private final Handler handler = new Handler();
+	private StartupMetrics metrics;
+	// Checks for overdue tasks, and checks again after an interval
+	private final Runnable overdueUpdate = new Runnable() {
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public void run() {
+			_updateOverdue();
+			handler.postDelayed(this, Constants.OVERDUE_UPDATE_INTERVAL);
+		}
+	};
+
 	@Override
 	public void onCreate(final Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
+		metrics = new StartupMetrics(SystemClock.uptimeMillis());
+		active = this;
 		setContentView(R.layout.mainview);
 
-		LogicController.getInstance().setStorageStrategy(
-				new DataStorage(this.openOrCreateDatabase(
-						Constants.DATABASE_NAME, MODE_PRIVATE, null)));
-		LogicController.getInstance().setStatisticsStrategy(
-				new StatisticsDataStorage(getSharedPreferences(
-						Constants.SHARED_PREFERENCES_STATISTICS_NAME,
-						MODE_PRIVATE)));
+		if (!LogicController.getInstance().hasStatisticsStrategy()) {
+			_loadStatistics();
+		}
 
 		Resources res = getResources();
 		TabHost tabHost = getTabHost();
@@ -58,6 +104,21 @@ public class MainActivity extends TabActivity {
 			}
 		};
 		tabHost.setOnTabChangedListener(tcl);
+
+		if (LogicController.getInstance().hasStorageStrategy()) {
+			_onDataLoaded();
+		} else {
+			_loadData();
+		}
+	}
+
+	@Override
+	public void onWindowFocusChanged(final boolean hasFocus) {
+		super.onWindowFocusChanged(hasFocus);
+		if (hasFocus && metrics.markFirstFrame(SystemClock.uptimeMillis())) {
+			Log.i(StartupMetrics.LOG_TAG, "Time to first frame: "
+					+ metrics.getTimeToFirstFrame() + " ms");
+		}
 	}
 
 	public void setActiveList(final String listName) {
@@ -66,10 +127,209 @@ public class MainActivity extends TabActivity {
 		getTabHost().setCurrentTab(0);
 	}
 
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		if (active == this) {
+			active = null;
+		}
+	}
+
+	@Override
+	protected void onPause() {
+		super.onPause();
+		// The process may be killed once paused, but the writes are not
+		// waited for on the UI thread
+		if (statistics != null) {
+			statistics.startWrite();
+		}
+		if (operations != null) {
+			// Logged changes are recovered from the log if the process is
+			// killed, so there is no need to wait for them to be written
+			operations.startWrite();
+		}
+		if (snapshot != null) {
+			_writeSnapshot(snapshot);
+		}
+		handler.removeCallbacks(overdueUpdate);
+		if (overdue != null) {
+			_writeLastUpdate(getApplicationContext(), overdue.getLastUpdate());
+		}
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		handler.post(overdueUpdate);
+	}
+
+	private void _loadData() {
+		if (loading) {
+			return;
+		}
+		loading = true;
+
+		final Context context = getApplicationContext();
+		loader.execute(new Runnable() {
+			@SuppressWarnings("synthetic-access")
+			@Override
+			public void run() {
+				final SQLiteDatabase database = context.openOrCreateDatabase(
+						Constants.DATABASE_NAME, MODE_PRIVATE, null);
+				final DataSQL sql = new DataSQL();
+				sql.setDatabase(database);
+				LoggedDataSQL logged = null;
+				try {
+					logged = new LoggedDataSQL(sql, new OperationLog(context
+							.getFileStreamPath(Constants.OPERATION_LOG_NAME)));
+				} catch (final IOException e) {
+					// Changes are written straight to the database instead
+					Log.w(LoggedDataSQL.LOG_TAG,
+							"Could not open the operation log: " + e);
+				}
+				final LoggedDataSQL log = logged;
+				final SnapshotDataSQL data = new SnapshotDataSQL(
+						log == null ? sql : log, context
+								.getFileStreamPath(Constants.SNAPSHOT_NAME));
+				final boolean fromSnapshot = data.isSnapshotUsed();
+				final IDataStorage storage = new DataStorage(data,
+						Constants.MAX_LOADED_LISTS);
+				// Read here rather than on the UI thread. Lists are not loaded
+				// to read their tasks
+				final Collection<ITask> tasks = storage.getAllTasks();
+				// Tasks due before the first start are not reported
+				final long lastUpdate = context.getSharedPreferences(
+						Constants.SHARED_PREFERENCES_OVERDUE_NAME, MODE_PRIVATE)
+						.getLong(
+								Constants.SHARED_PREFERENCES_OVERDUE_LAST_UPDATE,
+								System.currentTimeMillis());
+				_postToUiThread(new Runnable() {
+					@SuppressWarnings("synthetic-access")
+					@Override
+					public void run() {
+						loading = false;
+						operations = log;
+						snapshot = data;
+						Log.i(StartupMetrics.LOG_TAG, "Data read from the "
+								+ (fromSnapshot ? "snapshot" : "database"));
+						final ILogicController controller = LogicController
+								.getInstance();
+						controller.setStorageStrategy(storage);
+						// Changes made from now on are followed by the tracker
+						overdue = new OverdueTracker(controller,
+								new SystemTimeClock(), lastUpdate);
+						overdue.setTasks(tasks);
+						controller.addDataListener(overdue);
+						_updateOverdue();
+						if (active != null) {
+							active._onDataLoaded();
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private void _loadStatistics() {
+		if (loadingStatistics) {
+			return;
+		}
+		loadingStatistics = true;
+
+		// Queued before the tasks are loaded, so that the statistics strategy
+		// is set before any change can be made to the tasks
+		final Context context = getApplicationContext();
+		loader.execute(new Runnable() {
+			@SuppressWarnings("synthetic-access")
+			@Override
+			public void run() {
+				final IStatisticsSQL sql = new StatisticsSQL();
+				sql.setDatabase(context.openOrCreateDatabase(
+						Constants.STATISTICS_DATABASE_NAME, MODE_PRIVATE, null));
+				final StatisticsDataStorage storage = new StatisticsDataStorage(
+						sql);
+				storage.importTotals(context.getSharedPreferences(
+						Constants.SHARED_PREFERENCES_STATISTICS_NAME,
+						MODE_PRIVATE));
+				_postToUiThread(new Runnable() {
+					@SuppressWarnings("synthetic-access")
+					@Override
+					public void run() {
+						loadingStatistics = false;
+						statistics = storage;
+						LogicController.getInstance().setStatisticsStrategy(
+								storage);
+					}
+				});
+			}
+		});
+	}
+
+	private void _onDataLoaded() {
+		if (metrics.markDataLoaded(SystemClock.uptimeMillis())) {
+			Log.i(StartupMetrics.LOG_TAG, "Time to data: "
+					+ metrics.getTimeToData() + " ms");
+		}
+		_updateTabs();
+	}
+
+	private static void _postToUiThread(final Runnable runnable) {
+		// Posted to the main thread rather than to this activity, which may
+		// have been recreated before the data has been loaded
+		new Handler(Looper.getMainLooper()).post(runnable);
+	}
+
+	private static void _updateOverdue() {
+		// Overdue tasks are reported once both the tasks and the statistics
+		// have been loaded
+		if (overdue != null
+				&& LogicController.getInstance().hasStatisticsStrategy()) {
+			overdue.update();
+		}
+	}
+
 	private void _updateTabs() {
-		((ListViewer) getLocalActivityManager().getActivity("listview"))
-				.updateView();
-		((TaskViewer) getLocalActivityManager().getActivity("taskview"))
-				.updateView();
+		// A tab's activity is not created until the tab is first shown
+		ListViewer listViewer = (ListViewer) getLocalActivityManager()
+				.getActivity("listview");
+		if (listViewer != null) {
+			listViewer.updateView();
+		}
+		TaskViewer taskViewer = (TaskViewer) getLocalActivityManager()
+				.getActivity("taskview");
+		if (taskViewer != null) {
+			taskViewer.updateView();
+		}
+	}
+
+	private static void _writeLastUpdate(final Context context,
+			final long lastUpdate) {
+		loader.execute(new Runnable() {
+			@Override
+			public void run() {
+				context.getSharedPreferences(
+						Constants.SHARED_PREFERENCES_OVERDUE_NAME, MODE_PRIVATE)
+						.edit()
+						.putLong(
+								Constants.SHARED_PREFERENCES_OVERDUE_LAST_UPDATE,
+								lastUpdate).commit();
+			}
+		});
+	}
+
+	private static void _writeSnapshot(final SnapshotDataSQL data) {
+		// Written on the loader thread, after the data has been loaded
+		loader.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					data.writeSnapshot();
+				} catch (final IOException e) {
+					// The data is read from the database at the next start
+					Log.w(SnapshotDataSQL.LOG_TAG,
+							"Could not write the snapshot: " + e);
+				}
+			}
+		});
 	}
 }
\ No newline at end of file
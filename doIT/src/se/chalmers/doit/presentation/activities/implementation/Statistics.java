@@ -3,8 +3,10 @@ package se.chalmers.doit.presentation.activities.implementation;
 import java.util.HashMap;
 
 import se.chalmers.doit.R;
+import se.chalmers.doit.core.IStatisticalData;
 import se.chalmers.doit.logic.controller.ILogicController;
 import se.chalmers.doit.logic.controller.implementation.LogicController;
+import se.chalmers.doit.presentation.graphics.IGraphDrawer;
 import android.app.Activity;
 import android.content.SharedPreferences;
 import android.os.Bundle;
@@ -12,7 +14,7 @@ import android.view.View;
 import android.widget.*;
 
 /**
- * An activity to display statistics as numbers.
+ * An activity to display statistics as numbers and as a graph.
  * 
  * @author Boel
  * 
@@ -22,6 +24,7 @@ public class Statistics extends Activity {
 	private ArrayAdapter<CharSequence> adapter;
 	private ILogicController controller;
 	private int daysInterval;
+	private IGraphDrawer graph;
 	private HashMap<String, Integer> intervalMap = new HashMap<String, Integer>();
 	private Spinner intervalSpinner;
 	private HashMap<Integer, Integer> positionMap = new HashMap<Integer, Integer>();
@@ -53,6 +56,12 @@ public class Statistics extends Activity {
 		SharedPreferences preferences = getPreferences(MODE_PRIVATE);
 		daysInterval = preferences.getInt("current", -1);
 
+		// Read once, as the statistics do not change while they are shown.
+		// The totals of earlier versions are counted on epoch day 0 and are
+		// left out, as they do not belong to any day.
+		graph = (IGraphDrawer) findViewById(R.id.graph);
+		graph.setData(controller.getStatisticsData(1, Long.MAX_VALUE));
+
 		_update(daysInterval);
 
 		intervalSpinner = (Spinner) findViewById(R.id.intervalSpinner);
@@ -147,12 +156,15 @@ public class Statistics extends Activity {
 	}
 
 	private void _update(final int interval) {
-		_setCompletedTasksNumber(controller.getNumberOfFinishedTasks(interval));
-		_setCreatedTasksNumber(controller.getNumberOfCreatedTasks(interval));
-		_setDeletedTasksNumber(controller.getNumberOfDeletedTasks(interval));
-		_setExpiredTasksNumber(controller.getNumberOfOverdueTasks(interval));
+		final IStatisticalData data = controller.getStatistics(interval);
+		_setCompletedTasksNumber(data.getFinishedTasks());
+		_setCreatedTasksNumber(data.getCreatedTasks());
+		_setDeletedTasksNumber(data.getDeletedTasks());
+		_setExpiredTasksNumber(data.getOverdueTasks());
+
+		_setCreatedListsNumber(data.getCreatedLists());
+		_setDeletedListsNumber(data.getDeletedLists());
 
-		_setCreatedListsNumber(controller.getNumberOfCreatedLists(interval));
-		_setDeletedListsNumber(controller.getNumberOfDeletedLists(interval));
+		graph.setInterval(interval);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package se.chalmers.doit.presentation.activities.implementation;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.data.storage.ITaskCursor;
+import android.app.Activity;
+import android.view.*;
+import android.widget.BaseAdapter;
+
+/**
+ * Adapter showing the tasks of an ITaskCursor. A task is only read from the
+ * cursor when its row is shown, so large lists are not copied into memory.
+ * 
+ * @author Boel
+ * 
+ */
+public class TaskCursorAdapter extends BaseAdapter {
+	private final Activity context;
+	private ITaskCursor tasks;
+
+	public TaskCursorAdapter(final Activity context) {
+		this.context = context;
+	}
+
+	/**
+	 * Replaces the cursor shown by the adapter, closing the old one.
+	 * 
+	 * @param cursor
+	 *            the new cursor, or null to show nothing
+	 */
+	public void changeCursor(final ITaskCursor cursor) {
+		if (tasks != null && tasks != cursor) {
+			tasks.close();
+		}
+		tasks = cursor;
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public int getCount() {
+		return tasks == null ? 0 : tasks.getCount();
+	}
+
+	@Override
+	public ITask getItem(final int position) {
+		return tasks.getTask(position);
+	}
+
+	@Override
+	public long getItemId(final int position) {
+		return getItem(position).getID();
+	}
+
+	@Override
+	public View getView(final int position, final View convertView,
+			final ViewGroup parent) {
+		return TaskListAdapter.bindTaskView(context, getItem(position),
+				convertView);
+	}
+}
@@ -1,56 +1,169 @@
 package se.chalmers.doit.presentation.activities.implementation;
 
-import java.util.ArrayList;
+import java.util.*;
 
 import se.chalmers.doit.R;
 import se.chalmers.doit.core.ITask;
-import android.app.Activity;
+import android.content.Context;
 import android.graphics.*;
 import android.view.*;
 import android.widget.*;
 
 public class TaskListAdapter extends ArrayAdapter<ITask> {
-	private final Activity context;
-	private final ArrayList<ITask> tasks;
-
-	public TaskListAdapter(final Activity context, final ArrayList<ITask> tasks) {
-		super(context, R.layout.task_list_item, tasks);
-		this.context = context;
-		this.tasks = tasks;
 
+	/**
+	 * Holds the views of a task row, so that they are only looked up when the
+	 * row is created.
+	 */
+	private static final class ViewHolder {
+		TextView bottomText;
+		boolean completed;
+		// Whether the completed style has been applied to the row
+		boolean styled;
+		TextView topText;
 	}
 
-	@Override
-	public View getView(final int position, final View convertView,
-			final ViewGroup parent) {
+	/**
+	 * Shows a task in a task list row, reusing the provided row if there is
+	 * one.
+	 * 
+	 * @param context
+	 *            the Context showing the list
+	 * @param task
+	 *            the task to show
+	 * @param convertView
+	 *            a row to reuse, or null
+	 * @return the row showing the task
+	 */
+	static View bindTaskView(final Context context, final ITask task,
+			final View convertView) {
 		View view = convertView;
+		ViewHolder holder;
 		if (view == null) {
-			LayoutInflater inflater = context.getLayoutInflater();
-			view = inflater.inflate(R.layout.task_list_item, null);
+			view = LayoutInflater.from(context).inflate(
+					R.layout.task_list_item, null);
+			holder = new ViewHolder();
+			holder.topText = (TextView) view.findViewById(R.id.toptext);
+			holder.bottomText = (TextView) view.findViewById(R.id.bottomtext);
+			view.setTag(holder);
+		} else {
+			holder = (ViewHolder) view.getTag();
+		}
+		holder.topText.setText(task.getName());
+		holder.bottomText.setText(task.getDescription());
+
+		// The style only changes when a recycled row switches between a
+		// completed and an uncompleted task
+		if (!holder.styled || holder.completed != task.isCompleted()) {
+			_setStyle(holder.topText, task.isCompleted());
+			_setStyle(holder.bottomText, task.isCompleted());
+			holder.completed = task.isCompleted();
+			holder.styled = true;
 		}
-		ITask task = tasks.get(position);
-		TextView topText = (TextView) view.findViewById(R.id.toptext);
-		TextView bottomText = (TextView) view.findViewById(R.id.bottomtext);
-		topText.setText(task.getName());
-		bottomText.setText(task.getDescription());
+		return view;
+	}
 
-		if (task.isCompleted()) {
+	private static void _setStyle(final TextView text, final boolean completed) {
+		if (completed) {
 			// Strikethrough text
-			topText.setPaintFlags(topText.getPaintFlags()
+			text.setPaintFlags(text.getPaintFlags()
 					| Paint.STRIKE_THRU_TEXT_FLAG);
-			topText.setTextColor(Color.GRAY);
-			bottomText.setPaintFlags(bottomText.getPaintFlags()
-					| Paint.STRIKE_THRU_TEXT_FLAG);
-			bottomText.setTextColor(Color.GRAY);
+			text.setTextColor(Color.GRAY);
 		} else {
 			// Remove strikethough flag
-			topText.setPaintFlags(topText.getPaintFlags()
-					& (~Paint.STRIKE_THRU_TEXT_FLAG));
-			topText.setTextColor(Color.WHITE);
-			bottomText.setPaintFlags(bottomText.getPaintFlags()
+			text.setPaintFlags(text.getPaintFlags()
 					& (~Paint.STRIKE_THRU_TEXT_FLAG));
-			bottomText.setTextColor(Color.WHITE);
+			text.setTextColor(Color.WHITE);
 		}
-		return view;
 	}
-}
\ No newline at end of file
+
+	private final Context context;
+
+	private final ArrayList<ITask> tasks;
+
+	public TaskListAdapter(final Context context, final ArrayList<ITask> tasks) {
+		super(context, R.layout.task_list_item, tasks);
+		this.context = context;
+		this.tasks = tasks;
+
+	}
+
+	@Override
+	public View getView(final int position, final View convertView,
+			final ViewGroup parent) {
+		return bindTaskView(context, tasks.get(position), convertView);
+	}
+
+	/**
+	 * Inserts a task at a position and notifies observers.
+	 * 
+	 * @param position
+	 *            the position to insert the task at
+	 * @param task
+	 *            the task to insert
+	 */
+	public void insertTask(final int position, final ITask task) {
+		tasks.add(position, task);
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * Moves a task from one position to another, showing the provided version
+	 * of it, and notifies observers once.
+	 * 
+	 * @param from
+	 *            the position of the task
+	 * @param to
+	 *            the position to move the task to, counted after it has been
+	 *            removed from its old position
+	 * @param task
+	 *            the task to show at the new position
+	 */
+	public void moveTask(final int from, final int to, final ITask task) {
+		tasks.remove(from);
+		tasks.add(to, task);
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * Removes the task at a position and notifies observers.
+	 * 
+	 * @param position
+	 *            the position of the task to remove
+	 */
+	public void removeTask(final int position) {
+		tasks.remove(position);
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * Replaces the tasks shown by the adapter, notifying observers once
+	 * instead of once per task. Observers are not notified if the same tasks
+	 * are already shown in the same order.
+	 * 
+	 * @param newTasks
+	 *            the tasks to show, in the order to show them
+	 */
+	public void replaceAll(final Collection<ITask> newTasks) {
+		// Stored tasks are replaced, not changed, when they are edited, so
+		// the same tasks in the same order need no redraw
+		if (newTasks.size() == tasks.size()) {
+			Iterator<ITask> shown = tasks.iterator();
+			boolean same = true;
+			for (ITask t : newTasks) {
+				if (t != shown.next()) {
+					same = false;
+					break;
+				}
+			}
+			if (same) {
+				return;
+			}
+		}
+
+		// The adapter shows the list it was created with
+		tasks.clear();
+		tasks.addAll(newTasks);
+		notifyDataSetChanged();
+	}
+}
@@ -5,8 +5,9 @@ import java.util.*;
 import se.chalmers.doit.R;
 import se.chalmers.doit.core.*;
 import se.chalmers.doit.core.implementation.*;
+import se.chalmers.doit.logic.controller.*;
 import se.chalmers.doit.logic.controller.implementation.LogicController;
-import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.*;
 import se.chalmers.doit.util.implementation.*;
 import android.app.ListActivity;
 import android.content.*;
@@ -29,10 +30,31 @@ public class TaskViewer extends ListActivity {
 	private static final int EDIT_TASK = 1;
 	private ITaskCollection activeList;
 	private TaskListAdapter adapter;
+	// The ID given to the last task added, read when a task has been added
+	private long addedTaskID = Constants.ID_UNSAVED;
+	private final IDataListener addedTaskListener = new IDataListener() {
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public void onDataChanged(final IDataEvents events) {
+			for (int i = 0; i < events.getCount(); i++) {
+				if (events.getType(i) == Constants.EVENT_TASK_ADDED) {
+					addedTaskID = events.getID(i);
+				}
+			}
+		}
+	};
+	private TaskCursorAdapter cursorAdapter;
 	private final HashMap<Integer, Intent> intentMap = new HashMap<Integer, Intent>();
 	private ITask lastEditedTask;
 	private int mParentContextMenuListIndex; // workaround to allow submenus in
 												// a ListACtivity's ContextMenu
+	// What the view was last built from, so it is only rebuilt on a change
+	private String shownList;
+	private String shownSorting;
+	private long shownVersion = -1;
+	// The tasks shown by adapter, or null if the list is streamed
+	private ISortedTaskList sortedTasks;
 	private final HashMap<Integer, IComparatorStrategy> strategyMap = new HashMap<Integer, IComparatorStrategy>();
 
 	@Override
@@ -42,7 +64,7 @@ public class TaskViewer extends ListActivity {
 		// if info == null, the user is in the submenu
 		int idxOfList = (info != null) ? info.position
 				: this.mParentContextMenuListIndex;
-		final ITask task = adapter.getItem(idxOfList);
+		final ITask task = _getTask(idxOfList);
 		switch (item.getItemId()) {
 
 			case R.id.context_complete:
@@ -97,7 +119,9 @@ public class TaskViewer extends ListActivity {
 		_initStrategyMap();
 
 		adapter = new TaskListAdapter(this, new ArrayList<ITask>());
+		cursorAdapter = new TaskCursorAdapter(this);
 		setListAdapter(adapter);
+		LogicController.getInstance().addDataListener(addedTaskListener);
 		_updateView();
 		final ListView list = getListView();
 		registerForContextMenu(list);
@@ -157,7 +181,7 @@ public class TaskViewer extends ListActivity {
 			final ContextMenuInfo menuInfo) {
 		if (v.getId() == android.R.id.list) {
 			final AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) menuInfo;
-			final ITask task = adapter.getItem(info.position);
+			final ITask task = _getTask(info.position);
 			menu.setHeaderTitle(task.getName());
 			final MenuInflater inflater = getMenuInflater();
 			inflater.inflate(R.menu.context_menu, menu);
@@ -191,6 +215,14 @@ public class TaskViewer extends ListActivity {
 		return super.onCreateOptionsMenu(menu);
 	}
 
+	@Override
+	public void onDestroy() {
+		// Closes the cursor of a streamed list
+		cursorAdapter.changeCursor(null);
+		LogicController.getInstance().removeDataListener(addedTaskListener);
+		super.onDestroy();
+	}
+
 	@Override
 	public boolean onOptionsItemSelected(final MenuItem item) {
 		final Intent intent = intentMap.get(Integer.valueOf(item.getItemId()));
@@ -249,7 +281,23 @@ public class TaskViewer extends ListActivity {
 	}
 
 	private void _addTask(final ITask task) {
+		if (!LogicController.getInstance().hasStorageStrategy()) {
+			Toast.makeText(TaskViewer.this, "Tasks are still loading!",
+					Toast.LENGTH_SHORT).show();
+			return;
+		}
+		// A task added to a short list is inserted into the shown list, instead
+		// of rebuilding it
+		final boolean inPlace = _isShowingCurrentData()
+				&& sortedTasks.size() + 1 < Constants.STREAMING_LIST_SIZE;
+		addedTaskID = Constants.ID_UNSAVED;
 		if (LogicController.getInstance().addTask(task, activeList)) {
+			if (inPlace && addedTaskID != Constants.ID_UNSAVED) {
+				// The stored task has the ID given to it by the storage
+				final ITask stored = new Task(task, addedTaskID);
+				adapter.insertTask(sortedTasks.add(stored), stored);
+				_markShown();
+			}
 			_updateView();
 			Toast.makeText(TaskViewer.this, "Task added!", Toast.LENGTH_SHORT)
 					.show();
@@ -276,17 +324,72 @@ public class TaskViewer extends ListActivity {
 	}
 
 	private void _deleteTask(final ITask task) {
+		final boolean inPlace = _isShowingCurrentData();
 		if (LogicController.getInstance().removeTask(task)) {
+			if (inPlace) {
+				final int position = sortedTasks.remove(task);
+				if (position >= 0) {
+					adapter.removeTask(position);
+					_markShown();
+				}
+			}
 			_updateView();
 		}
 	}
 
 	private void _editTask(final ITask oldTask, final ITask newTask) {
+		final boolean inPlace = _isShowingCurrentData();
 		if (LogicController.getInstance().editTask(oldTask, newTask)) {
+			if (inPlace) {
+				// The stored task keeps the ID of the task it replaces
+				_replaceShownTask(oldTask, new Task(newTask, oldTask.getID()));
+			}
 			_updateView();
 		}
 	}
 
+	private String _getLastListName() {
+		return getPreferences(MODE_PRIVATE).getString("lastlist", "Default");
+	}
+
+	private ISortingComparator _getSortingComparator() {
+		final SharedPreferences preferences = getSharedPreferences(
+				Constants.SHARED_PREFERENCES_SORTING, MODE_PRIVATE);
+		return new SortingComparator(_getStrategy(preferences,
+				Constants.SHARED_PREFERENCES_PRIMARY_SORTING,
+				Constants.GOOD_DEFAULT_PRIMARY), _getStrategy(preferences,
+				Constants.SHARED_PREFERENCES_SECONDARY_SORTING,
+				Constants.GOOD_DEFAULT_SECONDARY), _getStrategy(preferences,
+				Constants.SHARED_PREFERENCES_TERTIARY_SORTING,
+				Constants.GOOD_DEFAULT_TERTIARY));
+	}
+
+	private String _getSortingKey() {
+		final SharedPreferences preferences = getSharedPreferences(
+				Constants.SHARED_PREFERENCES_SORTING, MODE_PRIVATE);
+		return preferences.getInt(Constants.SHARED_PREFERENCES_PRIMARY_SORTING,
+				Constants.GOOD_DEFAULT_PRIMARY)
+				+ ","
+				+ preferences.getInt(
+						Constants.SHARED_PREFERENCES_SECONDARY_SORTING,
+						Constants.GOOD_DEFAULT_SECONDARY)
+				+ ","
+				+ preferences.getInt(
+						Constants.SHARED_PREFERENCES_TERTIARY_SORTING,
+						Constants.GOOD_DEFAULT_TERTIARY);
+	}
+
+	private IComparatorStrategy _getStrategy(final SharedPreferences preferences,
+			final String key, final int defaultIndex) {
+		return strategyMap.get(Integer.valueOf(preferences.getInt(key,
+				defaultIndex)));
+	}
+
+	private ITask _getTask(final int position) {
+		// The task is read from whichever adapter is showing the list
+		return (ITask) getListAdapter().getItem(position);
+	}
+
 	private void _initIntentMap() {
 		intentMap.clear();
 		intentMap.put(Integer.valueOf(R.id.taskviewmenu_sort), new Intent(this,
@@ -317,60 +420,88 @@ public class TaskViewer extends ListActivity {
 				false));
 	}
 
+	/**
+	 * Returns whether the shown list is sorted in memory and shows the
+	 * current data, so that a change made by this view can be applied to it
+	 * directly.
+	 */
+	private boolean _isShowingCurrentData() {
+		return sortedTasks != null
+				&& shownVersion == LogicController.getInstance()
+						.getDataVersion();
+	}
+
+	/**
+	 * Records that the shown list is up to date with the data, after a change
+	 * has been applied to it directly.
+	 */
+	private void _markShown() {
+		shownVersion = LogicController.getInstance().getDataVersion();
+	}
+
 	private void _populateList() {
 
-		adapter.clear();
+		sortedTasks = null;
 		if (activeList == null) {
+			adapter.clear();
 			LogicController.getInstance().addList(
 					new TaskCollection("Default", new ArrayList<ITask>()));
 			_updateActiveList();
+		} else if (activeList.size() >= Constants.STREAMING_LIST_SIZE) {
+			// Large lists are sorted by the database and read a screen at a
+			// time instead of being copied into the adapter
+			adapter.clear();
+			final SharedPreferences preferences = getSharedPreferences(
+					Constants.SHARED_PREFERENCES_SORTING, MODE_PRIVATE);
+			cursorAdapter.changeCursor(LogicController.getInstance()
+					.getTaskCursor(
+							activeList,
+							_getStrategy(preferences,
+									Constants.SHARED_PREFERENCES_PRIMARY_SORTING,
+									Constants.GOOD_DEFAULT_PRIMARY),
+							_getStrategy(preferences,
+									Constants.SHARED_PREFERENCES_SECONDARY_SORTING,
+									Constants.GOOD_DEFAULT_SECONDARY),
+							_getStrategy(preferences,
+									Constants.SHARED_PREFERENCES_TERTIARY_SORTING,
+									Constants.GOOD_DEFAULT_TERTIARY)));
+			_showAdapter(cursorAdapter);
 		} else {
-			for (final ITask task : _sortList().getTasks()) {
-				adapter.add(task);
-			}
+			// The list is only sorted here, changes made by this view are
+			// inserted at their sorted position
+			sortedTasks = new SortedTaskList(_getSortingComparator(),
+					activeList.getTaskView());
+			adapter.replaceAll(sortedTasks.getTasks());
+			cursorAdapter.changeCursor(null);
+			_showAdapter(adapter);
 		}
 
 	}
 
-	private ITaskCollection _sortList() {
-
-		final SharedPreferences preferences = getSharedPreferences(
-				Constants.SHARED_PREFERENCES_SORTING, MODE_PRIVATE);
-
-		final int primarySortingStrategyIndex = preferences.getInt(
-				Constants.SHARED_PREFERENCES_PRIMARY_SORTING,
-				Constants.GOOD_DEFAULT_PRIMARY);
-		final int secondarySortingStrategyIndex = preferences.getInt(
-				Constants.SHARED_PREFERENCES_SECONDARY_SORTING,
-				Constants.GOOD_DEFAULT_SECONDARY);
-		final int tertiarySortingStrategyIndex = preferences.getInt(
-				Constants.SHARED_PREFERENCES_TERTIARY_SORTING,
-				Constants.GOOD_DEFAULT_TERTIARY);
-
-		final IComparatorStrategy primary = strategyMap.get(Integer
-				.valueOf(primarySortingStrategyIndex));
-		final IComparatorStrategy secondary = strategyMap.get(Integer
-				.valueOf(secondarySortingStrategyIndex));
-		final IComparatorStrategy tertiary = strategyMap.get(Integer
-				.valueOf(tertiarySortingStrategyIndex));
-
-		final TaskListUtility taskListUtil = new TaskListUtility();
-
-		ITaskCollection tempList = null;
-
-		if (activeList != null) {
-			final ArrayList<ITask> tasks = new ArrayList<ITask>(
-					activeList.getTasks());
-			taskListUtil.sortTasks(tasks, primary, secondary, tertiary);
-			tempList = new TaskCollection(activeList.getName(), tasks);
+	/**
+	 * Moves a shown task to the sorted position of its new version.
+	 */
+	private void _replaceShownTask(final ITask oldTask, final ITask newTask) {
+		final int from = sortedTasks.remove(oldTask);
+		if (from >= 0) {
+			adapter.moveTask(from, sortedTasks.add(newTask), newTask);
+			_markShown();
 		}
+	}
 
-		return tempList;
-
+	private void _showAdapter(final ListAdapter listAdapter) {
+		// Setting the adapter scrolls to the top, so it is only set on change
+		if (getListAdapter() != listAdapter) {
+			setListAdapter(listAdapter);
+		}
 	}
 
 	private void _toggleTaskCompleted(final ITask task) {
+		final boolean inPlace = _isShowingCurrentData();
 		if (LogicController.getInstance().toggleTaskCompleted(task)) {
+			if (inPlace) {
+				_replaceShownTask(task, new Task(task, !task.isCompleted()));
+			}
 			_updateView();
 		}
 	}
@@ -378,8 +509,7 @@ public class TaskViewer extends ListActivity {
 	private void _updateActiveList() {
 		final Collection<ITaskCollection> c = LogicController.getInstance()
 				.getAllLists();
-		final SharedPreferences sp = getPreferences(MODE_PRIVATE);
-		final String lastListShown = sp.getString("lastlist", "Default");
+		final String lastListShown = _getLastListName();
 
 		activeList = null;
 		for (final ITaskCollection list : c) {
@@ -398,6 +528,20 @@ public class TaskViewer extends ListActivity {
 	}
 
 	private void _updateView() {
+		// The data is loaded in the background when the application starts
+		if (!LogicController.getInstance().hasStorageStrategy()) {
+			return;
+		}
+
+		// Nothing has to be rebuilt unless the data, the list to show or the
+		// sorting order has changed since the view was last built
+		final long version = LogicController.getInstance().getDataVersion();
+		final String sorting = _getSortingKey();
+		if (version == shownVersion && sorting.equals(shownSorting)
+				&& _getLastListName().equals(shownList)) {
+			return;
+		}
+
 		_updateActiveList();
 
 		if (activeList == null) {
@@ -406,6 +550,11 @@ public class TaskViewer extends ListActivity {
 
 		_populateList();
 		_updateHeader();
+
+		// Populating the list may have added the default list
+		shownVersion = LogicController.getInstance().getDataVersion();
+		shownSorting = sorting;
+		shownList = _getLastListName();
 	}
 
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package se.chalmers.doit.presentation.graphics;
 
 import java.util.Collection;
 
-import se.chalmers.doit.core.implementation.StatisticalData;
+import se.chalmers.doit.core.IStatisticalData;
 
 /**
  * Interface for drawing a graph from task data
@@ -12,12 +12,12 @@ import se.chalmers.doit.core.implementation.StatisticalData;
  */
 public interface IGraphDrawer {
 	/**
-	 * Sets the data to draw
+	 * Sets the data to draw, one IStatisticalData for each day
 	 * 
 	 * @param data
 	 *            the data to set
 	 */
-	public void setData(Collection<StatisticalData> data);
+	public void setData(Collection<? extends IStatisticalData> data);
 
 	/**
 	 * Sets the interval to use when drawing data
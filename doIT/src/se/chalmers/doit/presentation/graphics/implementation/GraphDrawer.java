@@ -0,0 +1,132 @@
+package se.chalmers.doit.presentation.graphics.implementation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.presentation.graphics.IGraphDrawer;
+import se.chalmers.doit.util.implementation.EpochDay;
+import android.content.Context;
+import android.graphics.*;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * A view drawing the created and completed tasks as a bar graph, one pair of
+ * bars for each bucket of days.
+ * 
+ * The days are summed into as many buckets as fit the width of the view, so
+ * drawing takes the same time for a week as for years of statistics. The
+ * drawn graph of each interval is kept as a bitmap until new data is set or
+ * the size of the view changes, so showing it again only copies the bitmap.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class GraphDrawer extends View implements IGraphDrawer {
+
+	// The narrowest bucket, in pixels
+	private static final int MIN_BUCKET_WIDTH = 6;
+
+	private final Paint axisPaint = new Paint();
+	// The drawn graphs, by interval
+	private final Map<Integer, Bitmap> bitmaps = new HashMap<Integer, Bitmap>();
+	private final Paint createdPaint = new Paint();
+	private final Paint finishedPaint = new Paint();
+	private StatisticsGraph graph = new StatisticsGraph(
+			new ArrayList<IStatisticalData>());
+	private int interval = -1;
+
+	public GraphDrawer(final Context context) {
+		super(context);
+		_initPaints();
+	}
+
+	public GraphDrawer(final Context context, final AttributeSet attrs) {
+		super(context, attrs);
+		_initPaints();
+	}
+
+	@Override
+	public void setData(final Collection<? extends IStatisticalData> data) {
+		graph = new StatisticsGraph(data);
+		_clearBitmaps();
+		invalidate();
+	}
+
+	@Override
+	public void setInterval(final int newInterval) {
+		if (newInterval != interval) {
+			interval = newInterval;
+			invalidate();
+		}
+	}
+
+	@Override
+	protected void onDraw(final Canvas canvas) {
+		if (getWidth() == 0 || getHeight() == 0) {
+			return;
+		}
+		final Integer key = Integer.valueOf(interval);
+		Bitmap bitmap = bitmaps.get(key);
+		if (bitmap == null) {
+			bitmap = _draw(getWidth(), getHeight());
+			bitmaps.put(key, bitmap);
+		}
+		canvas.drawBitmap(bitmap, 0, 0, null);
+	}
+
+	@Override
+	protected void onSizeChanged(final int w, final int h, final int oldw,
+			final int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		_clearBitmaps();
+	}
+
+	private void _clearBitmaps() {
+		for (final Bitmap bitmap : bitmaps.values()) {
+			bitmap.recycle();
+		}
+		bitmaps.clear();
+	}
+
+	private Bitmap _draw(final int width, final int height) {
+		final long last = EpochDay.getDay(new Date());
+		long first = last - interval;
+		if (interval < 0) {
+			first = Math.min(graph.getFirstDay(), last);
+		}
+		final IStatisticalData[] buckets = graph.getBuckets(first, last, width
+				/ MIN_BUCKET_WIDTH);
+
+		int max = 1;
+		for (final IStatisticalData bucket : buckets) {
+			max = Math.max(max, Math.max(bucket.getCreatedTasks(),
+					bucket.getFinishedTasks()));
+		}
+
+		final Bitmap bitmap = Bitmap.createBitmap(width, height,
+				Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(bitmap);
+		final float bottom = height - 1;
+		final float bucketWidth = (float) width / buckets.length;
+		final float barWidth = bucketWidth / 2;
+		for (int i = 0; i < buckets.length; i++) {
+			final float left = i * bucketWidth;
+			final float created = bottom * buckets[i].getCreatedTasks() / max;
+			final float finished = bottom * buckets[i].getFinishedTasks()
+					/ max;
+			canvas.drawRect(left, bottom - created, left + barWidth, bottom,
+					createdPaint);
+			canvas.drawRect(left + barWidth, bottom - finished, left
+					+ bucketWidth, bottom, finishedPaint);
+		}
+		canvas.drawLine(0, bottom, width, bottom, axisPaint);
+		return bitmap;
+	}
+
+	private void _initPaints() {
+		axisPaint.setColor(Color.GRAY);
+		createdPaint.setColor(Color.rgb(0x4f, 0x81, 0xbd));
+		finishedPaint.setColor(Color.rgb(0x9b, 0xbb, 0x59));
+	}
+}
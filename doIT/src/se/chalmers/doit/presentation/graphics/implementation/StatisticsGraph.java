@@ -0,0 +1,78 @@
+package se.chalmers.doit.presentation.graphics.implementation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.util.IStatisticsIndex;
+import se.chalmers.doit.util.implementation.EpochDay;
+import se.chalmers.doit.util.implementation.StatisticsIndex;
+
+/**
+ * The statistics shown in a graph, summed into buckets of whole days.
+ * 
+ * The statistics are indexed when the graph is created, so the buckets of any
+ * range of days are summed in O(b log n) time for b buckets and n days with
+ * statistics, however many days the range covers.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public class StatisticsGraph {
+
+	// The first day when there are no statistics
+	public static final long NO_DATA = Long.MAX_VALUE;
+
+	private long firstDay = NO_DATA;
+	private final IStatisticsIndex index;
+
+	/**
+	 * @param data
+	 *            the statistics to show, on the epoch day of their dates
+	 */
+	public StatisticsGraph(final Collection<? extends IStatisticalData> data) {
+		for (final IStatisticalData d : data) {
+			firstDay = Math.min(firstDay, EpochDay.getDay(d.getDate()));
+		}
+		index = new StatisticsIndex(new ArrayList<IStatisticalData>(data));
+	}
+
+	/**
+	 * Returns the statistics of a range of days, summed into buckets of the
+	 * same number of days. The buckets end on the last day, so only the first
+	 * bucket may reach before the first day.
+	 * 
+	 * @param first
+	 *            The first epoch day of the range
+	 * @param last
+	 *            The last epoch day of the range
+	 * @param maxBuckets
+	 *            The largest number of buckets to return
+	 * @return the sums of the buckets, the earliest first. Empty if the range
+	 *         is empty or maxBuckets is less than 1
+	 */
+	public IStatisticalData[] getBuckets(final long first, final long last,
+			final int maxBuckets) {
+		if (first > last || maxBuckets < 1) {
+			return new IStatisticalData[0];
+		}
+		final long days = last - first + 1;
+		final long bucketDays = (days + maxBuckets - 1) / maxBuckets;
+		final int nBuckets = (int) ((days + bucketDays - 1) / bucketDays);
+		final IStatisticalData[] ret = new IStatisticalData[nBuckets];
+		for (int i = 0; i < nBuckets; i++) {
+			final long bucketLast = last - (nBuckets - 1 - i) * bucketDays;
+			ret[i] = index.getTotals(Math.max(first, bucketLast - bucketDays
+					+ 1), bucketLast);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the first day with statistics.
+	 * 
+	 * @return the epoch day, or NO_DATA if there are no statistics
+	 */
+	public long getFirstDay() {
+		return firstDay;
+	}
+}
@@ -0,0 +1,19 @@
+package se.chalmers.doit.util;
+
+/**
+ * A source of the current time, so that code depending on the time can be
+ * tested with a clock that is set by the test.
+ * 
+ * @author Boel
+ * 
+ */
+public interface IClock {
+
+	/**
+	 * Returns the current time.
+	 * 
+	 * @return the current time in milliseconds since January 1, 1970 UTC
+	 */
+	public long currentTimeMillis();
+
+}
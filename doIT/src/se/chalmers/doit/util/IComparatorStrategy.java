@@ -15,4 +15,23 @@ public interface IComparatorStrategy extends Comparator<ITask>, Serializable {
 	@Override
 	public int compare(ITask t1, ITask t2);
 
+	/**
+	 * Returns the ORDER BY term that sorts rows of the task table in the same
+	 * order as compare() sorts tasks.
+	 * 
+	 * @return the SQL ordering term, without the ORDER BY keyword
+	 */
+	public String getSQLOrdering();
+
+	/**
+	 * Computes the sort keys of the provided tasks. Comparing the keys of two
+	 * tasks gives the same result as comparing the tasks with compare(), but
+	 * is faster, as the keys are only computed once.
+	 * 
+	 * @param tasks
+	 *            the tasks to compute keys for
+	 * @return the keys, indexed like the tasks
+	 */
+	public ISortKeys getSortKeys(ITask[] tasks);
+
 }
\ No newline at end of file
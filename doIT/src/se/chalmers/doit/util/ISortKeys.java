@@ -0,0 +1,24 @@
+package se.chalmers.doit.util;
+
+/**
+ * Precomputed sort keys of an array of tasks, as computed by an
+ * IComparatorStrategy.
+ * 
+ * @author Karl Bristav
+ * 
+ */
+public interface ISortKeys {
+
+	/**
+	 * Compares the keys of two tasks.
+	 * 
+	 * @param i
+	 *            the index of the first task
+	 * @param j
+	 *            the index of the second task
+	 * @return a negative number, zero or a positive number if the first task
+	 *         is sorted before, together with or after the second task
+	 */
+	public int compare(int i, int j);
+
+}
@@ -0,0 +1,60 @@
+package se.chalmers.doit.util;
+
+import java.util.List;
+
+import se.chalmers.doit.core.ITask;
+
+/**
+ * A list of tasks that is kept sorted as tasks are added and removed, so that
+ * a change does not require the whole list to be sorted again.
+ * 
+ * @author Boel
+ * 
+ */
+public interface ISortedTaskList {
+
+	/**
+	 * Adds a task at its sorted position. A task that is sorted together with
+	 * other tasks is added after them.
+	 * 
+	 * @param task
+	 *            The task to add
+	 * @return the position the task was added at
+	 */
+	public int add(ITask task);
+
+	/**
+	 * Returns the task at a position.
+	 * 
+	 * @param position
+	 *            The position of the task
+	 * @return the task
+	 */
+	public ITask get(int position);
+
+	/**
+	 * Returns the tasks in sorted order.
+	 * 
+	 * @return an unmodifiable view of the tasks
+	 */
+	public List<ITask> getTasks();
+
+	/**
+	 * Removes a task.
+	 * 
+	 * @param task
+	 *            The task to remove, which must be sorted like the task in
+	 *            the list for it to be found quickly
+	 * @return the position the task was removed from, or -1 if it was not in
+	 *         the list
+	 */
+	public int remove(ITask task);
+
+	/**
+	 * Returns the number of tasks in the list.
+	 * 
+	 * @return the number of tasks
+	 */
+	public int size();
+
+}
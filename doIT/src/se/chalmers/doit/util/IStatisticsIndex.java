@@ -0,0 +1,36 @@
+package se.chalmers.doit.util;
+
+import se.chalmers.doit.core.IStatisticalData;
+
+/**
+ * Cumulative statistics counts per day, answering the totals of any range of
+ * days without going through the days in the range.
+ * 
+ * @author Boel
+ * 
+ */
+public interface IStatisticsIndex {
+
+	/**
+	 * Adds counts to the counts of a day.
+	 * 
+	 * @param day
+	 *            The epoch day to add the counts to
+	 * @param data
+	 *            The counts to add. Its date is not used
+	 */
+	public void add(long day, IStatisticalData data);
+
+	/**
+	 * Returns the totals of a range of days, in O(log n) time for n days with
+	 * counts.
+	 * 
+	 * @param firstDay
+	 *            The first epoch day of the range
+	 * @param lastDay
+	 *            The last epoch day of the range
+	 * @return a snapshot of the totals, dated at the time it was taken. Later
+	 *         changes to the counts do not change it
+	 */
+	public IStatisticalData getTotals(long firstDay, long lastDay);
+}
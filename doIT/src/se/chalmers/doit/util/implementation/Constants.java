@@ -9,13 +9,45 @@ package se.chalmers.doit.util.implementation;
 public final class Constants {
 	public static final int CUSTOMPOSITION_DEFAULT = 0;
 	public static final String DATABASE_NAME = "database";
+	// Types of data change events, each with the ID of the changed task or
+	// list. EVENT_DATA_CLEARED carries ID_UNSAVED, and is also sent when the
+	// storage strategy is replaced
+	public static final int EVENT_DATA_CLEARED = 0;
+	public static final int EVENT_LIST_ADDED = 1;
+	public static final int EVENT_LIST_EDITED = 2;
+	public static final int EVENT_LIST_REMOVED = 3;
+	public static final int EVENT_TASK_ADDED = 4;
+	public static final int EVENT_TASK_COMPLETED = 5;
+	public static final int EVENT_TASK_DECOMPLETED = 6;
+	public static final int EVENT_TASK_EDITED = 7;
+	public static final int EVENT_TASK_MOVED = 8;
+	public static final int EVENT_TASK_REMOVED = 9;
 	// Priority 5-1
 	public static final int GOOD_DEFAULT_PRIMARY = 5;
 	// Name A-Z
 	public static final int GOOD_DEFAULT_SECONDARY = 2;
 	// Due date soon-later
 	public static final int GOOD_DEFAULT_TERTIARY = 0;
+	// ID of a task or list that has not been saved
+	public static final long ID_UNSAVED = -1;
+	// Number of lists whose tasks are kept in memory
+	public static final int MAX_LOADED_LISTS = 4;
+	// Lists with at least this many tasks are streamed from the database
+	public static final int STREAMING_LIST_SIZE = 500;
 	public static final int MILLISECONDS_IN_A_DAY = 86400000;
+	// Changes to the lists and tasks are logged in this file before they are
+	// written to the database
+	public static final String OPERATION_LOG_NAME = "operations.log";
+	// Logged changes are written at most this many milliseconds after they
+	// were made, or right away once this many have not been written
+	public static final long OPERATION_LOG_WRITE_DELAY = 100;
+	public static final int OPERATION_LOG_WRITE_THRESHOLD = 100;
+	// Milliseconds between the checks for overdue tasks while the application
+	// is shown
+	public static final long OVERDUE_UPDATE_INTERVAL = 60000;
+	// The lists and tasks are kept in this file, so that they can be read
+	// without the database at the next start
+	public static final String SNAPSHOT_NAME = "tasks.snapshot";
 
 	public static final byte PRIORITY_DEFAULT = 3;
 	public static final byte PRIORITY_HIGH = 4;
@@ -25,6 +57,12 @@ public final class Constants {
 	public static final byte PRIORITY_VERYHIGH = 5;
 	public static final byte PRIORITY_VERYLOW = 1;
 
+	// The time of the last check for overdue tasks is kept in preferences of
+	// their own, as the statistics preferences are cleared when imported
+	public static final String SHARED_PREFERENCES_OVERDUE_LAST_UPDATE = "last_update";
+
+	public static final String SHARED_PREFERENCES_OVERDUE_NAME = "overdueSharedPreference";
+
 	public static final String SHARED_PREFERENCES_PRIMARY_SORTING = "current_primary_sorting";
 
 	public static final String SHARED_PREFERENCES_SECONDARY_SORTING = "current_secondary_sorting";
@@ -34,4 +72,10 @@ public final class Constants {
 	public static final String SHARED_PREFERENCES_STATISTICS_NAME = "statSharedPreference";
 
 	public static final String SHARED_PREFERENCES_TERTIARY_SORTING = "current_tertiary_sorting";
+	// Statistics are kept in a database of their own
+	public static final String STATISTICS_DATABASE_NAME = "statistics";
+	// Statistics are written at most this many milliseconds after a report,
+	// or right away once this many reports have not been written
+	public static final long STATISTICS_FLUSH_DELAY = 2000;
+	public static final int STATISTICS_FLUSH_THRESHOLD = 25;
 }
\ No newline at end of file
@@ -3,7 +3,7 @@ package se.chalmers.doit.util.implementation;
 import java.util.Date;
 
 import se.chalmers.doit.core.ITask;
-import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.*;
 
 /**
  * An implementation of IComparatorStrategy that compares the due dates of two
@@ -37,9 +37,10 @@ public class DueDateComparatorStrategy implements IComparatorStrategy {
 
 		// If none of the dates are null, compare them the usual way.
 		if (d1 != null && d2 != null) {
-			if (d1.compareTo(d2) > 0) {
+			final int cmp = d1.compareTo(d2);
+			if (cmp > 0) {
 				ret = 1;
-			} else if (d1.compareTo(d2) < 0) {
+			} else if (cmp < 0) {
 				ret = -1;
 			}
 
@@ -62,4 +63,27 @@ public class DueDateComparatorStrategy implements IComparatorStrategy {
 		return ret;
 	}
 
+	@Override
+	public String getSQLOrdering() {
+		// Tasks without a due date come last in both sorting orders
+		return SQLConstants.TASK_DUEDATE + " IS NULL,"
+				+ SQLConstants.TASK_DUEDATE
+				+ (invertedSortOrder ? " DESC" : " ASC");
+	}
+
+	@Override
+	public ISortKeys getSortKeys(final ITask[] tasks) {
+		final long[] keys = new long[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			final Date d = tasks[i].getDueDate();
+			// Tasks without a due date come last in both sorting orders
+			if (d == null) {
+				keys[i] = Long.MAX_VALUE;
+			} else {
+				keys[i] = invertedSortOrder ? -d.getTime() : d.getTime();
+			}
+		}
+		return new LongSortKeys(keys);
+	}
+
 }
@@ -0,0 +1,49 @@
+package se.chalmers.doit.util.implementation;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Converts between dates and epoch days, the number of days since January 1,
+ * 1970 in the local time zone. All times on the same local day have the same
+ * epoch day.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public final class EpochDay {
+
+	/**
+	 * Returns the start of an epoch day.
+	 * 
+	 * @param day
+	 *            the epoch day
+	 * @return midnight at the start of the day, in the local time zone
+	 */
+	public static Date getDate(final long day) {
+		final TimeZone zone = TimeZone.getDefault();
+		final long utcMidnight = day * Constants.MILLISECONDS_IN_A_DAY;
+		// The offset at local midnight, which differs from the offset at UTC
+		// midnight on days when daylight saving time starts or ends
+		final long guess = utcMidnight - zone.getOffset(utcMidnight);
+		return new Date(utcMidnight - zone.getOffset(guess));
+	}
+
+	/**
+	 * Returns the epoch day of a date.
+	 * 
+	 * @param date
+	 *            the date
+	 * @return the epoch day the date is on
+	 */
+	public static long getDay(final Date date) {
+		final long time = date.getTime();
+		final long local = time + TimeZone.getDefault().getOffset(time);
+		long day = local / Constants.MILLISECONDS_IN_A_DAY;
+		// Round down for dates before 1970
+		if (local < 0 && local % Constants.MILLISECONDS_IN_A_DAY != 0) {
+			day--;
+		}
+		return day;
+	}
+}
@@ -0,0 +1,33 @@
+package se.chalmers.doit.util.implementation;
+
+import se.chalmers.doit.util.ISortKeys;
+
+/**
+ * Sort keys that are numbers, sorted in ascending order.
+ * 
+ * @author Karl Bristav
+ * 
+ */
+public final class LongSortKeys implements ISortKeys {
+
+	private final long[] keys;
+
+	/**
+	 * @param keys
+	 *            The key of each task
+	 */
+	public LongSortKeys(final long[] keys) {
+		this.keys = keys;
+	}
+
+	@Override
+	public int compare(final int i, final int j) {
+		if (keys[i] < keys[j]) {
+			return -1;
+		} else if (keys[i] > keys[j]) {
+			return 1;
+		}
+		return 0;
+	}
+
+}
@@ -1,7 +1,7 @@
 package se.chalmers.doit.util.implementation;
 
 import se.chalmers.doit.core.ITask;
-import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.*;
 
 /**
  * An implementation of IComparatorStrategy that compares the names of two
@@ -15,6 +15,24 @@ import se.chalmers.doit.util.IComparatorStrategy;
 public class NameComparatorStrategy implements IComparatorStrategy {
 
 	private static final long serialVersionUID = -1055558718854705999L;
+
+	/**
+	 * Folds the case of a name the way compareToIgnoreCase() does, so that
+	 * comparing folded names gives the same order as comparing the names
+	 * ignoring case.
+	 * 
+	 * @param name
+	 *            the name to fold
+	 * @return the folded name
+	 */
+	public static String foldCase(final String name) {
+		final char[] chars = name.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
 	private final boolean invertedSortOrder;
 
 	/**
@@ -33,9 +51,10 @@ public class NameComparatorStrategy implements IComparatorStrategy {
 		final String n1 = t1.getName();
 		final String n2 = t2.getName();
 
-		if (n1.compareToIgnoreCase(n2) > 0) {
+		final int cmp = n1.compareToIgnoreCase(n2);
+		if (cmp > 0) {
 			ret = 1;
-		} else if (n1.compareToIgnoreCase(n2) < 0) {
+		} else if (cmp < 0) {
 			ret = -1;
 		}
 
@@ -46,4 +65,21 @@ public class NameComparatorStrategy implements IComparatorStrategy {
 		return ret;
 	}
 
+	@Override
+	public String getSQLOrdering() {
+		// The name key holds the folded name, as COLLATE NOCASE only folds
+		// ASCII letters
+		return SQLConstants.TASK_NAME_KEY
+				+ (invertedSortOrder ? " DESC" : " ASC");
+	}
+
+	@Override
+	public ISortKeys getSortKeys(final ITask[] tasks) {
+		final String[] keys = new String[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			keys[i] = foldCase(tasks[i].getName());
+		}
+		return new StringSortKeys(keys, invertedSortOrder);
+	}
+
 }
@@ -1,7 +1,7 @@
 package se.chalmers.doit.util.implementation;
 
 import se.chalmers.doit.core.*;
-import se.chalmers.doit.util.IComparatorStrategy;
+import se.chalmers.doit.util.*;
 
 /**
  * An implementation of IComparatorStrategy that compares the priorities of two
@@ -35,9 +35,10 @@ public class PriorityComparatorStrategy implements IComparatorStrategy {
 		final IPriority p1 = task1.getPriority();
 		final IPriority p2 = task2.getPriority();
 
-		if (p1.compareTo(p2) < 0) {
+		final int cmp = p1.compareTo(p2);
+		if (cmp < 0) {
 			ret = 1;
-		} else if (p1.compareTo(p2) > 0) {
+		} else if (cmp > 0) {
 			ret = -1;
 		}
 
@@ -48,4 +49,22 @@ public class PriorityComparatorStrategy implements IComparatorStrategy {
 		return ret;
 	}
 
+	@Override
+	public String getSQLOrdering() {
+		// High priorities come first by default
+		return SQLConstants.TASK_PRIORITY
+				+ (invertedSortOrder ? " ASC" : " DESC");
+	}
+
+	@Override
+	public ISortKeys getSortKeys(final ITask[] tasks) {
+		final long[] keys = new long[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			final byte value = tasks[i].getPriority().getValue();
+			// High priorities come first by default
+			keys[i] = invertedSortOrder ? value : -value;
+		}
+		return new LongSortKeys(keys);
+	}
+
 }
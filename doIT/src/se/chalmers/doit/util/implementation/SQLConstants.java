@@ -1,14 +1,23 @@
 package se.chalmers.doit.util.implementation;
 
+import se.chalmers.doit.util.IComparatorStrategy;
+
 public final class SQLConstants {
 
 	// SQL Database name
 	public static final String DATABASE_NAME = "database";
+	// Schema version, stored with PRAGMA user_version
+	public static final int DATABASE_VERSION = 4;
 	
 	// List SQL table constants
 	public static final String LIST_TABLE_NAME = "listtable";
 	public static final String LIST_ID = "_id";
 	public static final String LIST_NAME = "name";
+
+	// Generation SQL table constants, with a single row counting the changes
+	// made to the lists and tasks
+	public static final String GENERATION = "generation";
+	public static final String GENERATION_TABLE_NAME = "generationtable";
 	
 	
 	public static final String TASK_COMPLETED = "completed";
@@ -18,9 +27,27 @@ public final class SQLConstants {
 	public static final String TASK_DUEDATE = "duedate";
 	public static final String TASK_ID = "_id";
 	public static final String TASK_NAME = "name";
+	// Case-folded name as UTF-16BE bytes, sorts like NameComparatorStrategy
+	public static final String TASK_NAME_KEY = "namekey";
 	public static final String TASK_PRIORITY = "priority";
 	public static final String TASK_REMINDERDATE = "reminderdate";
 	public static final String TASK_TABLE_NAME = "tasktable";
+
+	// Statistics SQL table constants, with one row per epoch day
+	public static final String STATISTICS_CREATED_LISTS = "createdlists";
+	public static final String STATISTICS_CREATED_TASKS = "createdtasks";
+	public static final String STATISTICS_DAY = "day";
+	public static final String STATISTICS_DELETED_LISTS = "deletedlists";
+	public static final String STATISTICS_DELETED_TASKS = "deletedtasks";
+	public static final String STATISTICS_FINISHED_TASKS = "finishedtasks";
+	public static final String STATISTICS_OVERDUE_TASKS = "overduetasks";
+	public static final String STATISTICS_TABLE_NAME = "statisticstable";
+
+	// Task table index names
+	public static final String TASK_COMPLETED_INDEX = "tasktable_completed_index";
+	public static final String TASK_DUEDATE_INDEX = "tasktable_duedate_index";
+	public static final String TASK_LISTID_INDEX = "tasktable_listid_index";
+	public static final String TASK_ORDER_INDEX = "tasktable_order_index";
 	
 	// Interactive SQL statement
 	public static String taskMove(final int taskID, final int toListID) {
@@ -28,11 +55,111 @@ public final class SQLConstants {
 				+ "=" + toListID + " WHERE " + TASK_ID + "=" + taskID;
 	}
 	
+	// Query for the tasks in a list, sorted like SortingComparator sorts them.
+	// Null strategies are skipped, and ties keep the order the tasks were
+	// added in
+	public static String selectSortedTasks(final IComparatorStrategy primary,
+			final IComparatorStrategy secondary,
+			final IComparatorStrategy tertiary) {
+		StringBuilder orderBy = new StringBuilder(TASK_COMPLETED);
+		for (IComparatorStrategy s : new IComparatorStrategy[] { primary,
+				secondary, tertiary }) {
+			if (s != null) {
+				orderBy.append(',').append(s.getSQLOrdering());
+			}
+		}
+		orderBy.append(',').append(TASK_ID);
+		return SELECT_ALL_TASKS + " WHERE " + TASK_CONNECTED_LIST_ID
+				+ "=? ORDER BY " + orderBy;
+	}
+	
+	// Compiled SQL statements, bound once per row in batch operations
+	public static final String INSERT_LIST = "INSERT INTO " + LIST_TABLE_NAME
+			+ " (" + LIST_NAME + ") VALUES (?)";
+	public static final String INSERT_TASK = "INSERT INTO " + TASK_TABLE_NAME
+			+ " (" + TASK_CONNECTED_LIST_ID + "," + TASK_NAME + ","
+			+ TASK_DESCRIPTION + "," + TASK_PRIORITY + "," + TASK_DUEDATE + ","
+			+ TASK_REMINDERDATE + "," + TASK_CUSTOMPOS + "," + TASK_COMPLETED
+			+ "," + TASK_NAME_KEY + ") VALUES (?,?,?,?,?,?,?,?,?)";
+	// Inserts under a given ID, so that writing the same row again is
+	// harmless. The ID is bound last
+	public static final String INSERT_OR_REPLACE_LIST = "INSERT OR REPLACE INTO "
+			+ LIST_TABLE_NAME + " (" + LIST_NAME + "," + LIST_ID
+			+ ") VALUES (?,?)";
+	public static final String INSERT_OR_REPLACE_TASK = "INSERT OR REPLACE INTO "
+			+ TASK_TABLE_NAME + " (" + TASK_CONNECTED_LIST_ID + "," + TASK_NAME
+			+ "," + TASK_DESCRIPTION + "," + TASK_PRIORITY + "," + TASK_DUEDATE
+			+ "," + TASK_REMINDERDATE + "," + TASK_CUSTOMPOS + ","
+			+ TASK_COMPLETED + "," + TASK_NAME_KEY + "," + TASK_ID
+			+ ") VALUES (?,?,?,?,?,?,?,?,?,?)";
+	public static final String DELETE_LIST = "DELETE FROM " + LIST_TABLE_NAME
+			+ " WHERE " + LIST_ID + "=?";
+	public static final String DELETE_TASK = "DELETE FROM " + TASK_TABLE_NAME
+			+ " WHERE " + TASK_ID + "=?";
+	public static final String SELECT_CHANGES = "SELECT changes()";
+	public static final String INSERT_STATISTICS_DAY = "INSERT OR IGNORE INTO "
+			+ STATISTICS_TABLE_NAME + " (" + STATISTICS_DAY + ") VALUES (?)";
+	public static final String UPDATE_STATISTICS_DAY = "UPDATE "
+			+ STATISTICS_TABLE_NAME + " SET " + STATISTICS_CREATED_LISTS + "="
+			+ STATISTICS_CREATED_LISTS + "+?," + STATISTICS_CREATED_TASKS + "="
+			+ STATISTICS_CREATED_TASKS + "+?," + STATISTICS_DELETED_LISTS + "="
+			+ STATISTICS_DELETED_LISTS + "+?," + STATISTICS_DELETED_TASKS + "="
+			+ STATISTICS_DELETED_TASKS + "+?," + STATISTICS_FINISHED_TASKS + "="
+			+ STATISTICS_FINISHED_TASKS + "+?," + STATISTICS_OVERDUE_TASKS + "="
+			+ STATISTICS_OVERDUE_TASKS + "+? WHERE " + STATISTICS_DAY + "=?";
+	public static final String DELETE_ALL_STATISTICS = "DELETE FROM "
+			+ STATISTICS_TABLE_NAME;
+	public static final String SELECT_TASK_NAMES = "SELECT " + TASK_ID + ","
+			+ TASK_NAME + " FROM " + TASK_TABLE_NAME;
+	public static final String UPDATE_TASK_NAME_KEY = "UPDATE "
+			+ TASK_TABLE_NAME + " SET " + TASK_NAME_KEY + "=? WHERE " + TASK_ID
+			+ "=?";
+
 	// SQL queries
 	public static final String SELECT_ALL_LISTS = "SELECT * FROM "
 			+ LIST_TABLE_NAME;
-	public static final String SELECT_ALL_TASKS = "SELECT * FROM "
-			+ TASK_TABLE_NAME;
+	public static final String SELECT_ALL_TASKS = "SELECT " + TASK_ID + ","
+			+ TASK_NAME + "," + TASK_DESCRIPTION + "," + TASK_PRIORITY + ","
+			+ TASK_DUEDATE + "," + TASK_REMINDERDATE + "," + TASK_CUSTOMPOS
+			+ "," + TASK_COMPLETED + " FROM " + TASK_TABLE_NAME;
+	public static final String SELECT_ALL_TASKS_BY_LIST = "SELECT "
+			+ TASK_CONNECTED_LIST_ID + "," + TASK_ID + "," + TASK_NAME + ","
+			+ TASK_DESCRIPTION + "," + TASK_PRIORITY + "," + TASK_DUEDATE + ","
+			+ TASK_REMINDERDATE + "," + TASK_CUSTOMPOS + "," + TASK_COMPLETED
+			+ " FROM " + TASK_TABLE_NAME + " ORDER BY "
+			+ TASK_CONNECTED_LIST_ID + "," + TASK_ID;
+	public static final String SELECT_TASK_IDS = "SELECT " + TASK_ID
+			+ " FROM " + TASK_TABLE_NAME + " WHERE " + TASK_CONNECTED_LIST_ID
+			+ "=? ORDER BY " + TASK_ID;
+	public static final String SELECT_TASKS_IN_LIST = SELECT_ALL_TASKS
+			+ " WHERE " + TASK_CONNECTED_LIST_ID + "=? ORDER BY " + TASK_ID;
+	public static final String SELECT_TASK_COUNTS = "SELECT "
+			+ TASK_CONNECTED_LIST_ID + ",COUNT(*) FROM " + TASK_TABLE_NAME
+			+ " GROUP BY " + TASK_CONNECTED_LIST_ID;
+	// Range over the primary key, so that only the rows in range are read
+	public static final String SELECT_STATISTICS_RANGE = "SELECT "
+			+ STATISTICS_DAY + "," + STATISTICS_CREATED_LISTS + ","
+			+ STATISTICS_CREATED_TASKS + "," + STATISTICS_DELETED_LISTS + ","
+			+ STATISTICS_DELETED_TASKS + "," + STATISTICS_FINISHED_TASKS + ","
+			+ STATISTICS_OVERDUE_TASKS + " FROM " + STATISTICS_TABLE_NAME
+			+ " WHERE " + STATISTICS_DAY + " BETWEEN ? AND ? ORDER BY "
+			+ STATISTICS_DAY;
+	// The highest IDs are kept by SQLite for AUTOINCREMENT keys, also after
+	// the rows have been deleted
+	public static final String SELECT_LAST_LIST_ID = "SELECT seq FROM sqlite_sequence WHERE name='"
+			+ LIST_TABLE_NAME + "'";
+	public static final String SELECT_LAST_TASK_ID = "SELECT seq FROM sqlite_sequence WHERE name='"
+			+ TASK_TABLE_NAME + "'";
+	public static final String SELECT_GENERATION = "SELECT " + GENERATION
+			+ " FROM " + GENERATION_TABLE_NAME;
+	public static final String INSERT_GENERATION = "INSERT INTO "
+			+ GENERATION_TABLE_NAME + " (" + GENERATION + ") VALUES (?)";
+	public static final String INCREASE_GENERATION = "UPDATE "
+			+ GENERATION_TABLE_NAME + " SET " + GENERATION + "=" + GENERATION
+			+ "+1";
+	public static final String SELECT_LIST_ID_OF_TASK = "SELECT "
+			+ TASK_CONNECTED_LIST_ID + " FROM " + TASK_TABLE_NAME + " WHERE "
+			+ TASK_ID + "=?";
 	
 	// SQL statements
 	public static final String CREATE_TABLE_LISTS = "CREATE TABLE IF NOT EXISTS "
@@ -43,6 +170,29 @@ public final class SQLConstants {
 			+ LIST_NAME
 			+ " TEXT NOT NULL);";
 
+	// Table added in database version 4
+	public static final String CREATE_TABLE_GENERATION = "CREATE TABLE IF NOT EXISTS "
+			+ GENERATION_TABLE_NAME + " (" + GENERATION + " INTEGER NOT NULL);";
+
+	public static final String CREATE_TABLE_STATISTICS = "CREATE TABLE IF NOT EXISTS "
+			+ STATISTICS_TABLE_NAME
+			+ " ("
+			+ STATISTICS_DAY
+			+ " INTEGER PRIMARY KEY,"
+			+ STATISTICS_CREATED_LISTS
+			+ " INTEGER NOT NULL DEFAULT 0,"
+			+ STATISTICS_CREATED_TASKS
+			+ " INTEGER NOT NULL DEFAULT 0,"
+			+ STATISTICS_DELETED_LISTS
+			+ " INTEGER NOT NULL DEFAULT 0,"
+			+ STATISTICS_DELETED_TASKS
+			+ " INTEGER NOT NULL DEFAULT 0,"
+			+ STATISTICS_FINISHED_TASKS
+			+ " INTEGER NOT NULL DEFAULT 0,"
+			+ STATISTICS_OVERDUE_TASKS + " INTEGER NOT NULL DEFAULT 0);";
+
+	// Columns added by later versions are added by the upgrade, also when
+	// the table is new
 	public static final String CREATE_TABLE_TASKS = "CREATE TABLE IF NOT EXISTS "
 			+ TASK_TABLE_NAME
 			+ " ("
@@ -62,5 +212,39 @@ public final class SQLConstants {
 			+ " INTEGER,"
 			+ TASK_CUSTOMPOS
 			+ " INTEGER NOT NULL," + TASK_COMPLETED + " INTEGER NOT NULL);";
-	
+
+	// Indexes on the task table, added in database version 2
+	public static final String CREATE_INDEX_TASKS_LISTID = "CREATE INDEX IF NOT EXISTS "
+			+ TASK_LISTID_INDEX
+			+ " ON "
+			+ TASK_TABLE_NAME
+			+ " ("
+			+ TASK_CONNECTED_LIST_ID + ");";
+
+	public static final String CREATE_INDEX_TASKS_COMPLETED = "CREATE INDEX IF NOT EXISTS "
+			+ TASK_COMPLETED_INDEX
+			+ " ON "
+			+ TASK_TABLE_NAME
+			+ " ("
+			+ TASK_COMPLETED + ");";
+
+	public static final String CREATE_INDEX_TASKS_DUEDATE = "CREATE INDEX IF NOT EXISTS "
+			+ TASK_DUEDATE_INDEX
+			+ " ON "
+			+ TASK_TABLE_NAME
+			+ " ("
+			+ TASK_DUEDATE + ");";
+
+	// Columns and indexes added in database version 3. The order index
+	// covers the WHERE clause and first ORDER BY term of selectSortedTasks()
+	public static final String ADD_COLUMN_TASKS_NAME_KEY = "ALTER TABLE "
+			+ TASK_TABLE_NAME + " ADD COLUMN " + TASK_NAME_KEY + " BLOB;";
+
+	public static final String CREATE_INDEX_TASKS_ORDER = "CREATE INDEX IF NOT EXISTS "
+			+ TASK_ORDER_INDEX
+			+ " ON "
+			+ TASK_TABLE_NAME
+			+ " ("
+			+ TASK_CONNECTED_LIST_ID + "," + TASK_COMPLETED + ");";
+
 }
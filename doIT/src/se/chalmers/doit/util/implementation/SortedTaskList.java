@@ -0,0 +1,99 @@
+package se.chalmers.doit.util.implementation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.ITask;
+import se.chalmers.doit.util.*;
+
+/**
+ * An ISortedTaskList sorted by a SortingComparator. The tasks are sorted once
+ * when the list is created, and after that each change finds its position by
+ * binary search, comparing O(log n) tasks.
+ * 
+ * @author Boel
+ * 
+ */
+public class SortedTaskList implements ISortedTaskList {
+
+	private final ISortingComparator comparator;
+	private final List<ITask> tasks;
+
+	/**
+	 * Creates a sorted list of the provided tasks.
+	 * 
+	 * @param comparator
+	 *            The comparator to sort the tasks with
+	 * @param tasks
+	 *            The tasks of the list
+	 */
+	public SortedTaskList(final ISortingComparator comparator,
+			final Collection<ITask> tasks) {
+		this.comparator = comparator;
+		this.tasks = new ArrayList<ITask>(tasks);
+		comparator.sort(this.tasks);
+	}
+
+	@Override
+	public int add(final ITask task) {
+		// Find the first task sorted after the new task
+		int low = 0;
+		int high = tasks.size();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (comparator.compare(tasks.get(mid), task) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		tasks.add(low, task);
+		return low;
+	}
+
+	@Override
+	public ITask get(final int position) {
+		return tasks.get(position);
+	}
+
+	@Override
+	public List<ITask> getTasks() {
+		return Collections.unmodifiableList(tasks);
+	}
+
+	@Override
+	public int remove(final ITask task) {
+		// Find the first task sorted together with the task, and look for the
+		// task among those
+		int low = 0;
+		int high = tasks.size();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (comparator.compare(tasks.get(mid), task) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		for (int i = low; i < tasks.size()
+				&& comparator.compare(tasks.get(i), task) == 0; i++) {
+			if (tasks.get(i).equals(task)) {
+				tasks.remove(i);
+				return i;
+			}
+		}
+
+		// A task that is sorted differently from the task in the list has to
+		// be searched for
+		final int position = tasks.indexOf(task);
+		if (position >= 0) {
+			tasks.remove(position);
+		}
+		return position;
+	}
+
+	@Override
+	public int size() {
+		return tasks.size();
+	}
+
+}
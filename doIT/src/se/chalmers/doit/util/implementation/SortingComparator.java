@@ -1,12 +1,10 @@
 package se.chalmers.doit.util.implementation;
 
-import java.util.Comparator;
+import java.util.*;
 
 import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.util.*;
 
-// TODO: think about whether the null checks in the sorting methods can be made more elegantly
-
 /**
  * An implementation of Comparator<ITask> that compares ITasks based on the
  * given IComparatorStrategies
@@ -16,9 +14,69 @@ import se.chalmers.doit.util.*;
  */
 public class SortingComparator implements ISortingComparator {
 
-	private Comparator<ITask> primary;
-	private Comparator<ITask> secondary;
-	private Comparator<ITask> tertiary;
+	// Ranges shorter than this are sorted by insertion sort
+	private static final int INSERTION_SORT_THRESHOLD = 7;
+
+	/**
+	 * Compares the tasks at two indices by their keys, one set of keys for
+	 * each sorting level.
+	 */
+	private static int _compareKeys(final ISortKeys[] keys, final int i,
+			final int j) {
+		for (final ISortKeys levelKeys : keys) {
+			final int ret = levelKeys.compare(i, j);
+			if (ret != 0) {
+				return ret;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Sorts a range of task indices by their keys, from src into dest. Both
+	 * arrays must hold the same indices in the range, as they take turns being
+	 * the source at each level of the recursion. The sort is a stable merge
+	 * sort, like Collections.sort().
+	 */
+	private static void _mergeSort(final int[] src, final int[] dest,
+			final int from, final int to, final ISortKeys[] keys) {
+		if (to - from < INSERTION_SORT_THRESHOLD) {
+			for (int i = from + 1; i < to; i++) {
+				final int index = dest[i];
+				int j = i;
+				while (j > from && _compareKeys(keys, dest[j - 1], index) > 0) {
+					dest[j] = dest[j - 1];
+					j--;
+				}
+				dest[j] = index;
+			}
+			return;
+		}
+
+		final int mid = (from + to) >>> 1;
+		_mergeSort(dest, src, from, mid, keys);
+		_mergeSort(dest, src, mid, to, keys);
+
+		// The halves are already in order
+		if (_compareKeys(keys, src[mid - 1], src[mid]) <= 0) {
+			System.arraycopy(src, from, dest, from, to - from);
+			return;
+		}
+
+		int i = from;
+		int j = mid;
+		for (int k = from; k < to; k++) {
+			if (j >= to || (i < mid && _compareKeys(keys, src[i], src[j]) <= 0)) {
+				dest[k] = src[i++];
+			} else {
+				dest[k] = src[j++];
+			}
+		}
+	}
+
+	private IComparatorStrategy primary;
+	private IComparatorStrategy secondary;
+	private IComparatorStrategy tertiary;
 
 	public SortingComparator(final IComparatorStrategy primary,
 			final IComparatorStrategy secondary,
@@ -35,7 +93,17 @@ public class SortingComparator implements ISortingComparator {
 
 		// Sorts first by completion, then sorts by primary, secondary and
 		// tertiary orders.
-		return sortByCompletion(t1, t2);
+		if (t1.isCompleted() != t2.isCompleted()) {
+			return t1.isCompleted() ? 1 : -1;
+		}
+		int ret = _compare(primary, t1, t2);
+		if (ret == 0) {
+			ret = _compare(secondary, t1, t2);
+		}
+		if (ret == 0) {
+			ret = _compare(tertiary, t1, t2);
+		}
+		return ret;
 	}
 
 	@Override
@@ -49,58 +117,83 @@ public class SortingComparator implements ISortingComparator {
 
 	}
 
-	private int sortByCompletion(final ITask t1, final ITask t2) {
-		if (t1.isCompleted() && !t2.isCompleted()) {
-			return 1;
-		} else if (!t1.isCompleted() && t2.isCompleted()) {
-			return -1;
-		} else {
-			return sortPrimary(t1, t2);
+	@Override
+	public void sort(final List<ITask> list) {
+		final ITask[] tasks = list.toArray(new ITask[list.size()]);
+		if (tasks.length < 2) {
+			return;
 		}
-	}
 
-	private int sortPrimary(final ITask t1, final ITask t2) {
-		if (primary != null) {
-			if (primary.compare(t1, t2) > 0) {
-				return 1;
-			} else if (primary.compare(t1, t2) < 0) {
-				return -1;
-			} else {
-				return sortSecondary(t1, t2);
+		// Completed tasks always come last, so instead of comparing completion
+		// the tasks are split in two, keeping their order, and each part is
+		// sorted by the strategies
+		final int[] order = new int[tasks.length];
+		int nNotCompleted = 0;
+		for (int i = 0; i < tasks.length; i++) {
+			if (!tasks[i].isCompleted()) {
+				order[nNotCompleted++] = i;
+			}
+		}
+		int next = nNotCompleted;
+		for (int i = 0; i < tasks.length; i++) {
+			if (tasks[i].isCompleted()) {
+				order[next++] = i;
 			}
-		} else {
-			return sortSecondary(t1, t2);
 		}
 
+		final ISortKeys[] keys = _getKeys(tasks);
+		if (keys.length > 0) {
+			final int[] src = order.clone();
+			_mergeSort(src, order, 0, nNotCompleted, keys);
+			_mergeSort(src, order, nNotCompleted, order.length, keys);
+		}
+
+		final ListIterator<ITask> it = list.listIterator();
+		for (final int index : order) {
+			it.next();
+			it.set(tasks[index]);
+		}
 	}
 
-	private int sortSecondary(final ITask t1, final ITask t2) {
-		if (secondary != null) {
-			if (secondary.compare(t1, t2) > 0) {
-				return 1;
-			} else if (secondary.compare(t1, t2) < 0) {
-				return -1;
-			} else {
-				return sortTertiary(t1, t2);
-			}
-		} else {
-			return sortTertiary(t1, t2);
+	/**
+	 * Compares two tasks by a strategy, returning -1, 0 or 1. A strategy that
+	 * is null considers all tasks equal.
+	 */
+	private int _compare(final IComparatorStrategy strategy, final ITask t1,
+			final ITask t2) {
+		if (strategy == null) {
+			return 0;
+		}
+		final int ret = strategy.compare(t1, t2);
+		if (ret > 0) {
+			return 1;
+		} else if (ret < 0) {
+			return -1;
 		}
+		return 0;
 	}
 
-	private int sortTertiary(final ITask t1, final ITask t2) {
-		if (tertiary != null) {
-			if (tertiary.compare(t1, t2) > 0) {
-				return 1;
-			} else if (tertiary.compare(t1, t2) < 0) {
-				return -1;
-			} else {
-				return 0;
+	/**
+	 * Returns the sort keys of the tasks for each strategy that is set.
+	 */
+	private ISortKeys[] _getKeys(final ITask[] tasks) {
+		final IComparatorStrategy[] strategies = { primary, secondary,
+				tertiary };
+		int nLevels = 0;
+		for (final IComparatorStrategy s : strategies) {
+			if (s != null) {
+				nLevels++;
 			}
-		} else {
-			return 0;
 		}
 
+		final ISortKeys[] keys = new ISortKeys[nLevels];
+		int level = 0;
+		for (final IComparatorStrategy s : strategies) {
+			if (s != null) {
+				keys[level++] = s.getSortKeys(tasks);
+			}
+		}
+		return keys;
 	}
 
 }
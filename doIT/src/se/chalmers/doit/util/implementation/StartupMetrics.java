@@ -0,0 +1,88 @@
+package se.chalmers.doit.util.implementation;
+
+/**
+ * Keeps track of how long startup takes, both until the first frame is shown
+ * and until the data has been loaded. Both times are counted from when
+ * startup began, in milliseconds of the clock the times are read from.
+ * 
+ * @author Kaufmann
+ * 
+ */
+public final class StartupMetrics {
+
+	public static final String LOG_TAG = "doIT.startup";
+	// Returned for a point of startup that has not been reached yet
+	public static final long NOT_REACHED = -1;
+
+	private long dataLoadedTime = NOT_REACHED;
+	private long firstFrameTime = NOT_REACHED;
+	private final long startTime;
+
+	/**
+	 * Starts measuring startup.
+	 * 
+	 * @param startTime
+	 *            the time startup began
+	 */
+	public StartupMetrics(final long startTime) {
+		this.startTime = startTime;
+	}
+
+	/**
+	 * Returns the time it took until the data had been loaded.
+	 * 
+	 * @return the time in milliseconds, or NOT_REACHED if the data has not
+	 *         been loaded yet
+	 */
+	public long getTimeToData() {
+		return _getTimeTo(dataLoadedTime);
+	}
+
+	/**
+	 * Returns the time it took until the first frame was shown.
+	 * 
+	 * @return the time in milliseconds, or NOT_REACHED if no frame has been
+	 *         shown yet
+	 */
+	public long getTimeToFirstFrame() {
+		return _getTimeTo(firstFrameTime);
+	}
+
+	/**
+	 * Records that the data has been loaded. Only the first call is recorded.
+	 * 
+	 * @param time
+	 *            the time the data was loaded
+	 * @return true if this was the first call, false if not
+	 */
+	public boolean markDataLoaded(final long time) {
+		if (dataLoadedTime != NOT_REACHED) {
+			return false;
+		}
+		dataLoadedTime = time;
+		return true;
+	}
+
+	/**
+	 * Records that the first frame has been shown. Only the first call is
+	 * recorded.
+	 * 
+	 * @param time
+	 *            the time the frame was shown
+	 * @return true if this was the first call, false if not
+	 */
+	public boolean markFirstFrame(final long time) {
+		if (firstFrameTime != NOT_REACHED) {
+			return false;
+		}
+		firstFrameTime = time;
+		return true;
+	}
+
+	private long _getTimeTo(final long time) {
+		if (time == NOT_REACHED) {
+			return NOT_REACHED;
+		}
+		return time - startTime;
+	}
+}
@@ -0,0 +1,196 @@
+package se.chalmers.doit.util.implementation;
+
+import java.util.*;
+
+import se.chalmers.doit.core.IStatisticalData;
+import se.chalmers.doit.core.implementation.StatisticalData;
+import se.chalmers.doit.util.IStatisticsIndex;
+
+/**
+ * An implementation of IStatisticsIndex keeping one Fenwick tree per count,
+ * over the days with counts in day order.
+ * 
+ * Adding to a day that already has counts, or to a day after all others,
+ * takes O(log n) time. That covers reports made today. Adding a day before
+ * another one rebuilds the trees in O(n) time.
+ * 
+ * @author Boel
+ * 
+ */
+public class StatisticsIndex implements IStatisticsIndex {
+
+	private static final int CREATED_LISTS = 0;
+	private static final int CREATED_TASKS = 1;
+	private static final int DELETED_LISTS = 2;
+	private static final int DELETED_TASKS = 3;
+	private static final int FINISHED_TASKS = 4;
+	private static final int N_COUNTS = 6;
+	private static final int OVERDUE_TASKS = 5;
+
+	private static int[] _getCounts(final IStatisticalData data) {
+		final int[] ret = new int[N_COUNTS];
+		ret[CREATED_LISTS] = data.getCreatedLists();
+		ret[CREATED_TASKS] = data.getCreatedTasks();
+		ret[DELETED_LISTS] = data.getDeletedLists();
+		ret[DELETED_TASKS] = data.getDeletedTasks();
+		ret[FINISHED_TASKS] = data.getFinishedTasks();
+		ret[OVERDUE_TASKS] = data.getOverdueTasks();
+		return ret;
+	}
+
+	// The days with counts, in order. Only the first size are used
+	private long[] days = new long[16];
+	private int size = 0;
+	// trees[i][c] is the sum of count c over the days at positions
+	// (i - lowest set bit of i) to i - 1
+	private int[][] trees = new int[17][N_COUNTS];
+
+	/**
+	 * Creates an index without any counts.
+	 */
+	public StatisticsIndex() {
+		// Nothing to count yet
+	}
+
+	/**
+	 * Creates an index over existing statistics.
+	 * 
+	 * @param data
+	 *            the statistics to count, on the epoch day of their dates
+	 */
+	public StatisticsIndex(final Collection<IStatisticalData> data) {
+		final SortedMap<Long, int[]> byDay = new TreeMap<Long, int[]>();
+		for (final IStatisticalData d : data) {
+			final Long day = Long.valueOf(EpochDay.getDay(d.getDate()));
+			final int[] counts = _getCounts(d);
+			final int[] existing = byDay.get(day);
+			if (existing != null) {
+				for (int c = 0; c < N_COUNTS; c++) {
+					counts[c] += existing[c];
+				}
+			}
+			byDay.put(day, counts);
+		}
+		_build(byDay);
+	}
+
+	@Override
+	public void add(final long day, final IStatisticalData data) {
+		final int[] counts = _getCounts(data);
+		final int pos = _lowerBound(day);
+		if (pos < size && days[pos] == day) {
+			for (int i = pos + 1; i <= size; i += i & -i) {
+				for (int c = 0; c < N_COUNTS; c++) {
+					trees[i][c] += counts[c];
+				}
+			}
+		} else if (pos == size) {
+			_append(day, counts);
+		} else {
+			final SortedMap<Long, int[]> byDay = _getCountsByDay();
+			byDay.put(Long.valueOf(day), counts);
+			_build(byDay);
+		}
+	}
+
+	@Override
+	public IStatisticalData getTotals(final long firstDay, final long lastDay) {
+		final StatisticalData ret = new StatisticalData(new Date());
+		if (firstDay > lastDay) {
+			return ret;
+		}
+		final int[] before = _getPrefix(_lowerBound(firstDay));
+		final int[] through = _getPrefix(lastDay == Long.MAX_VALUE ? size
+				: _lowerBound(lastDay + 1));
+		ret.addCreatedLists(through[CREATED_LISTS] - before[CREATED_LISTS]);
+		ret.addCreatedTasks(through[CREATED_TASKS] - before[CREATED_TASKS]);
+		ret.addDeletedLists(through[DELETED_LISTS] - before[DELETED_LISTS]);
+		ret.addDeletedTasks(through[DELETED_TASKS] - before[DELETED_TASKS]);
+		ret.addFinishedTasks(through[FINISHED_TASKS] - before[FINISHED_TASKS]);
+		ret.addOverdueTasks(through[OVERDUE_TASKS] - before[OVERDUE_TASKS]);
+		return ret;
+	}
+
+	private void _append(final long day, final int[] counts) {
+		if (size == days.length) {
+			final long[] newDays = new long[size * 2];
+			System.arraycopy(days, 0, newDays, 0, size);
+			days = newDays;
+			final int[][] newTrees = new int[size * 2 + 1][];
+			System.arraycopy(trees, 0, newTrees, 0, size + 1);
+			for (int i = size + 1; i < newTrees.length; i++) {
+				newTrees[i] = new int[N_COUNTS];
+			}
+			trees = newTrees;
+		}
+		days[size] = day;
+		size++;
+		// The new node covers the new day and the days of the nodes below it
+		final int[] node = trees[size];
+		final int[] through = _getPrefix(size - 1);
+		final int[] before = _getPrefix(size - (size & -size));
+		for (int c = 0; c < N_COUNTS; c++) {
+			node[c] = counts[c] + through[c] - before[c];
+		}
+	}
+
+	private void _build(final SortedMap<Long, int[]> byDay) {
+		// Builds the trees in O(n) time by pushing each node up to its parent
+		size = byDay.size();
+		days = new long[Math.max(16, size)];
+		trees = new int[days.length + 1][N_COUNTS];
+		int i = 1;
+		for (final Map.Entry<Long, int[]> e : byDay.entrySet()) {
+			days[i - 1] = e.getKey().longValue();
+			System.arraycopy(e.getValue(), 0, trees[i], 0, N_COUNTS);
+			i++;
+		}
+		for (i = 1; i <= size; i++) {
+			final int parent = i + (i & -i);
+			if (parent <= size) {
+				for (int c = 0; c < N_COUNTS; c++) {
+					trees[parent][c] += trees[i][c];
+				}
+			}
+		}
+	}
+
+	private SortedMap<Long, int[]> _getCountsByDay() {
+		final SortedMap<Long, int[]> ret = new TreeMap<Long, int[]>();
+		for (int pos = 0; pos < size; pos++) {
+			final int[] counts = _getPrefix(pos + 1);
+			final int[] before = _getPrefix(pos);
+			for (int c = 0; c < N_COUNTS; c++) {
+				counts[c] -= before[c];
+			}
+			ret.put(Long.valueOf(days[pos]), counts);
+		}
+		return ret;
+	}
+
+	private int[] _getPrefix(final int n) {
+		// The sums of the counts of the first n days
+		final int[] ret = new int[N_COUNTS];
+		for (int i = n; i > 0; i -= i & -i) {
+			for (int c = 0; c < N_COUNTS; c++) {
+				ret[c] += trees[i][c];
+			}
+		}
+		return ret;
+	}
+
+	private int _lowerBound(final long day) {
+		// The position of the first day that is not before the given day
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (days[mid] < day) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,34 @@
+package se.chalmers.doit.util.implementation;
+
+import se.chalmers.doit.util.ISortKeys;
+
+/**
+ * Sort keys that are strings, compared character by character.
+ * 
+ * @author Karl Bristav
+ * 
+ */
+public final class StringSortKeys implements ISortKeys {
+
+	private final boolean invertedSortOrder;
+	private final String[] keys;
+
+	/**
+	 * @param keys
+	 *            The key of each task
+	 * @param invertedSortOrder
+	 *            Boolean stating whether the keys are sorted in descending
+	 *            order
+	 */
+	public StringSortKeys(final String[] keys, final boolean invertedSortOrder) {
+		this.keys = keys;
+		this.invertedSortOrder = invertedSortOrder;
+	}
+
+	@Override
+	public int compare(final int i, final int j) {
+		final int ret = keys[i].compareTo(keys[j]);
+		return invertedSortOrder ? -ret : ret;
+	}
+
+}
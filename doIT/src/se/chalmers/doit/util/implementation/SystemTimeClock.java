@@ -0,0 +1,18 @@
+package se.chalmers.doit.util.implementation;
+
+import se.chalmers.doit.util.IClock;
+
+/**
+ * An implementation of IClock reading the system time.
+ * 
+ * @author Boel
+ * 
+ */
+public class SystemTimeClock implements IClock {
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+}
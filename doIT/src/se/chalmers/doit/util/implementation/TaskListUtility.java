@@ -1,6 +1,6 @@
 package se.chalmers.doit.util.implementation;
 
-import java.util.*;
+import java.util.List;
 
 import se.chalmers.doit.core.ITask;
 import se.chalmers.doit.util.*;
@@ -18,10 +18,7 @@ public class TaskListUtility implements ITaskListUtility {
 			final IComparatorStrategy secondary,
 			final IComparatorStrategy tertiary) {
 
-		Comparator<ITask> comparer = new SortingComparator(primary, secondary,
-				tertiary);
-
-		Collections.sort(list, comparer);
+		new SortingComparator(primary, secondary, tertiary).sort(list);
 	}
 
 }